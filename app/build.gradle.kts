@@ -32,6 +32,14 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        unitTests.all {
+            // JVM benchmarks under src/test are skipped unless run with -Pbenchmark
+            val benchmark = project.hasProperty("benchmark")
+            it.systemProperty("benchmark", benchmark.toString())
+            if (benchmark) it.testLogging.showStandardStreams = true
+        }
+    }
 }
 
 dependencies {
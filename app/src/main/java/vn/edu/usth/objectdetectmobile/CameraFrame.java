@@ -0,0 +1,219 @@
+package vn.edu.usth.objectdetectmobile;
+
+import android.graphics.PixelFormat;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageProxy;
+
+/**
+ * One analyzer frame: the sensor-oriented YUV planes (or, in RGBA ingestion mode, the single
+ * RGBA_8888 plane) plus the rotation needed to make them upright. Exactly one of
+ * {@link #planes} / {@link #rgba} is set. Detector and depth sample the source directly with
+ * the rotation folded into their index math. The full-resolution upright ARGB frame is only
+ * built the first time {@link #argb()} is called (e.g. for the full-frame blur) and comes from
+ * the given arena.
+ *
+ * Reduced-resolution copies form a lazily built pyramid ({@link #level(int)}): level 1 is
+ * decoded once from the source at half size, each further level halves the previous one with a
+ * 2x2 box average. Every consumer takes its input from the smallest level that still covers its
+ * model input ({@link #levelFor}), so decode work is shared between detector and depth and grows
+ * with the model input sizes rather than the camera resolution.
+ *
+ * Valid only while the underlying ImageProxy is open; call {@link #release()} before closing it.
+ */
+public final class CameraFrame {
+    public final Yuv.Planes planes;
+    public final Rgba.Plane rgba;
+    public final int rotation;
+    private final FrameBufferArena arena;
+    private int[] argb;
+    // levels[k] for k >= 1; index 0 stays null (level 0 is the planes themselves)
+    private final Level[] levels = new Level[MAX_LEVELS + 1];
+
+    static final int MAX_LEVELS = 4;
+
+    /** One pyramid level: packed ARGB in sensor orientation (rotate with {@link #rotation}). */
+    public static final class Level {
+        public final int index;
+        public final int[] argb;
+        public final int width, height;
+
+        Level(int index, int[] argb, int width, int height) {
+            this.index = index;
+            this.argb = argb;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public CameraFrame(@NonNull Yuv.Planes planes, int rotation, @NonNull FrameBufferArena arena) {
+        this(planes, null, rotation, arena);
+    }
+
+    public CameraFrame(@NonNull Rgba.Plane rgba, int rotation, @NonNull FrameBufferArena arena) {
+        this(null, rgba, rotation, arena);
+    }
+
+    private CameraFrame(Yuv.Planes planes, Rgba.Plane rgba, int rotation,
+                        FrameBufferArena arena) {
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        this.planes = planes;
+        this.rgba = rgba;
+        this.rotation = rotation;
+        this.arena = arena;
+    }
+
+    /** Wraps a YUV_420_888 or RGBA_8888 analysis image, whichever the use case delivers. */
+    public static CameraFrame of(@NonNull ImageProxy image, @NonNull FrameBufferArena arena) {
+        int rotation = image.getImageInfo().getRotationDegrees();
+        if (image.getFormat() == PixelFormat.RGBA_8888) {
+            return new CameraFrame(Rgba.Plane.of(image), rotation, arena);
+        }
+        return new CameraFrame(Yuv.Planes.of(image), rotation, arena);
+    }
+
+    /** Size of the sensor-oriented source. */
+    public int sensorWidth() {
+        return planes != null ? planes.width : rgba.width;
+    }
+
+    public int sensorHeight() {
+        return planes != null ? planes.height : rgba.height;
+    }
+
+    /** Width of the upright (rotated) frame. */
+    public int width() {
+        return (rotation == 90 || rotation == 270) ? sensorHeight() : sensorWidth();
+    }
+
+    /** Height of the upright (rotated) frame. */
+    public int height() {
+        return (rotation == 90 || rotation == 270) ? sensorWidth() : sensorHeight();
+    }
+
+    /** Full-resolution upright ARGB frame, built on first use. */
+    public synchronized int[] argb() {
+        if (argb == null) {
+            int w = sensorWidth(), h = sensorHeight();
+            int size = w * h;
+            int[] sensor = planes != null
+                    ? Yuv.toArgb(planes, arena.acquireInts(size))
+                    : Rgba.toArgb(rgba, arena.acquireInts(size));
+            if (rotation == 0) {
+                argb = sensor;
+            } else {
+                argb = Yuv.rotate(sensor, w, h, rotation, arena.acquireInts(size));
+                arena.release(sensor);
+            }
+        }
+        return argb;
+    }
+
+    public synchronized boolean hasArgb() {
+        return argb != null;
+    }
+
+    /** Sensor-oriented size of pyramid level k (level 0 = the planes). */
+    public int levelWidth(int k) {
+        return sensorWidth() >> k;
+    }
+
+    public int levelHeight(int k) {
+        return sensorHeight() >> k;
+    }
+
+    /**
+     * Deepest pyramid level whose upright size is still at least minW x minH (0 if none is),
+     * i.e. the level a consumer needing that much resolution should resample from.
+     */
+    public int levelFor(int minW, int minH) {
+        boolean swap = rotation == 90 || rotation == 270;
+        int k = 0;
+        while (k < MAX_LEVELS) {
+            int w = levelWidth(k + 1), h = levelHeight(k + 1);
+            int uw = swap ? h : w, uh = swap ? w : h;
+            if (uw < minW || uh < minH || w < 1 || h < 1) break;
+            k++;
+        }
+        return k;
+    }
+
+    /** Pyramid level k in [1, MAX_LEVELS], built on first use together with any missing parents. */
+    public synchronized Level level(int k) {
+        if (k < 1 || k > MAX_LEVELS) throw new IllegalArgumentException("level " + k);
+        Level l = levels[k];
+        if (l != null) return l;
+        int w = levelWidth(k), h = levelHeight(k);
+        int[] out = arena.acquireInts(w * h);
+        if (k == 1) {
+            if (planes != null) halveYuv(planes, out);
+            else Rgba.halve(rgba, out);
+        } else {
+            Level parent = level(k - 1);
+            halveArgb(parent.argb, parent.width, parent.height, out);
+        }
+        l = new Level(k, out, w, h);
+        levels[k] = l;
+        return l;
+    }
+
+    public synchronized boolean hasLevel(int k) {
+        return k >= 1 && k <= MAX_LEVELS && levels[k] != null;
+    }
+
+    /** Returns the lazily built buffers (if any) to the arena. */
+    public synchronized void release() {
+        arena.release(argb);
+        argb = null;
+        for (int k = 1; k <= MAX_LEVELS; k++) {
+            if (levels[k] != null) arena.release(levels[k].argb);
+            levels[k] = null;
+        }
+    }
+
+    // Half-size decode: each output pixel averages a 2x2 luma block, which shares exactly one
+    // chroma sample in YUV_420, so chroma needs no filtering.
+    static void halveYuv(Yuv.Planes p, int[] out) {
+        ParallelRows.run(p.height >> 1, p.width, (j0, j1) -> halveYuvRows(p, out, j0, j1));
+    }
+
+    private static void halveYuvRows(Yuv.Planes p, int[] out, int j0, int j1) {
+        final int w = p.width >> 1;
+        for (int j = j0; j < j1; j++) {
+            int y0 = 2 * j * p.yRowStride;
+            int y1 = y0 + p.yRowStride;
+            int uv = j * p.uvRowStride;
+            int o = j * w;
+            for (int i = 0; i < w; i++, uv += p.uvPixelStride) {
+                int x = 2 * i;
+                int Y = ((p.y.get(y0 + x) & 0xFF) + (p.y.get(y0 + x + 1) & 0xFF)
+                        + (p.y.get(y1 + x) & 0xFF) + (p.y.get(y1 + x + 1) & 0xFF) + 2) >> 2;
+                out[o + i] = Yuv.yuvToArgb(Y, p.u.get(uv) & 0xFF, p.v.get(uv) & 0xFF);
+            }
+        }
+    }
+
+    static void halveArgb(int[] src, int srcW, int srcH, int[] out) {
+        ParallelRows.run(srcH >> 1, srcW, (j0, j1) -> halveArgbRows(src, srcW, out, j0, j1));
+    }
+
+    private static void halveArgbRows(int[] src, int srcW, int[] out, int j0, int j1) {
+        final int w = srcW >> 1;
+        for (int j = j0; j < j1; j++) {
+            int r0 = 2 * j * srcW, r1 = r0 + srcW;
+            int o = j * w;
+            for (int i = 0; i < w; i++) {
+                int a = src[r0 + 2 * i], b = src[r0 + 2 * i + 1];
+                int c = src[r1 + 2 * i], d = src[r1 + 2 * i + 1];
+                int r = (((a >> 16) & 0xFF) + ((b >> 16) & 0xFF)
+                        + ((c >> 16) & 0xFF) + ((d >> 16) & 0xFF) + 2) >> 2;
+                int g = (((a >> 8) & 0xFF) + ((b >> 8) & 0xFF)
+                        + ((c >> 8) & 0xFF) + ((d >> 8) & 0xFF) + 2) >> 2;
+                int bl = ((a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF) + 2) >> 2;
+                out[o + i] = 0xFF000000 | (r << 16) | (g << 8) | bl;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package vn.edu.usth.objectdetectmobile;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Two-stage detection: a small gating model (e.g. yolov8n at 320) runs on every frame, and the
+ * main model only when the gate sees something worth a closer look.
+ *
+ * The policy has two modes:
+ *
+ * - gating: the gate runs first. If it reports a candidate scoring at least
+ *   {@link Settings#escalateScore}, or {@link Settings#refreshInterval} gate frames have passed
+ *   since the main model last ran, the frame escalates: the main model runs on the same frame,
+ *   so a new object costs no extra frame of delay. Otherwise the frame ends with no detections.
+ * - escalated: once the main model finds objects, it runs directly (the gate would only add
+ *   latency while the scene is busy) until {@link Settings#quietRuns} consecutive runs come
+ *   back empty, then gating resumes.
+ *
+ * In a quiet scene the cost per frame is therefore the gate's plus the main model's divided by
+ * the refresh interval. The counters (escalation rate, mean latency per stage and per frame)
+ * are what the detector logs to show whether that holds on a device.
+ *
+ * Not thread-safe; the detector calls it under its lock.
+ */
+public final class CascadePolicy {
+
+    /** Cascade knobs. Immutable. */
+    public static final class Settings {
+        /** Gate candidates at or above this score escalate the frame. */
+        public final float escalateScore;
+        /** Gate frames after which the main model runs anyway (0 = never). */
+        public final int refreshInterval;
+        /** Consecutive empty main runs before the gate takes over again. */
+        public final int quietRuns;
+        /** Latency budget for the gate's input size, in ms (see setTargetFrameMs). */
+        public final float gateTargetMs;
+
+        public Settings(float escalateScore, int refreshInterval, int quietRuns,
+                        float gateTargetMs) {
+            this.escalateScore = escalateScore;
+            this.refreshInterval = Math.max(0, refreshInterval);
+            this.quietRuns = Math.max(1, quietRuns);
+            this.gateTargetMs = gateTargetMs;
+        }
+
+        /** Escalate at 0.3, refresh every 30 gate frames, back to gating after 5 empty runs. */
+        public static final Settings DEFAULT = new Settings(0.3f, 30, 5, 30f);
+
+        @Override
+        public String toString() {
+            return "escalate >= " + escalateScore + ", refresh every " + refreshInterval
+                    + ", quiet after " + quietRuns;
+        }
+    }
+
+    final Settings settings;
+    private boolean gating = true;
+    private int sinceMain;
+    private int emptyRuns;
+
+    private long frames, gateRuns, mainRuns, escalations;
+    private long gateNs, mainNs;
+
+    public CascadePolicy(@NonNull Settings settings) {
+        this.settings = settings;
+    }
+
+    /** True when the next frame starts with the gate, false when it goes straight to main. */
+    boolean runGate() {
+        return gating;
+    }
+
+    /**
+     * Records a gate run and returns whether the frame escalates to the main model. When it
+     * does not, the frame is over.
+     */
+    boolean escalate(@NonNull DetectionBuffer gateResult, long latencyNs) {
+        gateRuns++;
+        gateNs += latencyNs;
+        sinceMain++;
+        boolean escalate = settings.refreshInterval > 0 && sinceMain >= settings.refreshInterval;
+        for (int i = 0; i < gateResult.size() && !escalate; i++) {
+            escalate = gateResult.score[i] >= settings.escalateScore;
+        }
+        if (escalate) {
+            escalations++;
+        } else {
+            frames++;
+        }
+        return escalate;
+    }
+
+    /** Records a main model run, which ends the frame, and picks the next frame's mode. */
+    void mainDone(@NonNull DetectionBuffer result, long latencyNs) {
+        frames++;
+        mainRuns++;
+        mainNs += latencyNs;
+        sinceMain = 0;
+        if (!result.isEmpty()) {
+            gating = false;
+            emptyRuns = 0;
+        } else if (!gating && ++emptyRuns >= settings.quietRuns) {
+            gating = true;
+            emptyRuns = 0;
+        }
+    }
+
+    long frames() {
+        return frames;
+    }
+
+    /** Fraction of gate runs that escalated to the main model. */
+    float escalationRate() {
+        return gateRuns == 0 ? 0f : escalations / (float) gateRuns;
+    }
+
+    /** Fraction of frames that ran the main model, escalated or not. */
+    float mainFraction() {
+        return frames == 0 ? 0f : mainRuns / (float) frames;
+    }
+
+    float meanGateMs() {
+        return gateRuns == 0 ? 0f : gateNs / 1e6f / gateRuns;
+    }
+
+    float meanMainMs() {
+        return mainRuns == 0 ? 0f : mainNs / 1e6f / mainRuns;
+    }
+
+    /** Mean detection latency per frame over both stages. */
+    float meanFrameMs() {
+        return frames == 0 ? 0f : (gateNs + mainNs) / 1e6f / frames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d frames: escalated %.1f%% of gate runs, main on %.1f%% of frames, "
+                        + "gate=%.2fms main=%.2fms frame=%.2fms",
+                frames, 100f * escalationRate(), 100f * mainFraction(),
+                meanGateMs(), meanMainMs(), meanFrameMs());
+    }
+}
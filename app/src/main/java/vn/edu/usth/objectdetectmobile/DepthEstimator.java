@@ -4,22 +4,27 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.AssetManager;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import android.util.Log;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
 import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OnnxValue;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
 
 /**
  * Lightweight wrapper around the Depth Anything ONNX model.
@@ -75,17 +80,66 @@ public class DepthEstimator implements AutoCloseable {
 
     private static final boolean LOG_RAW_DEPTH = true;
 
+    /**
+     * Raw model depth over a width x height frame (the space detections are in). The values
+     * are stored at model resolution (mapW x mapH, padding cropped) as fp32 or, for an fp16
+     * model output, as fp16 bits decoded on read; frame pixels map to the nearest stored value.
+     */
     public static class DepthMap {
-        public final float[] depth;
         public final int width, height;
+        public final int mapW, mapH;
         public final float min, max;
+        private final float[] values;   // fp32 storage, or null
+        private final short[] halfs;    // fp16 storage, or null
+        // Stored cells per frame pixel, corner-aligned like the full-frame bilinear resize
+        private final float xRatio, yRatio;
 
+        /** Map stored at frame resolution. */
         public DepthMap(float[] depth, int width, int height, float min, float max) {
-            this.depth = depth;
+            this(depth, null, width, height, width, height, min, max);
+        }
+
+        DepthMap(float[] values, short[] halfs, int mapW, int mapH,
+                 int width, int height, float min, float max) {
+            this.values = values;
+            this.halfs = halfs;
+            this.mapW = mapW;
+            this.mapH = mapH;
             this.width = width;
             this.height = height;
             this.min = min;
             this.max = max;
+            this.xRatio = width > 1 ? (mapW - 1f) / (width - 1f) : 0f;
+            this.yRatio = height > 1 ? (mapH - 1f) / (height - 1f) : 0f;
+        }
+
+        public boolean isHalfPrecision() {
+            return halfs != null;
+        }
+
+        /** Bytes held by the stored values. */
+        public long storageBytes() {
+            return halfs != null ? 2L * halfs.length : 4L * values.length;
+        }
+
+        /** Stored value at (mx, my). */
+        float stored(int mx, int my) {
+            int i = my * mapW + mx;
+            return halfs != null ? Fp16.toFloat(halfs[i]) : values[i];
+        }
+
+        /**
+         * Raw depth at frame pixel (x, y), interpolated bilinearly between the stored cells: the
+         * value a full-frame bilinear upsample of the map would hold there.
+         */
+        public float at(int x, int y) {
+            float sx = x * xRatio, sy = y * yRatio;
+            int x0 = (int) Math.floor(sx), y0 = (int) Math.floor(sy);
+            int x1 = Math.min(x0 + 1, mapW - 1), y1 = Math.min(y0 + 1, mapH - 1);
+            float lx = sx - x0, ly = sy - y0;
+            float top = lerp(stored(x0, y0), stored(x1, y0), lx);
+            float bottom = lerp(stored(x0, y1), stored(x1, y1), lx);
+            return lerp(top, bottom, ly);
         }
     }
 
@@ -126,19 +180,53 @@ public class DepthEstimator implements AutoCloseable {
     }
 
     private final OrtEnvironment env;
-    private final OrtSession.SessionOptions sessionOptions;
+    // Replaced by setSessionProfile; guarded by this
+    private SessionProfile profile;
     private final String modelPath;
 
+    // The model's fixed input dims, or 518 on the long side matched to the frame aspect for a
+    // dynamic-shape export (both sides multiples of the 14 px ViT patch)
     private final int inputSize = 518;
     private final int multiple = 14;
-    private final float[] mean = {0.485f, 0.456f, 0.406f};
-    private final float[] std = {0.229f, 0.224f, 0.225f};
+    private ModelInputShape inputShape;
+    private InputTensor.Format inputFormat;
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+
+    // Model input in native memory, reused across estimate() calls (padding is only rewritten
+    // on geometry changes, the buffer itself only on input size changes). The OnnxTensor over
+    // it outlives the per-call sessions. Floats, or raw uint8 pixels for a model with the
+    // normalization in the graph.
+    private InputTensor input;
+    private OnnxTensor inputTensor;
+    private InferenceStats stats;
+    private final ResamplePlan.Cache plans = new ResamplePlan.Cache(8);
+    private volatile ResamplePlan.Interpolation interpolation = ResamplePlan.Interpolation.NEAREST;
 
     public DepthEstimator(@NonNull Context ctx,
                           @NonNull MainActivity.EnvMode mode) throws OrtException {
+        // Half the cores: the detector session runs next to this one
+        this(ctx, mode, SessionProfile.forDevice(SessionProfile.SHARED));
+    }
+
+    public DepthEstimator(@NonNull Context ctx,
+                          @NonNull MainActivity.EnvMode mode,
+                          @NonNull SessionProfile profile) throws OrtException {
+        this(ctx, mode, null, profile);
+    }
+
+    /**
+     * Depth from a given model asset (e.g. the variant {@link ModelAutotuner} picked), or the
+     * mode's default model when assetName is null.
+     */
+    public DepthEstimator(@NonNull Context ctx,
+                          @NonNull MainActivity.EnvMode mode,
+                          @Nullable String assetName,
+                          @NonNull SessionProfile profile) throws OrtException {
         env = OrtEnvironment.getEnvironment();
 
-        String modelName = (mode == MainActivity.EnvMode.OUTDOOR)
+        String modelName = assetName != null ? assetName
+                : (mode == MainActivity.EnvMode.OUTDOOR)
                 ? MODEL_NAME_OUTDOOR
                 : MODEL_NAME_INDOOR;
 
@@ -173,7 +261,43 @@ public class DepthEstimator implements AutoCloseable {
         }
 
         modelPath = finalModelPath;
-        sessionOptions = new OrtSession.SessionOptions();
+        setSessionProfile(profile);
+    }
+
+    /**
+     * Options for the sessions opened from now on. Waits for a running estimate(); the input
+     * tensor is reallocated on the next frame.
+     */
+    public synchronized void setSessionProfile(@NonNull SessionProfile profile)
+            throws OrtException {
+        // Sessions are opened per estimate(); open one here only to read the input type/shape
+        // (which free-dimension overrides may have fixed). This also builds the optimized-model
+        // cache entry, so the per-estimate sessions skip graph optimization.
+        try (OrtSession probe = OptimizedModelCache.open(env, modelPath, profile, TAG)) {
+            NodeInfo info = probe.getInputInfo().values().iterator().next();
+            inputFormat = InputTensor.Format.of(info);
+            inputShape = ModelInputShape.of(info, inputFormat, inputSize, multiple);
+        }
+        this.profile = profile;
+        if (inputTensor != null) inputTensor.close();
+        inputTensor = null;
+        input = null;
+        Log.i(TAG, "Depth session " + profile + "; input " + inputFormat + ", " + inputShape);
+    }
+
+    public synchronized SessionProfile getSessionProfile() {
+        return profile;
+    }
+
+    // Input sized for an upright frameW x frameH; reallocated only when that size changes
+    private void ensureInput(int frameW, int frameH) throws OrtException {
+        int w = inputShape.width(frameW, frameH), h = inputShape.height(frameW, frameH);
+        if (input != null && input.width == w && input.height == h) return;
+        if (inputTensor != null) inputTensor.close();
+        input = InputTensor.normalized(w, h, MEAN, STD, inputFormat);
+        inputTensor = input.createOnnxTensor(env);
+        stats = new InferenceStats(TAG, 10, input.nativeBytes());
+        Log.i(TAG, "Depth input size " + w + "x" + h);
     }
 
 
@@ -182,44 +306,156 @@ public class DepthEstimator implements AutoCloseable {
         if (dets == null || depthMap == null) return dets;
         List<ObjectDetector.Detection> enriched = new ArrayList<>(dets.size());
         for (ObjectDetector.Detection d : dets) {
-            enriched.add(d.withDepth(minDepth(depthMap, d)));
+            enriched.add(d.withDepth(minDepth(depthMap, d.x1, d.y1, d.x2, d.y2, d.cls)));
         }
         return enriched;
     }
 
-    public DepthMap estimate(int[] argb, int srcW, int srcH) throws OrtException {
-        Prep prep = preprocess(argb, srcW, srcH);
-        long[] shape = new long[]{1, 3, prep.modelSize, prep.modelSize};
-        OnnxTensor input = OnnxTensor.createTensor(env, FloatBuffer.wrap(prep.chw), shape);
+    /** Sets the depth column of dets in place. */
+    public void attachDepth(@NonNull DetectionBuffer dets, DepthMap depthMap) {
+        if (depthMap == null) return;
+        for (int i = 0; i < dets.size(); i++) {
+            dets.setDepth(i, minDepth(depthMap, dets.x1(i), dets.y1(i), dets.x2(i), dets.y2(i),
+                    dets.cls(i)));
+        }
+    }
+
+    /** Resampling used to fit the frame into the model input (NEAREST by default). */
+    public void setInterpolation(@NonNull ResamplePlan.Interpolation interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    public synchronized DepthMap estimate(int[] argb, int srcW, int srcH) throws OrtException {
+        long t0 = System.nanoTime();
+        ResamplePlan plan = plan(srcW, srcH, 0);
+        input.fill(plan, argb);
+        return runModel(plan, t0);
+    }
 
-        float[] rawDepth;
-        int rawH, rawW;
-        try (OrtSession session = env.createSession(modelPath, sessionOptions);
-             OnnxTensor tensor = input) {
+    /**
+     * Depth straight from the camera planes. The returned map is in the upright frame space,
+     * the same as estimate(int[]) on the rotated ARGB frame.
+     */
+    public synchronized DepthMap estimate(@NonNull Yuv.Planes planes, int rotation)
+            throws OrtException {
+        long t0 = System.nanoTime();
+        ResamplePlan plan = plan(planes.width, planes.height, rotation);
+        input.fill(plan, planes);
+        return runModel(plan, t0);
+    }
+
+    /**
+     * Depth from a camera frame. NEAREST samples the YUV / RGBA source directly; BILINEAR / AREA
+     * resample from the smallest pyramid level that covers the model content (shared with the
+     * detector).
+     * The map is in the upright full-resolution frame space either way.
+     */
+    public synchronized DepthMap estimate(@NonNull CameraFrame frame) throws OrtException {
+        long t0 = System.nanoTime();
+        ResamplePlan full = plan(frame.sensorWidth(), frame.sensorHeight(), frame.rotation);
+        int k = full.interpolation == ResamplePlan.Interpolation.NEAREST
+                ? 0 : frame.levelFor(full.contentW, full.contentH);
+        if (k == 0) {
+            if (frame.planes != null) input.fill(full, frame.planes);
+            else input.fill(full, frame.rgba);
+            return runModel(full, t0);
+        }
+        CameraFrame.Level level = frame.level(k);
+        ResamplePlan plan = levelPlan(full, level.width, level.height);
+        input.fill(plan, level.argb);
+        return runModel(plan, frame.width(), frame.height(), t0);
+    }
+
+    private ResamplePlan plan(int srcW, int srcH, int rotation) throws OrtException {
+        ResamplePlan.Interpolation mode = interpolation;
+        boolean swap = rotation == 90 || rotation == 270;
+        ensureInput(swap ? srcH : srcW, swap ? srcW : srcH);
+        ResamplePlan plan = plans.find(srcW, srcH, rotation, input.width, input.height, mode);
+        if (plan == null) {
+            plan = fitPlan(srcW, srcH, rotation, input.width, input.height, multiple, mode);
+            plans.put(plan);
+        }
+        return plan;
+    }
+
+    // Same model-input placement as the full-resolution plan, sampled from a pyramid level
+    private ResamplePlan levelPlan(ResamplePlan full, int levelW, int levelH) {
+        ResamplePlan plan = plans.find(levelW, levelH, full.rotation,
+                full.targetW, full.targetH, full.interpolation);
+        if (plan == null || plan.contentW != full.contentW || plan.contentH != full.contentH) {
+            plan = ResamplePlan.fit(levelW, levelH, full.rotation, full.targetW, full.targetH,
+                    full.interpolation, full.contentW, full.contentH, full.padX, full.padY);
+            plans.put(plan);
+        }
+        return plan;
+    }
+
+    private DepthMap runModel(ResamplePlan plan, long prepStartNs) throws OrtException {
+        return runModel(plan, plan.uprightWidth(), plan.uprightHeight(), prepStartNs);
+    }
+
+    // The map covers srcW x srcH but keeps the model-resolution content (padding cropped) in
+    // the output's precision; "run" in the stats includes creating the session.
+    private DepthMap runModel(ResamplePlan plan, int srcW, int srcH, long prepStartNs)
+            throws OrtException {
+        long t1 = System.nanoTime(), t2;
+        final int cw = plan.contentW, ch = plan.contentH;
+
+        DepthMap map;
+        try (OrtSession session = OptimizedModelCache.open(env, modelPath, profile, TAG)) {
             String inputName = session.getInputInfo().keySet().iterator().next();
-            try (OrtSession.Result out = session.run(Collections.singletonMap(inputName, tensor))) {
+            try (OrtSession.Result out =
+                         session.run(Collections.singletonMap(inputName, inputTensor))) {
+                t2 = System.nanoTime();
                 OnnxValue ov = out.get(0);
                 OnnxTensor depthTensor = (OnnxTensor) ov;
-                long[] outShape = depthTensor.getInfo().getShape(); // expect [1,H,W]
-                rawH = (int) outShape[1];
-                rawW = (int) outShape[2];
-                FloatBuffer buf = depthTensor.getFloatBuffer();
-                rawDepth = new float[buf.remaining()];
-                buf.get(rawDepth);
+                TensorInfo info = depthTensor.getInfo();
+                long[] outShape = info.getShape(); // expect [1,H,W]
+                int rawW = (int) outShape[2];
+                // The maps are kept by the caller's depth cache, so they are not pooled.
+                if (info.type == OnnxJavaType.FLOAT16) {
+                    short[] halfs = cropHalfs(depthTensor.getShortBuffer(), rawW,
+                            plan.padX, plan.padY, cw, ch, new short[cw * ch]);
+                    float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+                    for (short h : halfs) {
+                        float v = Fp16.toFloat(h);
+                        if (v < min) min = v;
+                        if (v > max) max = v;
+                    }
+                    map = new DepthMap(null, halfs, cw, ch, srcW, srcH, min, max);
+                } else {
+                    float[] values = cropFloats(depthTensor.getFloatBuffer(), rawW,
+                            plan.padX, plan.padY, cw, ch, new float[cw * ch]);
+                    float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+                    for (float v : values) {
+                        if (v < min) min = v;
+                        if (v > max) max = v;
+                    }
+                    map = new DepthMap(values, null, cw, ch, srcW, srcH, min, max);
+                }
             }
         }
+        stats.record(t1 - prepStartNs, t2 - t1, System.nanoTime() - t2);
+        return map;
+    }
 
-        float[] cropped = crop(rawDepth, rawW, rawH,
-                prep.padX, prep.padY, prep.contentW, prep.contentH);
-        float[] depthFull = resizeBilinear(
-                cropped, prep.contentW, prep.contentH, srcW, srcH);
+    // Content rows of the model output, read straight from the output buffer
+    static float[] cropFloats(FloatBuffer src, int srcW, int offsetX, int offsetY,
+                              int outW, int outH, float[] dst) {
+        for (int y = 0; y < outH; y++) {
+            src.position((y + offsetY) * srcW + offsetX);
+            src.get(dst, y * outW, outW);
+        }
+        return dst;
+    }
 
-        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
-        for (float v : depthFull) {
-            if (v < min) min = v;
-            if (v > max) max = v;
+    static short[] cropHalfs(ShortBuffer src, int srcW, int offsetX, int offsetY,
+                             int outW, int outH, short[] dst) {
+        for (int y = 0; y < outH; y++) {
+            src.position((y + offsetY) * srcW + offsetX);
+            src.get(dst, y * outW, outW);
         }
-        return new DepthMap(depthFull, srcW, srcH, min, max);
+        return dst;
     }
 
     // --- existing helper methods below unchanged ---
@@ -238,7 +474,7 @@ public class DepthEstimator implements AutoCloseable {
     }
 
     private static float sampleDangerRegionRaw(DepthMap map,
-                                               ObjectDetector.Detection d,
+                                               float bx1, float by1, float bx2, float by2,
                                                float frac,
                                                DangerRegionMode mode) {
         if (map.width == 0 || map.height == 0) return Float.NaN;
@@ -246,10 +482,10 @@ public class DepthEstimator implements AutoCloseable {
         int W = map.width;
         int H = map.height;
 
-        int x1 = clamp((int) Math.floor(d.x1), 0, W - 1);
-        int y1 = clamp((int) Math.floor(d.y1), 0, H - 1);
-        int x2 = clamp((int) Math.ceil(d.x2), 0, W);
-        int y2 = clamp((int) Math.ceil(d.y2), 0, H);
+        int x1 = clamp((int) Math.floor(bx1), 0, W - 1);
+        int y1 = clamp((int) Math.floor(by1), 0, H - 1);
+        int x2 = clamp((int) Math.ceil(bx2), 0, W);
+        int y2 = clamp((int) Math.ceil(by2), 0, H);
 
         if (x2 <= x1 || y2 <= y1) return Float.NaN;
 
@@ -304,47 +540,35 @@ public class DepthEstimator implements AutoCloseable {
         int capacity = regionW * regionH;
         if (capacity <= 0) return Float.NaN;
 
-        float[] vals = new float[capacity];
-        int n = 0;
-
+        // Nearest positive depth in the region, sampled in place (no per-detection copy)
+        float nearest = Float.MAX_VALUE;
         for (int y = sy1; y < sy2; y++) {
-            int base = y * W;
             for (int x = sx1; x < sx2; x++) {
-                float v = map.depth[base + x];
-                if (v > 0f) {
-                    vals[n++] = v;
+                float v = map.at(x, y);
+                if (v > 0f && v < nearest) {
+                    nearest = v;
                 }
             }
         }
 
-        if (n == 0) return Float.NaN;
-
-        float nearest = Float.MAX_VALUE;
-        for (int i = 0; i < n; i++) {
-            float v = vals[i];
-            if (v > 0f && v < nearest) {
-                nearest = v;
-            }
-        }
-
         return (nearest == Float.MAX_VALUE) ? Float.NaN : nearest;
     }
 
-    private static float minDepth(DepthMap map, ObjectDetector.Detection d) {
+    private static float minDepth(DepthMap map, float x1, float y1, float x2, float y2, int cls) {
         if (map == null || map.width == 0 || map.height == 0) return Float.NaN;
 
-        DangerRegionMode mode = isBottomRegionClass(d.cls)
+        DangerRegionMode mode = isBottomRegionClass(cls)
                 ? DangerRegionMode.BOTTOM
                 : DangerRegionMode.CENTER;
 
-        float raw = sampleDangerRegionRaw(map, d, DANGER_REGION_FRAC, mode);
+        float raw = sampleDangerRegionRaw(map, x1, y1, x2, y2, DANGER_REGION_FRAC, mode);
 
         if (Float.isNaN(raw)) return Float.NaN;
 
         if (LOG_RAW_DEPTH) {
             Log.d(TAG, String.format(Locale.US,
                     "rawDepthMedian=%.3f (frame min=%.3f max=%.3f, cls=%d, mode=%s)",
-                    raw, map.min, map.max, d.cls, mode.name()));
+                    raw, map.min, map.max, cls, mode.name()));
         }
 
         return rawToCentimeters(raw);
@@ -366,90 +590,87 @@ public class DepthEstimator implements AutoCloseable {
         return NEAR_CM + normalized * (FAR_CM - NEAR_CM);
     }
 
-    private static class Prep {
-        final float[] chw;
-        final int modelSize;
-        final int contentW, contentH;
-        final int padX, padY;
-        Prep(float[] chw, int modelSize, int contentW, int contentH, int padX, int padY) {
-            this.chw = chw;
-            this.modelSize = modelSize;
-            this.contentW = contentW;
-            this.contentH = contentH;
-            this.padX = padX;
-            this.padY = padY;
-        }
+    /**
+     * Aspect-preserving fit of the upright frame into target x target, each side rounded to
+     * the multiple and centred. Nearest sampling uses the same index math as resizeNearest.
+     */
+    static ResamplePlan fitPlan(int srcW, int srcH, int rotation, int target, int multiple,
+                                ResamplePlan.Interpolation interpolation) {
+        return fitPlan(srcW, srcH, rotation, target, target, multiple, interpolation);
     }
 
-    private Prep preprocess(int[] argb, int srcW, int srcH) {
-        int target = inputSize;
-        int longest = Math.max(srcW, srcH);
-        float scale = target / (float) longest;
+    /**
+     * Same fit into a targetW x targetH input; with an aspect-matched target (see
+     * {@link ModelInputShape}) the content fills it and the padding is zero or a few pixels.
+     */
+    static ResamplePlan fitPlan(int srcW, int srcH, int rotation, int targetW, int targetH,
+                                int multiple, ResamplePlan.Interpolation interpolation) {
+        boolean swap = rotation == 90 || rotation == 270;
+        int uw = swap ? srcH : srcW;
+        int uh = swap ? srcW : srcH;
+        float scale = Math.min(targetW / (float) uw, targetH / (float) uh);
 
         int scaledW = clampToRange(
-                roundToMultiple(Math.round(srcW * scale), multiple), multiple, target);
+                roundToMultiple(Math.round(uw * scale), multiple), multiple, targetW);
         int scaledH = clampToRange(
-                roundToMultiple(Math.round(srcH * scale), multiple), multiple, target);
-        int[] scaled = resizeNearest(argb, srcW, srcH, scaledW, scaledH);
-
-        int padX = Math.max(0, (target - scaledW) / 2);
-        int padY = Math.max(0, (target - scaledH) / 2);
-
-        int plane = target * target;
-        float[] chw = new float[3 * plane];
-        for (int y = 0; y < scaledH; y++) {
-            int srcRow = y * scaledW;
-            int dstRow = (y + padY) * target;
-            for (int x = 0; x < scaledW; x++) {
-                int p = scaled[srcRow + x];
-                float r = ((p >> 16) & 0xFF) / 255f;
-                float g = ((p >> 8) & 0xFF) / 255f;
-                float b = (p & 0xFF) / 255f;
-                int idx = dstRow + padX + x;
-                chw[idx] = (r - mean[0]) / std[0];
-                chw[plane + idx] = (g - mean[1]) / std[1];
-                chw[2 * plane + idx] = (b - mean[2]) / std[2];
-            }
-        }
+                roundToMultiple(Math.round(uh * scale), multiple), multiple, targetH);
+
+        int padX = Math.max(0, (targetW - scaledW) / 2);
+        int padY = Math.max(0, (targetH - scaledH) / 2);
+        return ResamplePlan.fit(srcW, srcH, rotation, targetW, targetH, interpolation,
+                scaledW, scaledH, padX, padY);
+    }
 
-        return new Prep(chw, target, scaledW, scaledH, padX, padY);
+    static int[] resizeNearest(int[] src, int srcW, int srcH, int dstW, int dstH) {
+        return resizeNearest(src, srcW, srcH, dstW, dstH, new int[dstW * dstH]);
     }
 
-    private static int[] resizeNearest(int[] src, int srcW, int srcH, int dstW, int dstH) {
-        int[] dst = new int[dstW * dstH];
+    static int[] resizeNearest(int[] src, int srcW, int srcH, int dstW, int dstH, int[] dst) {
         float sx = dstW / (float) srcW;
         float sy = dstH / (float) srcH;
-        for (int y = 0; y < dstH; y++) {
-            int py = Math.min((int) (y / sy), srcH - 1);
-            for (int x = 0; x < dstW; x++) {
-                int px = Math.min((int) (x / sx), srcW - 1);
-                dst[y * dstW + x] = src[py * srcW + px];
+        ParallelRows.run(dstH, dstW, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int py = Math.min((int) (y / sy), srcH - 1);
+                for (int x = 0; x < dstW; x++) {
+                    int px = Math.min((int) (x / sx), srcW - 1);
+                    dst[y * dstW + x] = src[py * srcW + px];
+                }
             }
-        }
+        });
         return dst;
     }
 
-    private static float[] resizeBilinear(float[] src, int srcW, int srcH,
-                                          int dstW, int dstH) {
+    static float[] resizeBilinear(float[] src, int srcW, int srcH,
+                                  int dstW, int dstH) {
         if (srcW == dstW && srcH == dstH) return src.clone();
-        float[] dst = new float[dstW * dstH];
+        return resizeBilinear(src, srcW, srcH, dstW, dstH, new float[dstW * dstH]);
+    }
+
+    static float[] resizeBilinear(float[] src, int srcW, int srcH,
+                                  int dstW, int dstH, float[] dst) {
+        if (srcW == dstW && srcH == dstH) {
+            System.arraycopy(src, 0, dst, 0, dstW * dstH);
+            return dst;
+        }
         float xRatio = dstW > 1 ? (srcW - 1f) / (dstW - 1f) : 0f;
         float yRatio = dstH > 1 ? (srcH - 1f) / (dstH - 1f) : 0f;
-        for (int y = 0; y < dstH; y++) {
-            float sy = y * yRatio;
-            int y0 = (int) Math.floor(sy);
-            int y1 = Math.min(y0 + 1, srcH - 1);
-            float ly = sy - y0;
-            for (int x = 0; x < dstW; x++) {
-                float sx = x * xRatio;
-                int x0 = (int) Math.floor(sx);
-                int x1 = Math.min(x0 + 1, srcW - 1);
-                float lx = sx - x0;
-                float top = lerp(src[y0 * srcW + x0], src[y0 * srcW + x1], lx);
-                float bottom = lerp(src[y1 * srcW + x0], src[y1 * srcW + x1], lx);
-                dst[y * dstW + x] = lerp(top, bottom, ly);
+        ParallelRows.run(dstH, dstW, (yStart, yEnd) -> {
+            for (int y = yStart; y < yEnd; y++) {
+                float sy = y * yRatio;
+                int y0 = (int) Math.floor(sy);
+                int y1 = Math.min(y0 + 1, srcH - 1);
+                float ly = sy - y0;
+                for (int x = 0; x < dstW; x++) {
+                    float sx = x * xRatio;
+                    int x0 = (int) Math.floor(sx);
+                    int x1 = Math.min(x0 + 1, srcW - 1);
+                    float lx = sx - x0;
+                    float top = lerp(src[y0 * srcW + x0], src[y0 * srcW + x1], lx);
+                    float bottom = lerp(src[y1 * srcW + x0], src[y1 * srcW + x1], lx);
+                    dst[y * dstW + x] = lerp(top, bottom, ly);
+                }
             }
-        }
+        });
         return dst;
     }
 
@@ -468,22 +689,8 @@ public class DepthEstimator implements AutoCloseable {
         return Math.max(min, Math.min(max, value));
     }
 
-    private static float[] crop(float[] src, int srcW, int srcH,
-                                int offsetX, int offsetY, int outW, int outH) {
-        if (offsetX == 0 && offsetY == 0 && outW == srcW && outH == srcH) {
-            return src.clone();
-        }
-        float[] dst = new float[outW * outH];
-        for (int y = 0; y < outH; y++) {
-            int srcBase = (y + offsetY) * srcW + offsetX;
-            int dstBase = y * outW;
-            System.arraycopy(src, srcBase, dst, dstBase, outW);
-        }
-        return dst;
-    }
-
     @Override
     public void close() throws Exception {
-        sessionOptions.close();
+        if (inputTensor != null) inputTensor.close();
     }
 }
@@ -0,0 +1,157 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Detections of one frame as parallel primitive columns (struct of arrays).
+ *
+ * The realtime path decodes, suppresses, attaches depth, fuses stereo depth and draws on
+ * one of these in place, so once the columns have grown to the usual detection count a frame
+ * allocates nothing in post-processing. {@link ObjectDetector.Detection} lists remain the
+ * public API elsewhere; {@link #get(int)}, {@link #toList()} and {@link #addAll(List)} convert
+ * between the two.
+ *
+ * Entries carry a track id once they have been through the {@link Tracker}; -1 otherwise.
+ *
+ * Not thread-safe; hand a buffer between threads the way the analyzer hands a frame (through
+ * a Future or a lock), or copy it with {@link #copyFrom(DetectionBuffer)}.
+ */
+public final class DetectionBuffer {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    float[] x1, y1, x2, y2, score, depth;
+    int[] cls, id;
+    private int size;
+
+    public DetectionBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DetectionBuffer(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /** Appends a detection without depth (NaN) and returns its index. */
+    public int add(float x1, float y1, float x2, float y2, float score, int cls) {
+        return add(x1, y1, x2, y2, score, cls, Float.NaN);
+    }
+
+    public int add(float x1, float y1, float x2, float y2, float score, int cls, float depth) {
+        if (size == this.cls.length) grow(size + 1);
+        int i = size++;
+        set(i, x1, y1, x2, y2, score, cls, depth);
+        return i;
+    }
+
+    /** Overwrites entry i; its track id is reset to -1. */
+    void set(int i, float x1, float y1, float x2, float y2, float score, int cls, float depth) {
+        this.id[i] = -1;
+        this.x1[i] = x1;
+        this.y1[i] = y1;
+        this.x2[i] = x2;
+        this.y2[i] = y2;
+        this.score[i] = score;
+        this.cls[i] = cls;
+        this.depth[i] = depth;
+    }
+
+    /** Drops everything past the first n entries. */
+    void truncate(int n) {
+        size = Math.max(0, Math.min(size, n));
+    }
+
+    public float x1(int i) { return x1[i]; }
+    public float y1(int i) { return y1[i]; }
+    public float x2(int i) { return x2[i]; }
+    public float y2(int i) { return y2[i]; }
+    public float score(int i) { return score[i]; }
+    public int cls(int i) { return cls[i]; }
+    public float depth(int i) { return depth[i]; }
+    /** Track id, or -1 for an untracked detection. */
+    public int id(int i) { return id[i]; }
+
+    public void setDepth(int i, float value) {
+        depth[i] = value;
+    }
+
+    public void setId(int i, int value) {
+        id[i] = value;
+    }
+
+    /** Makes this buffer an exact copy of src, growing the columns if needed. */
+    public void copyFrom(DetectionBuffer src) {
+        if (cls.length < src.size) grow(src.size);
+        System.arraycopy(src.x1, 0, x1, 0, src.size);
+        System.arraycopy(src.y1, 0, y1, 0, src.size);
+        System.arraycopy(src.x2, 0, x2, 0, src.size);
+        System.arraycopy(src.y2, 0, y2, 0, src.size);
+        System.arraycopy(src.score, 0, score, 0, src.size);
+        System.arraycopy(src.cls, 0, cls, 0, src.size);
+        System.arraycopy(src.depth, 0, depth, 0, src.size);
+        System.arraycopy(src.id, 0, id, 0, src.size);
+        size = src.size;
+    }
+
+    public void addAll(List<ObjectDetector.Detection> dets) {
+        if (cls.length < size + dets.size()) grow(size + dets.size());
+        for (ObjectDetector.Detection d : dets) {
+            add(d.x1, d.y1, d.x2, d.y2, d.score, d.cls, d.depth);
+        }
+    }
+
+    /** Entry i as a (newly allocated) Detection. */
+    public ObjectDetector.Detection get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException(i + " >= " + size);
+        return new ObjectDetector.Detection(x1[i], y1[i], x2[i], y2[i], score[i], cls[i])
+                .withDepth(depth[i]);
+    }
+
+    public List<ObjectDetector.Detection> toList() {
+        List<ObjectDetector.Detection> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(get(i));
+        return out;
+    }
+
+    public static DetectionBuffer of(List<ObjectDetector.Detection> dets) {
+        DetectionBuffer buf = new DetectionBuffer(dets.size());
+        buf.addAll(dets);
+        return buf;
+    }
+
+    private void grow(int min) {
+        int cap = Math.max(min, 2 * cls.length);
+        x1 = Arrays.copyOf(x1, cap);
+        y1 = Arrays.copyOf(y1, cap);
+        x2 = Arrays.copyOf(x2, cap);
+        y2 = Arrays.copyOf(y2, cap);
+        score = Arrays.copyOf(score, cap);
+        depth = Arrays.copyOf(depth, cap);
+        cls = Arrays.copyOf(cls, cap);
+        id = Arrays.copyOf(id, cap);
+    }
+
+    private void allocate(int cap) {
+        x1 = new float[cap];
+        y1 = new float[cap];
+        x2 = new float[cap];
+        y2 = new float[cap];
+        score = new float[cap];
+        depth = new float[cap];
+        cls = new int[cap];
+        id = new int[cap];
+    }
+}
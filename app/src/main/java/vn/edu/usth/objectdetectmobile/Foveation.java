@@ -0,0 +1,179 @@
+package vn.edu.usth.objectdetectmobile;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Foveated detection: one model input holding two cells side by side, a window around the
+ * direction of travel at (near) native resolution and the whole frame at low resolution.
+ *
+ * Squeezing the whole frame into one 640 letterbox shrinks a far obstacle ahead to a few
+ * pixels. Here the window keeps it at full size while the periphery cell still sees large
+ * objects anywhere in the frame. Two cells of {@link Settings#cellSize} together stay within
+ * the pixels of one 640 x 640 pass; a fixed-shape model splits its input in two instead.
+ *
+ * Both cells are decoded in one run and merged into frame coordinates by {@link #merge}:
+ *
+ * - a box counts for the cell holding its centre and is clipped to that cell's content;
+ * - a window box cut off by the window edge (not a frame edge) is dropped when a periphery
+ *   box of the same class covers most of it, since the periphery sees the whole object;
+ * - a periphery box matching a window box (same class, IoU at or above the threshold) is
+ *   dropped, since the window box is measured at higher resolution.
+ *
+ * The detector then runs NMS over the merged boxes as for any other pass.
+ *
+ * Not thread-safe; the detector calls it under its lock.
+ */
+public final class Foveation {
+    /** Two cells of this side are no more pixels than one 640 x 640 input. */
+    static final int MAX_CELL = 448;
+    /** A window box within this many model pixels of the window edge counts as cut off. */
+    static final float EDGE = 2f;
+    /** Share of a cut-off window box a periphery box must cover to replace it. */
+    static final float COVER = 0.5f;
+
+    /** Window geometry. Immutable. */
+    public static final class Settings {
+        /** Side of each cell in model pixels for dynamic-shape models (multiple of 32). */
+        public final int cellSize;
+        /** Window centre as a fraction of the upright frame width / height. */
+        public final float centerX, centerY;
+        /** Frame pixels per model pixel inside the window; 1 is native resolution. */
+        public final float windowScale;
+
+        public Settings(int cellSize, float centerX, float centerY, float windowScale) {
+            this.cellSize = Math.max(32, Math.min(MAX_CELL, cellSize / 32 * 32));
+            this.centerX = Math.max(0f, Math.min(1f, centerX));
+            this.centerY = Math.max(0f, Math.min(1f, centerY));
+            this.windowScale = Math.max(0.25f, windowScale);
+        }
+
+        /** Native-resolution 320 px window, centred and a little below the middle. */
+        public static final Settings DEFAULT = new Settings(320, 0.5f, 0.6f, 1f);
+
+        /**
+         * Settings from "centerX,centerY[,windowScale[,cellSize]]", e.g. "0.5,0.7,1.5"; missing
+         * fields, or an empty spec, take the {@link #DEFAULT} values.
+         */
+        @NonNull
+        public static Settings parse(@NonNull String spec) {
+            String[] f = spec.trim().isEmpty() ? new String[0] : spec.split(",");
+            return new Settings(
+                    f.length > 3 ? Integer.parseInt(f[3].trim()) : DEFAULT.cellSize,
+                    f.length > 0 ? Float.parseFloat(f[0].trim()) : DEFAULT.centerX,
+                    f.length > 1 ? Float.parseFloat(f[1].trim()) : DEFAULT.centerY,
+                    f.length > 2 ? Float.parseFloat(f[2].trim()) : DEFAULT.windowScale);
+        }
+
+        @Override
+        public String toString() {
+            return "cell " + cellSize + ", window at " + centerX + "," + centerY
+                    + ", scale " + windowScale;
+        }
+    }
+
+    final Settings settings;
+    private int winX, winY, winW, winH;
+    // Per merged box: 0 periphery, 1 window, 2 window box cut off by the window edge
+    private byte[] origin = new byte[64];
+    private boolean[] drop = new boolean[64];
+
+    public Foveation(@NonNull Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Places the window for an upright frame of frameW x frameH and a window cell of
+     * cellW x cellH model pixels: cell size times the window scale, centred on the configured
+     * point and shifted to stay inside the frame.
+     */
+    void window(int frameW, int frameH, int cellW, int cellH) {
+        winW = Math.max(1, Math.min(frameW, Math.round(cellW * settings.windowScale)));
+        winH = Math.max(1, Math.min(frameH, Math.round(cellH * settings.windowScale)));
+        winX = clamp(Math.round(settings.centerX * frameW - 0.5f * winW), 0, frameW - winW);
+        winY = clamp(Math.round(settings.centerY * frameH - 0.5f * winH), 0, frameH - winH);
+    }
+
+    int x() { return winX; }
+    int y() { return winY; }
+    int width() { return winW; }
+    int height() { return winH; }
+
+    /**
+     * Moves boxes decoded from the two-cell input (model pixels) into frame coordinates and
+     * drops the duplicates between the cells, in place. window and full are the plans the
+     * cells were filled with: the current {@link #window} and the whole upright frame.
+     */
+    void merge(@NonNull DetectionBuffer dets, @NonNull ResamplePlan window,
+               @NonNull ResamplePlan full, float iouThresh) {
+        if (origin.length < dets.size()) {
+            origin = new byte[Math.max(dets.size(), 2 * origin.length)];
+            drop = new boolean[origin.length];
+        }
+        int frameW = full.cropW, frameH = full.cropH;
+        int kept = 0;
+        for (int i = 0; i < dets.size(); i++) {
+            float cx = 0.5f * (dets.x1[i] + dets.x2[i]), cy = 0.5f * (dets.y1[i] + dets.y2[i]);
+            ResamplePlan p = window.inContent(cx, cy) ? window
+                    : full.inContent(cx, cy) ? full : null;
+            if (p == null) continue;
+            byte o = 0;
+            if (p == window) {
+                boolean cut = (winX > 0 && dets.x1[i] <= p.padX + EDGE)
+                        || (winY > 0 && dets.y1[i] <= p.padY + EDGE)
+                        || (winX + winW < frameW && dets.x2[i] >= p.padX + p.contentW - EDGE)
+                        || (winY + winH < frameH && dets.y2[i] >= p.padY + p.contentH - EDGE);
+                o = (byte) (cut ? 2 : 1);
+            }
+            origin[kept] = o;
+            p.mapToFrame(dets, i, kept++);
+        }
+        dets.truncate(kept);
+
+        // Decide against the full set first, then compact
+        for (int i = 0; i < kept; i++) {
+            drop[i] = origin[i] == 2 ? covered(dets, i)
+                    : origin[i] == 0 && matches(dets, i, iouThresh);
+        }
+        int n = 0;
+        for (int i = 0; i < kept; i++) {
+            if (drop[i]) continue;
+            dets.set(n++, dets.x1[i], dets.y1[i], dets.x2[i], dets.y2[i],
+                    dets.score[i], dets.cls[i], dets.depth[i]);
+        }
+        dets.truncate(n);
+    }
+
+    // True if a same-class periphery box covers COVER of box i's area
+    private boolean covered(DetectionBuffer d, int i) {
+        float area = (d.x2[i] - d.x1[i]) * (d.y2[i] - d.y1[i]);
+        for (int j = 0; j < d.size(); j++) {
+            if (origin[j] != 0 || d.cls[j] != d.cls[i]) continue;
+            if (intersection(d, i, j) >= COVER * area) return true;
+        }
+        return false;
+    }
+
+    // True if periphery box i duplicates a same-class window box (IoU >= iouThresh)
+    private boolean matches(DetectionBuffer d, int i, float iouThresh) {
+        float areaI = (d.x2[i] - d.x1[i]) * (d.y2[i] - d.y1[i]);
+        for (int j = 0; j < d.size(); j++) {
+            if (origin[j] == 0 || d.cls[j] != d.cls[i]) continue;
+            // A cut-off box that the periphery replaces does not count
+            if (origin[j] == 2 && covered(d, j)) continue;
+            float inter = intersection(d, i, j);
+            float areaJ = (d.x2[j] - d.x1[j]) * (d.y2[j] - d.y1[j]);
+            if (inter / (areaI + areaJ - inter + 1e-6f) >= iouThresh) return true;
+        }
+        return false;
+    }
+
+    private static float intersection(DetectionBuffer d, int i, int j) {
+        float iw = Math.min(d.x2[i], d.x2[j]) - Math.max(d.x1[i], d.x1[j]);
+        float ih = Math.min(d.y2[i], d.y2[j]) - Math.max(d.y1[i], d.y1[j]);
+        return iw <= 0f || ih <= 0f ? 0f : iw * ih;
+    }
+
+    private static int clamp(int v, int lo, int hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+}
@@ -0,0 +1,54 @@
+package vn.edu.usth.objectdetectmobile;
+
+/**
+ * IEEE 754 half precision (binary16) as raw {@code short} bits, for fp16 model inputs and
+ * outputs. Plain bit arithmetic (no lookup table) so decoding on the fly costs a few integer
+ * ops and no memory; android.util.Half would do the same but needs API 26 and a device.
+ */
+final class Fp16 {
+
+    private Fp16() {}
+
+    /** Nearest half to f, ties to even; overflow goes to infinity, NaN stays NaN. */
+    static short fromFloat(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = (bits >>> 23) & 0xFF;
+        int mant = bits & 0x7FFFFF;
+
+        if (exp == 0xFF) {
+            return (short) (sign | 0x7C00 | (mant != 0 ? 0x200 : 0));
+        }
+        int e = exp - 127 + 15;
+        if (e >= 31) return (short) (sign | 0x7C00);
+        if (e <= 0) {
+            // Subnormal half (or zero): shift the full significand into the 10-bit field
+            if (e < -10) return (short) sign;
+            int full = mant | 0x800000;
+            int shift = 14 - e;
+            int half = full >> shift;
+            int rem = full & ((1 << shift) - 1);
+            int mid = 1 << (shift - 1);
+            if (rem > mid || (rem == mid && (half & 1) != 0)) half++;
+            return (short) (sign | half);
+        }
+        int half = (e << 10) | (mant >> 13);
+        int rem = mant & 0x1FFF;
+        // A carry out of the mantissa bumps the exponent, which is the correct rounding
+        if (rem > 0x1000 || (rem == 0x1000 && (half & 1) != 0)) half++;
+        return (short) (sign | half);
+    }
+
+    static float toFloat(short h) {
+        int bits = h & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exp = (bits >>> 10) & 0x1F;
+        int mant = bits & 0x3FF;
+        if (exp == 0) {
+            float v = mant * 0x1p-24f;
+            return sign != 0 ? -v : v;
+        }
+        if (exp == 31) return Float.intBitsToFloat(sign | 0x7F800000 | (mant << 13));
+        return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+    }
+}
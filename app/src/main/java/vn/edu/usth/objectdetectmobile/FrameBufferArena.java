@@ -0,0 +1,93 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.util.ArrayList;
+
+/**
+ * Size-keyed pool of reusable frame buffers for the analyzer hot path.
+ *
+ * Buffers are handed out with an exact length by acquireXxx() and must be given back with
+ * release() once the frame is done with them. After the first few frames of a given camera
+ * resolution every acquire is served from the free lists, so a frame costs no heap allocation.
+ * The free lists are small and scanned linearly (no boxing of size keys). When the frame size
+ * changes, buffers of the old size are evicted oldest-first.
+ *
+ * Thread-safe; acquire and release may happen on different threads.
+ */
+public final class FrameBufferArena {
+    private static final int DEFAULT_MAX_FREE_PER_KIND = 8;
+
+    private final int maxFreePerKind;
+    private final ArrayList<int[]> freeInts = new ArrayList<>();
+    private final ArrayList<float[]> freeFloats = new ArrayList<>();
+    private final ArrayList<byte[]> freeBytes = new ArrayList<>();
+    private long allocations = 0L;
+
+    public FrameBufferArena() {
+        this(DEFAULT_MAX_FREE_PER_KIND);
+    }
+
+    public FrameBufferArena(int maxFreePerKind) {
+        this.maxFreePerKind = Math.max(1, maxFreePerKind);
+    }
+
+    public synchronized int[] acquireInts(int size) {
+        for (int i = freeInts.size() - 1; i >= 0; i--) {
+            if (freeInts.get(i).length == size) return freeInts.remove(i);
+        }
+        allocations++;
+        return new int[size];
+    }
+
+    public synchronized float[] acquireFloats(int size) {
+        for (int i = freeFloats.size() - 1; i >= 0; i--) {
+            if (freeFloats.get(i).length == size) return freeFloats.remove(i);
+        }
+        allocations++;
+        return new float[size];
+    }
+
+    public synchronized byte[] acquireBytes(int size) {
+        for (int i = freeBytes.size() - 1; i >= 0; i--) {
+            if (freeBytes.get(i).length == size) return freeBytes.remove(i);
+        }
+        allocations++;
+        return new byte[size];
+    }
+
+    public synchronized void release(int[] buf) {
+        if (buf == null || containsRef(freeInts, buf)) return;
+        if (freeInts.size() >= maxFreePerKind) freeInts.remove(0);
+        freeInts.add(buf);
+    }
+
+    public synchronized void release(float[] buf) {
+        if (buf == null || containsRef(freeFloats, buf)) return;
+        if (freeFloats.size() >= maxFreePerKind) freeFloats.remove(0);
+        freeFloats.add(buf);
+    }
+
+    public synchronized void release(byte[] buf) {
+        if (buf == null || containsRef(freeBytes, buf)) return;
+        if (freeBytes.size() >= maxFreePerKind) freeBytes.remove(0);
+        freeBytes.add(buf);
+    }
+
+    /** Number of buffers this arena had to allocate so far (steady state: stops growing). */
+    public synchronized long allocationCount() {
+        return allocations;
+    }
+
+    public synchronized void clear() {
+        freeInts.clear();
+        freeFloats.clear();
+        freeBytes.clear();
+    }
+
+    // A double release would hand the same buffer to two owners; ignore it instead.
+    private static <T> boolean containsRef(ArrayList<T> list, T buf) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == buf) return true;
+        }
+        return false;
+    }
+}
@@ -1,11 +1,104 @@
 package vn.edu.usth.objectdetectmobile;
 
+import java.util.Arrays;
+
 public final class ImageUtils {
 
     private ImageUtils() {}
 
     public static int[] boxBlur(int[] src, int w, int h, int radius) {
-        int[] dst = new int[w * h];
+        return boxBlur(src, w, h, radius, new int[w * h]);
+    }
+
+    /** Blurs into a caller-provided buffer of at least w*h ints (must not alias src). */
+    public static int[] boxBlur(int[] src, int w, int h, int radius, int[] dst) {
+        return boxBlur(src, w, h, radius, dst, new int[boxBlurScratchSize(w)]);
+    }
+
+    public static int boxBlurScratchSize(int w) {
+        return 3 * w;
+    }
+
+    /**
+     * Separable running-sum box blur: cost per pixel does not depend on the radius.
+     *
+     * Keeps one vertical window sum per column and channel (scratch, 3*w ints), updated by
+     * adding the row entering the window and subtracting the one leaving it. Each output row
+     * then slides a horizontal window over those column sums. The window is clamped at the
+     * borders and each pixel is divided by its own clamped window area, so the output is
+     * identical to {@link #boxBlurNaive}.
+     *
+     * Large images are split into row bands on {@link ParallelRows}; each band primes its own
+     * column sums from the rows above it, so bands are kept several radii tall. The first band
+     * uses the given scratch, the others a per-thread one.
+     */
+    public static int[] boxBlur(int[] src, int w, int h, int radius, int[] dst, int[] scratch) {
+        if (radius <= 0) {
+            if (dst != src) System.arraycopy(src, 0, dst, 0, w * h);
+            return dst;
+        }
+        ParallelRows.run(h, w, 4 * radius, (y0, y1) -> boxBlurRows(src, w, h, radius, dst,
+                y0 == 0 ? scratch : ParallelRows.scratch(boxBlurScratchSize(w)), y0, y1));
+        return dst;
+    }
+
+    // Output rows [y0, y1) of boxBlur.
+    private static void boxBlurRows(int[] src, int w, int h, int radius, int[] dst,
+                                    int[] scratch, int y0, int y1) {
+        final int sumR = 0, sumG = w, sumB = 2 * w;
+        Arrays.fill(scratch, 0, 3 * w, 0);
+
+        // Prime the column sums with rows [y0 - radius - 1, y0 + radius - 1]; the loop adds
+        // row y + radius and drops row y - radius - 1.
+        for (int yy = Math.max(0, y0 - radius - 1), yEnd = Math.min(h - 1, y0 + radius - 1);
+             yy <= yEnd; yy++) {
+            addRow(src, yy * w, w, scratch, 1);
+        }
+
+        for (int y = y0; y < y1; y++) {
+            int yIn = y + radius;
+            int yOut = y - radius - 1;
+            if (yIn < h) addRow(src, yIn * w, w, scratch, 1);
+            if (yOut >= 0) addRow(src, yOut * w, w, scratch, -1);
+            int rows = Math.min(h - 1, y + radius) - Math.max(0, y - radius) + 1;
+
+            int r = 0, g = 0, b = 0;
+            for (int xx = 0, xEnd = Math.min(w - 1, radius - 1); xx <= xEnd; xx++) {
+                r += scratch[sumR + xx];
+                g += scratch[sumG + xx];
+                b += scratch[sumB + xx];
+            }
+            int row = y * w;
+            for (int x = 0; x < w; x++) {
+                int xIn = x + radius;
+                int xOut = x - radius - 1;
+                if (xIn < w) {
+                    r += scratch[sumR + xIn];
+                    g += scratch[sumG + xIn];
+                    b += scratch[sumB + xIn];
+                }
+                if (xOut >= 0) {
+                    r -= scratch[sumR + xOut];
+                    g -= scratch[sumG + xOut];
+                    b -= scratch[sumB + xOut];
+                }
+                int count = rows * (Math.min(w - 1, x + radius) - Math.max(0, x - radius) + 1);
+                dst[row + x] = 0xFF000000 | ((r / count) << 16) | ((g / count) << 8) | (b / count);
+            }
+        }
+    }
+
+    private static void addRow(int[] src, int base, int w, int[] sums, int sign) {
+        for (int x = 0; x < w; x++) {
+            int c = src[base + x];
+            sums[x] += sign * ((c >> 16) & 0xFF);
+            sums[w + x] += sign * ((c >> 8) & 0xFF);
+            sums[2 * w + x] += sign * (c & 0xFF);
+        }
+    }
+
+    /** Reference (2r+1)^2 window blur; kept for tests and benchmarks. */
+    static int[] boxBlurNaive(int[] src, int w, int h, int radius, int[] dst) {
         for (int y = 0; y < h; y++) {
             int yMin = Math.max(0, y - radius);
             int yMax = Math.min(h - 1, y + radius);
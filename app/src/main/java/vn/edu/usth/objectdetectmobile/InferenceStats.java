@@ -0,0 +1,47 @@
+package vn.edu.usth.objectdetectmobile;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Rolling per-inference timings for one model, logged every N runs together with the native
+ * heap size, so input copies and native memory growth show up in logcat:
+ *
+ *   adb logcat -s ObjectDetector DepthEstimator
+ *
+ * Stages: prep = resample + normalize into the input buffer, run = session.run, post =
+ * reading the output back and decoding it. The input is a long-lived direct tensor, so there
+ * is no per-run bind / copy stage to time.
+ */
+final class InferenceStats {
+    private final String tag;
+    private final int every;
+    private final long inputBytes;
+
+    private int runs;
+    private long prepNs, runNs, postNs;
+
+    InferenceStats(String tag, int every, long inputBytes) {
+        this.tag = tag;
+        this.every = Math.max(1, every);
+        this.inputBytes = inputBytes;
+    }
+
+    synchronized void record(long prepNs, long runNs, long postNs) {
+        this.prepNs += prepNs;
+        this.runNs += runNs;
+        this.postNs += postNs;
+        if (++runs < every) return;
+
+        double n = runs * 1e6;
+        Log.d(tag, String.format(Locale.US,
+                "%d runs: prep=%.2fms run=%.2fms post=%.2fms "
+                        + "input=%dKB direct, nativeHeap=%dKB",
+                runs, this.prepNs / n, this.runNs / n, this.postNs / n,
+                inputBytes / 1024, Debug.getNativeHeapAllocatedSize() / 1024));
+        runs = 0;
+        this.prepNs = this.runNs = this.postNs = 0L;
+    }
+}
@@ -0,0 +1,161 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.util.Arrays;
+
+/**
+ * Picks the detector's input size from recent detect() latency so a frame fits a time budget.
+ *
+ * The sizes are long sides in ascending order (e.g. 320 / 416 / 512 / 640). Latency is judged
+ * per window of frames by its median, so one slow frame (GC, a depth run landing at the same
+ * time) does not trigger a switch. The controller:
+ *
+ * - steps down one size as soon as a window's median exceeds the budget by DOWN_MARGIN;
+ * - steps up only after UP_WINDOWS consecutive windows whose latency, projected to the next
+ *   size, stays under UP_MARGIN of the budget. The projection is the latency last measured at
+ *   that size if it is recent, otherwise the current median scaled by the pixel count;
+ * - ignores COOLDOWN frames after a switch, which absorb the switch itself and let the
+ *   window refill with the new size's latency.
+ *
+ * A size that just proved too slow is therefore not retried until its measurement goes stale
+ * (MEMORY_WINDOWS windows), which stops 512 / 640 oscillation on a device that sits right at
+ * the budget. A budget <= 0 pins the largest size.
+ *
+ * The achieved frame rate is an exponential average of the interval between record() / tick()
+ * calls, i.e. it includes time the analyzer spends outside detect().
+ *
+ * record() is called by one thread at a time (the detector holds its lock); the getters may be
+ * read from any thread.
+ */
+final class InputSizeController {
+    static final int[] DEFAULT_SIZES = {320, 416, 512, 640};
+
+    static final int WINDOW = 8;
+    static final int COOLDOWN = 4;
+    static final int UP_WINDOWS = 2;
+    static final int MEMORY_WINDOWS = 30;
+    static final float DOWN_MARGIN = 1.1f, UP_MARGIN = 0.8f;
+    private static final float FPS_SMOOTHING = 0.1f;
+
+    private final int[] sizes;
+    private volatile float targetMs;
+    private volatile int level;
+    private volatile float fps;
+
+    private final float[] window = new float[WINDOW];
+    private final float[] sorted = new float[WINDOW];
+    private int filled;
+    private int skip;
+    private int upStreak;
+    private long windows;
+    // Median latency last seen at each level, and the window it was seen in (-1 = never)
+    private final float[] measuredMs;
+    private final long[] measuredAt;
+    private long lastNs;
+    private float intervalMs;
+
+    InputSizeController(int[] sizes, float targetMs) {
+        if (sizes.length == 0) throw new IllegalArgumentException("No input sizes");
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+        this.targetMs = targetMs;
+        this.level = this.sizes.length - 1;
+        this.measuredMs = new float[this.sizes.length];
+        this.measuredAt = new long[this.sizes.length];
+        Arrays.fill(measuredAt, -1L);
+    }
+
+    /** Index into {@link #sizes()} of the size the next frame should use. */
+    int level() {
+        return level;
+    }
+
+    int size() {
+        return sizes[level];
+    }
+
+    int[] sizes() {
+        return sizes.clone();
+    }
+
+    float fps() {
+        return fps;
+    }
+
+    float targetMs() {
+        return targetMs;
+    }
+
+    /** New budget per frame in ms; <= 0 goes back to the largest size and stops adapting. */
+    void setTargetMs(float targetMs) {
+        this.targetMs = targetMs;
+    }
+
+    /**
+     * Records one frame's latency (ending at nowNs) and returns true when the level changed,
+     * in which case the next frame should use {@link #size()}.
+     */
+    boolean record(long latencyNs, long nowNs) {
+        tick(nowNs);
+        float target = targetMs;
+        if (target <= 0f) return moveTo(sizes.length - 1);
+        if (skip > 0) {
+            skip--;
+            return false;
+        }
+        window[filled++] = latencyNs / 1e6f;
+        if (filled < WINDOW) return false;
+        filled = 0;
+        windows++;
+
+        float median = median();
+        measuredMs[level] = median;
+        measuredAt[level] = windows;
+
+        if (median > target * DOWN_MARGIN && level > 0) {
+            return moveTo(level - 1);
+        }
+        if (level + 1 < sizes.length && projectedMs(level + 1, median) < target * UP_MARGIN) {
+            if (++upStreak >= UP_WINDOWS) return moveTo(level + 1);
+        } else {
+            upStreak = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Counts a completed frame (ending at nowNs) towards the frame rate only, for frames whose
+     * latency says nothing about the current size (e.g. crop passes).
+     */
+    void tick(long nowNs) {
+        if (lastNs != 0L) {
+            float dt = (nowNs - lastNs) / 1e6f;
+            intervalMs = intervalMs == 0f ? dt : intervalMs + FPS_SMOOTHING * (dt - intervalMs);
+            if (intervalMs > 0f) fps = 1000f / intervalMs;
+        }
+        lastNs = nowNs;
+    }
+
+    // Expected latency at level next, given the median at the current level
+    private float projectedMs(int next, float median) {
+        if (measuredAt[next] >= 0 && windows - measuredAt[next] <= MEMORY_WINDOWS) {
+            return measuredMs[next];
+        }
+        float r = sizes[next] / (float) sizes[level];
+        return median * r * r;
+    }
+
+    private boolean moveTo(int next) {
+        upStreak = 0;
+        if (next == level) return false;
+        level = next;
+        filled = 0;
+        skip = COOLDOWN;
+        return true;
+    }
+
+    private float median() {
+        System.arraycopy(window, 0, sorted, 0, WINDOW);
+        Arrays.sort(sorted);
+        return 0.5f * (sorted[(WINDOW - 1) / 2] + sorted[WINDOW / 2]);
+    }
+}
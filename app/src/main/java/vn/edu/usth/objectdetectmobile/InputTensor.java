@@ -0,0 +1,347 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.TensorInfo;
+
+/**
+ * Reusable single-image input for a model, filled through a {@link ResamplePlan}: either
+ * [1, 3, H, W] floats (fp32, or fp16 for half-precision models, half the bytes), or raw uint8
+ * pixels (NCHW or NHWC) for model variants that do the normalization in the graph
+ * (tools/export_uint8_input.py), a quarter of the bytes to write.
+ * {@link Format#of(NodeInfo)} picks the format from the model's input.
+ *
+ * The data lives in a direct, native-order buffer that is allocated once, so ORT can bind it
+ * as the input tensor without copying (a heap FloatBuffer is copied into native memory on
+ * every run). The owner can create one OnnxTensor over it and reuse that tensor across runs.
+ *
+ * Pixels are gathered one content row at a time; float inputs are normalized through
+ * per-channel lookup tables (256 entries each), so the per-pixel work is a table gather plus
+ * three table reads.
+ * The padding around the content is only written when the placement changes; for a stable
+ * camera/model geometry each frame overwrites just the content region. Content rows are
+ * filled in bands on {@link ParallelRows} (absolute puts to disjoint rows).
+ *
+ * Not thread-safe: one instance per model, used from the thread that runs it.
+ */
+final class InputTensor {
+
+    /** Element type and layout of the model input. */
+    enum Format {
+        /** float32 [1, 3, H, W], normalized on the CPU. */
+        FLOAT_NCHW(4),
+        /** float16 [1, 3, H, W], normalized on the CPU (fp16 bits from a lookup table). */
+        FLOAT16_NCHW(2),
+        /** uint8 [1, 3, H, W], raw pixels; the graph normalizes. */
+        UINT8_NCHW(1),
+        /** uint8 [1, H, W, 3], raw pixels; the graph transposes and normalizes. */
+        UINT8_NHWC(1);
+
+        final int bytesPerElement;
+
+        Format(int bytesPerElement) {
+            this.bytesPerElement = bytesPerElement;
+        }
+
+        /** Format matching a model input: element type, then channel position for uint8. */
+        static Format of(NodeInfo input) {
+            if (!(input.getInfo() instanceof TensorInfo)) {
+                throw new IllegalArgumentException("Input " + input.getName() + " is not a tensor");
+            }
+            TensorInfo info = (TensorInfo) input.getInfo();
+            if (info.type == OnnxJavaType.FLOAT) return FLOAT_NCHW;
+            if (info.type == OnnxJavaType.FLOAT16) return FLOAT16_NCHW;
+            if (info.type == OnnxJavaType.UINT8) {
+                long[] shape = info.getShape();
+                return shape.length == 4 && shape[3] == 3 && shape[1] != 3
+                        ? UINT8_NHWC : UINT8_NCHW;
+            }
+            throw new IllegalArgumentException("Unsupported input type " + info.type
+                    + " for " + input.getName());
+        }
+    }
+
+    final int width, height;
+    final Format format;
+    /** The whole direct buffer (any format). Written with absolute puts; position stays 0. */
+    final ByteBuffer bytes;
+    /** CHW float view of bytes for FLOAT_NCHW, plane stride width * height; null otherwise. */
+    final FloatBuffer data;
+    /** CHW fp16 view of bytes for FLOAT16_NCHW; null otherwise. */
+    final ShortBuffer halfs;
+
+    private final float[] lutR = new float[256];
+    private final float[] lutG = new float[256];
+    private final float[] lutB = new float[256];
+    // fp16 bits of the float tables (FLOAT16_NCHW only)
+    private short[] halfR, halfG, halfB;
+    // uint8 value of the padding, the raw pixel that normalizes to 0 (same as the float path)
+    private final byte[] padBytes = new byte[3];
+
+    // Placement whose padding is currently in the buffer (null = nothing written yet)
+    private ResamplePlan padded;
+
+    private InputTensor(int width, int height, Format format) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.bytes = ByteBuffer.allocateDirect(3 * width * height * format.bytesPerElement)
+                .order(ByteOrder.nativeOrder());
+        this.data = format == Format.FLOAT_NCHW ? bytes.asFloatBuffer() : null;
+        this.halfs = format == Format.FLOAT16_NCHW ? bytes.asShortBuffer() : null;
+    }
+
+    // Called by the factories once the float tables are set
+    private InputTensor withHalfTables() {
+        if (format != Format.FLOAT16_NCHW) return this;
+        halfR = new short[256];
+        halfG = new short[256];
+        halfB = new short[256];
+        for (int c = 0; c < 256; c++) {
+            halfR[c] = Fp16.fromFloat(lutR[c]);
+            halfG[c] = Fp16.fromFloat(lutG[c]);
+            halfB[c] = Fp16.fromFloat(lutB[c]);
+        }
+        return this;
+    }
+
+    /** Size of the native buffer in bytes. */
+    long nativeBytes() {
+        return bytes.capacity();
+    }
+
+    /** ORT shape of this input. */
+    long[] shape() {
+        return format == Format.UINT8_NHWC
+                ? new long[]{1, height, width, 3}
+                : new long[]{1, 3, height, width};
+    }
+
+    /** Tensor over the native buffer (no copy); create once and reuse across runs. */
+    OnnxTensor createOnnxTensor(OrtEnvironment env) throws OrtException {
+        switch (format) {
+            case FLOAT_NCHW:
+                return OnnxTensor.createTensor(env, data, shape());
+            case FLOAT16_NCHW:
+                return OnnxTensor.createTensor(env, halfs, shape(), OnnxJavaType.FLOAT16);
+            default:
+                return OnnxTensor.createTensor(env, bytes, shape(), OnnxJavaType.UINT8);
+        }
+    }
+
+    /**
+     * Heap copy of the tensor data in buffer order; fp16 decoded, uint8 values as 0..255
+     * (tests, debugging).
+     */
+    float[] toArray() {
+        if (data != null) {
+            float[] out = new float[data.capacity()];
+            for (int i = 0; i < out.length; i++) out[i] = data.get(i);
+            return out;
+        }
+        if (halfs != null) {
+            float[] out = new float[halfs.capacity()];
+            for (int i = 0; i < out.length; i++) out[i] = Fp16.toFloat(halfs.get(i));
+            return out;
+        }
+        float[] out = new float[bytes.capacity()];
+        for (int i = 0; i < out.length; i++) out[i] = bytes.get(i) & 0xFF;
+        return out;
+    }
+
+    /** Channels scaled to [0, 1] (YOLO). */
+    static InputTensor unitScale(int width, int height) {
+        return unitScale(width, height, Format.FLOAT_NCHW);
+    }
+
+    /** Same as {@link #unitScale(int, int)}; uint8 formats leave the scaling to the graph. */
+    static InputTensor unitScale(int width, int height, Format format) {
+        InputTensor t = new InputTensor(width, height, format);
+        for (int c = 0; c < 256; c++) {
+            float v = c / 255f;
+            t.lutR[c] = v;
+            t.lutG[c] = v;
+            t.lutB[c] = v;
+        }
+        return t.withHalfTables();
+    }
+
+    /** Channels scaled to [0, 1], then (v - mean) / std per channel (ImageNet-style). */
+    static InputTensor normalized(int width, int height, float[] mean, float[] std) {
+        return normalized(width, height, mean, std, Format.FLOAT_NCHW);
+    }
+
+    /**
+     * Same as {@link #normalized(int, int, float[], float[])}; uint8 formats leave the
+     * normalization to the graph and pad with the mean colour, which the graph maps to 0.
+     */
+    static InputTensor normalized(int width, int height, float[] mean, float[] std,
+                                  Format format) {
+        InputTensor t = new InputTensor(width, height, format);
+        for (int c = 0; c < 256; c++) {
+            float v = c / 255f;
+            t.lutR[c] = (v - mean[0]) / std[0];
+            t.lutG[c] = (v - mean[1]) / std[1];
+            t.lutB[c] = (v - mean[2]) / std[2];
+        }
+        for (int ch = 0; ch < 3; ch++) t.padBytes[ch] = (byte) Math.round(mean[ch] * 255f);
+        return t.withHalfTables();
+    }
+
+    void fill(ResamplePlan plan, Yuv.Planes planes) {
+        preparePadding(plan);
+        ParallelRows.run(plan.contentH, plan.contentW, (y0, y1) -> {
+            int[] row = ParallelRows.scratch(plan.contentW);
+            for (int y = y0; y < y1; y++) {
+                plan.gatherRow(planes, y, row, 0);
+                writeRow(plan, y, row, 0);
+            }
+        });
+    }
+
+    void fill(ResamplePlan plan, int[] argb) {
+        preparePadding(plan);
+        ParallelRows.run(plan.contentH, plan.contentW, (y0, y1) -> {
+            int[] row = ParallelRows.scratch(plan.contentW);
+            for (int y = y0; y < y1; y++) {
+                plan.gatherRow(argb, y, row, 0);
+                writeRow(plan, y, row, 0);
+            }
+        });
+    }
+
+    void fill(ResamplePlan plan, Rgba.Plane rgba) {
+        preparePadding(plan);
+        ParallelRows.run(plan.contentH, plan.contentW, (y0, y1) -> {
+            int[] row = ParallelRows.scratch(plan.contentW);
+            for (int y = y0; y < y1; y++) {
+                plan.gatherRow(rgba, y, row, 0);
+                writeRow(plan, y, row, 0);
+            }
+        });
+    }
+
+    /**
+     * Fills from content that was already resampled with this plan (contentW x contentH
+     * packed ARGB), e.g. after a model-resolution blur.
+     */
+    void fillContent(ResamplePlan plan, int[] content) {
+        preparePadding(plan);
+        ParallelRows.run(plan.contentH, plan.contentW, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) writeRow(plan, y, content, y * plan.contentW);
+        });
+    }
+
+    private void preparePadding(ResamplePlan plan) {
+        if (plan.targetW != width || plan.targetH != height) {
+            throw new IllegalArgumentException("Plan targets " + plan.targetW + "x" + plan.targetH
+                    + ", tensor is " + width + "x" + height);
+        }
+        if (plan.tile) {
+            // One cell of a mosaic: the caller cleared the tensor and fills every cell
+            padded = null;
+            return;
+        }
+        ResamplePlan last = padded;
+        if (last == plan) return;
+        if (last != null && last.contentW == plan.contentW && last.contentH == plan.contentH
+                && last.padX == plan.padX && last.padY == plan.padY) {
+            padded = plan;
+            return;
+        }
+        // Content pixels are rewritten every frame; only the border has to be reset.
+        writePadding();
+        padded = plan;
+    }
+
+    /**
+     * Sets the whole tensor to the padding value, before filling the cells of a mosaic with
+     * {@link ResamplePlan#crop} plans.
+     */
+    void clear() {
+        writePadding();
+        padded = null;
+    }
+
+    private void writePadding() {
+        final int area = width * height;
+        switch (format) {
+            case FLOAT_NCHW:
+                for (int i = 0, n = data.capacity(); i < n; i++) data.put(i, 0f);
+                break;
+            case FLOAT16_NCHW:
+                for (int i = 0, n = halfs.capacity(); i < n; i++) halfs.put(i, (short) 0);
+                break;
+            case UINT8_NCHW:
+                for (int i = 0; i < area; i++) {
+                    bytes.put(i, padBytes[0]);
+                    bytes.put(area + i, padBytes[1]);
+                    bytes.put(2 * area + i, padBytes[2]);
+                }
+                break;
+            case UINT8_NHWC:
+                for (int i = 0; i < 3 * area; i += 3) {
+                    bytes.put(i, padBytes[0]);
+                    bytes.put(i + 1, padBytes[1]);
+                    bytes.put(i + 2, padBytes[2]);
+                }
+                break;
+        }
+    }
+
+    private void writeRow(ResamplePlan plan, int y, int[] src, int srcOffset) {
+        final int area = width * height;
+        int dst = (y + plan.padY) * width + plan.padX;
+        final int n = plan.contentW;
+        switch (format) {
+            case FLOAT_NCHW: {
+                final FloatBuffer d = data;
+                for (int x = 0; x < n; x++, dst++) {
+                    int p = src[srcOffset + x];
+                    d.put(dst, lutR[(p >> 16) & 0xFF]);
+                    d.put(area + dst, lutG[(p >> 8) & 0xFF]);
+                    d.put(2 * area + dst, lutB[p & 0xFF]);
+                }
+                break;
+            }
+            case FLOAT16_NCHW: {
+                final ShortBuffer d = halfs;
+                for (int x = 0; x < n; x++, dst++) {
+                    int p = src[srcOffset + x];
+                    d.put(dst, halfR[(p >> 16) & 0xFF]);
+                    d.put(area + dst, halfG[(p >> 8) & 0xFF]);
+                    d.put(2 * area + dst, halfB[p & 0xFF]);
+                }
+                break;
+            }
+            case UINT8_NCHW: {
+                final ByteBuffer d = bytes;
+                for (int x = 0; x < n; x++, dst++) {
+                    int p = src[srcOffset + x];
+                    d.put(dst, (byte) (p >> 16));
+                    d.put(area + dst, (byte) (p >> 8));
+                    d.put(2 * area + dst, (byte) p);
+                }
+                break;
+            }
+            case UINT8_NHWC: {
+                final ByteBuffer d = bytes;
+                for (int x = 0, o = 3 * dst; x < n; x++, o += 3) {
+                    int p = src[srcOffset + x];
+                    d.put(o, (byte) (p >> 16));
+                    d.put(o + 1, (byte) (p >> 8));
+                    d.put(o + 2, (byte) p);
+                }
+                break;
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ import android.widget.Toast;
 
 import androidx.activity.ComponentActivity;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.OptIn;
 import androidx.camera.camera2.interop.Camera2CameraInfo;
 import androidx.camera.camera2.interop.ExperimentalCamera2Interop;
@@ -39,6 +40,7 @@ import com.google.android.material.switchmaterial.SwitchMaterial;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -89,6 +91,24 @@ public class MainActivity extends ComponentActivity {
     private SharedPreferences depthModelPrefs;
 
     private static final String PREF_ENV_MODE = "pref_env_mode";
+    // ORT session profiles (SessionProfile preset names), e.g.
+    // adb shell am start -n <pkg>/.MainActivity --es detector_profile exclusive
+    private static final String EXTRA_DETECTOR_PROFILE = "detector_profile";
+    private static final String EXTRA_DEPTH_PROFILE = "depth_profile";
+    // detect() budget in ms for the adaptive input size, e.g. --es detector_target_ms 66
+    private static final String EXTRA_DETECTOR_TARGET_MS = "detector_target_ms";
+    // Crop (ROI) mode preset: fast, balanced or accurate; off unless given
+    private static final String EXTRA_DETECTOR_ROI = "detector_roi";
+    // --ez tracking false runs the detector on every frame without the tracker
+    private static final String EXTRA_TRACKING = "tracking";
+    // Cascade with the small gate model, on when its asset is packaged; --ez detector_cascade false
+    private static final String EXTRA_DETECTOR_CASCADE = "detector_cascade";
+    // Foveated mode window "centerX,centerY[,scale[,cell]]" ("" for the default); off unless given
+    private static final String EXTRA_DETECTOR_FOVEA = "detector_fovea";
+    // Class whitelist: "hazard" or COCO ids such as "0,2,5"; all 80 classes unless given
+    private static final String EXTRA_DETECTOR_CLASSES = "detector_classes";
+    // --ez autotune false keeps the default model variants and skips the first-launch timing
+    private static final String EXTRA_AUTOTUNE = "autotune";
 
     private EnvMode envMode = EnvMode.INDOOR;  // default = Indoor
     private SwitchMaterial environmentSwitch;
@@ -101,10 +121,15 @@ public class MainActivity extends ComponentActivity {
     // Depth throttling / cache
     private static final long DEPTH_INTERVAL_MS = 1500L;
     private static final long DEPTH_CACHE_MS = 3000L;
+    // Analyzed frames further apart than this (realtime paused, single shots) start new tracks
+    private static final long TRACK_GAP_MS = 1000L;
 
     // Input blur
     private static final boolean ENABLE_INPUT_BLUR = true;
     private static final int BLUR_RADIUS = 1; // 1 => kernel 3x3
+    // true: blur the 640x640 letterbox content (radius scaled to match);
+    // false: blur the full camera frame before detection
+    private static final boolean BLUR_AT_MODEL_RESOLUTION = true;
 
     // ---------------------------------------------------------------------------------------------
     //  UI views
@@ -113,6 +138,7 @@ public class MainActivity extends ComponentActivity {
     private OverlayView overlay;
     private SwitchMaterial realtimeSwitch;
     private SwitchMaterial blurSwitch;
+    private SwitchMaterial rgbaSwitch;
     private SwitchMaterial stereoSwitch;
     private MaterialButton detectOnceButton;
     private MaterialButton settingsButton;
@@ -138,6 +164,8 @@ public class MainActivity extends ComponentActivity {
     private ExecutorService exec;
     // Inference executor (YOLO + depth in parallel)
     private ExecutorService inferenceExec;
+    // Reusable ARGB / blur buffers for analyzeFrame
+    private final FrameBufferArena frameArena = new FrameBufferArena();
 
     // ---------------------------------------------------------------------------------------------
     //  Depth & stereo state
@@ -156,8 +184,20 @@ public class MainActivity extends ComponentActivity {
     // ---------------------------------------------------------------------------------------------
     private volatile boolean realtimeEnabled = true;
     private volatile boolean blurEnabled = ENABLE_INPUT_BLUR;
+    // Analysis output format: false = YUV_420_888 (converted by us), true = RGBA_8888 (by CameraX)
+    private volatile boolean rgbaInput = false;
     private volatile boolean singleShotRequested = false;
     private volatile boolean singleShotRunning = false;
+    // Detections of the frame being analyzed; written by the detect task, read by the analyzer
+    // after the Future completes, then copied into the overlay. Reused every frame.
+    private final DetectionBuffer frameDets = new DetectionBuffer();
+    // Tracks across frames: stable ids, and boxes carried by prediction on the frames where the
+    // detector is skipped (every few frames while objects move slowly). Analyzer thread only.
+    private volatile boolean trackingEnabled = true;
+    private final Tracker tracker = new Tracker();
+    private final DetectionBuffer trackedDets = new DetectionBuffer();
+    private int trackerLensFacing = -1;
+    private long lastAnalyzedMs;
 
     // ---------------------------------------------------------------------------------------------
     //  Calibration & prefs
@@ -261,6 +301,7 @@ public class MainActivity extends ComponentActivity {
         overlay = findViewById(R.id.overlay);
         realtimeSwitch = findViewById(R.id.switchRealtime);
         blurSwitch = findViewById(R.id.switchBlur);
+        rgbaSwitch = findViewById(R.id.switchRgbaInput);
         stereoSwitch = findViewById(R.id.switchStereo);
         detectOnceButton = findViewById(R.id.buttonDetectOnce);
         dualShotButton = findViewById(R.id.buttonDualShot);
@@ -309,6 +350,7 @@ public class MainActivity extends ComponentActivity {
         initDetectOnceButton();
         initDualShotButton();
         initBlurSwitch();
+        initRgbaSwitch();
         initStereoSwitch();
         initEnvironmentSwitch();
         initSettingsButton();
@@ -357,6 +399,17 @@ public class MainActivity extends ComponentActivity {
         blurSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> blurEnabled = isChecked);
     }
 
+    private void initRgbaSwitch() {
+        if (rgbaSwitch == null) return;
+        rgbaSwitch.setChecked(rgbaInput);
+        rgbaSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (rgbaInput == isChecked) return;
+            rgbaInput = isChecked;
+            // The output format is fixed per use case, so rebind to switch it.
+            bindCameraUseCases();
+        });
+    }
+
     private void initStereoSwitch() {
         if (stereoSwitch == null) return;
         stereoSwitch.setEnabled(false);
@@ -432,7 +485,9 @@ public class MainActivity extends ComponentActivity {
             Log.i(TAG, "Reloading depth pipeline for envMode = " + envMode);
 
             // 1) Check if we have ANY model for this mode (asset or downloaded)
-            boolean depthModelOk = DepthEstimator.isModelAvailable(this, envMode);
+            String depthAsset = tunedAsset(ModelAutotuner.Kind.depth(this, envMode));
+            boolean depthModelOk = depthAsset != null
+                    || DepthEstimator.isModelAvailable(this, envMode);
             if (!depthModelOk) {
                 // No model yet -> show download dialog for this mode
                 showMissingDepthModelDialog(envMode);
@@ -452,7 +507,8 @@ public class MainActivity extends ComponentActivity {
 
             // 2) We DO have a model (asset or downloaded) -> try to create DepthEstimator
             try {
-                DepthEstimator newDepth = new DepthEstimator(this, envMode);
+                DepthEstimator newDepth = new DepthEstimator(this, envMode, depthAsset,
+                        sessionProfile(EXTRA_DEPTH_PROFILE, SessionProfile.SHARED));
                 depthEstimator = newDepth;
 
                 synchronized (depthState) {
@@ -530,13 +586,102 @@ public class MainActivity extends ComponentActivity {
     //  Pipelines startup (detector + depth + camera)
     // ---------------------------------------------------------------------------------------------
     private void startPipelines() {
+        ModelAutotuner.Kind detectorKind = ModelAutotuner.Kind.detector(this);
+        ModelAutotuner.Kind depthKind = ModelAutotuner.Kind.depth(this, envMode);
+        if (autotuneEnabled() && ModelAutotuner.needsTuning(this, detectorKind, depthKind)) {
+            // First launch on this device / app version: time the packaged variants before
+            // the camera pipeline starts competing with them for the cores
+            Toast.makeText(this, "Tuning models for this device…", Toast.LENGTH_LONG).show();
+            SessionProfile detectorProfile =
+                    sessionProfile(EXTRA_DETECTOR_PROFILE, SessionProfile.SHARED);
+            SessionProfile depthProfile =
+                    sessionProfile(EXTRA_DEPTH_PROFILE, SessionProfile.SHARED);
+            new Thread(() -> {
+                try {
+                    ModelAutotuner.resolve(this, detectorKind, detectorProfile);
+                    ModelAutotuner.resolve(this, depthKind, depthProfile);
+                } catch (Throwable t) {
+                    // Untuned kinds fall back to the default models
+                    Log.e(TAG, "Model autotuning failed", t);
+                } finally {
+                    // The pipeline starts whatever happened to the tuning
+                    runOnUiThread(() -> {
+                        if (isFinishing() || isDestroyed()) return;
+                        initDetectorAndDepth();
+                        initCameraProvider();
+                    });
+                }
+            }, "ModelAutotuner").start();
+            return;
+        }
         initDetectorAndDepth();
         initCameraProvider();
     }
 
+    private boolean autotuneEnabled() {
+        return getIntent() == null || getIntent().getBooleanExtra(EXTRA_AUTOTUNE, true);
+    }
+
+    /** The tuned model variant for a kind, or null for the built-in default. */
+    @Nullable
+    private String tunedAsset(ModelAutotuner.Kind kind) {
+        if (!autotuneEnabled()) return null;
+        ModelAutotuner.Choice c = ModelAutotuner.load(this, kind);
+        return c == null ? null : c.asset;
+    }
+
+    /** Session profile named by the launch intent extra, or the given preset. */
+    private SessionProfile sessionProfile(String extra, String fallback) {
+        String name = getIntent() != null ? getIntent().getStringExtra(extra) : null;
+        return SessionProfile.forDevice(name != null ? name : fallback);
+    }
+
+    // Optional: without the gate the main model simply runs on every frame
+    private void initDetectorGate() {
+        try {
+            ObjectDetector gate = new ObjectDetector(this, ObjectDetector.GATE_MODEL_ASSET,
+                    sessionProfile(EXTRA_DETECTOR_PROFILE, SessionProfile.SHARED));
+            detector.setCascade(gate, CascadePolicy.Settings.DEFAULT);
+        } catch (Throwable e) {
+            Log.w(TAG, "Gate detector init failed, running without the cascade", e);
+        }
+    }
+
     private void initDetectorAndDepth() {
+        String depthAsset = tunedAsset(ModelAutotuner.Kind.depth(this, envMode));
+        boolean depthModelOk = depthAsset != null || DepthEstimator.isModelAvailable(this, envMode);
         try {
-            detector = new ObjectDetector(this);
+            // Without a depth model the detector has the cores to itself
+            String detectorAsset = tunedAsset(ModelAutotuner.Kind.detector(this));
+            detector = new ObjectDetector(this,
+                    detectorAsset != null ? detectorAsset : ObjectDetector.MODEL_ASSET,
+                    sessionProfile(EXTRA_DETECTOR_PROFILE,
+                            depthModelOk ? SessionProfile.SHARED : SessionProfile.EXCLUSIVE));
+            String targetMs = getIntent() != null
+                    ? getIntent().getStringExtra(EXTRA_DETECTOR_TARGET_MS) : null;
+            if (targetMs != null) detector.setTargetFrameMs(Float.parseFloat(targetMs));
+            String roiPreset = getIntent() != null
+                    ? getIntent().getStringExtra(EXTRA_DETECTOR_ROI) : null;
+            if (roiPreset != null) {
+                detector.setRoiSettings(RoiScheduler.Settings.forName(roiPreset));
+            }
+            String fovea = getIntent() != null
+                    ? getIntent().getStringExtra(EXTRA_DETECTOR_FOVEA) : null;
+            if (fovea != null) detector.setFoveation(Foveation.Settings.parse(fovea));
+            String classes = getIntent() != null
+                    ? getIntent().getStringExtra(EXTRA_DETECTOR_CLASSES) : null;
+            if (classes != null) {
+                detector.setClassWhitelist("hazard".equals(classes)
+                        ? ObjectDetector.HAZARD_CLASSES : ObjectDetector.parseClassIds(classes));
+            }
+            if (getIntent() != null) {
+                trackingEnabled = getIntent().getBooleanExtra(EXTRA_TRACKING, true);
+            }
+            boolean cascade = getIntent() == null
+                    || getIntent().getBooleanExtra(EXTRA_DETECTOR_CASCADE, true);
+            if (cascade && ObjectDetector.isModelAvailable(this, ObjectDetector.GATE_MODEL_ASSET)) {
+                initDetectorGate();
+            }
         } catch (Throwable e) {
             Log.e(TAG, "Detector init failed", e);
             Toast.makeText(this, "Detector load failed: " + e.getMessage(),
@@ -545,7 +690,6 @@ public class MainActivity extends ComponentActivity {
         }
 
         // --- NEW: kiểm tra depth model có trong assets hay chưa ---
-        boolean depthModelOk = DepthEstimator.isModelAvailable(this, envMode);
         if (!depthModelOk) {
             // Không có model -> thông báo & gợi ý mở link download
             showMissingDepthModelDialog(envMode);
@@ -560,7 +704,8 @@ public class MainActivity extends ComponentActivity {
         }
 
         try {
-            depthEstimator = new DepthEstimator(this, envMode);
+            depthEstimator = new DepthEstimator(this, envMode, depthAsset,
+                    sessionProfile(EXTRA_DEPTH_PROFILE, SessionProfile.SHARED));
             depthState.lastDepthMap = null;
             depthState.lastDepthMillis = 0L;
             depthState.lastDepthCacheTime = 0L;
@@ -776,6 +921,9 @@ public class MainActivity extends ComponentActivity {
 
             ImageAnalysis analysis = new ImageAnalysis.Builder()
                     .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                    .setOutputImageFormat(rgbaInput
+                            ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888
+                            : ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
                     .setResolutionSelector(
                             new ResolutionSelector.Builder()
                                     .setAspectRatioStrategy(
@@ -816,9 +964,7 @@ public class MainActivity extends ComponentActivity {
      * Thread-safe; can be called from background threads.
      */
     private DepthEstimator.DepthMap maybeRunDepthSync(
-            int[] argb,
-            int width,
-            int height,
+            CameraFrame frame,
             long nowMs
     ) {
         if (depthEstimator == null) return null;
@@ -837,7 +983,7 @@ public class MainActivity extends ComponentActivity {
 
         try {
             DepthEstimator.DepthMap map =
-                    depthEstimator.estimate(argb, width, height);
+                    depthEstimator.estimate(frame);
 
             synchronized (depthState) {
                 depthState.lastDepthMap = map;
@@ -853,6 +999,9 @@ public class MainActivity extends ComponentActivity {
 
     private void analyzeFrame(ImageProxy image) {
         boolean singleShotFrame = false;
+        // The inference tasks read the image's plane buffers; see finally
+        Future<Boolean> detFuture = null;
+        Future<DepthEstimator.DepthMap> depthFuture = null;
         try {   
             boolean shouldProcess = realtimeEnabled;
             if (!shouldProcess && singleShotRequested && !singleShotRunning) {
@@ -868,79 +1017,99 @@ public class MainActivity extends ComponentActivity {
             }
             if (!shouldProcess) return;
 
-            // Basic frame info
-            int frameW = image.getWidth();
-            int frameH = image.getHeight();
-            int rotation = image.getImageInfo().getRotationDegrees();
-
-            // YUV → ARGB (+ rotation)
-            int[] argb = Yuv.toArgb(image);
-            if (rotation != 0) {
-                argb = Yuv.rotate(argb, frameW, frameH, rotation);
-                if (rotation == 90 || rotation == 270) {
-                    int tmp = frameW;
-                    frameW = frameH;
-                    frameH = tmp;
-                }
-            }
+            // Detector and depth sample the YUV planes directly, with the rotation folded
+            // into their index math. The full-resolution upright ARGB frame is only built
+            // (lazily, from frameArena) for the full-frame blur mode.
+            CameraFrame frame = CameraFrame.of(image, frameArena);
+            int frameW = frame.width();
+            int frameH = frame.height();
 
             if (stereoProcessor != null) {
                 stereoProcessor.setReferenceSize(frameW, frameH);
             }
 
-            int[] detectorInput = (blurEnabled && BLUR_RADIUS > 0)
-                    ? ImageUtils.boxBlur(argb, frameW, frameH, BLUR_RADIUS)
-                    : argb;
+            int blurRadius = blurEnabled ? BLUR_RADIUS : 0;
+            int[] detectorInput = (blurRadius > 0 && !BLUR_AT_MODEL_RESOLUTION)
+                    ? ImageUtils.boxBlur(frame.argb(), frameW, frameH, blurRadius,
+                            frameArena.acquireInts(frameW * frameH))
+                    : null;
 
             final long nowMs = SystemClock.elapsedRealtime();
 
+            boolean tracking = trackingEnabled;
+            // Tracks and crop regions do not carry over to the other camera, nor across a gap
+            // in the stream: one predicted frame step would not cover the motion since then
+            if (lensFacing != trackerLensFacing || singleShotFrame
+                    || nowMs - lastAnalyzedMs > TRACK_GAP_MS) {
+                trackerLensFacing = lensFacing;
+                tracker.reset();
+                detector.resetTemporalState();
+            }
+            lastAnalyzedMs = nowMs;
+            boolean runDetector = !tracking || tracker.shouldDetect();
+            // A requested single shot gets the main model on the whole frame: the cascade's
+            // gate could drop it, and crop passes would only look where boxes were before
+            boolean capture = singleShotFrame;
+
             // Run YOLO + depth in parallel on inferenceExec
-            int finalFrameW1 = frameW;
-            int finalFrameH1 = frameH;
-            Future<List<ObjectDetector.Detection>> detFuture =
+            detFuture = !runDetector ? null :
                     inferenceExec.submit(() -> {
                         try {
-                            return detector.detect(detectorInput, finalFrameW1, finalFrameH1);
+                            if (detectorInput != null) {
+                                detector.detect(detectorInput, frameW, frameH, frameDets);
+                            } else if (capture) {
+                                detector.detectFullFrame(frame, blurRadius, frameDets);
+                            } else {
+                                detector.detect(frame, blurRadius, frameDets);
+                            }
+                            return true;
                         } catch (OrtException e) {
                             Log.e(TAG, "detect failed", e);
-                            return null;
+                            return false;
                         } catch (Throwable t) {
                             Log.e(TAG, "detect crashed", t);
-                            return null;
+                            return false;
                         }
                     });
 
-            Future<DepthEstimator.DepthMap> depthFuture = null;
             if (depthEstimator != null) {
-                int[] finalArgb = argb;
-                int finalFrameW = frameW;
-                int finalFrameH = frameH;
-                depthFuture = inferenceExec.submit(() ->
-                        maybeRunDepthSync(finalArgb, finalFrameW, finalFrameH, nowMs)
-                );
+                depthFuture = inferenceExec.submit(() -> maybeRunDepthSync(frame, nowMs));
             }
 
             // Wait for results
-            List<ObjectDetector.Detection> dets = detFuture.get();
+            boolean detected = detFuture != null && detFuture.get();
 
             DepthEstimator.DepthMap depthMap = null;
             if (depthFuture != null) {
                 depthMap = depthFuture.get();
             }
 
-            if (depthMap != null && dets != null) {
-                dets = depthEstimator.attachDepth(dets, depthMap);
+            // Nothing reads the frame buffers past this point. On the error paths they are
+            // simply left to the GC.
+            frame.release();
+            frameArena.release(detectorInput);
+
+            DetectionBuffer dets = frameDets;
+            if (!detected) dets.clear();
+            if (tracking) {
+                // A failed detector run counts as a skipped frame
+                tracker.predict();
+                if (detected) tracker.update(frameDets);
+                tracker.output(trackedDets, frameW, frameH);
+                dets = trackedDets;
             }
 
-            if (stereoFusionEnabled && stereoProcessor != null
-                    && depthMap != null && dets != null) {
-                dets = stereoProcessor.fuseDepth(depthMap, dets, frameW, frameH);
+            if (depthMap != null) {
+                depthEstimator.attachDepth(dets, depthMap);
             }
 
-            int finalW = frameW;
-            int finalH = frameH;
-            List<ObjectDetector.Detection> finalDets = dets;
-            runOnUiThread(() -> overlay.setDetections(finalDets, finalW, finalH));
+            if (stereoFusionEnabled && stereoProcessor != null && depthMap != null) {
+                stereoProcessor.fuseDepth(depthMap, dets, frameW, frameH);
+            }
+
+            // Copied under the overlay's lock; drawn on the UI thread's next pass
+            overlay.setStatus(detector.getInputLongSide(), detector.getFps());
+            overlay.setDetections(dets, frameW, frameH);
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -948,6 +1117,10 @@ public class MainActivity extends ComponentActivity {
         } catch (Throwable t) {
             Log.e(TAG, "analyzer crash", t);
         } finally {
+            // An interrupted or failed wait above can leave a task reading the planes; closing
+            // the image under it would hand the camera's buffers back while still in use
+            awaitQuietly(detFuture);
+            awaitQuietly(depthFuture);
             image.close();
             if (singleShotFrame) {
                 singleShotRunning = false;
@@ -958,6 +1131,23 @@ public class MainActivity extends ComponentActivity {
         }
     }
 
+    // Waits for a task to finish, whatever its outcome, keeping the thread's interrupt status
+    private static void awaitQuietly(@Nullable Future<?> future) {
+        if (future == null) return;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | RuntimeException e) {
+                break;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
     @SuppressLint("RestrictedApi")
     @OptIn(markerClass = ExperimentalCamera2Interop.class)
     private void setupStereoProcessorForCurrentCamera(Camera camera) {
@@ -1021,6 +1211,7 @@ public class MainActivity extends ComponentActivity {
                 depthEstimator,
                 blurEnabled,
                 BLUR_RADIUS,
+                rgbaInput,
                 stereoFusionEnabled,
                 stereoProcessor,
                 new SequentialStereoHelper.Callback() {
@@ -0,0 +1,301 @@
+package vn.edu.usth.objectdetectmobile;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Picks the detector and depth model variants this phone can afford, by timing them once.
+ *
+ * Each kind of model has candidate assets ordered from most to least accurate (yolov8 m / s /
+ * n, Depth Anything vitb / vits, each as fp32 / fp16 / int8); only the ones packaged with the
+ * app take part. The tuner times them in that order on a synthetic input and stops at the
+ * first whose median fits the kind's budget, so a flagship only pays for one model. A
+ * candidate whose first timed run is already {@link #REJECT_FACTOR} times over budget is
+ * dropped without the remaining runs. If nothing fits, the fastest candidate wins.
+ *
+ * The choice is stored in SharedPreferences under a key built from the device (manufacturer,
+ * model, hardware, as in DepthCalibrationHelper.buildCalibrationKey), the app's last update
+ * time, the ORT version and the candidate set. Cold starts with a stored choice skip the
+ * benchmark; an app update, a new ORT or a different set of packaged models tunes again.
+ *
+ * Timing runs sessions with the given profile, so it should run before the realtime pipeline
+ * starts, off the UI thread.
+ */
+public final class ModelAutotuner {
+    private static final String TAG = "ModelAutotuner";
+    private static final String PREFS_NAME = "model_autotune";
+    private static final String KEY_PREFIX = "model_variant_";
+    static final int WARMUP = 1, RUNS = 5;
+    static final float REJECT_FACTOR = 3f;
+    // Synthetic upright frame for dynamic-shape inputs (CameraX's default analysis size)
+    private static final int FRAME_W = 640, FRAME_H = 480;
+
+    /** Detector budget: one frame at the default target. */
+    static final float DETECTOR_BUDGET_MS = ObjectDetector.DEFAULT_TARGET_FRAME_MS;
+    /** Depth budget per estimate, session creation included (one estimate every 1.5 s). */
+    static final float DEPTH_BUDGET_MS = 600f;
+
+    /** One kind of model to tune: its candidates, most accurate first, and its budget. */
+    public static final class Kind {
+        final String name;
+        final List<String> candidates;
+        final float budgetMs;
+        final int longSide, multiple;
+        /** Depth opens a session per estimate, so its timing includes creating one. */
+        final boolean sessionPerRun;
+
+        Kind(String name, List<String> candidates, float budgetMs, int longSide, int multiple,
+             boolean sessionPerRun) {
+            this.name = name;
+            this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+            this.budgetMs = budgetMs;
+            this.longSide = longSide;
+            this.multiple = multiple;
+            this.sessionPerRun = sessionPerRun;
+        }
+
+        /** The packaged detector variants. */
+        @NonNull
+        public static Kind detector(@NonNull Context ctx) {
+            return new Kind("detector", packaged(ctx, detectorCandidates()),
+                    DETECTOR_BUDGET_MS, 640, 32, false);
+        }
+
+        /** The packaged depth variants for an environment mode. */
+        @NonNull
+        public static Kind depth(@NonNull Context ctx, @NonNull MainActivity.EnvMode mode) {
+            return new Kind("depth_" + mode.name().toLowerCase(Locale.US),
+                    packaged(ctx, depthCandidates(mode)), DEPTH_BUDGET_MS, 518, 14, true);
+        }
+    }
+
+    /** The variant picked for a kind, with the median it was measured at. */
+    public static final class Choice {
+        public final String asset;
+        public final float medianMs;
+        /** False when no candidate met the budget and this is just the fastest. */
+        public final boolean fits;
+
+        Choice(String asset, float medianMs, boolean fits) {
+            this.asset = asset;
+            this.medianMs = medianMs;
+            this.fits = fits;
+        }
+
+        String encode() {
+            return asset + ";" + medianMs + ";" + fits;
+        }
+
+        @Nullable
+        static Choice decode(@Nullable String s) {
+            if (s == null) return null;
+            String[] f = s.split(";");
+            if (f.length != 3) return null;
+            try {
+                return new Choice(f[0], Float.parseFloat(f[1]), Boolean.parseBoolean(f[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s (%.1f ms%s)", asset, medianMs,
+                    fits ? "" : ", over budget");
+        }
+    }
+
+    /** Median ms of a candidate, or NaN if it cannot be run; may stop early over rejectMs. */
+    interface Timer {
+        float medianMs(String asset, float rejectMs) throws Exception;
+    }
+
+    private ModelAutotuner() {}
+
+    static List<String> detectorCandidates() {
+        List<String> out = new ArrayList<>();
+        for (String size : new String[]{"m", "s", "n"}) {
+            for (String precision : new String[]{"", "_fp16", "_int8"}) {
+                out.add("yolov8" + size + "_compatible" + precision + ".onnx");
+            }
+        }
+        return out;
+    }
+
+    static List<String> depthCandidates(MainActivity.EnvMode mode) {
+        String set = mode == MainActivity.EnvMode.OUTDOOR ? "vkitti" : "hypersim";
+        List<String> out = new ArrayList<>();
+        for (String size : new String[]{"vitb", "vits"}) {
+            for (String precision : new String[]{"fp32", "fp16", "int8"}) {
+                out.add("depth_anything_v2_metric_" + set + "_" + size + "_" + precision
+                        + ".onnx");
+            }
+        }
+        return out;
+    }
+
+    /**
+     * The most accurate candidate within budgetMs, timing candidates in order and stopping at
+     * the first that fits; the fastest one if none does; null if none could be timed. A
+     * candidate whose timer throws or returns NaN is skipped. Pure Java, so it unit-tests
+     * without Android; the timer does any logging.
+     */
+    @Nullable
+    static Choice choose(@NonNull List<String> candidates, float budgetMs,
+                         @NonNull Timer timer) {
+        Choice fastest = null;
+        for (String asset : candidates) {
+            float ms;
+            try {
+                ms = timer.medianMs(asset, budgetMs * REJECT_FACTOR);
+            } catch (Exception e) {
+                continue;
+            }
+            if (Float.isNaN(ms)) continue;
+            if (ms <= budgetMs) return new Choice(asset, ms, true);
+            if (fastest == null || ms < fastest.medianMs) fastest = new Choice(asset, ms, false);
+        }
+        return fastest;
+    }
+
+    /** Preferences key of a kind's choice on this device, app install and model set. */
+    static String key(String device, long appStamp, String ortVersion, Kind kind) {
+        return KEY_PREFIX + device + "_" + kind.name + "_" + appStamp + "_" + ortVersion + "_"
+                + Integer.toHexString(kind.candidates.hashCode());
+    }
+
+    /**
+     * The stored choice for a kind, or null if this device / app version has not been tuned.
+     * A kind with a single packaged candidate needs no tuning and always gets that one.
+     */
+    @Nullable
+    public static Choice load(@NonNull Context ctx, @NonNull Kind kind) {
+        if (kind.candidates.isEmpty()) return null;
+        if (kind.candidates.size() == 1) {
+            return new Choice(kind.candidates.get(0), Float.NaN, true);
+        }
+        Choice c = Choice.decode(prefs(ctx).getString(key(ctx, kind), null));
+        // A stored asset that is no longer packaged counts as untuned
+        return c != null && kind.candidates.contains(c.asset) ? c : null;
+    }
+
+    /** True if some kind has candidates but no stored choice. */
+    public static boolean needsTuning(@NonNull Context ctx, @NonNull Kind... kinds) {
+        for (Kind k : kinds) {
+            if (!k.candidates.isEmpty() && load(ctx, k) == null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The stored choice, or the result of timing the candidates now (which is then stored).
+     * Null when the kind has no packaged candidates or none of them runs.
+     */
+    @Nullable
+    public static Choice resolve(@NonNull Context ctx, @NonNull Kind kind,
+                                 @NonNull SessionProfile profile) {
+        Choice stored = load(ctx, kind);
+        if (stored != null) return stored;
+        if (kind.candidates.isEmpty()) return null;
+        long t0 = System.nanoTime();
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        Choice c = choose(kind.candidates, kind.budgetMs, (asset, rejectMs) -> {
+            try {
+                float ms = time(env, ObjectDetector.Util.cacheAsset(ctx, asset), kind, profile,
+                        rejectMs);
+                Log.i(TAG, String.format(Locale.US, "%s: %.1f ms (budget %.0f)", asset, ms,
+                        kind.budgetMs));
+                return ms;
+            } catch (Exception e) {
+                Log.w(TAG, "Cannot time " + asset, e);
+                throw e;
+            }
+        });
+        if (c == null) return null;
+        prefs(ctx).edit().putString(key(ctx, kind), c.encode()).apply();
+        Log.i(TAG, String.format(Locale.US, "%s -> %s, tuned in %.1f s", kind.name, c,
+                (System.nanoTime() - t0) / 1e9));
+        return c;
+    }
+
+    // Median of RUNS timed runs on a zero-filled input, after WARMUP untimed ones
+    private static float time(OrtEnvironment env, String modelPath, Kind kind,
+                              SessionProfile profile, float rejectMs) throws OrtException {
+        OrtSession session = OptimizedModelCache.open(env, modelPath, profile, TAG);
+        InputTensor input;
+        OnnxTensor tensor;
+        String inputName;
+        try {
+            inputName = session.getInputInfo().keySet().iterator().next();
+            NodeInfo info = session.getInputInfo().get(inputName);
+            InputTensor.Format format = InputTensor.Format.of(info);
+            ModelInputShape shape = ModelInputShape.of(info, format, kind.longSide,
+                    kind.multiple);
+            input = InputTensor.unitScale(shape.width(FRAME_W, FRAME_H),
+                    shape.height(FRAME_W, FRAME_H), format);
+            tensor = input.createOnnxTensor(env);
+        } catch (OrtException | RuntimeException e) {
+            session.close();
+            throw e;
+        }
+        float[] ms = new float[RUNS];
+        try {
+            for (int i = -WARMUP; i < RUNS; i++) {
+                long t0 = System.nanoTime();
+                if (kind.sessionPerRun && i > -WARMUP) {
+                    session.close();
+                    session = OptimizedModelCache.open(env, modelPath, profile, TAG);
+                }
+                session.run(Collections.singletonMap(inputName, tensor)).close();
+                if (i < 0) continue;
+                ms[i] = (System.nanoTime() - t0) / 1e6f;
+                if (i == 0 && ms[0] > rejectMs) return ms[0];
+            }
+        } finally {
+            tensor.close();
+            session.close();
+        }
+        Arrays.sort(ms);
+        return ms[RUNS / 2];
+    }
+
+    private static String key(Context ctx, Kind kind) {
+        String device = Build.MANUFACTURER + "_" + Build.MODEL + "_" + Build.HARDWARE;
+        long appStamp = 0L;
+        try {
+            appStamp = ctx.getPackageManager().getPackageInfo(ctx.getPackageName(), 0)
+                    .lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException | RuntimeException e) {
+            Log.w(TAG, "No package info; tuning is not tied to the app version", e);
+        }
+        return key(device, appStamp, OrtEnvironment.getEnvironment().getVersion(), kind);
+    }
+
+    private static SharedPreferences prefs(Context ctx) {
+        return ctx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static List<String> packaged(Context ctx, List<String> candidates) {
+        List<String> out = new ArrayList<>();
+        for (String asset : candidates) {
+            if (ObjectDetector.isModelAvailable(ctx, asset)) out.add(asset);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,75 @@
+package vn.edu.usth.objectdetectmobile;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.TensorInfo;
+
+/**
+ * Input width / height of an image model, read from its input shape.
+ *
+ * Fixed dims are used as they are. Dims exported as dynamic (-1) are chosen per frame to
+ * match the upright frame's aspect: the long side gets {@code longSide}, the short side the
+ * scaled length rounded up to the model's stride multiple. A 4:3 frame then fills 480x640
+ * (YOLO, multiple 32) or 392x518 (Depth Anything, multiple 14) instead of a padded square,
+ * so the network no longer convolves a quarter of the tensor worth of padding.
+ */
+final class ModelInputShape {
+    /** Fixed dims from the model, or <= 0 where the axis is dynamic. */
+    final int fixedW, fixedH;
+    final int longSide, multiple;
+
+    ModelInputShape(int fixedW, int fixedH, int longSide, int multiple) {
+        this.fixedW = fixedW;
+        this.fixedH = fixedH;
+        this.longSide = longSide;
+        this.multiple = Math.max(1, multiple);
+    }
+
+    /** Shape of a model's image input in the given layout (NCHW or NHWC). */
+    static ModelInputShape of(NodeInfo input, InputTensor.Format format, int longSide,
+                              int multiple) {
+        long[] shape = ((TensorInfo) input.getInfo()).getShape();
+        if (shape.length != 4) {
+            throw new IllegalArgumentException("Input " + input.getName()
+                    + " is not an image tensor (rank " + shape.length + ")");
+        }
+        boolean nhwc = format == InputTensor.Format.UINT8_NHWC;
+        int h = (int) (nhwc ? shape[1] : shape[2]);
+        int w = (int) (nhwc ? shape[2] : shape[3]);
+        return new ModelInputShape(w, h, longSide, multiple);
+    }
+
+    /** Same model shape with another long side for the dynamic axes. */
+    ModelInputShape withLongSide(int longSide) {
+        return new ModelInputShape(fixedW, fixedH, longSide, multiple);
+    }
+
+    boolean isDynamic() {
+        return fixedW <= 0 || fixedH <= 0;
+    }
+
+    /** Model input width for an upright frame of frameW x frameH. */
+    int width(int frameW, int frameH) {
+        if (fixedW > 0) return fixedW;
+        return frameW >= frameH ? longSide : shortSide(frameW, frameH);
+    }
+
+    /** Model input height for an upright frame of frameW x frameH. */
+    int height(int frameW, int frameH) {
+        if (fixedH > 0) return fixedH;
+        return frameH > frameW ? longSide : shortSide(frameW, frameH);
+    }
+
+    private int shortSide(int frameW, int frameH) {
+        int lo = Math.min(frameW, frameH), hi = Math.max(frameW, frameH);
+        int scaled = (int) Math.ceil(longSide * (double) lo / hi);
+        int rounded = (scaled + multiple - 1) / multiple * multiple;
+        return Math.max(multiple, Math.min(longSide, rounded));
+    }
+
+    @Override
+    public String toString() {
+        return isDynamic()
+                ? "dynamic (long side " + longSide + ", multiple " + multiple + ")"
+                : fixedW + "x" + fixedH;
+    }
+}
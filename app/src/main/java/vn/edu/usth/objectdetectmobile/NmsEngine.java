@@ -0,0 +1,417 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class-aware non-maximum suppression on primitive arrays.
+ *
+ * Candidates are copied once into parallel float/int arrays, ordered by score with a single
+ * primitive sort of packed (score, index) keys, and bucketed by class; suppression only ever
+ * compares boxes of the same class, so classes run independently (in parallel bands on
+ * {@link ParallelRows} when there is enough work). Within a class of more than
+ * {@link #GRID_MIN} boxes the boxes are binned into a uniform grid of roughly box-sized cells
+ * and a kept box is only tested against the boxes sharing one of its cells: any pair with
+ * IoU > 0 overlaps, and overlapping boxes always share a cell. A crowded street scene with
+ * hundreds of candidates then costs about n * (boxes per neighbourhood) IoUs instead of n^2.
+ * {@link #run(DetectionBuffer)} works on a buffer in place and allocates nothing once the
+ * scratch arrays have grown; {@link #run(List)} allocates only the result list.
+ *
+ * {@link Method#HARD} keeps exactly the boxes the old list-based greedy NMS kept, in the same
+ * order (score descending, ties in input order). The soft variants decay the scores of
+ * overlapping boxes instead of dropping them (Bodla et al., "Soft-NMS"), dropping a box
+ * once its score falls below minScore; they return new Detections with the decayed scores.
+ *
+ * Not thread-safe: one engine per detector.
+ */
+final class NmsEngine {
+
+    enum Method {
+        /** Drop same-class boxes with IoU > iouThresh against a kept box. */
+        HARD,
+        /** Scale overlapping scores by (1 - IoU) where IoU > iouThresh. */
+        LINEAR,
+        /** Scale overlapping scores by exp(-IoU^2 / sigma). */
+        GAUSSIAN
+    }
+
+    /** Classes at most this large are compared pairwise; the grid does not pay off below. */
+    static final int GRID_MIN = 32;
+    /** Grid resolution cap per axis, bounding the cells a large box is binned into. */
+    private static final int MAX_CELLS = 16;
+
+    final Method method;
+    final float iouThresh;
+    final float sigma;
+    final float minScore;
+    /** Cap on the returned boxes (highest scores first), or <= 0 for no cap. */
+    final int maxDetections;
+    final boolean parallel;
+
+    // Candidates of the current run, structure of arrays
+    private int n;
+    private float[] x1 = new float[0], y1 = new float[0], x2 = new float[0], y2 = new float[0];
+    private float[] area = new float[0], score = new float[0], depth = new float[0];
+    private int[] cls = new int[0];
+    private int[] rank = new int[0];
+    private boolean[] kept = new boolean[0], dropped = new boolean[0];
+    private long[] keys = new long[0];
+    // Indices bucketed by class, score order within a bucket; activeClasses are non-empty
+    private int[] classStart = new int[1], byClass = new int[0], activeClasses = new int[0];
+    private int activeCount;
+
+    // Per-thread grid scratch, so classes can run on any ParallelRows worker
+    private static final ThreadLocal<Grid> GRIDS = ThreadLocal.withInitial(Grid::new);
+    // Created once: a capturing lambda per run would be a per-frame allocation
+    private final ParallelRows.Band classBand = (c0, c1) -> {
+        Grid grid = GRIDS.get();
+        for (int a = c0; a < c1; a++) suppressClass(activeClasses[a], grid);
+    };
+
+    NmsEngine(Method method, float iouThresh, float sigma, float minScore, int maxDetections,
+              boolean parallel) {
+        this.method = method;
+        this.iouThresh = iouThresh;
+        this.sigma = sigma;
+        this.minScore = minScore;
+        this.maxDetections = maxDetections;
+        this.parallel = parallel;
+    }
+
+    /** Hard NMS, the behaviour of the original list-based implementation plus a cap. */
+    static NmsEngine hard(float iouThresh, int maxDetections) {
+        return new NmsEngine(Method.HARD, iouThresh, 0f, 0f, maxDetections, true);
+    }
+
+    List<ObjectDetector.Detection> run(List<ObjectDetector.Detection> in) {
+        n = in.size();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            ObjectDetector.Detection d = in.get(i);
+            load(i, d.x1, d.y1, d.x2, d.y2, d.score, d.cls, d.depth);
+        }
+        if (n == 0) return new ArrayList<>(0);
+        suppress();
+        return collect(in);
+    }
+
+    /**
+     * Suppresses buf in place: afterwards it holds the kept boxes, highest score first,
+     * with decayed scores in the soft modes.
+     */
+    void run(DetectionBuffer buf) {
+        n = buf.size();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            load(i, buf.x1[i], buf.y1[i], buf.x2[i], buf.y2[i], buf.score[i], buf.cls[i],
+                    buf.depth[i]);
+        }
+        if (n == 0) return;
+        suppress();
+        orderKept();
+        int limit = maxDetections > 0 ? maxDetections : n;
+        int out = 0;
+        for (int r = 0; r < n && out < limit; r++) {
+            int i = (int) keys[r];
+            if (!kept[i]) continue;
+            // Rows are written back from the scratch copies, so the order can change freely
+            buf.set(out++, x1[i], y1[i], x2[i], y2[i], score[i], cls[i], depth[i]);
+        }
+        buf.truncate(out);
+    }
+
+    private void suppress() {
+        sortAndBucket();
+
+        int active = activeCount;
+        if (parallel && active > 1) {
+            // One "row" per class; work ~ pairwise IoUs of an average class
+            long perClass = (long) n * n / active;
+            ParallelRows.run(active, (int) Math.min(Integer.MAX_VALUE / active, perClass), 1,
+                    classBand);
+        } else {
+            Grid grid = GRIDS.get();
+            for (int a = 0; a < active; a++) suppressClass(activeClasses[a], grid);
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (x1.length < n) {
+            int cap = Math.max(n, 2 * x1.length);
+            x1 = new float[cap];
+            y1 = new float[cap];
+            x2 = new float[cap];
+            y2 = new float[cap];
+            area = new float[cap];
+            score = new float[cap];
+            depth = new float[cap];
+            cls = new int[cap];
+            rank = new int[cap];
+            kept = new boolean[cap];
+            dropped = new boolean[cap];
+            keys = new long[cap];
+            byClass = new int[cap];
+        }
+    }
+
+    private void load(int i, float x1, float y1, float x2, float y2, float score, int cls,
+                      float depth) {
+        this.x1[i] = x1;
+        this.y1[i] = y1;
+        this.x2[i] = x2;
+        this.y2[i] = y2;
+        this.area[i] = (x2 - x1) * (y2 - y1);
+        this.score[i] = score;
+        this.cls[i] = cls;
+        this.depth[i] = depth;
+        kept[i] = false;
+        dropped[i] = method != Method.HARD && score < minScore;
+    }
+
+    /** Score order (ties by input index) into rank[], then a stable counting sort by class. */
+    private void sortAndBucket() {
+        sortByScore(score, n);
+        int maxCls = -1;
+        for (int r = 0; r < n; r++) {
+            int i = (int) keys[r];
+            rank[i] = r;
+            maxCls = Math.max(maxCls, cls[i]);
+        }
+        int classes = maxCls + 1;
+        if (classStart.length < classes + 1) classStart = new int[classes + 1];
+        Arrays.fill(classStart, 0, classes + 1, 0);
+        for (int i = 0; i < n; i++) classStart[cls[i] + 1]++;
+        int active = 0;
+        for (int c = 0; c < classes; c++) {
+            if (classStart[c + 1] > 0) active++;
+            classStart[c + 1] += classStart[c];
+        }
+        if (activeClasses.length < active) activeClasses = new int[Math.max(active, 8)];
+        for (int c = 0, a = 0; c < classes; c++) {
+            if (classStart[c + 1] > classStart[c]) activeClasses[a++] = c;
+        }
+        activeCount = active;
+        // Fill buckets in score order; classStart[c] walks forward and is restored after
+        for (int r = 0; r < n; r++) {
+            int i = (int) keys[r];
+            byClass[classStart[cls[i]]++] = i;
+        }
+        for (int c = classes; c > 0; c--) classStart[c] = classStart[c - 1];
+        classStart[0] = 0;
+    }
+
+    /**
+     * keys[0, m) = packed (score, index) for the given scores, sorted descending by score
+     * with Float.compare semantics and ascending by index on ties (what a stable sort of the
+     * old list produced).
+     */
+    private void sortByScore(float[] s, int m) {
+        for (int i = 0; i < m; i++) {
+            int bits = Float.floatToIntBits(s[i]);
+            int ordered = bits ^ ((bits >> 31) & 0x7FFFFFFF);    // signed order == Float.compare
+            keys[i] = ((long) ~ordered << 32) | i;
+        }
+        Arrays.sort(keys, 0, m);
+    }
+
+    private void suppressClass(int c, Grid grid) {
+        int from = classStart[c], to = classStart[c + 1];
+        // A negative threshold can suppress disjoint boxes, which the grid would miss
+        boolean useGrid = to - from > GRID_MIN && iouThresh >= 0f;
+        if (useGrid) grid.build(this, from, to);
+        if (method == Method.HARD) {
+            hardClass(from, to, useGrid ? grid : null);
+        } else {
+            softClass(from, to, useGrid ? grid : null);
+        }
+    }
+
+    private void hardClass(int from, int to, Grid grid) {
+        for (int a = from; a < to; a++) {
+            int i = byClass[a];
+            if (dropped[i]) continue;
+            kept[i] = true;
+            if (grid == null) {
+                for (int b = a + 1; b < to; b++) {
+                    int j = byClass[b];
+                    if (!dropped[j] && iou(i, j) > iouThresh) dropped[j] = true;
+                }
+            } else {
+                // Boxes sharing a cell with i; a box listed in several cells is seen again
+                // but is either dropped already or tested with the same result
+                for (int y = grid.cy(y1[i]), yEnd = grid.cy(y2[i]); y <= yEnd; y++) {
+                    for (int x = grid.cx(x1[i]), xEnd = grid.cx(x2[i]); x <= xEnd; x++) {
+                        int c = y * grid.gx + x;
+                        for (int k = grid.cellStart[c], end = grid.cellStart[c + 1]; k < end; k++) {
+                            int j = grid.items[k];
+                            if (rank[j] > rank[i] && !dropped[j] && iou(i, j) > iouThresh) {
+                                dropped[j] = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Soft-NMS over one class: repeatedly keeps the highest remaining (decayed) score and
+     * decays its neighbours. Picking the maximum is a linear scan, so this stays quadratic in
+     * the class size; the grid still limits the IoU work to overlapping boxes.
+     */
+    private void softClass(int from, int to, Grid grid) {
+        while (true) {
+            int i = -1;
+            for (int a = from; a < to; a++) {
+                int j = byClass[a];
+                if (kept[j] || dropped[j]) continue;
+                if (i < 0 || Float.compare(score[j], score[i]) > 0) i = j;
+            }
+            if (i < 0) return;
+            kept[i] = true;
+            if (grid == null) {
+                for (int a = from; a < to; a++) decay(i, byClass[a]);
+                continue;
+            }
+            // Only boxes overlapping i decay. One listed in several cells must decay once:
+            // the pass marks each visited box as kept temporarily and clears the marks after.
+            // IoU = 0 leaves a score unchanged in both variants, so the rest are skipped.
+            int visited = 0;
+            for (int y = grid.cy(y1[i]), yEnd = grid.cy(y2[i]); y <= yEnd; y++) {
+                for (int x = grid.cx(x1[i]), xEnd = grid.cx(x2[i]); x <= xEnd; x++) {
+                    int c = y * grid.gx + x;
+                    for (int k = grid.cellStart[c], end = grid.cellStart[c + 1]; k < end; k++) {
+                        int j = grid.items[k];
+                        if (kept[j] || dropped[j]) continue;
+                        decay(i, j);
+                        if (!dropped[j]) {
+                            kept[j] = true;
+                            grid.visited[visited++] = j;
+                        }
+                    }
+                }
+            }
+            for (int v = 0; v < visited; v++) kept[grid.visited[v]] = false;
+        }
+    }
+
+    private void decay(int i, int j) {
+        if (kept[j] || dropped[j]) return;
+        float o = iou(i, j);
+        if (method == Method.LINEAR) {
+            if (o > iouThresh) score[j] *= 1f - o;
+        } else {
+            score[j] *= (float) Math.exp(-(o * o) / sigma);
+        }
+        if (score[j] < minScore) dropped[j] = true;
+    }
+
+    // Same float expression as ObjectDetector.iou, so thresholds flip on exactly the same pairs
+    private float iou(int a, int b) {
+        float ix1 = Math.max(x1[a], x1[b]), iy1 = Math.max(y1[a], y1[b]);
+        float ix2 = Math.min(x2[a], x2[b]), iy2 = Math.min(y2[a], y2[b]);
+        float iw = Math.max(0f, ix2 - ix1), ih = Math.max(0f, iy2 - iy1);
+        float inter = iw * ih;
+        return inter / (area[a] + area[b] - inter + 1e-6f);
+    }
+
+    /** keys[] in output order: already so for hard NMS, re-sorted on decayed scores if soft. */
+    private void orderKept() {
+        if (method == Method.HARD) return;
+        // keys[] is free again by now
+        for (int i = 0; i < n; i++) if (!kept[i]) score[i] = Float.NEGATIVE_INFINITY;
+        sortByScore(score, n);
+    }
+
+    private List<ObjectDetector.Detection> collect(List<ObjectDetector.Detection> in) {
+        boolean soft = method != Method.HARD;
+        orderKept();
+        int limit = maxDetections > 0 ? maxDetections : n;
+        List<ObjectDetector.Detection> out = new ArrayList<>(Math.min(limit, n));
+        for (int r = 0; r < n && out.size() < limit; r++) {
+            int i = (int) keys[r];
+            if (!kept[i]) continue;
+            out.add(soft
+                    ? new ObjectDetector.Detection(x1[i], y1[i], x2[i], y2[i], score[i], cls[i])
+                    : in.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * Uniform grid over one class's boxes in CSR form; a box is listed in every cell its
+     * extent touches, so two overlapping boxes always share at least one cell.
+     */
+    private static final class Grid {
+        float minX, minY, invCellW, invCellH;
+        int gx, gy;
+        int[] cellStart = new int[MAX_CELLS * MAX_CELLS + 1];
+        int[] items = new int[0];
+        // Soft-NMS: boxes decayed by the current pass
+        int[] visited = new int[0];
+
+        void build(NmsEngine e, int from, int to) {
+            float loX = Float.POSITIVE_INFINITY, loY = Float.POSITIVE_INFINITY;
+            float hiX = Float.NEGATIVE_INFINITY, hiY = Float.NEGATIVE_INFINITY;
+            double sumW = 0, sumH = 0;
+            for (int a = from; a < to; a++) {
+                int i = e.byClass[a];
+                loX = Math.min(loX, e.x1[i]);
+                loY = Math.min(loY, e.y1[i]);
+                hiX = Math.max(hiX, e.x2[i]);
+                hiY = Math.max(hiY, e.y2[i]);
+                sumW += Math.max(0f, e.x2[i] - e.x1[i]);
+                sumH += Math.max(0f, e.y2[i] - e.y1[i]);
+            }
+            int m = to - from;
+            float spanX = hiX - loX, spanY = hiY - loY;
+            // Cells about one average box across: a box then touches ~4 cells
+            gx = cells(spanX, sumW / m);
+            gy = cells(spanY, sumH / m);
+            minX = loX;
+            minY = loY;
+            invCellW = spanX > 0f ? gx / spanX : 0f;
+            invCellH = spanY > 0f ? gy / spanY : 0f;
+
+            int cells = gx * gy;
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+            int total = 0;
+            for (int a = from; a < to; a++) {
+                int i = e.byClass[a];
+                int cx0 = cx(e.x1[i]), cx1 = cx(e.x2[i]), cy0 = cy(e.y1[i]), cy1 = cy(e.y2[i]);
+                for (int y = cy0; y <= cy1; y++) {
+                    for (int x = cx0; x <= cx1; x++) cellStart[y * gx + x + 1]++;
+                }
+                total += (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+            }
+            for (int c = 0; c < cells; c++) cellStart[c + 1] += cellStart[c];
+            if (items.length < total) items = new int[Math.max(total, 2 * items.length)];
+            if (visited.length < m) visited = new int[Math.max(m, 2 * visited.length)];
+            for (int a = from; a < to; a++) {
+                int i = e.byClass[a];
+                int cx0 = cx(e.x1[i]), cx1 = cx(e.x2[i]), cy0 = cy(e.y1[i]), cy1 = cy(e.y2[i]);
+                for (int y = cy0; y <= cy1; y++) {
+                    for (int x = cx0; x <= cx1; x++) items[cellStart[y * gx + x]++] = i;
+                }
+            }
+            for (int c = cells; c > 0; c--) cellStart[c] = cellStart[c - 1];
+            cellStart[0] = 0;
+        }
+
+        private static int cells(float span, double meanSize) {
+            if (!(span > 0f) || !(meanSize > 0)) return 1;
+            return (int) Math.max(1, Math.min(MAX_CELLS, Math.ceil(span / meanSize)));
+        }
+
+        int cx(float v) {
+            int c = (int) ((v - minX) * invCellW);
+            return c < 0 ? 0 : Math.min(gx - 1, c);
+        }
+
+        int cy(float v) {
+            int c = (int) ((v - minY) * invCellH);
+            return c < 0 ? 0 : Math.min(gy - 1, c);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package vn.edu.usth.objectdetectmobile;
 
 import android.content.Context;
+import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
 import ai.onnxruntime.*;
 
 import java.io.File;
@@ -14,6 +17,7 @@ import java.util.Arrays;
 import static java.lang.Math.*;
 
 public class ObjectDetector implements AutoCloseable {
+    private static final String TAG = "ObjectDetector";
     public static class Detection {
         public final float x1, y1, x2, y2, score, depth;
         public final int cls;
@@ -41,37 +45,353 @@ public class ObjectDetector implements AutoCloseable {
     // ---------------------------------------------------------------------------------------------
     //  ORT + model config
     // ---------------------------------------------------------------------------------------------
+    /** The main model, and the small one the cascade gates it with. */
+    public static final String MODEL_ASSET = "yolov8m_compatible.onnx";
+    public static final String GATE_MODEL_ASSET = "yolov8n_gate.onnx";
     private final OrtEnvironment env;
-    private final OrtSession session;
-    private final int inputW = 640, inputH = 640;
+    private final String modelPath;
+    // Replaced by setSessionProfile; guarded by this, like the input tensor
+    private OrtSession session;
+    private SessionProfile profile;
+    // Input size: the model's fixed dims, or a long side matched to the frame aspect (multiple
+    // of the 32 px stride) for models exported with dynamic height / width. For those the long
+    // side follows the latency budget, between 320 and 640.
+    private static final int INPUT_LONG_SIDE = 640, INPUT_MULTIPLE = 32;
+    /** Default detect() budget in ms (10 frames/s). */
+    public static final float DEFAULT_TARGET_FRAME_MS = 100f;
+    private ModelInputShape inputShape;
+    // One shape per selectable size (a single one for a fixed-shape model), smallest first
+    private ModelInputShape[] shapes;
+    private volatile InputSizeController sizeController;
+    private float targetFrameMs = DEFAULT_TARGET_FRAME_MS;
+    private InputTensor.Format inputFormat;
     private final float confThresh = 0.25f, iouThresh = 0.45f;
-    private final String inputName;
-
-    // Reused input tensor buffer: [1, 3, H, W] in CHW format
-    private final float[] inputTensor;
-    private final FloatBuffer inputBuffer;
+    private String inputName;
+
+    // Reused input tensor buffers in native memory: [1, 3, H, W] floats, or raw uint8 pixels for
+    // a model with the scaling in the graph, one per selectable size. They and their
+    // OnnxTensors are created together when the frame geometry changes, so each run binds
+    // existing memory without a copy and a size switch only picks another buffer.
+    private InputTensor[] inputs = new InputTensor[0];
+    private OnnxTensor[] tensors = new OnnxTensor[0];
+    private InferenceStats[] statsBySize = new InferenceStats[0];
+    private int inputsFrameW, inputsFrameH;
+    // The ones used by the current frame
+    private InputTensor inputTensor;
+    private OnnxTensor input;
+    // Output buffers ORT writes into directly, per input size; replaced with the session
+    private PinnedOutputs outputs;
+    private InferenceStats stats;
+    // Output decoding scratch; at most TOP_K candidates reach NMS
+    private static final int TOP_K = 512;
+    private final YoloDecoder decoder = new YoloDecoder(TOP_K);
+    /**
+     * COCO classes that matter for walking assistance: people, vehicles, street furniture,
+     * dogs and the obstacles found on pavements and indoors.
+     */
+    public static final int[] HAZARD_CLASSES =
+            {0, 1, 2, 3, 5, 6, 7, 9, 10, 11, 12, 13, 16, 56, 58};
+    // Model metadata written by tools/export_class_subset.py: the COCO id of each score row
+    static final String CLASS_IDS_METADATA = "class_ids";
+    // COCO id per output row of a pruned head (null: the full 80), and the whitelist (null: all)
+    private int[] outputClassIds;
+    private int[] classWhitelist;
+    // Same cap as Ultralytics' max_det
+    private static final int MAX_DETECTIONS = 300;
+    private final NmsEngine nmsEngine = NmsEngine.hard(iouThresh, MAX_DETECTIONS);
+    // Letterbox plans per (frame size, rotation, input size); built for every input size when
+    // the geometry changes, so a size switch finds its plan ready
+    private final ResamplePlan.Cache plans = new ResamplePlan.Cache(16);
+    private int plannedSrcW, plannedSrcH, plannedRotation = -1;
+    private ResamplePlan.Interpolation plannedMode;
+    private volatile ResamplePlan.Interpolation interpolation = ResamplePlan.Interpolation.NEAREST;
+    // Scratch for the model-resolution blur
+    private final FrameBufferArena arena = new FrameBufferArena();
+    // Crop (ROI) mode, null when off. Mosaic inputs per layout (1x1, 2x1, 2x2 cells, and the
+    // foveated pass's 2x1 in the last slot) for a dynamic-shape model; a fixed-shape model
+    // splits its one input instead.
+    private RoiScheduler roi;
+    private static final int FOVEA_SLOT = 3;
+    private final InputTensor[] mosaicInputs = new InputTensor[4];
+    private final OnnxTensor[] mosaicTensors = new OnnxTensor[4];
+    private final ResamplePlan[] roiPlans = new ResamplePlan[RoiScheduler.MAX_CELLS];
+    private final ResamplePlan.Cache roiPlanCache = new ResamplePlan.Cache(16);
+    private InferenceStats roiStats;
+    private static final int ROI_LOG_EVERY = 100;
+    // Foveated mode, null when off: full-frame passes become window + periphery passes
+    private Foveation fovea;
+    private InferenceStats foveaStats;
+    // Cascade, null when off: the gate detector (owned, closed with this one) and its policy
+    private ObjectDetector gate;
+    private CascadePolicy cascade;
+    private static final int CASCADE_LOG_EVERY = 100;
 
     public ObjectDetector(@NonNull Context ctx) throws OrtException {
-        env = OrtEnvironment.getEnvironment();
-        String modelPath = Util.cacheAsset(ctx, "yolov8m_compatible.onnx");
+        // Half the cores: the depth session runs next to this one
+        this(ctx, SessionProfile.forDevice(SessionProfile.SHARED));
+    }
+
+    public ObjectDetector(@NonNull Context ctx, @NonNull SessionProfile profile)
+            throws OrtException {
+        this(ctx, MODEL_ASSET, profile);
+    }
 
-        OrtSession.SessionOptions so = new OrtSession.SessionOptions();
+    /** Detector for another YOLOv8-format model in the assets, e.g. {@link #GATE_MODEL_ASSET}. */
+    public ObjectDetector(@NonNull Context ctx, @NonNull String assetName,
+                          @NonNull SessionProfile profile) throws OrtException {
+        env = OrtEnvironment.getEnvironment();
+        modelPath = Util.cacheAsset(ctx, assetName);
         // NO enable NNAPI on supported devices (falls back to CPU if not available)
-        // (Optional) tune threads & optimization if you want:
-        // so.setIntraOpNumThreads(1);
-        // so.setInterOpNumThreads(1);
-        // so.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL);
+        setSessionProfile(profile);
+    }
 
-        session = env.createSession(modelPath, so);
+    /**
+     * Reopens the session with another profile. Blocks until a running detect() finishes,
+     * so call it off the UI thread. The input tensor is reallocated if the profile pins
+     * different input dims.
+     */
+    public synchronized void setSessionProfile(@NonNull SessionProfile profile)
+            throws OrtException {
+        OrtSession next = OptimizedModelCache.open(env, modelPath, profile, TAG);
+        if (outputs != null) outputs.close();
+        if (session != null) session.close();
+        session = next;
+        outputs = new PinnedOutputs(env, session);
+        this.profile = profile;
         inputName = session.getInputInfo().keySet().iterator().next();
 
-        // Allocate reusable input buffer once
-        inputTensor = new float[3 * inputW * inputH];
-        inputBuffer = FloatBuffer.wrap(inputTensor);
+        // Input buffer in the element type the model takes; allocated for the first frame
+        NodeInfo info = session.getInputInfo().get(inputName);
+        inputFormat = InputTensor.Format.of(info);
+        inputShape = ModelInputShape.of(info, inputFormat, INPUT_LONG_SIDE, INPUT_MULTIPLE);
+        Log.i(TAG, "Session " + profile + "; input " + inputName + ": " + inputFormat + ", "
+                + inputShape);
+        outputClassIds = parseClassIds(
+                session.getMetadata().getCustomMetadata().get(CLASS_IDS_METADATA));
+        if (outputClassIds != null) {
+            Log.i(TAG, "Pruned head: " + outputClassIds.length + " classes "
+                    + Arrays.toString(outputClassIds));
+        }
+        decoder.setClasses(outputClassIds, classWhitelist);
+        closeInputs();
+        int[] sizes;
+        if (inputShape.isDynamic()) {
+            sizes = InputSizeController.DEFAULT_SIZES;
+            shapes = new ModelInputShape[sizes.length];
+            for (int i = 0; i < sizes.length; i++) shapes[i] = inputShape.withLongSide(sizes[i]);
+        } else {
+            sizes = new int[]{Math.max(inputShape.fixedW, inputShape.fixedH)};
+            shapes = new ModelInputShape[]{inputShape};
+        }
+        sizeController = new InputSizeController(sizes, targetFrameMs);
+        if (!inputShape.isDynamic()) inputFor(inputShape.fixedW, inputShape.fixedH);
+    }
+
+    public synchronized SessionProfile getSessionProfile() {
+        return profile;
+    }
+
+    /**
+     * Input tensor at the controller's current size for an upright frame of frameW x frameH.
+     * The tensors of all sizes are (re)allocated, with their OnnxTensors, only when a size
+     * changes, which for a dynamic-shape model means a change of frame aspect or orientation.
+     */
+    private synchronized InputTensor inputFor(int frameW, int frameH) throws OrtException {
+        if (frameW != inputsFrameW || frameH != inputsFrameH) allocateInputs(frameW, frameH);
+        int level = sizeController.level();
+        inputTensor = inputs[level];
+        input = tensors[level];
+        stats = statsBySize[level];
+        return inputTensor;
+    }
+
+    /**
+     * As {@link #inputFor(int, int)} for a source of srcW x srcH turned upright by rotation,
+     * also building the letterbox plans of every input size for that geometry.
+     */
+    private InputTensor inputFor(int srcW, int srcH, int rotation,
+                                 ResamplePlan.Interpolation mode) throws OrtException {
+        boolean swap = rotation == 90 || rotation == 270;
+        InputTensor t = inputFor(swap ? srcH : srcW, swap ? srcW : srcH);
+        if (srcW != plannedSrcW || srcH != plannedSrcH || rotation != plannedRotation
+                || mode != plannedMode) {
+            for (InputTensor in : inputs) {
+                plans.letterbox(srcW, srcH, rotation, in.width, in.height, mode);
+            }
+            plannedSrcW = srcW;
+            plannedSrcH = srcH;
+            plannedRotation = rotation;
+            plannedMode = mode;
+        }
+        return t;
+    }
+
+    private void allocateInputs(int frameW, int frameH) throws OrtException {
+        if (inputs.length != shapes.length) {
+            closeInputs();
+            inputs = new InputTensor[shapes.length];
+            tensors = new OnnxTensor[shapes.length];
+            statsBySize = new InferenceStats[shapes.length];
+        }
+        for (int i = 0; i < shapes.length; i++) {
+            int w = shapes[i].width(frameW, frameH), h = shapes[i].height(frameW, frameH);
+            InputTensor t = inputs[i];
+            if (t != null && t.width == w && t.height == h) continue;
+            if (tensors[i] != null) tensors[i].close();
+            t = InputTensor.unitScale(w, h, inputFormat);
+            tensors[i] = t.createOnnxTensor(env);
+            statsBySize[i] = new InferenceStats(TAG, 30, t.nativeBytes());
+            inputs[i] = t;
+            Log.i(TAG, "Model input size " + w + "x" + h);
+        }
+        inputsFrameW = frameW;
+        inputsFrameH = frameH;
+        plannedRotation = -1;
+    }
+
+    private void closeMosaicInputs() {
+        for (int i = 0; i < mosaicTensors.length; i++) {
+            if (mosaicTensors[i] != null) mosaicTensors[i].close();
+            mosaicTensors[i] = null;
+            mosaicInputs[i] = null;
+        }
+    }
+
+    private void closeInputs() {
+        closeMosaicInputs();
+        for (OnnxTensor t : tensors) {
+            if (t != null) t.close();
+        }
+        inputs = new InputTensor[0];
+        tensors = new OnnxTensor[0];
+        statsBySize = new InferenceStats[0];
+        inputsFrameW = inputsFrameH = 0;
+        plannedRotation = -1;
+        input = null;
+        inputTensor = null;
+        stats = null;
+    }
+
+    /**
+     * Long side the next frame is resized to. Follows the latency budget for a model with
+     * dynamic input dims; always the fixed size otherwise.
+     */
+    public int getInputLongSide() {
+        return sizeController.size();
+    }
+
+    /** detect() calls completed per second, averaged over the recent frames (0 at first). */
+    public float getFps() {
+        return sizeController.fps();
+    }
+
+    /**
+     * Time budget per detect() in ms. The input size steps down while the recent median
+     * latency is over it and back up when the next size fits with room to spare; <= 0 keeps
+     * the largest size.
+     */
+    public synchronized void setTargetFrameMs(float ms) {
+        targetFrameMs = ms;
+        sizeController.setTargetMs(ms);
+    }
+
+    /**
+     * Turns crop (ROI) mode on with the given settings, or off with null. In crop mode the
+     * CameraFrame detect() re-checks known objects on crops around them between full frames;
+     * see {@link RoiScheduler}.
+     */
+    public synchronized void setRoiSettings(@Nullable RoiScheduler.Settings settings) {
+        roi = settings == null ? null : new RoiScheduler(settings);
+        closeMosaicInputs();
+        if (settings != null) Log.i(TAG, "Crop mode: " + settings);
+    }
+
+    /**
+     * Forgets what earlier frames saw, e.g. after a camera switch or a pause: the next crop-mode
+     * frame is a full frame instead of crops around stale boxes.
+     */
+    public synchronized void resetTemporalState() {
+        if (roi != null) roi.reset();
+    }
+
+    /**
+     * Turns foveated mode on with the given window, or off with null. Each full-frame pass of
+     * the CameraFrame detect() then looks at the window at native resolution and the whole
+     * frame at low resolution in one run (see {@link Foveation}); crop passes are unchanged.
+     */
+    public synchronized void setFoveation(@Nullable Foveation.Settings settings) {
+        fovea = settings == null ? null : new Foveation(settings);
+        if (settings != null) Log.i(TAG, "Foveated mode: " + settings);
+    }
+
+    /**
+     * Turns the two-stage cascade on: gate runs on every CameraFrame detect() and this model
+     * only when the gate escalates (see {@link CascadePolicy}). Both sessions stay open. The
+     * gate is owned from here on and closed with this detector; null turns the cascade off.
+     */
+    public synchronized void setCascade(@Nullable ObjectDetector gate,
+                                        @NonNull CascadePolicy.Settings settings) {
+        if (this.gate != null && this.gate != gate) closeQuietly(this.gate);
+        this.gate = gate;
+        cascade = gate == null ? null : new CascadePolicy(settings);
+        if (gate != null) {
+            gate.setTargetFrameMs(settings.gateTargetMs);
+            gate.setClassWhitelist(classWhitelist);
+            Log.i(TAG, "Cascade: " + settings);
+        }
+    }
+
+    /**
+     * Keeps only the given COCO class ids (e.g. {@link #HAZARD_CLASSES}), or all with null. The
+     * decoder then reads only those classes' score rows. Applies to the cascade's gate too.
+     */
+    public synchronized void setClassWhitelist(@Nullable int[] classIds) {
+        classWhitelist = classIds == null ? null : classIds.clone();
+        decoder.setClasses(outputClassIds, classWhitelist);
+        if (gate != null) gate.setClassWhitelist(classIds);
+    }
+
+    /**
+     * Class ids from a comma-separated list ("0,2,5"), or null when the value is missing or
+     * malformed.
+     */
+    @Nullable
+    static int[] parseClassIds(@Nullable String csv) {
+        if (csv == null || csv.trim().isEmpty()) return null;
+        String[] parts = csv.split(",");
+        int[] ids = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) ids[i] = Integer.parseInt(parts[i].trim());
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Bad class id list: " + csv);
+            return null;
+        }
+        return ids;
+    }
+
+    /** True if the asset is packaged with the app. */
+    public static boolean isModelAvailable(@NonNull Context ctx, @NonNull String assetName) {
+        try (InputStream is = ctx.getAssets().open(assetName)) {
+            return true;
+        } catch (java.io.IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resampling used for the letterbox. NEAREST is the cheapest; BILINEAR and AREA cost more
+     * per pixel but alias less when a large frame is squeezed into the model input.
+     */
+    public void setInterpolation(@NonNull ResamplePlan.Interpolation interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    public ResamplePlan.Interpolation getInterpolation() {
+        return interpolation;
     }
 
     // Struct to carry letterbox parameters
-    private static class LetterboxParams {
+    static class LetterboxParams {
         final float scale;
         final float padX;
         final float padY;
@@ -85,12 +405,23 @@ public class ObjectDetector implements AutoCloseable {
 
     /**
      * Fused resize + letterbox + CHW normalize into a single pass.
-     * - src: ARGB int[] from camera
+     * - src: ARGB int[] from camera (already upright)
      * - srcW/H: original frame size
      * - Writes into inputTensor (reused) in CHW order.
-     * - Returns scale + padding so we can map boxes back to src coords.
+     * - Returns the plan, which carries scale + padding to map boxes back to src coords.
      */
-    private LetterboxParams fillInputTensorFromSrc(int[] src, int srcW, int srcH) {
+    private ResamplePlan fillInputTensorFromSrc(int[] src, int srcW, int srcH)
+            throws OrtException {
+        ResamplePlan.Interpolation mode = interpolation;
+        InputTensor t = inputFor(srcW, srcH, 0, mode);
+        ResamplePlan plan = plans.letterbox(srcW, srcH, 0, t.width, t.height, mode);
+        t.fill(plan, src);
+        return plan;
+    }
+
+    /** Straightforward nearest-neighbour letterbox; reference for the plan-driven path. */
+    static LetterboxParams letterboxArgb(int[] src, int srcW, int srcH,
+                                         float[] dst, int inputW, int inputH) {
         // Standard YOLO-style letterbox scaling
         float r = Math.min(inputW / (float) srcW, inputH / (float) srcH);
         int nw = (int) (srcW * r);
@@ -104,7 +435,7 @@ public class ObjectDetector implements AutoCloseable {
         int bOffset = 2 * area;
 
         // Zero padding (background 0.0)
-        Arrays.fill(inputTensor, 0f);
+        Arrays.fill(dst, 0f);
 
         // Resize + letterbox + CHW in one pass
         for (int y = 0; y < nh; y++) {
@@ -123,51 +454,417 @@ public class ObjectDetector implements AutoCloseable {
                 float gf = ((p >>> 8) & 0xFF) / 255f;
                 float bf = (p & 0xFF) / 255f;
 
-                inputTensor[rOffset + dstIndex] = rf;
-                inputTensor[gOffset + dstIndex] = gf;
-                inputTensor[bOffset + dstIndex] = bf;
+                dst[rOffset + dstIndex] = rf;
+                dst[gOffset + dstIndex] = gf;
+                dst[bOffset + dstIndex] = bf;
             }
         }
 
         return new LetterboxParams(r, dx, dy);
     }
 
+    /**
+     * Letterbox through a precomputed plan: the rotation is folded into the plan's index tables,
+     * so the frame is sampled straight from the YUV planes and no ARGB or rotated copy is built.
+     *
+     * With blurRadius > 0 the box blur runs after downscaling, on the letterboxed content
+     * (at most the model input size) instead of the camera frame. The camera-space radius is scaled
+     * by the letterbox scale so the blur looks the same as blurring the full frame first.
+     * Scratch buffers come from the arena (only needed when blurRadius > 0).
+     */
+    static void letterbox(ResamplePlan plan, Yuv.Planes planes, int blurRadius,
+                          InputTensor dst, FrameBufferArena arena) {
+        if (blurRadius <= 0) {
+            dst.fill(plan, planes);
+            return;
+        }
+        int[] content = arena.acquireInts(plan.contentW * plan.contentH);
+        plan.gather(planes, content);
+        fillBlurred(plan, content, modelBlurRadius(blurRadius, plan.scaleX), dst, arena);
+    }
+
+    /** Same as the planes overload for an RGBA_8888 analysis frame. */
+    static void letterbox(ResamplePlan plan, Rgba.Plane rgba, int blurRadius,
+                          InputTensor dst, FrameBufferArena arena) {
+        if (blurRadius <= 0) {
+            dst.fill(plan, rgba);
+            return;
+        }
+        int[] content = arena.acquireInts(plan.contentW * plan.contentH);
+        plan.gather(rgba, content);
+        fillBlurred(plan, content, modelBlurRadius(blurRadius, plan.scaleX), dst, arena);
+    }
+
+    /**
+     * Same as the planes overload for an ARGB source of plan.srcW x plan.srcH, e.g. a pyramid
+     * level. frameScale is the letterbox scale relative to the camera frame (used for the blur).
+     */
+    static void letterbox(ResamplePlan plan, int[] src, float frameScale, int blurRadius,
+                          InputTensor dst, FrameBufferArena arena) {
+        if (blurRadius <= 0) {
+            dst.fill(plan, src);
+            return;
+        }
+        int[] content = arena.acquireInts(plan.contentW * plan.contentH);
+        plan.gather(src, content);
+        fillBlurred(plan, content, modelBlurRadius(blurRadius, frameScale), dst, arena);
+    }
+
+    // Blurs the gathered content (released here) and writes it into the tensor
+    private static void fillBlurred(ResamplePlan plan, int[] content, int radius,
+                                    InputTensor dst, FrameBufferArena arena) {
+        int nw = plan.contentW, nh = plan.contentH;
+        int[] blurred = arena.acquireInts(nw * nh);
+        int[] scratch = arena.acquireInts(ImageUtils.boxBlurScratchSize(nw));
+        ImageUtils.boxBlur(content, nw, nh, radius, blurred, scratch);
+        arena.release(scratch);
+        arena.release(content);
+        dst.fillContent(plan, blurred);
+        arena.release(blurred);
+    }
+
+    // Camera-space blur radius expressed at the letterbox scale (at least 1 px)
+    static int modelBlurRadius(int frameRadius, float scale) {
+        return Math.max(1, Math.round(frameRadius * scale));
+    }
+
     // ---------------------------------------------------------------------------------------------
     //  Public detect API
     // ---------------------------------------------------------------------------------------------
     public List<Detection> detect(int[] argb, int srcW, int srcH) throws OrtException {
+        DetectionBuffer out = new DetectionBuffer();
+        detect(argb, srcW, srcH, out);
+        return out.toList();
+    }
+
+    /** As {@link #detect(int[], int, int)}, replacing the contents of out (no allocation). */
+    public synchronized void detect(int[] argb, int srcW, int srcH, @NonNull DetectionBuffer out)
+            throws OrtException {
         // Fused preprocessing: fills reusable inputTensor
-        LetterboxParams lb = fillInputTensorFromSrc(argb, srcW, srcH);
+        long t0 = System.nanoTime();
+        runAndParse(fillInputTensorFromSrc(argb, srcW, srcH), t0, out);
+    }
+
+    /**
+     * Detect straight from a YUV_420_888 camera frame. Boxes are returned in the upright
+     * (rotated) frame space, i.e. the same space the int[] overload gets after Yuv.rotate.
+     */
+    public List<Detection> detect(@NonNull ImageProxy image, int rotation) throws OrtException {
+        return detect(Yuv.Planes.of(image), rotation);
+    }
 
-        // Make sure buffer position is at 0 before creating tensor
-        inputBuffer.rewind();
+    public List<Detection> detect(@NonNull Yuv.Planes planes, int rotation) throws OrtException {
+        return detect(planes, rotation, 0);
+    }
 
-        try (OnnxTensor input = OnnxTensor.createTensor(
-                env, inputBuffer, new long[]{1, 3, inputH, inputW});
-             OrtSession.Result out = session.run(
-                     Collections.singletonMap(inputName, input))) {
+    /**
+     * As {@link #detect(Yuv.Planes, int)}, with the input blur applied at model resolution
+     * inside the letterbox pass (blurRadius is in camera pixels, 0 = no blur).
+     */
+    public List<Detection> detect(@NonNull Yuv.Planes planes, int rotation, int blurRadius)
+            throws OrtException {
+        DetectionBuffer out = new DetectionBuffer();
+        detect(planes, rotation, blurRadius, out);
+        return out.toList();
+    }
+
+    public synchronized void detect(@NonNull Yuv.Planes planes, int rotation, int blurRadius,
+                                    @NonNull DetectionBuffer out) throws OrtException {
+        checkRotation(rotation);
+        long t0 = System.nanoTime();
+        ResamplePlan.Interpolation mode = interpolation;
+        InputTensor t = inputFor(planes.width, planes.height, rotation, mode);
+        ResamplePlan plan = plans.letterbox(planes.width, planes.height, rotation,
+                t.width, t.height, mode);
+        letterbox(plan, planes, blurRadius, t, arena);
+        runAndParse(plan, t0, out);
+    }
 
-            OnnxValue ov = out.get(0);
-            return parse(ov, lb.scale, lb.padX, lb.padY, srcW, srcH);
+    /**
+     * Detect from a camera frame, resampling from the frame pyramid when the interpolation
+     * mode benefits from it. NEAREST samples the YUV / RGBA source directly (it only touches
+     * as many pixels as the model input has); BILINEAR / AREA start from the smallest pyramid
+     * level that still covers the letterbox content, shared with the other consumers of the
+     * frame.
+     * Boxes are in the upright full-resolution frame space.
+     */
+    public List<Detection> detect(@NonNull CameraFrame frame, int blurRadius) throws OrtException {
+        DetectionBuffer out = new DetectionBuffer();
+        detect(frame, blurRadius, out);
+        return out.toList();
+    }
+
+    /**
+     * As {@link #detect(CameraFrame, int)}, replacing the contents of out (no allocation). In
+     * crop mode this is a crop pass or a full frame, as the {@link RoiScheduler} decides.
+     */
+    public synchronized void detect(@NonNull CameraFrame frame, int blurRadius,
+                                    @NonNull DetectionBuffer out) throws OrtException {
+        CascadePolicy c = cascade;
+        if (c == null) {
+            detectMain(frame, blurRadius, out);
+            return;
+        }
+        long t0 = System.nanoTime();
+        if (c.runGate()) {
+            gate.detect(frame, blurRadius, out);
+            long t1 = System.nanoTime();
+            if (!c.escalate(out, t1 - t0)) {
+                // Nothing worth the main model: an empty frame that still counts for the fps.
+                // Boxes from before the gap are stale, so the next main run is a full frame.
+                out.clear();
+                if (roi != null) roi.reset();
+                sizeController.tick(t1);
+                logCascade(c);
+                return;
+            }
+            t0 = t1;
+        }
+        detectMain(frame, blurRadius, out);
+        c.mainDone(out, System.nanoTime() - t0);
+        logCascade(c);
+    }
+
+    /**
+     * One full-frame pass of this model for a user-requested capture, e.g. from another camera:
+     * no gate, no crops, and the realtime state (crop schedule, cascade mode) is neither used
+     * nor changed. In foveated mode the pass is foveated, as every full-frame pass is.
+     */
+    public List<Detection> detectFullFrame(@NonNull CameraFrame frame, int blurRadius)
+            throws OrtException {
+        DetectionBuffer out = new DetectionBuffer();
+        detectFullFrame(frame, blurRadius, out);
+        return out.toList();
+    }
+
+    /** As {@link #detectFullFrame(CameraFrame, int)}, replacing the contents of out. */
+    public synchronized void detectFullFrame(@NonNull CameraFrame frame, int blurRadius,
+                                             @NonNull DetectionBuffer out) throws OrtException {
+        if (fovea != null) {
+            detectFoveated(frame, fovea, blurRadius, out);
+        } else {
+            detectFull(frame, blurRadius, out);
+        }
+    }
+
+    private static void logCascade(CascadePolicy c) {
+        if (c.frames() % CASCADE_LOG_EVERY == 0) Log.i(TAG, "Cascade " + c);
+    }
+
+    // This model's pass: crops or the full frame in crop mode, otherwise the full frame
+    private void detectMain(CameraFrame frame, int blurRadius, DetectionBuffer out)
+            throws OrtException {
+        RoiScheduler r = roi;
+        int n = r == null ? 0 : r.plan(frame.width(), frame.height());
+        if (n > 0) {
+            detectCrops(frame, r, n, blurRadius, out);
+        } else {
+            detectFullFrame(frame, blurRadius, out);
+        }
+        if (r != null) {
+            r.update(out, n == 0);
+            if (r.frames() % ROI_LOG_EVERY == 0) {
+                Log.i(TAG, String.format(Locale.US, "Crop mode: %.1f%% of %d frames on crops",
+                        100f * r.roiFraction(), r.frames()));
+            }
+        }
+    }
+
+    private void detectFull(CameraFrame frame, int blurRadius, DetectionBuffer out)
+            throws OrtException {
+        ResamplePlan.Interpolation mode = interpolation;
+        long t0 = System.nanoTime();
+        InputTensor t = inputFor(frame.sensorWidth(), frame.sensorHeight(), frame.rotation, mode);
+        ResamplePlan full = plans.letterbox(frame.sensorWidth(), frame.sensorHeight(),
+                frame.rotation, t.width, t.height, mode);
+        int k = mode == ResamplePlan.Interpolation.NEAREST
+                ? 0 : frame.levelFor(full.contentW, full.contentH);
+        if (k == 0) {
+            if (frame.planes != null) letterbox(full, frame.planes, blurRadius, t, arena);
+            else letterbox(full, frame.rgba, blurRadius, t, arena);
+            runAndParse(full, t0, out);
+            return;
+        }
+        CameraFrame.Level level = frame.level(k);
+        ResamplePlan plan = plans.letterbox(level.width, level.height, frame.rotation,
+                t.width, t.height, mode);
+        letterbox(plan, level.argb, full.scaleX, blurRadius, t, arena);
+        runAndParse(plan, frame.width(), frame.height(), t0, out);
+    }
+
+    /**
+     * One run over the n crops the scheduler planned, packed as cells of one input: one cell,
+     * two side by side, or a 2 x 2 grid. Each cell's boxes are mapped back through its plan.
+     */
+    private void detectCrops(CameraFrame frame, RoiScheduler r, int n, int blurRadius,
+                             DetectionBuffer dets) throws OrtException {
+        ResamplePlan.Interpolation mode = interpolation;
+        long t0 = System.nanoTime();
+        int layout = n == 1 ? 0 : n == 2 ? 1 : 2;
+        int cols = layout == 0 ? 1 : 2, rows = layout == 2 ? 2 : 1;
+        InputTensor t = mosaicInputFor(layout, cols, rows, r.settings.cellSize,
+                frame.width(), frame.height());
+        OnnxTensor tensor = inputShape.isDynamic() ? mosaicTensors[layout] : input;
+        t.clear();
+        int cellW = t.width / cols, cellH = t.height / rows;
+        for (int i = 0; i < n; i++) {
+            ResamplePlan plan = roiPlanCache.crop(frame.sensorWidth(), frame.sensorHeight(),
+                    frame.rotation, r.x(i), r.y(i), r.width(i), r.height(i), t.width, t.height,
+                    (i % cols) * cellW, (i / cols) * cellH, cellW, cellH, mode);
+            if (frame.planes != null) letterbox(plan, frame.planes, blurRadius, t, arena);
+            else letterbox(plan, frame.rgba, blurRadius, t, arena);
+            roiPlans[i] = plan;
+        }
+
+        long t1 = System.nanoTime();
+        long runNs = runMosaic(t, tensor, dets);
+        mapCells(dets, roiPlans, n);
+        nmsEngine.run(dets);
+        long t3 = System.nanoTime();
+        if (roiStats == null) roiStats = new InferenceStats(TAG, 30, t.nativeBytes());
+        roiStats.record(t1 - t0, runNs, t3 - t1 - runNs);
+        sizeController.tick(t3);
+    }
+
+    /**
+     * One run over a two-cell input: the fovea window at native resolution on the left, the
+     * whole frame at low resolution on the right, merged into one result. Two dynamic cells
+     * are at most as many pixels as a 640 x 640 input.
+     */
+    private void detectFoveated(CameraFrame frame, Foveation f, int blurRadius,
+                                DetectionBuffer dets) throws OrtException {
+        ResamplePlan.Interpolation mode = interpolation;
+        long t0 = System.nanoTime();
+        int frameW = frame.width(), frameH = frame.height();
+        InputTensor t = mosaicInputFor(FOVEA_SLOT, 2, 1, f.settings.cellSize, frameW, frameH);
+        OnnxTensor tensor = inputShape.isDynamic() ? mosaicTensors[FOVEA_SLOT] : input;
+        t.clear();
+        int cellW = t.width / 2, cellH = t.height;
+        f.window(frameW, frameH, cellW, cellH);
+        ResamplePlan window = roiPlanCache.crop(frame.sensorWidth(), frame.sensorHeight(),
+                frame.rotation, f.x(), f.y(), f.width(), f.height(), t.width, t.height,
+                0, 0, cellW, cellH, mode);
+        ResamplePlan full = roiPlanCache.crop(frame.sensorWidth(), frame.sensorHeight(),
+                frame.rotation, 0, 0, frameW, frameH, t.width, t.height,
+                cellW, 0, cellW, cellH, mode);
+        if (frame.planes != null) {
+            letterbox(window, frame.planes, blurRadius, t, arena);
+            letterbox(full, frame.planes, blurRadius, t, arena);
+        } else {
+            letterbox(window, frame.rgba, blurRadius, t, arena);
+            letterbox(full, frame.rgba, blurRadius, t, arena);
+        }
+
+        long t1 = System.nanoTime();
+        long runNs = runMosaic(t, tensor, dets);
+        f.merge(dets, window, full, iouThresh);
+        nmsEngine.run(dets);
+        long t3 = System.nanoTime();
+        if (foveaStats == null) foveaStats = new InferenceStats(TAG, 30, t.nativeBytes());
+        foveaStats.record(t1 - t0, runNs, t3 - t1 - runNs);
+        sizeController.tick(t3);
+    }
+
+    // Runs a mosaic input and decodes its boxes in model-input pixels; returns the run time
+    private long runMosaic(InputTensor t, OnnxTensor tensor, DetectionBuffer dets)
+            throws OrtException {
+        long t1 = System.nanoTime();
+        FloatBuffer out = outputs.run(session, inputName, tensor, t.width, t.height);
+        long t2 = System.nanoTime();
+        decoder.decode(out, outputs.dim1, outputs.dim2, confThresh,
+                1f, 0f, 0f, t.width, t.height, dets);
+        return t2 - t1;
+    }
+
+    /**
+     * Moves boxes from mosaic coordinates to frame coordinates, in place. A box belongs to the
+     * cell holding its centre and is clipped to that cell's content; boxes centred on padding
+     * are dropped.
+     */
+    static void mapCells(DetectionBuffer dets, ResamplePlan[] plans, int n) {
+        int kept = 0;
+        for (int i = 0; i < dets.size(); i++) {
+            float cx = 0.5f * (dets.x1[i] + dets.x2[i]), cy = 0.5f * (dets.y1[i] + dets.y2[i]);
+            for (int c = 0; c < n; c++) {
+                if (!plans[c].inContent(cx, cy)) continue;
+                plans[c].mapToFrame(dets, i, kept++);
+                break;
+            }
+        }
+        dets.truncate(kept);
+    }
+
+    // Mosaic input of cols x rows cells in a slot; a fixed-shape model reuses its one input
+    private InputTensor mosaicInputFor(int slot, int cols, int rows, int cell,
+                                       int frameW, int frameH) throws OrtException {
+        if (!inputShape.isDynamic()) return inputFor(frameW, frameH);
+        InputTensor t = mosaicInputs[slot];
+        if (t != null && t.width == cols * cell && t.height == rows * cell) return t;
+        if (mosaicTensors[slot] != null) mosaicTensors[slot].close();
+        t = InputTensor.unitScale(cols * cell, rows * cell, inputFormat);
+        mosaicTensors[slot] = t.createOnnxTensor(env);
+        mosaicInputs[slot] = t;
+        Log.i(TAG, "Mosaic input " + t.width + "x" + t.height);
+        return t;
+    }
+
+    private void runAndParse(ResamplePlan plan, long prepStartNs, DetectionBuffer out)
+            throws OrtException {
+        runAndParse(plan, plan.uprightWidth(), plan.uprightHeight(), prepStartNs, out);
+    }
+
+    /**
+     * Runs the model and maps boxes into an imgW x imgH frame (the plan may be on a smaller
+     * level).
+     */
+    private void runAndParse(ResamplePlan plan, int imgW, int imgH, long prepStartNs,
+                             DetectionBuffer dets) throws OrtException {
+        float scale = imgW == plan.uprightWidth()
+                ? plan.scaleX
+                : plan.scaleX * plan.uprightWidth() / (float) imgW;
+        long t1 = System.nanoTime();
+        FloatBuffer out = outputs.run(session, inputName, input,
+                inputTensor.width, inputTensor.height);
+        long t2 = System.nanoTime();
+        parse(out, outputs.dim1, outputs.dim2, scale, plan.padX, plan.padY, imgW, imgH, dets);
+        long t3 = System.nanoTime();
+        stats.record(t1 - prepStartNs, t2 - t1, t3 - t2);
+        InputSizeController sizes = sizeController;
+        if (sizes.record(t3 - prepStartNs, t3)) {
+            Log.i(TAG, String.format(Locale.US,
+                    "Input long side -> %d (%.1f fps, budget %.0f ms)",
+                    sizes.size(), sizes.fps(), sizes.targetMs()));
+        }
+    }
+
+    private static void checkRotation(int rotation) {
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
         }
     }
 
     // ---------------------------------------------------------------------------------------------
     //  Parse YOLOv8 output + NMS
     // ---------------------------------------------------------------------------------------------
-    private List<Detection> parse(OnnxValue val,
-                                  float scale, float padX, float padY,
-                                  int imgW, int imgH) throws OrtException {
-        OnnxTensor t = (OnnxTensor) val;
-        long[] shape = t.getInfo().getShape(); // expect [1,84,N] or [1,N,84]
+    // out is [1, dim1, dim2]: [1,84,N] or [1,N,84], read in place from the pinned output
+    private void parse(FloatBuffer out, int dim1, int dim2,
+                       float scale, float padX, float padY,
+                       int imgW, int imgH, DetectionBuffer dets) {
+        decoder.decode(out, dim1, dim2, confThresh, scale, padX, padY, imgW, imgH, dets);
+        nmsEngine.run(dets);
+    }
 
+    /**
+     * The original decoder: copies the output to a float[] and scans it anchor by anchor.
+     * Kept as the reference the {@link YoloDecoder} is tested and benchmarked against.
+     */
+    static List<Detection> decodeReference(FloatBuffer fb, int dim1, int dim2, float confThresh,
+                                           float scale, float padX, float padY,
+                                           int imgW, int imgH) {
         // Get flat float array from tensor
-        FloatBuffer fb = t.getFloatBuffer();
         float[] flat = new float[fb.remaining()];
-        fb.get(flat);
+        fb.duplicate().get(flat);
 
-        int dim1 = (int) shape[1];
-        int dim2 = (int) shape[2];
         boolean colsAreProps = (dim1 == 84); // [1,84,N] if true
         int props = colsAreProps ? dim1 : dim2;
         int clsCount = props - 4;
@@ -241,7 +938,7 @@ public class ObjectDetector implements AutoCloseable {
             }
         }
 
-        return nms(dets, iouThresh);
+        return dets;
     }
 
     private static float clamp(float v, int lo, int hi) {
@@ -258,7 +955,8 @@ public class ObjectDetector implements AutoCloseable {
         return inter / (a + b - inter + 1e-6f);
     }
 
-    private static List<Detection> nms(List<Detection> in, float iouTh) {
+    /** The original list-based greedy NMS, the reference for {@link NmsEngine}'s hard mode. */
+    static List<Detection> nms(List<Detection> in, float iouTh) {
         ArrayList<Detection> dets = new ArrayList<>(in);
         dets.sort((d1, d2) -> Float.compare(d2.score, d1.score));
         List<Detection> keep = new ArrayList<>();
@@ -271,12 +969,25 @@ public class ObjectDetector implements AutoCloseable {
     }
 
     @Override
-    public void close() throws Exception {
+    public synchronized void close() throws Exception {
+        closeInputs();
+        outputs.close();
         session.close();
+        if (gate != null) gate.close();
+        gate = null;
+        cascade = null;
         // env is a singleton managed by ORT; you usually don’t close it here
         // to avoid interfering with other sessions.
     }
 
+    private static void closeQuietly(ObjectDetector d) {
+        try {
+            d.close();
+        } catch (Exception e) {
+            Log.w(TAG, "Gate close failed", e);
+        }
+    }
+
     // Utility to read asset fully
     static class Util {
         static byte[] readAllBytes(android.content.res.AssetManager am, String name) {
@@ -0,0 +1,171 @@
+package vn.edu.usth.objectdetectmobile;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens ORT sessions through a cache of graph-optimized models.
+ *
+ * The first session for a (model, optimization settings) pair is created with
+ * setOptimizedModelFilePath, so ORT writes the graph it ends up with (constant folding,
+ * fusions, layout transforms) next to the source model. Later sessions load that file with
+ * optimizations disabled and skip the graph rewrite, which is most of session creation time
+ * for yolov8m and Depth Anything. A sidecar .meta file records what the cached graph was built
+ * from: the source model's SHA-256 (recomputed only when its size or mtime changes), the ORT
+ * version and the optimization-relevant part of the {@link SessionProfile}. Any mismatch
+ * rebuilds the entry; any I/O problem just falls back to an uncached session.
+ *
+ * The cached graph may contain device-specific fused kernels, which is fine for an app-private
+ * cache that never leaves the device.
+ */
+final class OptimizedModelCache {
+    private static final String TAG = "OptimizedModelCache";
+    private static final String SUFFIX = ".opt";
+
+    // Entries already checked in this process, with the source size/mtime they were checked
+    // against, so the per-estimate depth sessions skip the .meta read and are not logged
+    private static final Map<String, String> validated = new ConcurrentHashMap<>();
+
+    private OptimizedModelCache() {}
+
+    /**
+     * A session for modelPath configured by profile, via the cache. Session creation time and
+     * whether the cache was hit are logged under tag.
+     */
+    @NonNull
+    static OrtSession open(@NonNull OrtEnvironment env, @NonNull String modelPath,
+                           @NonNull SessionProfile profile, @NonNull String tag)
+            throws OrtException {
+        long t0 = System.nanoTime();
+        File source = new File(modelPath);
+        String key = profileKey(profile);
+        File cached = new File(source.getParentFile(), source.getName() + SUFFIX + "."
+                + Integer.toHexString(key.hashCode()) + ".onnx");
+        File metaFile = new File(cached.getPath() + ".meta");
+
+        String stamp = source.length() + "@" + source.lastModified();
+        boolean known = stamp.equals(validated.get(cached.getPath()));
+
+        Properties expected = null;
+        try {
+            if (!known) expected = expectedMeta(source, metaFile, key);
+            if (known || (cached.length() > 0 && expected.equals(readMeta(metaFile)))) {
+                OrtSession session;
+                try (OrtSession.SessionOptions so = profile
+                        .withOptLevel(OrtSession.SessionOptions.OptLevel.NO_OPT).toOptions()) {
+                    session = env.createSession(cached.getPath(), so);
+                }
+                validated.put(cached.getPath(), stamp);
+                if (!known) logCreated(tag, source, "cache hit", t0);
+                return session;
+            }
+        } catch (IOException | OrtException | RuntimeException e) {
+            // A truncated or stale file; rebuild it below
+            Log.w(TAG, "Optimized model cache unusable for " + source.getName(), e);
+            validated.remove(cached.getPath());
+            expected = null;
+        }
+
+        // Miss: optimize from the source and let ORT write the result next to it
+        File tmp = new File(cached.getPath() + ".tmp");
+        OrtSession session;
+        try (OrtSession.SessionOptions so = profile.toOptions()) {
+            so.setOptimizedModelFilePath(tmp.getPath());
+            session = env.createSession(modelPath, so);
+        }
+        try {
+            metaFile.delete();
+            if (expected == null) expected = expectedMeta(source, metaFile, key);
+            if (tmp.length() > 0 && (cached.delete() || !cached.exists())
+                    && tmp.renameTo(cached)) {
+                writeMeta(metaFile, expected);    // written last: marks the entry complete
+                validated.put(cached.getPath(), stamp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache optimized " + source.getName(), e);
+        } finally {
+            tmp.delete();
+        }
+        logCreated(tag, source, "cache miss, optimized graph saved", t0);
+        return session;
+    }
+
+    // Graph-affecting settings only; thread counts and memory toggles do not change the graph
+    static String profileKey(SessionProfile profile) {
+        return profile.optLevel + " " + profile.freeDimensions;
+    }
+
+    private static Properties expectedMeta(File source, File metaFile, String key)
+            throws IOException {
+        Properties previous = readMeta(metaFile);
+        String size = String.valueOf(source.length());
+        String mtime = String.valueOf(source.lastModified());
+        // Rehashing a 50-100 MB model costs a few hundred ms, so reuse the recorded hash
+        // while the file is evidently unchanged
+        String hash = previous != null && size.equals(previous.getProperty("source.size"))
+                && mtime.equals(previous.getProperty("source.mtime"))
+                ? previous.getProperty("source.sha256")
+                : sha256(source);
+        Properties p = new Properties();
+        p.setProperty("source.size", size);
+        p.setProperty("source.mtime", mtime);
+        p.setProperty("source.sha256", hash != null ? hash : sha256(source));
+        p.setProperty("ort.version",
+                String.valueOf(OrtEnvironment.getEnvironment().getVersion()));
+        p.setProperty("profile", key);
+        return p;
+    }
+
+    private static Properties readMeta(File metaFile) throws IOException {
+        if (!metaFile.isFile()) return null;
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(metaFile)) {
+            p.load(in);
+        }
+        return p;
+    }
+
+    private static void writeMeta(File metaFile, Properties p) throws IOException {
+        try (OutputStream out = new FileOutputStream(metaFile)) {
+            p.store(out, "Optimized model cache entry");
+        }
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            int r;
+            while ((r = in.read(buf)) != -1) md.update(buf, 0, r);
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : md.digest()) sb.append(String.format(Locale.US, "%02x", b));
+        return sb.toString();
+    }
+
+    private static void logCreated(String tag, File source, String how, long t0) {
+        Log.i(tag, String.format(Locale.US, "Session for %s created in %.0f ms (%s)",
+                source.getName(), (System.nanoTime() - t0) / 1e6, how));
+    }
+}
@@ -8,14 +8,24 @@ import android.view.View;
 import androidx.annotation.NonNull;
 
 import java.util.*;
-import java.util.Locale;
 
 public class OverlayView extends View {
     private final Paint box = new Paint();
     private final Paint text = new Paint();
-    private List<ObjectDetector.Detection> dets = new ArrayList<>();
+    // Double buffer: producers fill pending under the lock, onDraw swaps it in. Both grow to
+    // the usual detection count once, after which a frame draws without allocating.
+    private final Object lock = new Object();
+    private DetectionBuffer pending = new DetectionBuffer();
+    private DetectionBuffer drawn = new DetectionBuffer();
+    private boolean dirty;
+    private int pendingW = 1, pendingH = 1;
+    private final StringBuilder label = new StringBuilder(32);
     private String[] labels = new String[0];
     private int frameW = 1, frameH = 1;
+    // Detector input size and achieved rate, drawn in the corner; 0 = not shown
+    private volatile int statusInputSize;
+    private volatile float statusFps;
+    private final StringBuilder status = new StringBuilder(24);
 
     public OverlayView(Context c, AttributeSet a) {
         super(c, a);
@@ -30,36 +40,86 @@ public class OverlayView extends View {
     public void setLabels(String[] labels) { this.labels = labels; }
 
     public void setDetections(List<ObjectDetector.Detection> dets, int frameW, int frameH) {
-        this.dets = dets != null ? dets : new ArrayList<>();
-        this.frameW = Math.max(1, frameW);
-        this.frameH = Math.max(1, frameH);
-        invalidate();
+        synchronized (lock) {
+            pending.clear();
+            if (dets != null) pending.addAll(dets);
+            publish(frameW, frameH);
+        }
     }
 
     public void setDetections(List<ObjectDetector.Detection> dets) {
-        setDetections(dets, frameW, frameH);
+        setDetections(dets, pendingW, pendingH);
+    }
+
+    /** Copies dets for the next draw; may be called from any thread. */
+    public void setDetections(@NonNull DetectionBuffer dets, int frameW, int frameH) {
+        synchronized (lock) {
+            pending.copyFrom(dets);
+            publish(frameW, frameH);
+        }
+    }
+
+    /** Detector input long side and frames per second for the status line; any thread. */
+    public void setStatus(int inputSize, float fps) {
+        statusInputSize = inputSize;
+        statusFps = fps;
+    }
+
+    private void publish(int frameW, int frameH) {
+        pendingW = Math.max(1, frameW);
+        pendingH = Math.max(1, frameH);
+        dirty = true;
+        postInvalidate();
     }
 
     @Override protected void onDraw(@NonNull Canvas canvas) {
         super.onDraw(canvas);
+        synchronized (lock) {
+            if (dirty) {
+                DetectionBuffer t = drawn;
+                drawn = pending;
+                pending = t;
+                frameW = pendingW;
+                frameH = pendingH;
+                dirty = false;
+            }
+        }
+        DetectionBuffer dets = drawn;
         int vw = getWidth(), vh = getHeight();
         float scale = Math.min(vw / (float) frameW, vh / (float) frameH);
         float offsetX = (vw - frameW * scale) / 2f;
         float offsetY = (vh - frameH * scale) / 2f;
-        for (ObjectDetector.Detection d : dets) {
+        for (int i = 0; i < dets.size(); i++) {
             box.setColor(Color.GREEN);
-            float left = offsetX + d.x1 * scale;
-            float top = offsetY + d.y1 * scale;
-            float right = offsetX + d.x2 * scale;
-            float bottom = offsetY + d.y2 * scale;
+            float left = offsetX + dets.x1(i) * scale;
+            float top = offsetY + dets.y1(i) * scale;
+            float right = offsetX + dets.x2(i) * scale;
+            float bottom = offsetY + dets.y2(i) * scale;
             canvas.drawRect(left, top, right, bottom, box);
-            String lab = (d.cls >= 0 && d.cls < labels.length) ? labels[d.cls] : ("cls " + d.cls);
-            StringBuilder sb = new StringBuilder();
-            sb.append(lab).append(String.format(Locale.US, " %.2f", d.score));
-            if (!Float.isNaN(d.depth)) {
-                sb.append(String.format(Locale.US, " %.0fcm", d.depth));
-            }
-            canvas.drawText(sb.toString(), left + 6, Math.max(0, top - 8), text);
+            int cls = dets.cls(i);
+            StringBuilder sb = label;
+            sb.setLength(0);
+            if (dets.id(i) >= 0) sb.append('#').append(dets.id(i)).append(' ');
+            if (cls >= 0 && cls < labels.length) sb.append(labels[cls]);
+            else sb.append("cls ").append(cls);
+            // " %.2f" and " %.0fcm" without String.format's per-call allocations
+            int hundredths = Math.round(dets.score(i) * 100f);
+            sb.append(' ').append(hundredths / 100).append('.');
+            if (hundredths % 100 < 10) sb.append('0');
+            sb.append(hundredths % 100);
+            float depth = dets.depth(i);
+            if (!Float.isNaN(depth)) sb.append(' ').append(Math.round(depth)).append("cm");
+            canvas.drawText(sb, 0, sb.length(), left + 6, Math.max(0, top - 8), text);
+        }
+        int inputSize = statusInputSize;
+        if (inputSize > 0) {
+            // "640px 12.3fps"
+            StringBuilder sb = status;
+            sb.setLength(0);
+            int tenths = Math.round(statusFps * 10f);
+            sb.append(inputSize).append("px ").append(tenths / 10).append('.')
+                    .append(tenths % 10).append("fps");
+            canvas.drawText(sb, 0, sb.length(), 16f, vh - 16f, text);
         }
     }
 }
@@ -0,0 +1,155 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Row-band parallel-for for the pure-Java pixel kernels (YUV conversion, rotation, blur,
+ * resampling into the input tensors, depth resize).
+ *
+ * A kernel hands over its row count, a rough cost per row (in pixels touched) and a band
+ * body {@code (y0, y1)}. Small jobs run serially on the calling thread; larger ones are split
+ * recursively on a bounded work-stealing pool down to an adaptive grain: each band does at
+ * least {@link #MIN_BAND_WORK} pixels of work, and there are about {@link #BANDS_PER_THREAD}
+ * bands per thread so idle (or faster) cores can steal from slow ones.
+ *
+ * Bands must write disjoint outputs. A band body that needs a scratch row takes it from
+ * {@link #scratch(int)}, which is per thread and reused across calls.
+ */
+final class ParallelRows {
+
+    /** Band body over rows [y0, y1). */
+    interface Band {
+        void run(int y0, int y1);
+    }
+
+    /** Below this much work (pixels) the job runs on the calling thread. */
+    static final int SERIAL_THRESHOLD = 64 * 1024;
+    /** Minimum work per band, so fork/steal overhead stays small next to the band. */
+    static final int MIN_BAND_WORK = 16 * 1024;
+    static final int BANDS_PER_THREAD = 4;
+    /** Upper bound of the shared pool; ORT's intra-op threads need the remaining cores. */
+    static final int MAX_SHARED_THREADS = 4;
+
+    private static final ThreadLocal<int[]> SCRATCH = new ThreadLocal<>();
+    private static final AtomicInteger WORKER_IDS = new AtomicInteger();
+    private static volatile ParallelRows shared;
+
+    final int threads;
+    private final ForkJoinPool pool;   // null when threads == 1
+
+    ParallelRows(int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = this.threads > 1
+                ? new ForkJoinPool(this.threads, ParallelRows::newWorker, null, false)
+                : null;
+    }
+
+    /** Process-wide runtime used by the kernels, sized from the available cores. */
+    static ParallelRows shared() {
+        ParallelRows p = shared;
+        if (p == null) {
+            synchronized (ParallelRows.class) {
+                p = shared;
+                if (p == null) {
+                    int cores = Runtime.getRuntime().availableProcessors();
+                    p = new ParallelRows(Math.min(MAX_SHARED_THREADS, Math.max(1, cores / 2)));
+                    shared = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Replaces the shared runtime (benchmarks, tests) and returns the previous one. The
+     * caller owns the returned instance and shuts it down when done.
+     */
+    static synchronized ParallelRows install(ParallelRows runtime) {
+        ParallelRows previous = shared;
+        shared = runtime;
+        return previous;
+    }
+
+    /** Runs band over [0, rows) on the shared runtime. */
+    static void run(int rows, int workPerRow, Band band) {
+        shared().forRows(rows, workPerRow, 1, band);
+    }
+
+    /** Same as {@link #run(int, int, Band)} with bands of at least minRows rows. */
+    static void run(int rows, int workPerRow, int minRows, Band band) {
+        shared().forRows(rows, workPerRow, minRows, band);
+    }
+
+    void forRows(int rows, int workPerRow, int minRows, Band band) {
+        if (rows <= 0) return;
+        long work = (long) rows * Math.max(1, workPerRow);
+        int grain = grain(rows, workPerRow, minRows);
+        if (pool == null || work < SERIAL_THRESHOLD || grain >= rows) {
+            band.run(0, rows);
+            return;
+        }
+        Split task = new Split(band, 0, rows, grain);
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();      // already on one of our workers
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    // Rows per band: enough work to amortize the split, enough bands to balance the cores.
+    int grain(int rows, int workPerRow, int minRows) {
+        int byWork = (MIN_BAND_WORK + Math.max(1, workPerRow) - 1) / Math.max(1, workPerRow);
+        int byBalance = rows / (threads * BANDS_PER_THREAD);
+        return Math.max(Math.max(1, minRows), Math.max(byWork, byBalance));
+    }
+
+    void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    /** Per-thread int scratch of at least n entries; contents are undefined. */
+    static int[] scratch(int n) {
+        int[] s = SCRATCH.get();
+        if (s == null || s.length < n) {
+            s = new int[n];
+            SCRATCH.set(s);
+        }
+        return s;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        t.setName("pixel-rows-" + WORKER_IDS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static final class Split extends RecursiveAction {
+        private final Band band;
+        private final int y0, y1, grain;
+
+        Split(Band band, int y0, int y1, int grain) {
+            this.band = band;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (y1 - y0 <= grain) {
+                band.run(y0, y1);
+                return;
+            }
+            int mid = (y0 + y1) >>> 1;
+            Split left = new Split(band, y0, mid, grain);
+            left.fork();
+            new Split(band, mid, y1, grain).compute();
+            left.join();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package vn.edu.usth.objectdetectmobile;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The first output of a session, written by ORT straight into a direct buffer the caller
+ * reads: session.run with pinned outputs, one pinned tensor per input size.
+ *
+ * OnnxTensor.getFloatBuffer() allocates a heap buffer the size of the output and copies into
+ * it on every call (~2.7 MB per frame for a 640 x 640 YOLOv8 head). A pinned output has no
+ * such copy: the decoder reads the values where the model wrote them.
+ *
+ * The output shape for an input size is learned from its first run, which is unpinned (and
+ * copied once into the new buffer); later runs at that size are pinned. A model whose output
+ * is not FLOAT (e.g. an fp16 head) always runs unpinned, through getFloatBuffer().
+ *
+ * Not thread-safe; the detector calls it under its lock.
+ */
+final class PinnedOutputs implements AutoCloseable {
+
+    private static final class Entry {
+        final int inW, inH;
+        final int dim1, dim2;
+        final FloatBuffer buffer;
+        final OnnxTensor tensor;
+        final Map<String, OnnxTensor> binding;
+
+        Entry(int inW, int inH, long[] shape, FloatBuffer buffer, OnnxTensor tensor,
+              String outputName) {
+            this.inW = inW;
+            this.inH = inH;
+            this.dim1 = (int) shape[1];
+            this.dim2 = (int) shape[2];
+            this.buffer = buffer;
+            this.tensor = tensor;
+            this.binding = Collections.singletonMap(outputName, tensor);
+        }
+    }
+
+    private final OrtEnvironment env;
+    private final String outputName;
+    private final boolean pinnable;
+    // One per input size seen: a handful (size levels and mosaic layouts), so a list scan
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** Output dims 1 and 2 of the last {@link #run}: [1, dim1, dim2]. */
+    int dim1, dim2;
+
+    PinnedOutputs(OrtEnvironment env, OrtSession session) throws OrtException {
+        this.env = env;
+        Map.Entry<String, NodeInfo> out = session.getOutputInfo().entrySet().iterator().next();
+        outputName = out.getKey();
+        pinnable = out.getValue().getInfo() instanceof TensorInfo
+                && ((TensorInfo) out.getValue().getInfo()).type == OnnxJavaType.FLOAT;
+    }
+
+    /**
+     * Runs session on input, an inW x inH model input, and returns the first output (rank 3)
+     * positioned at 0, with its dims in {@link #dim1} / {@link #dim2}. The buffer is valid
+     * until the next run at the same size.
+     */
+    FloatBuffer run(OrtSession session, String inputName, OnnxTensor input, int inW, int inH)
+            throws OrtException {
+        Map<String, OnnxTensor> inputs = Collections.singletonMap(inputName, input);
+        Entry e = find(inW, inH);
+        if (e != null) {
+            session.run(inputs, e.binding).close();
+            dim1 = e.dim1;
+            dim2 = e.dim2;
+            e.buffer.rewind();
+            return e.buffer;
+        }
+        try (OrtSession.Result out = session.run(inputs)) {
+            OnnxTensor o = (OnnxTensor) out.get(0);
+            long[] shape = o.getInfo().getShape();
+            dim1 = (int) shape[1];
+            dim2 = (int) shape[2];
+            FloatBuffer values = o.getFloatBuffer();
+            if (!pinnable) return values;
+            e = pin(inW, inH, shape);
+            e.buffer.put(values);
+            e.buffer.rewind();
+            return e.buffer;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Entry e : entries) e.tensor.close();
+        entries.clear();
+    }
+
+    private Entry find(int inW, int inH) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            if (e.inW == inW && e.inH == inH) return e;
+        }
+        return null;
+    }
+
+    private Entry pin(int inW, int inH, long[] shape) throws OrtException {
+        int n = 1;
+        for (long d : shape) n *= (int) d;
+        FloatBuffer buffer = ByteBuffer.allocateDirect(4 * n).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        Entry e = new Entry(inW, inH, shape, buffer,
+                OnnxTensor.createTensor(env, buffer, shape), outputName);
+        entries.add(e);
+        return e;
+    }
+}
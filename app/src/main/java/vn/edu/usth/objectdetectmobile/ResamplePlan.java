@@ -0,0 +1,597 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Precomputed geometry for resampling a camera frame into a model input: letterbox/fit
+ * placement, rotation and per-column / per-row source index tables (plus bilinear weights or
+ * area spans). The frame geometry rarely changes, so plans are built once and cached
+ * (see {@link Cache}); per-frame work is then pure table-driven gathers.
+ *
+ * Rotation is folded into the tables: output columns and rows are in the upright frame, and
+ * each one maps to a single axis of the sensor-oriented source (for 90/270 the axes swap).
+ * That keeps every source offset separable: offset = rowTable[y] + colTable[x].
+ */
+final class ResamplePlan {
+
+    enum Interpolation {
+        /** One tap, same index math as the original (int) (x / scale) resize. Fastest. */
+        NEAREST,
+        /** Four taps with 8-bit fixed-point weights, pixel-centre aligned. */
+        BILINEAR,
+        /**
+         * Box average over the source span of each output pixel (acts as NEAREST when
+         * upscaling).
+         */
+        AREA
+    }
+
+    private static final int W_ONE = 256; // fixed-point 1.0 for bilinear weights
+
+    // Cache key
+    final int srcW, srcH;           // sensor-oriented source size
+    final int rotation;
+    final int targetW, targetH;     // model input size
+    final Interpolation interpolation;
+
+    // Placement of the resized content inside the target
+    final int contentW, contentH;
+    final int padX, padY;
+    final float scaleX, scaleY;     // content px per upright source px
+    // Upright source region that is resampled, and the target cell it is letterboxed into:
+    // the whole frame and the whole target, except for crop() plans
+    final int cropX, cropY, cropW, cropH;
+    final int cellX, cellY, cellW, cellH;
+    /** Built by crop(): fills one cell of a shared target and leaves the rest to the caller. */
+    final boolean tile;
+
+    private final boolean transposed; // rotation 90/270: output columns walk sensor rows
+    private final int colAxisLen, rowAxisLen;
+
+    // Sensor coordinates along each axis. tap1/weight1 only for BILINEAR, count only for AREA.
+    private final int[] colTap0, colTap1, colWeight1, colCount;
+    private final int[] rowTap0, rowTap1, rowWeight1, rowCount;
+
+    private volatile YuvBinding yuvBinding;
+
+    private ResamplePlan(int srcW, int srcH, int rotation, int targetW, int targetH,
+                         Interpolation interpolation,
+                         int contentW, int contentH, int padX, int padY,
+                         float scaleX, float scaleY,
+                         int cropX, int cropY, int cropW, int cropH,
+                         int cellX, int cellY, int cellW, int cellH, boolean tile) {
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        this.srcW = srcW;
+        this.srcH = srcH;
+        this.rotation = rotation;
+        this.targetW = targetW;
+        this.targetH = targetH;
+        this.interpolation = interpolation;
+        this.contentW = contentW;
+        this.contentH = contentH;
+        this.padX = padX;
+        this.padY = padY;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        this.cropX = cropX;
+        this.cropY = cropY;
+        this.cropW = cropW;
+        this.cropH = cropH;
+        this.cellX = cellX;
+        this.cellY = cellY;
+        this.cellW = cellW;
+        this.cellH = cellH;
+        this.tile = tile;
+
+        transposed = rotation == 90 || rotation == 270;
+        int uprightW = transposed ? srcH : srcW;
+        int uprightH = transposed ? srcW : srcH;
+        colAxisLen = uprightW;
+        rowAxisLen = uprightH;
+        // Which upright axes run against the sensor axes (inverse of Yuv.rotate)
+        boolean flipCols = rotation == 90 || rotation == 180;
+        boolean flipRows = rotation == 180 || rotation == 270;
+
+        boolean bilinear = interpolation == Interpolation.BILINEAR;
+        boolean area = interpolation == Interpolation.AREA;
+        colTap0 = new int[contentW];
+        rowTap0 = new int[contentH];
+        colTap1 = bilinear ? new int[contentW] : null;
+        rowTap1 = bilinear ? new int[contentH] : null;
+        colWeight1 = bilinear ? new int[contentW] : null;
+        rowWeight1 = bilinear ? new int[contentH] : null;
+        colCount = area ? new int[contentW] : null;
+        rowCount = area ? new int[contentH] : null;
+
+        buildAxis(contentW, uprightW, cropX, cropW, scaleX, flipCols,
+                colTap0, colTap1, colWeight1, colCount);
+        buildAxis(contentH, uprightH, cropY, cropH, scaleY, flipRows,
+                rowTap0, rowTap1, rowWeight1, rowCount);
+    }
+
+    /** YOLO-style letterbox: uniform scale, content centred, zero padding around it. */
+    static ResamplePlan letterbox(int srcW, int srcH, int rotation,
+                                  int targetW, int targetH, Interpolation interpolation) {
+        boolean swap = rotation == 90 || rotation == 270;
+        int uw = swap ? srcH : srcW;
+        int uh = swap ? srcW : srcH;
+        float r = Math.min(targetW / (float) uw, targetH / (float) uh);
+        int nw = (int) (uw * r);
+        int nh = (int) (uh * r);
+        int dx = (targetW - nw) / 2;
+        int dy = (targetH - nh) / 2;
+        return new ResamplePlan(srcW, srcH, rotation, targetW, targetH, interpolation,
+                nw, nh, dx, dy, r, r, 0, 0, uw, uh, 0, 0, targetW, targetH, false);
+    }
+
+    /**
+     * Letterbox of the upright region (cropX, cropY, cropW, cropH) of the source into the
+     * cell (cellX, cellY, cellW, cellH) of the target, for packing several crops into one
+     * model input. Only the content is written; clearing the rest of the target is up to the
+     * caller. Boxes map back as (x - padX) / scaleX + cropX.
+     */
+    static ResamplePlan crop(int srcW, int srcH, int rotation,
+                             int cropX, int cropY, int cropW, int cropH,
+                             int targetW, int targetH,
+                             int cellX, int cellY, int cellW, int cellH,
+                             Interpolation interpolation) {
+        boolean swap = rotation == 90 || rotation == 270;
+        int uw = swap ? srcH : srcW;
+        int uh = swap ? srcW : srcH;
+        if (cropX < 0 || cropY < 0 || cropW <= 0 || cropH <= 0
+                || cropX + cropW > uw || cropY + cropH > uh) {
+            throw new IllegalArgumentException("Crop " + cropX + "," + cropY + " " + cropW + "x"
+                    + cropH + " outside " + uw + "x" + uh);
+        }
+        if (cellX < 0 || cellY < 0 || cellX + cellW > targetW || cellY + cellH > targetH) {
+            throw new IllegalArgumentException("Cell outside " + targetW + "x" + targetH);
+        }
+        float r = Math.min(cellW / (float) cropW, cellH / (float) cropH);
+        int nw = Math.max(1, Math.min(cellW, (int) (cropW * r)));
+        int nh = Math.max(1, Math.min(cellH, (int) (cropH * r)));
+        return new ResamplePlan(srcW, srcH, rotation, targetW, targetH, interpolation,
+                nw, nh, cellX + (cellW - nw) / 2, cellY + (cellH - nh) / 2, r, r,
+                cropX, cropY, cropW, cropH, cellX, cellY, cellW, cellH, true);
+    }
+
+    /**
+     * Explicit placement: the upright source is resized to contentW x contentH (independent
+     * scale per axis) and placed at (padX, padY) inside the target.
+     */
+    static ResamplePlan fit(int srcW, int srcH, int rotation, int targetW, int targetH,
+                            Interpolation interpolation,
+                            int contentW, int contentH, int padX, int padY) {
+        boolean swap = rotation == 90 || rotation == 270;
+        int uw = swap ? srcH : srcW;
+        int uh = swap ? srcW : srcH;
+        return new ResamplePlan(srcW, srcH, rotation, targetW, targetH, interpolation,
+                contentW, contentH, padX, padY, contentW / (float) uw, contentH / (float) uh,
+                0, 0, uw, uh, 0, 0, targetW, targetH, false);
+    }
+
+    boolean matches(int srcW, int srcH, int rotation, int targetW, int targetH,
+                    Interpolation interpolation) {
+        return !tile && this.srcW == srcW && this.srcH == srcH && this.rotation == rotation
+                && this.targetW == targetW && this.targetH == targetH
+                && this.interpolation == interpolation;
+    }
+
+    boolean matchesCrop(int srcW, int srcH, int rotation, int cropX, int cropY, int cropW,
+                        int cropH, int targetW, int targetH, int cellX, int cellY, int cellW,
+                        int cellH, Interpolation interpolation) {
+        return tile && this.srcW == srcW && this.srcH == srcH && this.rotation == rotation
+                && this.cropX == cropX && this.cropY == cropY
+                && this.cropW == cropW && this.cropH == cropH
+                && this.targetW == targetW && this.targetH == targetH
+                && this.cellX == cellX && this.cellY == cellY
+                && this.cellW == cellW && this.cellH == cellH
+                && this.interpolation == interpolation;
+    }
+
+    /** Width of the upright source (what Yuv.rotate would produce). */
+    int uprightWidth() {
+        return colAxisLen;
+    }
+
+    /** Height of the upright source. */
+    int uprightHeight() {
+        return rowAxisLen;
+    }
+
+    /** True if target pixel (x, y) falls on the resampled content rather than padding. */
+    boolean inContent(float x, float y) {
+        return x >= padX && x < padX + contentW && y >= padY && y < padY + contentH;
+    }
+
+    /**
+     * Moves entry i of dets from target pixels to upright frame pixels, clipped to the content
+     * first, and writes it to entry dst (at most i, so compaction can use it in place).
+     */
+    void mapToFrame(DetectionBuffer dets, int i, int dst) {
+        float r = padX + contentW, b = padY + contentH;
+        dets.set(dst,
+                (Math.max(padX, Math.min(r, dets.x1[i])) - padX) / scaleX + cropX,
+                (Math.max(padY, Math.min(b, dets.y1[i])) - padY) / scaleY + cropY,
+                (Math.max(padX, Math.min(r, dets.x2[i])) - padX) / scaleX + cropX,
+                (Math.max(padY, Math.min(b, dets.y2[i])) - padY) / scaleY + cropY,
+                dets.score[i], dets.cls[i], dets.depth[i]);
+    }
+
+    // Taps for outLen outputs sampling [offset, offset + len) of an upright axis of srcLen
+    private void buildAxis(int outLen, int srcLen, int offset, int len, float scale,
+                           boolean flip, int[] tap0, int[] tap1, int[] weight1, int[] count) {
+        for (int i = 0; i < outLen; i++) {
+            switch (interpolation) {
+                case BILINEAR: {
+                    float s = (i + 0.5f) / scale - 0.5f;
+                    if (s < 0f) s = 0f;
+                    if (s > len - 1) s = len - 1;
+                    int s0 = (int) s;
+                    int s1 = Math.min(s0 + 1, len - 1);
+                    int w1 = Math.round((s - s0) * W_ONE);
+                    s0 += offset;
+                    s1 += offset;
+                    tap0[i] = flip ? srcLen - 1 - s0 : s0;
+                    tap1[i] = flip ? srcLen - 1 - s1 : s1;
+                    weight1[i] = w1;
+                    break;
+                }
+                case AREA: {
+                    int start = Math.min((int) (i / scale), len - 1);
+                    int end = Math.min(len, (int) Math.ceil((i + 1) / scale));
+                    int n = Math.max(1, end - start);
+                    start += offset;
+                    tap0[i] = flip ? srcLen - start - n : start;
+                    count[i] = n;
+                    break;
+                }
+                default: {
+                    int s = Math.min((int) (i / scale), len - 1) + offset;
+                    tap0[i] = flip ? srcLen - 1 - s : s;
+                    break;
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    //  Gathers: one content row (contentW pixels) as packed ARGB
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Gathers content row y from an ARGB frame of srcW x srcH (sensor-oriented; for an already
+     * upright frame build the plan with rotation 0).
+     */
+    void gatherRow(int[] src, int y, int[] out, int outOffset) {
+        // Offset of sensor (sx, sy) is sy * srcW + sx; columns walk sy when transposed.
+        int colStep = transposed ? srcW : 1;
+        int rowStep = transposed ? 1 : srcW;
+        final int n = contentW;
+        switch (interpolation) {
+            case BILINEAR: {
+                int r0 = rowTap0[y] * rowStep, r1 = rowTap1[y] * rowStep;
+                int wy1 = rowWeight1[y], wy0 = W_ONE - wy1;
+                for (int x = 0; x < n; x++) {
+                    int c0 = colTap0[x] * colStep, c1 = colTap1[x] * colStep;
+                    int wx1 = colWeight1[x], wx0 = W_ONE - wx1;
+                    out[outOffset + x] = blend4(src[r0 + c0], src[r0 + c1],
+                            src[r1 + c0], src[r1 + c1], wx0 * wy0, wx1 * wy0, wx0 * wy1, wx1 * wy1);
+                }
+                break;
+            }
+            case AREA: {
+                int rs = rowTap0[y], rn = rowCount[y];
+                for (int x = 0; x < n; x++) {
+                    int cs = colTap0[x], cn = colCount[x];
+                    int r = 0, g = 0, b = 0;
+                    for (int j = 0; j < rn; j++) {
+                        int base = (rs + j) * rowStep;
+                        for (int i = 0; i < cn; i++) {
+                            int p = src[base + (cs + i) * colStep];
+                            r += (p >> 16) & 0xFF;
+                            g += (p >> 8) & 0xFF;
+                            b += p & 0xFF;
+                        }
+                    }
+                    int cnt = rn * cn;
+                    out[outOffset + x] = 0xFF000000 | ((r / cnt) << 16) | ((g / cnt) << 8)
+                            | (b / cnt);
+                }
+                break;
+            }
+            default: {
+                int row = rowTap0[y] * rowStep;
+                for (int x = 0; x < n; x++) {
+                    out[outOffset + x] = src[row + colTap0[x] * colStep];
+                }
+                break;
+            }
+        }
+    }
+
+    /** Gathers content row y straight from the YUV planes (srcW x srcH must match them). */
+    void gatherRow(Yuv.Planes p, int y, int[] out, int outOffset) {
+        YuvBinding b = bind(p);
+        ByteBuffer yb = p.y, ub = p.u, vb = p.v;
+        final int n = contentW;
+        switch (interpolation) {
+            case BILINEAR: {
+                int ry0 = b.rowY0[y], ry1 = b.rowY1[y];
+                int ruv0 = b.rowUV0[y], ruv1 = b.rowUV1[y];
+                int wy1 = rowWeight1[y], wy0 = W_ONE - wy1;
+                for (int x = 0; x < n; x++) {
+                    int cy0 = b.colY0[x], cy1 = b.colY1[x];
+                    int cuv0 = b.colUV0[x], cuv1 = b.colUV1[x];
+                    int wx1 = colWeight1[x], wx0 = W_ONE - wx1;
+                    int w00 = wx0 * wy0, w01 = wx1 * wy0, w10 = wx0 * wy1, w11 = wx1 * wy1;
+                    int Y = weigh(yb, ry0 + cy0, ry0 + cy1, ry1 + cy0, ry1 + cy1,
+                            w00, w01, w10, w11);
+                    int U = weigh(ub, ruv0 + cuv0, ruv0 + cuv1, ruv1 + cuv0, ruv1 + cuv1,
+                            w00, w01, w10, w11);
+                    int V = weigh(vb, ruv0 + cuv0, ruv0 + cuv1, ruv1 + cuv0, ruv1 + cuv1,
+                            w00, w01, w10, w11);
+                    out[outOffset + x] = Yuv.yuvToArgb(Y, U, V);
+                }
+                break;
+            }
+            case AREA: {
+                int rs = rowTap0[y], rn = rowCount[y];
+                for (int x = 0; x < n; x++) {
+                    int cs = colTap0[x], cn = colCount[x];
+                    int sy = 0, su = 0, sv = 0;
+                    for (int j = 0; j < rn; j++) {
+                        int r = rs + j;
+                        int rowY = r * b.rowStepY, rowUV = (r >> 1) * b.rowStepUV;
+                        for (int i = 0; i < cn; i++) {
+                            int c = cs + i;
+                            int uv = rowUV + (c >> 1) * b.colStepUV;
+                            sy += yb.get(rowY + c * b.colStepY) & 0xFF;
+                            su += ub.get(uv) & 0xFF;
+                            sv += vb.get(uv) & 0xFF;
+                        }
+                    }
+                    int cnt = rn * cn;
+                    out[outOffset + x] = Yuv.yuvToArgb(sy / cnt, su / cnt, sv / cnt);
+                }
+                break;
+            }
+            default: {
+                int rowY = b.rowY0[y], rowUV = b.rowUV0[y];
+                for (int x = 0; x < n; x++) {
+                    int uv = rowUV + b.colUV0[x];
+                    out[outOffset + x] = Yuv.yuvToArgb(
+                            yb.get(rowY + b.colY0[x]) & 0xFF,
+                            ub.get(uv) & 0xFF,
+                            vb.get(uv) & 0xFF);
+                }
+                break;
+            }
+        }
+    }
+
+    /** Gathers content row y from an RGBA_8888 plane of srcW x srcH. */
+    void gatherRow(Rgba.Plane p, int y, int[] out, int outOffset) {
+        if (p.width != srcW || p.height != srcH) {
+            throw new IllegalArgumentException("Plan built for " + srcW + "x" + srcH
+                    + ", got " + p.width + "x" + p.height);
+        }
+        final ByteBuffer buf = p.buffer;
+        int colStep = transposed ? p.rowStride : p.pixelStride;
+        int rowStep = transposed ? p.pixelStride : p.rowStride;
+        final int n = contentW;
+        switch (interpolation) {
+            case BILINEAR: {
+                int r0 = rowTap0[y] * rowStep, r1 = rowTap1[y] * rowStep;
+                int wy1 = rowWeight1[y], wy0 = W_ONE - wy1;
+                for (int x = 0; x < n; x++) {
+                    int c0 = colTap0[x] * colStep, c1 = colTap1[x] * colStep;
+                    int wx1 = colWeight1[x], wx0 = W_ONE - wx1;
+                    out[outOffset + x] = blend4(
+                            Rgba.argbAtOffset(buf, r0 + c0), Rgba.argbAtOffset(buf, r0 + c1),
+                            Rgba.argbAtOffset(buf, r1 + c0), Rgba.argbAtOffset(buf, r1 + c1),
+                            wx0 * wy0, wx1 * wy0, wx0 * wy1, wx1 * wy1);
+                }
+                break;
+            }
+            case AREA: {
+                int rs = rowTap0[y], rn = rowCount[y];
+                for (int x = 0; x < n; x++) {
+                    int cs = colTap0[x], cn = colCount[x];
+                    int r = 0, g = 0, b = 0;
+                    for (int j = 0; j < rn; j++) {
+                        int base = (rs + j) * rowStep;
+                        for (int i = 0; i < cn; i++) {
+                            int off = base + (cs + i) * colStep;
+                            r += buf.get(off) & 0xFF;
+                            g += buf.get(off + 1) & 0xFF;
+                            b += buf.get(off + 2) & 0xFF;
+                        }
+                    }
+                    int cnt = rn * cn;
+                    out[outOffset + x] = 0xFF000000 | ((r / cnt) << 16) | ((g / cnt) << 8)
+                            | (b / cnt);
+                }
+                break;
+            }
+            default: {
+                int row = rowTap0[y] * rowStep;
+                for (int x = 0; x < n; x++) {
+                    out[outOffset + x] = Rgba.argbAtOffset(buf, row + colTap0[x] * colStep);
+                }
+                break;
+            }
+        }
+    }
+
+    /** Gathers the whole content (contentW x contentH, row-major) from the YUV planes. */
+    void gather(Yuv.Planes p, int[] out) {
+        ParallelRows.run(contentH, contentW, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) gatherRow(p, y, out, y * contentW);
+        });
+    }
+
+    /** Gathers the whole content from an RGBA plane of srcW x srcH. */
+    void gather(Rgba.Plane p, int[] out) {
+        ParallelRows.run(contentH, contentW, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) gatherRow(p, y, out, y * contentW);
+        });
+    }
+
+    /** Gathers the whole content from an ARGB source of srcW x srcH. */
+    void gather(int[] src, int[] out) {
+        ParallelRows.run(contentH, contentW, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) gatherRow(src, y, out, y * contentW);
+        });
+    }
+
+    private static int blend4(int p00, int p01, int p10, int p11,
+                              int w00, int w01, int w10, int w11) {
+        final int half = W_ONE * W_ONE / 2;
+        int r = (((p00 >> 16) & 0xFF) * w00 + ((p01 >> 16) & 0xFF) * w01
+                + ((p10 >> 16) & 0xFF) * w10 + ((p11 >> 16) & 0xFF) * w11 + half) >> 16;
+        int g = (((p00 >> 8) & 0xFF) * w00 + ((p01 >> 8) & 0xFF) * w01
+                + ((p10 >> 8) & 0xFF) * w10 + ((p11 >> 8) & 0xFF) * w11 + half) >> 16;
+        int b = ((p00 & 0xFF) * w00 + (p01 & 0xFF) * w01
+                + (p10 & 0xFF) * w10 + (p11 & 0xFF) * w11 + half) >> 16;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int weigh(ByteBuffer buf, int i00, int i01, int i10, int i11,
+                             int w00, int w01, int w10, int w11) {
+        return ((buf.get(i00) & 0xFF) * w00 + (buf.get(i01) & 0xFF) * w01
+                + (buf.get(i10) & 0xFF) * w10 + (buf.get(i11) & 0xFF) * w11
+                + W_ONE * W_ONE / 2) >> 16;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    //  Stride binding: sensor coordinates -> plane offsets for one YUV layout
+    // ---------------------------------------------------------------------------------------------
+
+    private static final class YuvBinding {
+        final int yRowStride, uvRowStride, uvPixelStride;
+        final int colStepY, rowStepY, colStepUV, rowStepUV;
+        final int[] colY0, colUV0, rowY0, rowUV0;
+        final int[] colY1, colUV1, rowY1, rowUV1;
+
+        YuvBinding(ResamplePlan plan, Yuv.Planes p) {
+            yRowStride = p.yRowStride;
+            uvRowStride = p.uvRowStride;
+            uvPixelStride = p.uvPixelStride;
+            // Column coordinates are sensor y when transposed, sensor x otherwise.
+            colStepY = plan.transposed ? yRowStride : 1;
+            rowStepY = plan.transposed ? 1 : yRowStride;
+            colStepUV = plan.transposed ? uvRowStride : uvPixelStride;
+            rowStepUV = plan.transposed ? uvPixelStride : uvRowStride;
+
+            colY0 = offsets(plan.colTap0, colStepY, false);
+            colUV0 = offsets(plan.colTap0, colStepUV, true);
+            rowY0 = offsets(plan.rowTap0, rowStepY, false);
+            rowUV0 = offsets(plan.rowTap0, rowStepUV, true);
+            colY1 = offsets(plan.colTap1, colStepY, false);
+            colUV1 = offsets(plan.colTap1, colStepUV, true);
+            rowY1 = offsets(plan.rowTap1, rowStepY, false);
+            rowUV1 = offsets(plan.rowTap1, rowStepUV, true);
+        }
+
+        boolean matches(Yuv.Planes p) {
+            return p.yRowStride == yRowStride && p.uvRowStride == uvRowStride
+                    && p.uvPixelStride == uvPixelStride;
+        }
+
+        private static int[] offsets(int[] taps, int step, boolean chroma) {
+            if (taps == null) return null;
+            int[] out = new int[taps.length];
+            for (int i = 0; i < taps.length; i++) {
+                out[i] = (chroma ? taps[i] >> 1 : taps[i]) * step;
+            }
+            return out;
+        }
+    }
+
+    private YuvBinding bind(Yuv.Planes p) {
+        if (p.width != srcW || p.height != srcH) {
+            throw new IllegalArgumentException("Plan built for " + srcW + "x" + srcH
+                    + ", got " + p.width + "x" + p.height);
+        }
+        YuvBinding b = yuvBinding;
+        if (b == null || !b.matches(p)) {
+            b = new YuvBinding(this, p);
+            yuvBinding = b;
+        }
+        return b;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    //  Cache
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Small most-recently-used cache of plans for one consumer. Lookups scan a handful of
+     * entries and allocate nothing; a miss is expected only when the camera or model
+     * geometry changes.
+     */
+    static final class Cache {
+        private final ResamplePlan[] entries;
+
+        Cache() {
+            this(4);
+        }
+
+        Cache(int capacity) {
+            entries = new ResamplePlan[Math.max(1, capacity)];
+        }
+
+        synchronized ResamplePlan find(int srcW, int srcH, int rotation,
+                                       int targetW, int targetH, Interpolation interpolation) {
+            for (int i = 0; i < entries.length; i++) {
+                ResamplePlan p = entries[i];
+                if (p != null && p.matches(srcW, srcH, rotation, targetW, targetH, interpolation)) {
+                    // move to front
+                    System.arraycopy(entries, 0, entries, 1, i);
+                    entries[0] = p;
+                    return p;
+                }
+            }
+            return null;
+        }
+
+        synchronized void put(ResamplePlan plan) {
+            System.arraycopy(entries, 0, entries, 1, entries.length - 1);
+            entries[0] = plan;
+        }
+
+        /** Cached {@link ResamplePlan#crop}; crops should be quantized so they repeat. */
+        synchronized ResamplePlan crop(int srcW, int srcH, int rotation,
+                                       int cropX, int cropY, int cropW, int cropH,
+                                       int targetW, int targetH,
+                                       int cellX, int cellY, int cellW, int cellH,
+                                       Interpolation interpolation) {
+            for (int i = 0; i < entries.length; i++) {
+                ResamplePlan p = entries[i];
+                if (p != null && p.matchesCrop(srcW, srcH, rotation, cropX, cropY, cropW, cropH,
+                        targetW, targetH, cellX, cellY, cellW, cellH, interpolation)) {
+                    System.arraycopy(entries, 0, entries, 1, i);
+                    entries[0] = p;
+                    return p;
+                }
+            }
+            ResamplePlan p = ResamplePlan.crop(srcW, srcH, rotation, cropX, cropY, cropW, cropH,
+                    targetW, targetH, cellX, cellY, cellW, cellH, interpolation);
+            put(p);
+            return p;
+        }
+
+        synchronized ResamplePlan letterbox(int srcW, int srcH, int rotation,
+                                            int targetW, int targetH,
+                                            Interpolation interpolation) {
+            ResamplePlan p = find(srcW, srcH, rotation, targetW, targetH, interpolation);
+            if (p == null) {
+                p = ResamplePlan.letterbox(srcW, srcH, rotation, targetW, targetH, interpolation);
+                put(p);
+            }
+            return p;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package vn.edu.usth.objectdetectmobile;
+
+import androidx.camera.core.ImageProxy;
+import java.nio.ByteBuffer;
+
+/**
+ * RGBA_8888 analysis frames (ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888): CameraX does the
+ * colour conversion, we only read the single plane. Bytes are R, G, B, A per pixel; rows may be
+ * padded past width * pixelStride.
+ */
+public final class Rgba {
+
+    private Rgba() {}
+
+    /** Plain view of the single RGBA plane, independent of {@link ImageProxy} for JVM tests. */
+    public static final class Plane {
+        public final ByteBuffer buffer;
+        public final int rowStride;
+        public final int pixelStride;
+        public final int width, height;
+
+        public Plane(ByteBuffer buffer, int rowStride, int pixelStride, int width, int height) {
+            this.buffer = buffer;
+            this.rowStride = rowStride;
+            this.pixelStride = pixelStride;
+            this.width = width;
+            this.height = height;
+        }
+
+        public static Plane of(ImageProxy image) {
+            ImageProxy.PlaneProxy p = image.getPlanes()[0];
+            return new Plane(p.getBuffer(), p.getRowStride(), p.getPixelStride(),
+                    image.getWidth(), image.getHeight());
+        }
+    }
+
+    /** Packed ARGB at byte offset off (absolute reads, buffer position untouched). */
+    static int argbAtOffset(ByteBuffer b, int off) {
+        return 0xFF000000
+                | ((b.get(off) & 0xFF) << 16)
+                | ((b.get(off + 1) & 0xFF) << 8)
+                | (b.get(off + 2) & 0xFF);
+    }
+
+    public static int[] toArgb(Plane p, int[] out) {
+        final int w = p.width;
+        ParallelRows.run(p.height, w, (j0, j1) -> {
+            for (int j = j0; j < j1; j++) {
+                int off = j * p.rowStride;
+                int o = j * w;
+                for (int i = 0; i < w; i++, off += p.pixelStride) {
+                    out[o + i] = argbAtOffset(p.buffer, off);
+                }
+            }
+        });
+        return out;
+    }
+
+    /** Half-size copy, each output pixel the rounded mean of a 2x2 block. */
+    static void halve(Plane p, int[] out) {
+        ParallelRows.run(p.height >> 1, p.width, (j0, j1) -> halveRows(p, out, j0, j1));
+    }
+
+    private static void halveRows(Plane p, int[] out, int j0, int j1) {
+        final int w = p.width >> 1;
+        final ByteBuffer b = p.buffer;
+        for (int j = j0; j < j1; j++) {
+            int r0 = 2 * j * p.rowStride, r1 = r0 + p.rowStride;
+            int o = j * w;
+            for (int i = 0; i < w; i++) {
+                int a = r0 + 2 * i * p.pixelStride, c = r1 + 2 * i * p.pixelStride;
+                int bb = a + p.pixelStride, d = c + p.pixelStride;
+                int r = ((b.get(a) & 0xFF) + (b.get(bb) & 0xFF)
+                        + (b.get(c) & 0xFF) + (b.get(d) & 0xFF) + 2) >> 2;
+                int g = ((b.get(a + 1) & 0xFF) + (b.get(bb + 1) & 0xFF)
+                        + (b.get(c + 1) & 0xFF) + (b.get(d + 1) & 0xFF) + 2) >> 2;
+                int bl = ((b.get(a + 2) & 0xFF) + (b.get(bb + 2) & 0xFF)
+                        + (b.get(c + 2) & 0xFF) + (b.get(d + 2) & 0xFF) + 2) >> 2;
+                out[o + i] = 0xFF000000 | (r << 16) | (g << 8) | bl;
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package vn.edu.usth.objectdetectmobile;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decides, frame by frame, whether the detector looks at the whole frame or only at crops
+ * (regions of interest) around the objects it found last time.
+ *
+ * Between full-frame passes, the previous detections are grown by a margin, overlapping
+ * regions are merged, and the rest are merged pairwise (smallest union first) down to
+ * {@link Settings#maxRois}. The detector packs the crops as cells of one model input (a
+ * mosaic) and runs them in a single session.run. A full frame is scheduled
+ * every {@link Settings#fullFrameInterval} frames. One also runs right after a crop pass that
+ * lost an object or whose mean score fell below {@link Settings#minMeanScore}, and whenever
+ * the crops would cover more than {@link Settings#maxCoverage} of the frame. New objects
+ * outside the crops are therefore picked up at the next full pass at the latest.
+ *
+ * Regions are in upright frame pixels, snapped outward to a QUANTUM grid so consecutive
+ * frames of a slowly moving object reuse the same cached resample plan.
+ *
+ * Not thread-safe; the detector calls it under its lock.
+ */
+public final class RoiScheduler {
+    /** Max crops per pass (a 2 x 2 mosaic). */
+    static final int MAX_CELLS = 4;
+    static final int QUANTUM = 16;
+    /** A previous detection counts as found again at this IoU with a same-class result. */
+    static final float MATCH_IOU = 0.2f;
+
+    /** Accuracy vs latency knobs. Immutable. */
+    public static final class Settings {
+        public static final String FAST = "fast", BALANCED = "balanced", ACCURATE = "accurate";
+
+        /** Every n-th frame is a full frame (n >= 1; 1 turns crops off). */
+        public final int fullFrameInterval;
+        /** Growth of each box per side, as a fraction of its width / height. */
+        public final float margin;
+        /** Crops per pass, 1 to {@link #MAX_CELLS}. */
+        public final int maxRois;
+        /** Smallest crop side in frame pixels, so small objects are not blown up too far. */
+        public final int minRoiSide;
+        /** Crops covering more than this fraction of the frame run as a full frame instead. */
+        public final float maxCoverage;
+        /** A crop pass with a lower mean score is followed by a full frame. */
+        public final float minMeanScore;
+        /**
+         * Side of one mosaic cell in model pixels for dynamic-shape models (the input is one
+         * to two cells per axis). A fixed-shape input is split into the cells instead.
+         */
+        public final int cellSize;
+
+        public Settings(int fullFrameInterval, float margin, int maxRois, int minRoiSide,
+                        float maxCoverage, float minMeanScore, int cellSize) {
+            this.fullFrameInterval = Math.max(1, fullFrameInterval);
+            this.margin = Math.max(0f, margin);
+            this.maxRois = Math.max(1, Math.min(MAX_CELLS, maxRois));
+            this.minRoiSide = Math.max(QUANTUM, minRoiSide);
+            this.maxCoverage = maxCoverage;
+            this.minMeanScore = minMeanScore;
+            this.cellSize = Math.max(32, cellSize / 32 * 32);
+        }
+
+        /**
+         * Presets: fast re-checks rarely and uses small cells; accurate keeps wider margins,
+         * larger cells and more frequent full frames.
+         */
+        @NonNull
+        public static Settings forName(@NonNull String name) {
+            switch (name) {
+                case FAST:
+                    return new Settings(15, 0.2f, 2, 128, 0.4f, 0.35f, 256);
+                case ACCURATE:
+                    return new Settings(5, 0.35f, 4, 192, 0.6f, 0.45f, 416);
+                case BALANCED:
+                default:
+                    return new Settings(10, 0.25f, 4, 160, 0.5f, 0.4f, 320);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "full every " + fullFrameInterval + ", margin " + margin + ", "
+                    + maxRois + " crops >= " + minRoiSide + " px, cell " + cellSize;
+        }
+    }
+
+    final Settings settings;
+    private final DetectionBuffer previous = new DetectionBuffer();
+    private int sinceFull;
+    private boolean forceFull = true;
+    private long fullFrames, roiFrames;
+
+    // Regions of the current plan (upright frame px), and the merge scratch
+    private final int[] roiX = new int[MAX_CELLS], roiY = new int[MAX_CELLS];
+    private final int[] roiW = new int[MAX_CELLS], roiH = new int[MAX_CELLS];
+    private float[] bx1 = new float[16], by1 = new float[16], bx2 = new float[16],
+            by2 = new float[16];
+
+    public RoiScheduler(@NonNull Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Plans the next frame: the number of crops to run (see {@link #x(int)} etc.), or 0 for a
+     * full frame.
+     */
+    int plan(int frameW, int frameH) {
+        int n = previous.size();
+        if (forceFull || n == 0 || sinceFull + 1 >= settings.fullFrameInterval) return 0;
+        if (bx1.length < n) {
+            int cap = Math.max(n, 2 * bx1.length);
+            bx1 = new float[cap];
+            by1 = new float[cap];
+            bx2 = new float[cap];
+            by2 = new float[cap];
+        }
+        float m = settings.margin, min = settings.minRoiSide;
+        for (int i = 0; i < n; i++) {
+            float w = previous.x2[i] - previous.x1[i], h = previous.y2[i] - previous.y1[i];
+            float cx = 0.5f * (previous.x1[i] + previous.x2[i]);
+            float cy = 0.5f * (previous.y1[i] + previous.y2[i]);
+            float hw = 0.5f * Math.max(min, w * (1f + 2f * m));
+            float hh = 0.5f * Math.max(min, h * (1f + 2f * m));
+            bx1[i] = cx - hw;
+            by1[i] = cy - hh;
+            bx2[i] = cx + hw;
+            by2[i] = cy + hh;
+        }
+        n = mergeOverlapping(n);
+        while (n > settings.maxRois) n = mergeCheapestPair(n);
+
+        long covered = 0;
+        for (int i = 0; i < n; i++) {
+            int x0 = clamp((int) Math.floor(bx1[i] / QUANTUM) * QUANTUM, 0, frameW - 1);
+            int y0 = clamp((int) Math.floor(by1[i] / QUANTUM) * QUANTUM, 0, frameH - 1);
+            int x1 = clamp((int) Math.ceil(bx2[i] / QUANTUM) * QUANTUM, x0 + 1, frameW);
+            int y1 = clamp((int) Math.ceil(by2[i] / QUANTUM) * QUANTUM, y0 + 1, frameH);
+            roiX[i] = x0;
+            roiY[i] = y0;
+            roiW[i] = x1 - x0;
+            roiH[i] = y1 - y0;
+            covered += (long) roiW[i] * roiH[i];
+        }
+        if (covered > settings.maxCoverage * frameW * (long) frameH) return 0;
+        return n;
+    }
+
+    int x(int i) { return roiX[i]; }
+    int y(int i) { return roiY[i]; }
+    int width(int i) { return roiW[i]; }
+    int height(int i) { return roiH[i]; }
+
+    /** Feeds back the detections of the frame just planned (fullFrame: plan returned 0). */
+    void update(@NonNull DetectionBuffer result, boolean fullFrame) {
+        if (fullFrame) {
+            fullFrames++;
+            sinceFull = 0;
+            forceFull = false;
+        } else {
+            roiFrames++;
+            sinceFull++;
+            forceFull = meanScore(result) < settings.minMeanScore || lostAny(result);
+        }
+        previous.copyFrom(result);
+    }
+
+    /** Forgets the previous detections, e.g. after a camera switch; the next frame is full. */
+    void reset() {
+        previous.clear();
+        forceFull = true;
+    }
+
+    long frames() {
+        return fullFrames + roiFrames;
+    }
+
+    /** Fraction of frames so far that ran on crops. */
+    float roiFraction() {
+        long total = fullFrames + roiFrames;
+        return total == 0 ? 0f : roiFrames / (float) total;
+    }
+
+    // Unions intersecting regions until none intersect; returns the new count
+    private int mergeOverlapping(int n) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < n && !merged; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if (bx1[i] < bx2[j] && bx1[j] < bx2[i] && by1[i] < by2[j] && by1[j] < by2[i]) {
+                        union(i, j);
+                        n = removeAt(j, n);
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    // Merges the pair whose union is smallest
+    private int mergeCheapestPair(int n) {
+        int bi = 0, bj = 1;
+        float best = Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                float a = (Math.max(bx2[i], bx2[j]) - Math.min(bx1[i], bx1[j]))
+                        * (Math.max(by2[i], by2[j]) - Math.min(by1[i], by1[j]));
+                if (a < best) {
+                    best = a;
+                    bi = i;
+                    bj = j;
+                }
+            }
+        }
+        union(bi, bj);
+        // The union may now overlap a third region
+        return mergeOverlapping(removeAt(bj, n));
+    }
+
+    private void union(int i, int j) {
+        bx1[i] = Math.min(bx1[i], bx1[j]);
+        by1[i] = Math.min(by1[i], by1[j]);
+        bx2[i] = Math.max(bx2[i], bx2[j]);
+        by2[i] = Math.max(by2[i], by2[j]);
+    }
+
+    private int removeAt(int j, int n) {
+        int last = n - 1;
+        bx1[j] = bx1[last];
+        by1[j] = by1[last];
+        bx2[j] = bx2[last];
+        by2[j] = by2[last];
+        return last;
+    }
+
+    private static float meanScore(DetectionBuffer dets) {
+        if (dets.isEmpty()) return 0f;
+        float sum = 0f;
+        for (int i = 0; i < dets.size(); i++) sum += dets.score[i];
+        return sum / dets.size();
+    }
+
+    private boolean lostAny(DetectionBuffer result) {
+        for (int i = 0; i < previous.size(); i++) {
+            boolean found = false;
+            for (int j = 0; j < result.size() && !found; j++) {
+                found = result.cls[j] == previous.cls[i]
+                        && iou(previous, i, result, j) >= MATCH_IOU;
+            }
+            if (!found) return true;
+        }
+        return false;
+    }
+
+    private static float iou(DetectionBuffer a, int i, DetectionBuffer b, int j) {
+        float iw = Math.min(a.x2[i], b.x2[j]) - Math.max(a.x1[i], b.x1[j]);
+        float ih = Math.min(a.y2[i], b.y2[j]) - Math.max(a.y1[i], b.y1[j]);
+        if (iw <= 0f || ih <= 0f) return 0f;
+        float inter = iw * ih;
+        float areaA = (a.x2[i] - a.x1[i]) * (a.y2[i] - a.y1[i]);
+        float areaB = (b.x2[j] - b.x1[j]) * (b.y2[j] - b.y1[j]);
+        return inter / (areaA + areaB - inter + 1e-6f);
+    }
+
+    private static int clamp(int v, int lo, int hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+}
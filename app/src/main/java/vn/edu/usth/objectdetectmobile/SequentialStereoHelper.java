@@ -30,6 +30,9 @@ import androidx.camera.core.resolutionselector.ResolutionStrategy;
 
 public class SequentialStereoHelper {
 
+    // Frame buffers shared by every capture, so repeated dual shots reuse the same arrays
+    private static final FrameBufferArena FRAME_ARENA = new FrameBufferArena();
+
     private SequentialStereoHelper() {}
 
     // Result of the whole dual-shot run
@@ -78,6 +81,7 @@ public class SequentialStereoHelper {
             DepthEstimator depthEstimator,          // may be null
             boolean blurEnabled,
             int blurRadius,
+            boolean rgbaInput,
             boolean stereoFusionEnabled,
             StereoDepthProcessor stereoProcessor,   // may be null if fusion disabled
             @NonNull Callback callback
@@ -104,6 +108,7 @@ public class SequentialStereoHelper {
                             depthEstimator,
                             blurEnabled,
                             blurRadius,
+                            rgbaInput,
                             camId
                     );
                     if (res != null && res.detections != null) {
@@ -153,6 +158,7 @@ public class SequentialStereoHelper {
             DepthEstimator depthEstimator,  // may be null
             boolean blurEnabled,
             int blurRadius,
+            boolean rgbaInput,
             @NonNull String cameraId
     ) {
         CountDownLatch latch = new CountDownLatch(1);
@@ -174,6 +180,9 @@ public class SequentialStereoHelper {
 
             ImageAnalysis analysis = new ImageAnalysis.Builder()
                     .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                    .setOutputImageFormat(rgbaInput
+                            ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888
+                            : ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
                     .setResolutionSelector(
                             new ResolutionSelector.Builder()
                                     .setAspectRatioStrategy(
@@ -191,31 +200,22 @@ public class SequentialStereoHelper {
                     .build();
 
             analysis.setAnalyzer(captureAnalyzerExecutor, image -> {
+                CameraFrame frame = null;
                 try {
-                    int frameW = image.getWidth();
-                    int frameH = image.getHeight();
-                    int rotation = image.getImageInfo().getRotationDegrees();
-                    int[] argb = Yuv.toArgb(image);
-                    if (rotation != 0) {
-                        argb = Yuv.rotate(argb, frameW, frameH, rotation);
-                        if (rotation == 90 || rotation == 270) {
-                            int tmp = frameW;
-                            frameW = frameH;
-                            frameH = tmp;
-                        }
-                    }
-
-                    int[] detectorInput = (blurEnabled && blurRadius > 0)
-                            ? ImageUtils.boxBlur(argb, frameW, frameH, blurRadius)
-                            : argb;
+                    // Rotation is folded into the samplers and the blur runs at model
+                    // resolution, so no full-resolution ARGB frame is built.
+                    frame = CameraFrame.of(image, FRAME_ARENA);
+                    int frameW = frame.width();
+                    int frameH = frame.height();
 
-                    List<ObjectDetector.Detection> dets =
-                            detector.detect(detectorInput, frameW, frameH);
+                    // Stateless: the realtime camera's crops and cascade do not apply here
+                    List<ObjectDetector.Detection> dets = detector.detectFullFrame(
+                            frame, blurEnabled ? blurRadius : 0);
 
                     DepthEstimator.DepthMap depth = null;
                     if (depthEstimator != null) {
                         try {
-                            depth = depthEstimator.estimate(argb, frameW, frameH);
+                            depth = depthEstimator.estimate(frame);
                             dets = depthEstimator.attachDepth(dets, depth);
                         } catch (Throwable depthErr) {
                             // If depth fails, just skip depth; the app will disable it elsewhere
@@ -228,6 +228,9 @@ public class SequentialStereoHelper {
                     // swallow & log
                     e.printStackTrace();
                 } finally {
+                    // detect() and estimate() run on this thread, so nothing reads the frame
+                    // any more: return its arena buffers whether or not they succeeded
+                    if (frame != null) frame.release();
                     image.close();
                     latch.countDown();
                 }
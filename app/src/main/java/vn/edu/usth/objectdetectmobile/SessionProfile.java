@@ -0,0 +1,158 @@
+package vn.edu.usth.objectdetectmobile;
+
+import androidx.annotation.NonNull;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ORT session tuning for one model: thread pools, execution mode, graph optimization level,
+ * free-dimension overrides and the memory-pattern / CPU-arena toggles.
+ *
+ * The detector and the depth model run at the same time on the inference pool, so with ORT's
+ * defaults (one intra-op thread per core each) they oversubscribe the CPU and both slow
+ * down. The presets split the cores between them instead; {@link #forDevice(String, int)}
+ * resolves a preset name for a core count. Profiles are immutable; the {@code with...}
+ * methods return modified copies. tools/bench_session_profiles.py sweeps the same settings
+ * on a Linux host.
+ */
+public final class SessionProfile {
+    /** Preset names, for {@link #forDevice(String, int)}. */
+    public static final String ORT_DEFAULT = "ort-default", SHARED = "shared",
+            EXCLUSIVE = "exclusive", LOW_POWER = "low-power";
+
+    public final String name;
+    /** Intra-op threads, or 0 for ORT's default (one per core). */
+    public final int intraOpThreads;
+    /** Inter-op threads, or 0 for ORT's default; only used in PARALLEL mode. */
+    public final int interOpThreads;
+    public final OrtSession.SessionOptions.ExecutionMode executionMode;
+    public final OrtSession.SessionOptions.OptLevel optLevel;
+    /**
+     * Symbolic input dims pinned to a value (e.g. "height" -> 640). ORT rewrites the graph
+     * inputs with them, so the session reports a fixed shape and ModelInputShape uses it.
+     */
+    public final Map<String, Long> freeDimensions;
+    public final boolean memoryPattern;
+    public final boolean cpuArena;
+
+    public SessionProfile(@NonNull String name, int intraOpThreads, int interOpThreads,
+                          @NonNull OrtSession.SessionOptions.ExecutionMode executionMode,
+                          @NonNull OrtSession.SessionOptions.OptLevel optLevel,
+                          @NonNull Map<String, Long> freeDimensions,
+                          boolean memoryPattern, boolean cpuArena) {
+        this.name = name;
+        this.intraOpThreads = Math.max(0, intraOpThreads);
+        this.interOpThreads = Math.max(0, interOpThreads);
+        this.executionMode = executionMode;
+        this.optLevel = optLevel;
+        this.freeDimensions = Collections.unmodifiableMap(new LinkedHashMap<>(freeDimensions));
+        this.memoryPattern = memoryPattern;
+        this.cpuArena = cpuArena;
+    }
+
+    /** What the app used before profiles: every option left at ORT's default. */
+    public static SessionProfile ortDefault() {
+        return new SessionProfile(ORT_DEFAULT, 0, 0,
+                OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL,
+                OrtSession.SessionOptions.OptLevel.ALL_OPT,
+                Collections.emptyMap(), true, true);
+    }
+
+    /**
+     * Preset by name for a device with the given core count. Unknown names fall back to
+     * {@link #SHARED}.
+     *
+     * - shared: detector and depth each get half the cores (at least one), so the two
+     *   sessions running side by side do not fight over the same threads.
+     * - exclusive: all cores, for a model that runs alone (e.g. depth off).
+     * - low-power: a single intra-op thread, trading latency for heat and battery.
+     */
+    @NonNull
+    public static SessionProfile forDevice(@NonNull String name, int cores) {
+        int c = Math.max(1, cores);
+        switch (name) {
+            case ORT_DEFAULT:
+                return ortDefault();
+            case EXCLUSIVE:
+                return ortDefault().rename(EXCLUSIVE).withThreads(c, 1);
+            case LOW_POWER:
+                return ortDefault().rename(LOW_POWER).withThreads(1, 1);
+            case SHARED:
+            default:
+                return ortDefault().rename(SHARED).withThreads(Math.max(1, c / 2), 1);
+        }
+    }
+
+    @NonNull
+    public static SessionProfile forDevice(@NonNull String name) {
+        return forDevice(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SessionProfile withThreads(int intraOp, int interOp) {
+        return new SessionProfile(name, intraOp, interOp, executionMode, optLevel,
+                freeDimensions, memoryPattern, cpuArena);
+    }
+
+    public SessionProfile withExecutionMode(OrtSession.SessionOptions.ExecutionMode mode) {
+        return new SessionProfile(name, intraOpThreads, interOpThreads, mode, optLevel,
+                freeDimensions, memoryPattern, cpuArena);
+    }
+
+    public SessionProfile withOptLevel(OrtSession.SessionOptions.OptLevel level) {
+        return new SessionProfile(name, intraOpThreads, interOpThreads, executionMode, level,
+                freeDimensions, memoryPattern, cpuArena);
+    }
+
+    public SessionProfile withFreeDimension(String dimName, long value) {
+        Map<String, Long> dims = new LinkedHashMap<>(freeDimensions);
+        dims.put(dimName, value);
+        return new SessionProfile(name, intraOpThreads, interOpThreads, executionMode, optLevel,
+                dims, memoryPattern, cpuArena);
+    }
+
+    public SessionProfile withMemory(boolean memoryPattern, boolean cpuArena) {
+        return new SessionProfile(name, intraOpThreads, interOpThreads, executionMode, optLevel,
+                freeDimensions, memoryPattern, cpuArena);
+    }
+
+    public SessionProfile rename(String newName) {
+        return new SessionProfile(newName, intraOpThreads, interOpThreads, executionMode,
+                optLevel, freeDimensions, memoryPattern, cpuArena);
+    }
+
+    /** New SessionOptions with this profile applied; the caller closes them. */
+    public OrtSession.SessionOptions toOptions() throws OrtException {
+        OrtSession.SessionOptions so = new OrtSession.SessionOptions();
+        try {
+            if (intraOpThreads > 0) so.setIntraOpNumThreads(intraOpThreads);
+            if (interOpThreads > 0) so.setInterOpNumThreads(interOpThreads);
+            so.setExecutionMode(executionMode);
+            so.setOptimizationLevel(optLevel);
+            for (Map.Entry<String, Long> e : freeDimensions.entrySet()) {
+                so.setSymbolicDimensionValue(e.getKey(), e.getValue());
+            }
+            so.setMemoryPatternOptimization(memoryPattern);
+            so.setCPUArenaAllocator(cpuArena);
+            return so;
+        } catch (OrtException | RuntimeException e) {
+            so.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s (intra %s, inter %s, %s, %s%s%s%s)", name,
+                intraOpThreads == 0 ? "default" : String.valueOf(intraOpThreads),
+                interOpThreads == 0 ? "default" : String.valueOf(interOpThreads),
+                executionMode, optLevel,
+                freeDimensions.isEmpty() ? "" : ", dims " + freeDimensions,
+                memoryPattern ? "" : ", no mem pattern",
+                cpuArena ? "" : ", no arena");
+    }
+}
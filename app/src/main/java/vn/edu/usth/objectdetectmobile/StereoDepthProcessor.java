@@ -59,22 +59,41 @@ public class StereoDepthProcessor {
         }
         List<ObjectDetector.Detection> out = new ArrayList<>(dets.size());
         for (ObjectDetector.Detection d : dets) {
-            float raw = sampleRawDepth(depthMap, d);
-            float stereoDepth = convertRawToStereoDepth(raw, depthMap);
-            stereoDepth = DepthEstimator.applyCalibration(stereoDepth);
-            float fused = fuseDepthValues(d.depth, stereoDepth);
-            out.add(d.withDepth(fused));
+            out.add(d.withDepth(fusedDepth(depthMap, d.x1, d.y1, d.x2, d.y2, d.depth)));
         }
         return out;
     }
 
+    /** As the List version, updating the depth column of dets in place. */
+    public void fuseDepth(@NonNull DepthEstimator.DepthMap depthMap,
+                          @NonNull DetectionBuffer dets,
+                          int colorWidth,
+                          int colorHeight) {
+        if (dets.isEmpty()) return;
+        if (referenceWidth == 0 || referenceHeight == 0) {
+            setReferenceSize(colorWidth, colorHeight);
+        }
+        for (int i = 0; i < dets.size(); i++) {
+            dets.setDepth(i, fusedDepth(depthMap, dets.x1(i), dets.y1(i), dets.x2(i), dets.y2(i),
+                    dets.depth(i)));
+        }
+    }
+
+    private float fusedDepth(@NonNull DepthEstimator.DepthMap depthMap,
+                             float x1, float y1, float x2, float y2, float monoDepth) {
+        float raw = sampleRawDepth(depthMap, x1, y1, x2, y2);
+        float stereoDepth = convertRawToStereoDepth(raw, depthMap);
+        stereoDepth = DepthEstimator.applyCalibration(stereoDepth);
+        return fuseDepthValues(monoDepth, stereoDepth);
+    }
+
     private float sampleRawDepth(@NonNull DepthEstimator.DepthMap map,
-                                 @NonNull ObjectDetector.Detection d) {
+                                 float bx1, float by1, float bx2, float by2) {
         if (map.width <= 0 || map.height <= 0) return Float.NaN;
-        int x1 = clamp(Math.round(d.x1), 0, map.width - 1);
-        int y1 = clamp(Math.round(d.y1), 0, map.height - 1);
-        int x2 = clamp(Math.round(d.x2), 0, map.width - 1);
-        int y2 = clamp(Math.round(d.y2), 0, map.height - 1);
+        int x1 = clamp(Math.round(bx1), 0, map.width - 1);
+        int y1 = clamp(Math.round(by1), 0, map.height - 1);
+        int x2 = clamp(Math.round(bx2), 0, map.width - 1);
+        int y2 = clamp(Math.round(by2), 0, map.height - 1);
         int spanX = Math.max(1, x2 - x1);
         int spanY = Math.max(1, y2 - y1);
         int stepX = Math.max(1, spanX / 10);
@@ -82,9 +101,8 @@ public class StereoDepthProcessor {
         float sum = 0f;
         int count = 0;
         for (int y = y1; y <= y2; y += stepY) {
-            int base = y * map.width;
             for (int x = x1; x <= x2; x += stepX) {
-                float v = map.depth[base + x];
+                float v = map.at(x, y);
                 if (!Float.isNaN(v) && v > 0f) {
                     sum += v;
                     count++;
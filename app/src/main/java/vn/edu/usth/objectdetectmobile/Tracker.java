@@ -0,0 +1,468 @@
+package vn.edu.usth.objectdetectmobile;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * SORT-style multi-object tracker: a constant-velocity Kalman filter per track and optimal
+ * (Hungarian) assignment of detections to the predicted boxes by IoU. It gives boxes stable
+ * ids and lets the detector skip frames, with the boxes propagated by prediction meanwhile.
+ *
+ * Per frame the caller runs:
+ *
+ *   if (tracker.shouldDetect()) run the detector
+ *   tracker.predict();                       // every frame
+ *   tracker.update(dets);                    // only on frames the detector ran
+ *   tracker.output(out, frameW, frameH);
+ *
+ * The state is SORT's [u, v, s, r, du, dv, ds]: box centre, area and aspect ratio, with
+ * velocities for the first three. Track ages are counted in detector runs, so a track survives
+ * maxAge runs without a match whatever the skip interval. The skip interval adapts to
+ * motion: while the fastest confirmed track moves less than LOW_MOTION of its size per frame,
+ * the detector runs every maxInterval frames; at HIGH_MOTION and above it runs every frame.
+ * It also runs every frame while there are unconfirmed tracks or none at all, and right after
+ * {@link #reset()}.
+ *
+ * As in SORT, a track is reported once it has minHits matches, except during the first minHits
+ * detector runs after construction or {@link #reset()}, when every matched track is: a single
+ * shot, or the first frames after the camera starts, show boxes right away.
+ *
+ * Tracks live in flat primitive arrays (state, covariance, bookkeeping) that only grow, and
+ * the cost matrix and Hungarian buffers are reused, so once warm a frame allocates nothing.
+ * Not thread-safe; the analyzer owns it.
+ */
+public final class Tracker {
+    private static final int DIM = 7, MEAS = 4, COV = DIM * DIM;
+    // SORT's noise settings, in pixels: initial covariance, process and measurement noise
+    private static final float P0_POS = 10f, P0_VEL = 10000f;
+    private static final float Q_POS = 1f, Q_VEL = 0.01f, Q_AREA_VEL = 0.0001f;
+    private static final float R_POS = 1f, R_SHAPE = 10f;
+    // Cost of a pair that may not be matched (different class or IoU below the threshold)
+    private static final float FORBIDDEN = 2f;
+
+    static final float LOW_MOTION = 0.01f, HIGH_MOTION = 0.08f;
+
+    private final float iouThreshold;
+    private final int minHits, maxAge, maxInterval;
+
+    private int count;
+    private int nextId = 1;
+    private float[] x = new float[16 * DIM];
+    private float[] p = new float[16 * COV];
+    private int[] ids = new int[16], cls = new int[16], hits = new int[16], misses = new int[16];
+    private float[] score = new float[16];
+
+    private int framesSinceDetection;
+    // Detector runs since the last reset, for the warm-up rule in output()
+    private int runs;
+    private boolean requested = true;
+
+    // Association scratch
+    private float[] bx1 = new float[16], by1 = new float[16], bx2 = new float[16],
+            by2 = new float[16];
+    private float[] cost = new float[256];
+    private int[] trackMatch = new int[16];
+    private boolean[] detMatched = new boolean[16];
+    private float[] hu = new float[17], hv = new float[17], minv = new float[17];
+    private int[] hp = new int[17], way = new int[17];
+    private boolean[] used = new boolean[17];
+    // Kalman update scratch
+    private final float[] z = new float[MEAS], resid = new float[MEAS];
+    private final float[] aug = new float[MEAS * 2 * MEAS], sInv = new float[MEAS * MEAS];
+    private final float[] gain = new float[DIM * MEAS], top = new float[MEAS * DIM];
+
+    /** IoU 0.3, confirmed after 2 hits, dropped after 3 missed runs, skipping up to 5 frames. */
+    public Tracker() {
+        this(0.3f, 2, 3, 6);
+    }
+
+    /**
+     * @param iouThreshold minimum IoU between a predicted box and a same-class detection
+     * @param minHits      matched detector runs before a track is reported
+     * @param maxAge       detector runs a track survives without a match
+     * @param maxInterval  the detector runs at least every maxInterval frames
+     */
+    public Tracker(float iouThreshold, int minHits, int maxAge, int maxInterval) {
+        this.iouThreshold = iouThreshold;
+        this.minHits = Math.max(1, minHits);
+        this.maxAge = Math.max(0, maxAge);
+        this.maxInterval = Math.max(1, maxInterval);
+    }
+
+    /** Number of live tracks, reported or not. */
+    public int size() {
+        return count;
+    }
+
+    /** Whether the detector should run on the coming frame. */
+    public boolean shouldDetect() {
+        return requested || framesSinceDetection + 1 >= detectionInterval();
+    }
+
+    /**
+     * Drops every track, e.g. when the camera changes or frames stopped coming for a while; the
+     * next frame is a detector frame and starts a new warm-up.
+     */
+    public void reset() {
+        count = 0;
+        requested = true;
+        framesSinceDetection = 0;
+        runs = 0;
+    }
+
+    /** Current detector interval in frames (1 = every frame), from the tracks' motion. */
+    public int detectionInterval() {
+        float motion = 0f;
+        int confirmed = 0;
+        for (int t = 0; t < count; t++) {
+            if (hits[t] < minHits) return 1;
+            confirmed++;
+            int o = t * DIM;
+            float size = (float) Math.sqrt(Math.max(1f, x[o + 2]));
+            motion = Math.max(motion, (float) Math.hypot(x[o + 4], x[o + 5]) / size);
+        }
+        if (confirmed == 0) return 1;
+        if (motion <= LOW_MOTION) return maxInterval;
+        if (motion >= HIGH_MOTION) return 1;
+        float f = (motion - LOW_MOTION) / (HIGH_MOTION - LOW_MOTION);
+        return Math.max(1, Math.round(maxInterval - f * (maxInterval - 1)));
+    }
+
+    /** Advances every track by one frame. Call once per frame, detector or not. */
+    public void predict() {
+        for (int t = 0; t < count; t++) {
+            int o = t * DIM, b = t * COV;
+            if (x[o + 2] + x[o + 6] <= 0f) x[o + 6] = 0f;
+            x[o] += x[o + 4];
+            x[o + 1] += x[o + 5];
+            x[o + 2] += x[o + 6];
+            // P = F P F^T + Q with F = I + E, E moving velocity i + 4 into position i < 3:
+            // rows first (F P), then columns ((F P) F^T)
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < DIM; j++) p[b + i * DIM + j] += p[b + (i + 4) * DIM + j];
+            }
+            for (int i = 0; i < DIM; i++) {
+                for (int j = 0; j < 3; j++) p[b + i * DIM + j] += p[b + i * DIM + j + 4];
+            }
+            for (int i = 0; i < 4; i++) p[b + i * DIM + i] += Q_POS;
+            p[b + 4 * DIM + 4] += Q_VEL;
+            p[b + 5 * DIM + 5] += Q_VEL;
+            p[b + 6 * DIM + 6] += Q_AREA_VEL;
+        }
+        framesSinceDetection++;
+    }
+
+    /**
+     * Associates this frame's detections with the predicted tracks, corrects the matched
+     * tracks, starts tracks for unmatched detections and ages out tracks that keep missing.
+     */
+    public void update(@NonNull DetectionBuffer dets) {
+        int nd = dets.size();
+        ensureScratch(count, nd);
+        for (int t = 0; t < count; t++) {
+            int o = t * DIM;
+            float w = width(o), h = x[o + 2] / Math.max(w, 1e-6f);
+            bx1[t] = x[o] - 0.5f * w;
+            by1[t] = x[o + 1] - 0.5f * h;
+            bx2[t] = x[o] + 0.5f * w;
+            by2[t] = x[o + 1] + 0.5f * h;
+            trackMatch[t] = -1;
+        }
+        Arrays.fill(detMatched, 0, nd, false);
+
+        if (count > 0 && nd > 0) assign(dets, nd);
+
+        int nt = count;
+        for (int t = 0; t < nt; t++) {
+            int d = trackMatch[t];
+            if (d >= 0) {
+                correct(t, dets.x1[d], dets.y1[d], dets.x2[d], dets.y2[d]);
+                score[t] = dets.score[d];
+                hits[t]++;
+                misses[t] = 0;
+            } else {
+                misses[t]++;
+            }
+        }
+        // Drop stale or degenerate tracks (swap-remove: trackMatch is not needed any more)
+        for (int t = count - 1; t >= 0; t--) {
+            int o = t * DIM;
+            if (misses[t] > maxAge || !(x[o + 2] > 0f) || !(x[o + 3] > 0f)) removeAt(t);
+        }
+        for (int d = 0; d < nd; d++) {
+            if (!detMatched[d]) {
+                start(dets.x1[d], dets.y1[d], dets.x2[d], dets.y2[d], dets.score[d], dets.cls[d]);
+            }
+        }
+        framesSinceDetection = 0;
+        requested = false;
+        if (runs <= minHits) runs++;
+    }
+
+    /**
+     * Writes the reported tracks (matched in the last detector run, and confirmed unless still
+     * warming up) as boxes with their ids, clamped to the frame, replacing the contents of out.
+     */
+    public void output(@NonNull DetectionBuffer out, int frameW, int frameH) {
+        out.clear();
+        boolean warmUp = runs <= minHits;
+        for (int t = 0; t < count; t++) {
+            if (misses[t] > 0 || (hits[t] < minHits && !warmUp)) continue;
+            int o = t * DIM;
+            float w = width(o), h = x[o + 2] / Math.max(w, 1e-6f);
+            float x1 = clamp(x[o] - 0.5f * w, frameW), y1 = clamp(x[o + 1] - 0.5f * h, frameH);
+            float x2 = clamp(x[o] + 0.5f * w, frameW), y2 = clamp(x[o + 1] + 0.5f * h, frameH);
+            if (x2 <= x1 || y2 <= y1) continue;
+            int i = out.add(x1, y1, x2, y2, score[t], cls[t]);
+            out.setId(i, ids[t]);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    //  Association
+    // ---------------------------------------------------------------------------------------------
+
+    // Minimum-cost assignment on 1 - IoU; the smaller side is the Hungarian's rows
+    private void assign(DetectionBuffer dets, int nd) {
+        boolean tracksAreRows = count <= nd;
+        int rows = tracksAreRows ? count : nd, cols = tracksAreRows ? nd : count;
+        for (int t = 0; t < count; t++) {
+            for (int d = 0; d < nd; d++) {
+                float c = FORBIDDEN;
+                if (cls[t] == dets.cls[d]) {
+                    float iou = iou(t, dets.x1[d], dets.y1[d], dets.x2[d], dets.y2[d]);
+                    if (iou >= iouThreshold) c = 1f - iou;
+                }
+                cost[tracksAreRows ? t * cols + d : d * cols + t] = c;
+            }
+        }
+        hungarian(rows, cols);
+        for (int j = 1; j <= cols; j++) {
+            int i = hp[j];
+            if (i == 0 || cost[(i - 1) * cols + (j - 1)] >= FORBIDDEN) continue;
+            int t = tracksAreRows ? i - 1 : j - 1, d = tracksAreRows ? j - 1 : i - 1;
+            trackMatch[t] = d;
+            detMatched[d] = true;
+        }
+    }
+
+    /**
+     * Hungarian algorithm (shortest augmenting paths with potentials) on the rows x cols
+     * matrix in cost, rows <= cols. Afterwards hp[j] is the 1-based row assigned to column j,
+     * or 0. O(rows^2 * cols).
+     */
+    private void hungarian(int rows, int cols) {
+        Arrays.fill(hu, 0, rows + 1, 0f);
+        Arrays.fill(hv, 0, cols + 1, 0f);
+        Arrays.fill(hp, 0, cols + 1, 0);
+        for (int i = 1; i <= rows; i++) {
+            hp[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, 0, cols + 1, Float.MAX_VALUE);
+            Arrays.fill(used, 0, cols + 1, false);
+            do {
+                used[j0] = true;
+                int i0 = hp[j0], j1 = 0;
+                float delta = Float.MAX_VALUE;
+                int rowBase = (i0 - 1) * cols - 1;
+                for (int j = 1; j <= cols; j++) {
+                    if (used[j]) continue;
+                    float cur = cost[rowBase + j] - hu[i0] - hv[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= cols; j++) {
+                    if (used[j]) {
+                        hu[hp[j]] += delta;
+                        hv[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (hp[j0] != 0);
+            do {
+                int j1 = way[j0];
+                hp[j0] = hp[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+    }
+
+    private float iou(int t, float x1, float y1, float x2, float y2) {
+        float iw = Math.min(bx2[t], x2) - Math.max(bx1[t], x1);
+        float ih = Math.min(by2[t], y2) - Math.max(by1[t], y1);
+        if (iw <= 0f || ih <= 0f) return 0f;
+        float inter = iw * ih;
+        float a = (bx2[t] - bx1[t]) * (by2[t] - by1[t]);
+        float b = (x2 - x1) * (y2 - y1);
+        return inter / (a + b - inter + 1e-6f);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    //  Kalman filter
+    // ---------------------------------------------------------------------------------------------
+
+    private void start(float x1, float y1, float x2, float y2, float s, int c) {
+        if (x2 <= x1 || y2 <= y1) return;
+        ensureTracks(count + 1);
+        int t = count++, o = t * DIM, b = t * COV;
+        measure(x1, y1, x2, y2);
+        System.arraycopy(z, 0, x, o, MEAS);
+        x[o + 4] = x[o + 5] = x[o + 6] = 0f;
+        Arrays.fill(p, b, b + COV, 0f);
+        for (int i = 0; i < DIM; i++) p[b + i * DIM + i] = i < MEAS ? P0_POS : P0_VEL;
+        ids[t] = nextId++;
+        cls[t] = c;
+        score[t] = s;
+        hits[t] = 1;
+        misses[t] = 0;
+    }
+
+    // Standard Kalman correction with H = [I4 0]: S = P00 + R, K = P[:, 0:4] S^-1,
+    // x += K (z - x[0:4]), P -= K P[0:4, :]
+    private void correct(int t, float x1, float y1, float x2, float y2) {
+        int o = t * DIM, b = t * COV;
+        measure(x1, y1, x2, y2);
+        for (int i = 0; i < MEAS; i++) resid[i] = z[i] - x[o + i];
+        for (int i = 0; i < MEAS; i++) {
+            for (int j = 0; j < MEAS; j++) {
+                float r = i != j ? 0f : i < 2 ? R_POS : R_SHAPE;
+                aug[i * 2 * MEAS + j] = p[b + i * DIM + j] + r;
+                aug[i * 2 * MEAS + MEAS + j] = i == j ? 1f : 0f;
+            }
+        }
+        if (!invert4()) return;
+        for (int i = 0; i < DIM; i++) {
+            for (int j = 0; j < MEAS; j++) {
+                float sum = 0f;
+                for (int k = 0; k < MEAS; k++) sum += p[b + i * DIM + k] * sInv[k * MEAS + j];
+                gain[i * MEAS + j] = sum;
+            }
+        }
+        for (int i = 0; i < DIM; i++) {
+            float dx = 0f;
+            for (int k = 0; k < MEAS; k++) dx += gain[i * MEAS + k] * resid[k];
+            x[o + i] += dx;
+        }
+        System.arraycopy(p, b, top, 0, MEAS * DIM);
+        for (int i = 0; i < DIM; i++) {
+            for (int j = 0; j < DIM; j++) {
+                float sum = 0f;
+                for (int k = 0; k < MEAS; k++) sum += gain[i * MEAS + k] * top[k * DIM + j];
+                p[b + i * DIM + j] -= sum;
+            }
+        }
+    }
+
+    // Gauss-Jordan with partial pivoting on [S | I] in aug; the inverse goes to sInv
+    private boolean invert4() {
+        final int w = 2 * MEAS;
+        for (int c = 0; c < MEAS; c++) {
+            int piv = c;
+            for (int r = c + 1; r < MEAS; r++) {
+                if (Math.abs(aug[r * w + c]) > Math.abs(aug[piv * w + c])) piv = r;
+            }
+            float pv = aug[piv * w + c];
+            if (Math.abs(pv) < 1e-12f) return false;
+            if (piv != c) {
+                for (int k = 0; k < w; k++) {
+                    float tmp = aug[c * w + k];
+                    aug[c * w + k] = aug[piv * w + k];
+                    aug[piv * w + k] = tmp;
+                }
+            }
+            float inv = 1f / pv;
+            for (int k = 0; k < w; k++) aug[c * w + k] *= inv;
+            for (int r = 0; r < MEAS; r++) {
+                if (r == c) continue;
+                float f = aug[r * w + c];
+                if (f == 0f) continue;
+                for (int k = 0; k < w; k++) aug[r * w + k] -= f * aug[c * w + k];
+            }
+        }
+        for (int r = 0; r < MEAS; r++) {
+            System.arraycopy(aug, r * w + MEAS, sInv, r * MEAS, MEAS);
+        }
+        return true;
+    }
+
+    // Box corners -> [u, v, s, r] in z
+    private void measure(float x1, float y1, float x2, float y2) {
+        float w = x2 - x1, h = y2 - y1;
+        z[0] = x1 + 0.5f * w;
+        z[1] = y1 + 0.5f * h;
+        z[2] = w * h;
+        z[3] = w / Math.max(h, 1e-6f);
+    }
+
+    private float width(int o) {
+        return (float) Math.sqrt(Math.max(0f, x[o + 2] * x[o + 3]));
+    }
+
+    private static float clamp(float v, int hi) {
+        return Math.max(0f, Math.min(hi, v));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    //  Storage
+    // ---------------------------------------------------------------------------------------------
+
+    private void removeAt(int t) {
+        int last = --count;
+        if (t == last) return;
+        System.arraycopy(x, last * DIM, x, t * DIM, DIM);
+        System.arraycopy(p, last * COV, p, t * COV, COV);
+        ids[t] = ids[last];
+        cls[t] = cls[last];
+        hits[t] = hits[last];
+        misses[t] = misses[last];
+        score[t] = score[last];
+    }
+
+    private void ensureTracks(int n) {
+        if (ids.length >= n) return;
+        int cap = Math.max(n, 2 * ids.length);
+        x = Arrays.copyOf(x, cap * DIM);
+        p = Arrays.copyOf(p, cap * COV);
+        ids = Arrays.copyOf(ids, cap);
+        cls = Arrays.copyOf(cls, cap);
+        hits = Arrays.copyOf(hits, cap);
+        misses = Arrays.copyOf(misses, cap);
+        score = Arrays.copyOf(score, cap);
+    }
+
+    private void ensureScratch(int tracks, int detections) {
+        if (bx1.length < tracks) {
+            int cap = Math.max(tracks, 2 * bx1.length);
+            bx1 = new float[cap];
+            by1 = new float[cap];
+            bx2 = new float[cap];
+            by2 = new float[cap];
+            trackMatch = new int[cap];
+        }
+        if (detMatched.length < detections) {
+            detMatched = new boolean[Math.max(detections, 2 * detMatched.length)];
+        }
+        if (cost.length < tracks * detections) {
+            cost = new float[Math.max(tracks * detections, 2 * cost.length)];
+        }
+        int side = Math.max(tracks, detections) + 1;
+        if (hu.length < side) {
+            int cap = Math.max(side, 2 * hu.length);
+            hu = new float[cap];
+            hv = new float[cap];
+            minv = new float[cap];
+            hp = new int[cap];
+            way = new int[cap];
+            used = new boolean[cap];
+        }
+    }
+}
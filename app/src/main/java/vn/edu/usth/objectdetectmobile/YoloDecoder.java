@@ -0,0 +1,296 @@
+package vn.edu.usth.objectdetectmobile;
+
+import androidx.annotation.Nullable;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes the YOLOv8 head output ([1, 4 + C, N] or [1, N, 4 + C]) into candidate boxes,
+ * reading the output buffer in place. The detector passes the direct buffer ORT wrote the
+ * output into ({@link PinnedOutputs}), so the tensor is never copied to the Java heap.
+ *
+ * For the usual class-major layout the best class per anchor is found with one pass per
+ * class row: each row is bulk-read from the output buffer into a reusable N-float scratch and
+ * compared element-wise against the running best, so every read is sequential (the old loop
+ * walked the rows with a stride of N for every anchor). Anchors below the confidence
+ * threshold are dropped before any box math, and the survivors go through a bounded min-heap
+ * of primitive (score, anchor) pairs, so at most topK candidates are written no matter how
+ * many anchors fire. Candidates go into a reused {@link DetectionBuffer}; nothing is allocated
+ * per frame.
+ *
+ * Candidates come out in anchor order, the order the old decoder produced them in, so NMS
+ * sees the same input whenever fewer than topK anchors pass the threshold.
+ *
+ * With a class subset ({@link #setClasses}) only the score rows of the wanted classes are
+ * read, and each row reports the class id it stands for. The same mechanism maps the rows of
+ * a model whose head was pruned to a few classes back to the full label indices, so labels,
+ * depth sampling and the tracker see the same class ids with either model.
+ *
+ * Not thread-safe: one instance per detector.
+ */
+final class YoloDecoder {
+    final int topK;
+
+    private float[] best = new float[0];
+    private int[] bestClass = new int[0];
+    private float[] row = new float[0];
+    // Score rows to scan, ascending, and the class id each reports; null = every row, as itself
+    private int[] rows;
+    private int[] ids;
+
+    // Min-heap on score of the kept anchors
+    private final float[] heapScore;
+    private final int[] heapAnchor;
+    private final int[] heapClass;
+    private int heapSize;
+
+    YoloDecoder(int topK) {
+        this.topK = Math.max(1, topK);
+        heapScore = new float[this.topK];
+        heapAnchor = new int[this.topK];
+        heapClass = new int[this.topK];
+    }
+
+    /**
+     * Restricts decoding to a class subset and / or remaps the output rows.
+     *
+     * @param rowIds    class id of each output score row (a pruned head), or null when row c
+     *                  is class c
+     * @param whitelist class ids to keep, or null for all
+     */
+    void setClasses(@Nullable int[] rowIds, @Nullable int[] whitelist) {
+        if (rowIds == null && whitelist == null) {
+            rows = ids = null;
+            return;
+        }
+        int count = rowIds != null ? rowIds.length : whitelist.length;
+        int[] r = new int[count], id = new int[count];
+        int m = 0;
+        if (rowIds == null) {
+            int[] sorted = whitelist.clone();
+            Arrays.sort(sorted);
+            for (int c : sorted) {
+                if (c < 0 || (m > 0 && r[m - 1] == c)) continue;
+                r[m] = c;
+                id[m++] = c;
+            }
+        } else {
+            for (int k = 0; k < rowIds.length; k++) {
+                if (whitelist != null && !contains(whitelist, rowIds[k])) continue;
+                r[m] = k;
+                id[m++] = rowIds[k];
+            }
+        }
+        rows = Arrays.copyOf(r, m);
+        ids = Arrays.copyOf(id, m);
+    }
+
+    /**
+     * Candidates above confThresh (best topK by score), boxes mapped from model input space
+     * back to an imgW x imgH frame: (v - pad) / scale, clamped to the frame.
+     *
+     * @param out     output tensor data, read with absolute gets (position is left as is)
+     * @param dim1    shape[1] of the output
+     * @param dim2    shape[2] of the output
+     */
+    List<ObjectDetector.Detection> decode(FloatBuffer out, int dim1, int dim2, float confThresh,
+                                          float scale, float padX, float padY,
+                                          int imgW, int imgH) {
+        DetectionBuffer dst = new DetectionBuffer(topK);
+        decode(out, dim1, dim2, confThresh, scale, padX, padY, imgW, imgH, dst);
+        return dst.toList();
+    }
+
+    /** Same as the List version, replacing the contents of dst. */
+    void decode(FloatBuffer out, int dim1, int dim2, float confThresh,
+                float scale, float padX, float padY, int imgW, int imgH, DetectionBuffer dst) {
+        dst.clear();
+        boolean classMajor = dim1 < dim2;    // [1, 4 + C, N]; N (anchors) is the long axis
+        int props = classMajor ? dim1 : dim2;
+        int n = classMajor ? dim2 : dim1;
+        int classes = props - 4;
+        heapSize = 0;
+        if (classes <= 0 || n <= 0) return;
+
+        // One view per frame for the positioned bulk reads; the caller's position is untouched
+        FloatBuffer view = out.duplicate();
+        if (classMajor) {
+            selectClassMajor(view, n, classes, confThresh);
+        } else {
+            selectAnchorMajor(view, n, props, classes, confThresh);
+        }
+
+        // Heap order -> anchor order, then box math for the kept anchors only
+        sortHeapByAnchor();
+        for (int k = 0; k < heapSize; k++) {
+            int i = heapAnchor[k];
+            float x, y, w, h;
+            if (classMajor) {
+                x = out.get(i);
+                y = out.get(n + i);
+                w = out.get(2 * n + i);
+                h = out.get(3 * n + i);
+            } else {
+                int base = i * props;
+                x = out.get(base);
+                y = out.get(base + 1);
+                w = out.get(base + 2);
+                h = out.get(base + 3);
+            }
+            float bx = x - w / 2f;
+            float by = y - h / 2f;
+            float ex = x + w / 2f;
+            float ey = y + h / 2f;
+            dst.add(clamp((bx - padX) / scale, imgW),
+                    clamp((by - padY) / scale, imgH),
+                    clamp((ex - padX) / scale, imgW),
+                    clamp((ey - padY) / scale, imgH),
+                    heapScore[k], heapClass[k]);
+        }
+    }
+
+    // One sequential pass per class row; the first class wins ties, as before.
+    private void selectClassMajor(FloatBuffer out, int n, int classes, float confThresh) {
+        if (best.length < n) {
+            best = new float[n];
+            bestClass = new int[n];
+            row = new float[n];
+        }
+        final float[] best = this.best, row = this.row;
+        final int[] bestClass = this.bestClass;
+        final int[] rows = this.rows, ids = this.ids;
+        int scanned = rows == null ? classes : countBelow(rows, classes);
+        if (scanned == 0) return;
+        bulkGet(out, (4 + (rows == null ? 0 : rows[0])) * n, best, n);
+        Arrays.fill(bestClass, 0, n, rows == null ? 0 : ids[0]);
+        for (int k = 1; k < scanned; k++) {
+            int c = rows == null ? k : ids[k];
+            bulkGet(out, (4 + (rows == null ? k : rows[k])) * n, row, n);
+            for (int i = 0; i < n; i++) {
+                float s = row[i];
+                if (s > best[i]) {
+                    best[i] = s;
+                    bestClass[i] = c;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            float s = best[i];
+            if (s > 0f && s >= confThresh) offer(s, i, bestClass[i]);
+        }
+    }
+
+    // Each anchor's scores are already contiguous.
+    private void selectAnchorMajor(FloatBuffer out, int n, int props, int classes,
+                                   float confThresh) {
+        if (row.length < classes) row = new float[classes];
+        final float[] row = this.row;
+        final int[] rows = this.rows, ids = this.ids;
+        int scanned = rows == null ? classes : countBelow(rows, classes);
+        // Only the columns up to the last wanted one are read
+        int len = rows == null || scanned == 0 ? classes : rows[scanned - 1] + 1;
+        for (int i = 0; i < n; i++) {
+            bulkGet(out, i * props + 4, row, len);
+            int bestC = -1;
+            float bestS = 0f;
+            for (int k = 0; k < scanned; k++) {
+                float s = row[rows == null ? k : rows[k]];
+                if (s > bestS) {
+                    bestS = s;
+                    bestC = rows == null ? k : ids[k];
+                }
+            }
+            if (bestC >= 0 && bestS >= confThresh) offer(bestS, i, bestC);
+        }
+    }
+
+    // Rows that exist in an output of this many classes (rows are ascending)
+    private static int countBelow(int[] rows, int classes) {
+        int m = 0;
+        while (m < rows.length && rows[m] < classes) m++;
+        return m;
+    }
+
+    private static boolean contains(int[] a, int v) {
+        for (int x : a) {
+            if (x == v) return true;
+        }
+        return false;
+    }
+
+    private static void bulkGet(FloatBuffer view, int offset, float[] dst, int len) {
+        view.position(offset);
+        view.get(dst, 0, len);
+    }
+
+    private void offer(float score, int anchor, int cls) {
+        if (heapSize < topK) {
+            int k = heapSize++;
+            heapScore[k] = score;
+            heapAnchor[k] = anchor;
+            heapClass[k] = cls;
+            siftUp(k);
+        } else if (score > heapScore[0]) {
+            heapScore[0] = score;
+            heapAnchor[0] = anchor;
+            heapClass[0] = cls;
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int k) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (heapScore[parent] <= heapScore[k]) return;
+            swap(parent, k);
+            k = parent;
+        }
+    }
+
+    private void siftDown(int k) {
+        while (true) {
+            int l = 2 * k + 1;
+            if (l >= heapSize) return;
+            int m = l + 1 < heapSize && heapScore[l + 1] < heapScore[l] ? l + 1 : l;
+            if (heapScore[k] <= heapScore[m]) return;
+            swap(k, m);
+            k = m;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float s = heapScore[a];
+        heapScore[a] = heapScore[b];
+        heapScore[b] = s;
+        int t = heapAnchor[a];
+        heapAnchor[a] = heapAnchor[b];
+        heapAnchor[b] = t;
+        t = heapClass[a];
+        heapClass[a] = heapClass[b];
+        heapClass[b] = t;
+    }
+
+    // Insertion sort by anchor index; the heap is small and this runs once per frame.
+    private void sortHeapByAnchor() {
+        for (int i = 1; i < heapSize; i++) {
+            float s = heapScore[i];
+            int a = heapAnchor[i], c = heapClass[i];
+            int j = i - 1;
+            while (j >= 0 && heapAnchor[j] > a) {
+                heapScore[j + 1] = heapScore[j];
+                heapAnchor[j + 1] = heapAnchor[j];
+                heapClass[j + 1] = heapClass[j];
+                j--;
+            }
+            heapScore[j + 1] = s;
+            heapAnchor[j + 1] = a;
+            heapClass[j + 1] = c;
+        }
+    }
+
+    private static float clamp(float v, int hi) {
+        return Math.max(0, Math.min(hi, v));
+    }
+}
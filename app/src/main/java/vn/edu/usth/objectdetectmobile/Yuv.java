@@ -5,68 +5,272 @@ import java.nio.ByteBuffer;
 
 // Simple YUV_420_888 -> ARGB8888 converter (CPU). Adequate for prototyping.
 public final class Yuv {
+
+    /**
+     * Plain view of the three YUV_420_888 planes of a camera frame. Keeps the converters and
+     * samplers independent of {@link ImageProxy} so they can run on synthetic frames in JVM tests.
+     */
+    public static final class Planes {
+        public final ByteBuffer y, u, v;
+        public final int yRowStride;
+        public final int uvRowStride;
+        public final int uvPixelStride;
+        public final int width, height;
+        /** Chroma layout, worked out once so converters can pick a specialized loop. */
+        public final Layout layout;
+
+        public Planes(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                      int yRowStride, int uvRowStride, int uvPixelStride,
+                      int width, int height) {
+            this.y = y;
+            this.u = u;
+            this.v = v;
+            this.yRowStride = yRowStride;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+            this.width = width;
+            this.height = height;
+            this.layout = uvPixelStride == 1 ? Layout.PLANAR
+                    : uvPixelStride == 2 ? Layout.SEMI_PLANAR
+                    : Layout.GENERIC;
+        }
+
+        public static Planes of(ImageProxy image) {
+            ImageProxy.PlaneProxy[] p = image.getPlanes();
+            return new Planes(p[0].getBuffer(), p[1].getBuffer(), p[2].getBuffer(),
+                    p[0].getRowStride(), p[1].getRowStride(), p[1].getPixelStride(),
+                    image.getWidth(), image.getHeight());
+        }
+    }
+
+    public enum Layout {
+        /** I420: separate U and V planes, pixelStride 1. */
+        PLANAR,
+        /** NV12 / NV21: interleaved chroma, pixelStride 2. */
+        SEMI_PLANAR,
+        /** Any other pixel stride; handled by the generic loop. */
+        GENERIC
+    }
+
+    // BT.601 limited-range coefficients (same integer formula as yuvToArgb) as lookup tables,
+    // so a pixel costs table reads and adds instead of multiply chains.
+    private static final int[] Y_TAB = new int[256];   // 298 * (Y - 16) + 128
+    private static final int[] RV_TAB = new int[256];  // 409 * (V - 128)
+    private static final int[] GU_TAB = new int[256];  // -100 * (U - 128)
+    private static final int[] GV_TAB = new int[256];  // -208 * (V - 128)
+    private static final int[] BU_TAB = new int[256];  // 516 * (U - 128)
+    // Clamp to [0, 255] for (sum >> 8) in [-CLAMP_OFFSET, 1024 - CLAMP_OFFSET)
+    private static final int CLAMP_OFFSET = 384;
+    private static final int[] CLAMP = new int[1024];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            Y_TAB[i] = 298 * (i - 16) + 128;
+            RV_TAB[i] = 409 * (i - 128);
+            GU_TAB[i] = -100 * (i - 128);
+            GV_TAB[i] = -208 * (i - 128);
+            BU_TAB[i] = 516 * (i - 128);
+        }
+        for (int i = 0; i < CLAMP.length; i++) {
+            CLAMP[i] = clamp(i - CLAMP_OFFSET);
+        }
+    }
+
     public static int[] toArgb(ImageProxy image){
-        final int w = image.getWidth(), h = image.getHeight();
-        int[] out = new int[w*h];
+        return toArgb(Planes.of(image));
+    }
+
+    public static int[] toArgb(Planes planes){
+        return toArgb(planes, new int[planes.width*planes.height]);
+    }
 
-        ByteBuffer yb = image.getPlanes()[0].getBuffer();
-        ByteBuffer ub = image.getPlanes()[1].getBuffer();
-        ByteBuffer vb = image.getPlanes()[2].getBuffer();
-        int yRowStride = image.getPlanes()[0].getRowStride();
-        int uvRowStride = image.getPlanes()[1].getRowStride();
-        int uvPixelStride = image.getPlanes()[1].getPixelStride();
+    /**
+     * Converts into a caller-provided buffer of at least width*height ints. Reads the plane
+     * buffers with absolute gets, so no plane copies are made and positions are left untouched.
+     * Dispatches on the plane layout to a loop that converts two pixels per chroma sample;
+     * large frames are split into row bands on {@link ParallelRows}.
+     */
+    public static int[] toArgb(Planes planes, int[] out){
+        if (planes.layout == Layout.PLANAR) {
+            ParallelRows.run(planes.height, planes.width,
+                    (j0, j1) -> convertPlanar(planes, out, j0, j1));
+        } else {
+            ParallelRows.run(planes.height, planes.width,
+                    (j0, j1) -> convertInterleaved(planes, out, planes.uvPixelStride, j0, j1));
+        }
+        return out;
+    }
+
+    // I420: chroma advances one byte per pixel pair. Rows [j0, j1).
+    private static void convertPlanar(Planes planes, int[] out, int j0, int j1){
+        final int w = planes.width;
+        final ByteBuffer y = planes.y, u = planes.u, v = planes.v;
+        final int yRowStride = planes.yRowStride;
+        final int uvRowStride = planes.uvRowStride;
+        final int pairs = w >> 1;
+
+        for (int j = j0; j < j1; j++) {
+            int pY = j * yRowStride;
+            int pUV = (j >> 1) * uvRowStride;
+            int o = j * w;
+            for (int k = 0; k < pairs; k++, pY += 2, pUV++, o += 2) {
+                int U = u.get(pUV) & 0xFF;
+                int V = v.get(pUV) & 0xFF;
+                int r = RV_TAB[V];
+                int g = GU_TAB[U] + GV_TAB[V];
+                int b = BU_TAB[U];
+                int y0 = Y_TAB[y.get(pY) & 0xFF];
+                int y1 = Y_TAB[y.get(pY + 1) & 0xFF];
+                out[o] = pack(y0 + r, y0 + g, y0 + b);
+                out[o + 1] = pack(y1 + r, y1 + g, y1 + b);
+            }
+            if ((w & 1) != 0) {
+                out[o] = yuvToArgb(y.get(pY) & 0xFF, u.get(pUV) & 0xFF, v.get(pUV) & 0xFF);
+            }
+        }
+    }
 
-        byte[] y = new byte[yb.remaining()]; yb.get(y);
-        byte[] u = new byte[ub.remaining()]; ub.get(u);
-        byte[] v = new byte[vb.remaining()]; vb.get(v);
+    // NV12 / NV21 (uvStep 2) and any other pixel stride. Rows [j0, j1).
+    private static void convertInterleaved(Planes planes, int[] out, final int uvStep,
+                                           int j0, int j1){
+        final int w = planes.width;
+        final ByteBuffer y = planes.y, u = planes.u, v = planes.v;
+        final int yRowStride = planes.yRowStride;
+        final int uvRowStride = planes.uvRowStride;
+        final int pairs = w >> 1;
+
+        for (int j = j0; j < j1; j++) {
+            int pY = j * yRowStride;
+            int pUV = (j >> 1) * uvRowStride;
+            int o = j * w;
+            for (int k = 0; k < pairs; k++, pY += 2, pUV += uvStep, o += 2) {
+                int U = u.get(pUV) & 0xFF;
+                int V = v.get(pUV) & 0xFF;
+                int r = RV_TAB[V];
+                int g = GU_TAB[U] + GV_TAB[V];
+                int b = BU_TAB[U];
+                int y0 = Y_TAB[y.get(pY) & 0xFF];
+                int y1 = Y_TAB[y.get(pY + 1) & 0xFF];
+                out[o] = pack(y0 + r, y0 + g, y0 + b);
+                out[o + 1] = pack(y1 + r, y1 + g, y1 + b);
+            }
+            if ((w & 1) != 0) {
+                out[o] = yuvToArgb(y.get(pY) & 0xFF, u.get(pUV) & 0xFF, v.get(pUV) & 0xFF);
+            }
+        }
+    }
+
+    private static int pack(int r, int g, int b){
+        return 0xFF000000
+                | (CLAMP[(r >> 8) + CLAMP_OFFSET] << 16)
+                | (CLAMP[(g >> 8) + CLAMP_OFFSET] << 8)
+                | CLAMP[(b >> 8) + CLAMP_OFFSET];
+    }
+
+    /** Original per-pixel conversion; reference for tests and benchmarks. */
+    static int[] toArgbReference(Planes planes, int[] out){
+        final int w = planes.width, h = planes.height;
+        ByteBuffer y = planes.y, u = planes.u, v = planes.v;
+        int yRowStride = planes.yRowStride;
+        int uvRowStride = planes.uvRowStride;
+        int uvPixelStride = planes.uvPixelStride;
 
         for (int j=0;j<h;j++){
             int pY = j*yRowStride;
             int pUV = (j/2)*uvRowStride;
+            int o = j*w;
             for (int i=0;i<w;i++){
-                int Y = y[pY + i] & 0xFF;
-                int U = u[pUV + (i/2)*uvPixelStride] & 0xFF;
-                int V = v[pUV + (i/2)*uvPixelStride] & 0xFF;
-
-                int C = Y - 16; int D = U - 128; int E = V - 128;
-                int R = clamp((298*C + 409*E + 128)>>8);
-                int G = clamp((298*C - 100*D - 208*E + 128)>>8);
-                int B = clamp((298*C + 516*D + 128)>>8);
-                out[j*w + i] = 0xFF000000 | (R<<16) | (G<<8) | B;
+                int Y = y.get(pY + i) & 0xFF;
+                int U = u.get(pUV + (i/2)*uvPixelStride) & 0xFF;
+                int V = v.get(pUV + (i/2)*uvPixelStride) & 0xFF;
+                out[o + i] = yuvToArgbFormula(Y, U, V);
             }
         }
         return out;
     }
 
+    /**
+     * Converts the single pixel at sensor coordinates (x, y) without building a full frame.
+     * Uses absolute reads, so the plane buffer positions are left untouched.
+     */
+    public static int argbAt(Planes p, int x, int y){
+        int Y = p.y.get(y*p.yRowStride + x) & 0xFF;
+        int uvIndex = (y/2)*p.uvRowStride + (x/2)*p.uvPixelStride;
+        int U = p.u.get(uvIndex) & 0xFF;
+        int V = p.v.get(uvIndex) & 0xFF;
+        return yuvToArgb(Y, U, V);
+    }
+
+    /**
+     * Samples the pixel at (ux, uy) of the upright frame, i.e. the frame Yuv.rotate would
+     * produce for this rotation, by mapping the coordinate back onto the sensor planes.
+     */
+    public static int argbAtUpright(Planes p, int rotation, int ux, int uy){
+        switch (rotation) {
+            case 90:  return argbAt(p, uy, p.height - 1 - ux);
+            case 180: return argbAt(p, p.width - 1 - ux, p.height - 1 - uy);
+            case 270: return argbAt(p, p.width - 1 - uy, ux);
+            default:  return argbAt(p, ux, uy);
+        }
+    }
+
+    static int yuvToArgb(int Y, int U, int V){
+        int y = Y_TAB[Y];
+        return pack(y + RV_TAB[V], y + GU_TAB[U] + GV_TAB[V], y + BU_TAB[U]);
+    }
+
+    static int yuvToArgbFormula(int Y, int U, int V){
+        int C = Y - 16; int D = U - 128; int E = V - 128;
+        int R = clamp((298*C + 409*E + 128)>>8);
+        int G = clamp((298*C - 100*D - 208*E + 128)>>8);
+        int B = clamp((298*C + 516*D + 128)>>8);
+        return 0xFF000000 | (R<<16) | (G<<8) | B;
+    }
+
     public static int[] rotate(int[] src, int w, int h, int rotation){
         if (rotation % 360 == 0) return src;
-        int[] dst = new int[src.length];
+        return rotate(src, w, h, rotation, new int[src.length]);
+    }
+
+    /** Rotates into a caller-provided buffer (must not alias src); row bands in parallel. */
+    public static int[] rotate(int[] src, int w, int h, int rotation, int[] dst){
+        if (rotation % 360 == 0) {
+            if (dst != src) System.arraycopy(src, 0, dst, 0, w*h);
+            return dst;
+        }
+        if (rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        ParallelRows.run(h, w, (y0, y1) -> rotateRows(src, w, h, rotation, dst, y0, y1));
+        return dst;
+    }
+
+    // Source rows [y0, y1) of rotate; each lands in its own column (90/270) or row (180).
+    private static void rotateRows(int[] src, int w, int h, int rotation, int[] dst,
+                                   int y0, int y1){
         switch(rotation){
             case 90:
-                for (int y=0;y<h;y++){
+                for (int y=y0;y<y1;y++){
                     for (int x=0;x<w;x++){
                         dst[x*h + (h-1-y)] = src[y*w + x];
                     }
                 }
                 break;
             case 180:
-                for (int y=0;y<h;y++){
+                for (int y=y0;y<y1;y++){
                     for (int x=0;x<w;x++){
                         dst[(h-1-y)*w + (w-1-x)] = src[y*w + x];
                     }
                 }
                 break;
             case 270:
-                for (int y=0;y<h;y++){
+                for (int y=y0;y<y1;y++){
                     for (int x=0;x<w;x++){
                         dst[(w-1-x)*h + y] = src[y*w + x];
                     }
                 }
                 break;
-            default:
-                throw new IllegalArgumentException("Unsupported rotation: " + rotation);
         }
-        return dst;
     }
     private static int clamp(int v){ return v<0?0:(v>255?255:v); }
 }
@@ -0,0 +1,41 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Assume;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Minimal timing harness for the JVM benchmarks in this source set.
+ *
+ * Benchmarks are ordinary JUnit tests that skip themselves unless the build is run with
+ * {@code ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*Benchmark'}; results are
+ * printed to stdout. JVM numbers are only meaningful relative to each other, not as
+ * on-device latencies.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {}
+
+    static void assumeEnabled() {
+        Assume.assumeTrue("benchmarks run only with -Pbenchmark",
+                Boolean.getBoolean("benchmark"));
+    }
+
+    /** Median wall time of one run in milliseconds, after warmup runs. */
+    static double medianMillis(int warmup, int runs, Runnable body) {
+        for (int i = 0; i < warmup; i++) body.run();
+        double[] samples = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long t0 = System.nanoTime();
+            body.run();
+            samples[i] = (System.nanoTime() - t0) / 1e6;
+        }
+        Arrays.sort(samples);
+        return samples[runs / 2];
+    }
+
+    static void report(String name, double millis) {
+        System.out.println(String.format(Locale.US, "%-48s %9.3f ms", name, millis));
+    }
+}
@@ -0,0 +1,45 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+/**
+ * Cost of the input blur at radius 1, 2 and 4: the old (2r+1)^2 window, the running-sum blur
+ * on the full camera frame, and the running-sum blur fused into the 640x640 letterbox pass.
+ */
+public class BlurBenchmark {
+
+    @Test
+    public void blurCostByRadius() {
+        BenchmarkSupport.assumeEnabled();
+        int[][] frames = {{640, 480}, {1280, 960}};
+        FrameBufferArena arena = new FrameBufferArena();
+        InputTensor tensor = InputTensor.unitScale(640, 640);
+
+        for (int[] f : frames) {
+            int w = f[0], h = f[1];
+            int[] argb = TestFrames.argb(w, h, 1);
+            int[] dst = new int[w * h];
+            int[] scratch = new int[ImageUtils.boxBlurScratchSize(w)];
+            Yuv.Planes planes = TestFrames.yuv(w, h, true, 1);
+            ResamplePlan plan = ResamplePlan.letterbox(w, h, 90, 640, 640,
+                    ResamplePlan.Interpolation.NEAREST);
+
+            BenchmarkSupport.report(w + "x" + h + " letterbox, no blur",
+                    BenchmarkSupport.medianMillis(5, 21, () ->
+                            ObjectDetector.letterbox(plan, planes, 0, tensor, arena)));
+            for (int radius : new int[]{1, 2, 4}) {
+                String tag = w + "x" + h + " r=" + radius;
+                BenchmarkSupport.report(tag + " naive full frame",
+                        BenchmarkSupport.medianMillis(3, 11, () ->
+                                ImageUtils.boxBlurNaive(argb, w, h, radius, dst)));
+                BenchmarkSupport.report(tag + " running-sum full frame",
+                        BenchmarkSupport.medianMillis(5, 21, () ->
+                                ImageUtils.boxBlur(argb, w, h, radius, dst, scratch)));
+                BenchmarkSupport.report(tag + " letterbox + model-res blur",
+                        BenchmarkSupport.medianMillis(5, 21, () ->
+                                ObjectDetector.letterbox(plan, planes, radius,
+                                        tensor, arena)));
+            }
+        }
+    }
+}
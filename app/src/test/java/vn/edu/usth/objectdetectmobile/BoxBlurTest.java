@@ -0,0 +1,41 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BoxBlurTest {
+
+    @Test
+    public void runningSumMatchesNaiveWindow() {
+        int[][] sizes = {{97, 61}, {3, 5}, {1, 1}, {640, 480}};
+        for (int[] size : sizes) {
+            int w = size[0], h = size[1];
+            int[] src = TestFrames.argb(w, h, w * 31L + h);
+            for (int radius = 1; radius <= 6; radius++) {
+                int[] expected = ImageUtils.boxBlurNaive(src, w, h, radius, new int[w * h]);
+                assertArrayEquals(w + "x" + h + " r=" + radius,
+                        expected, ImageUtils.boxBlur(src, w, h, radius));
+            }
+        }
+    }
+
+    @Test
+    public void modelResolutionBlurKeepsLetterboxPadding() {
+        FrameBufferArena arena = new FrameBufferArena();
+        Yuv.Planes planes = TestFrames.yuv(480, 360, false, 5);
+        ResamplePlan plan = ResamplePlan.letterbox(480, 360, 90, 640, 640,
+                ResamplePlan.Interpolation.NEAREST);
+        InputTensor plain = InputTensor.unitScale(640, 640);
+        InputTensor blurred = InputTensor.unitScale(640, 640);
+        ObjectDetector.letterbox(plan, planes, 0, plain, arena);
+        ObjectDetector.letterbox(plan, planes, 1, blurred, arena);
+        // Padding columns stay zero, content differs from the unblurred tensor
+        assertTrue(plan.padX > 0);
+        assertEquals(0f, blurred.data.get(320 * 640 + plan.padX - 1), 0f);
+        float[] a = plain.toArray(), b = blurred.toArray();
+        boolean differs = false;
+        for (int i = 0; i < a.length && !differs; i++) differs = a[i] != b[i];
+        assertTrue(differs);
+    }
+}
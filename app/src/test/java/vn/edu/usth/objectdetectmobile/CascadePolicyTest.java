@@ -0,0 +1,63 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CascadePolicyTest {
+    private static final long GATE_NS = 8_000_000L, MAIN_NS = 80_000_000L;
+
+    // One frame through the policy, the way ObjectDetector drives it; returns true if main ran
+    private static boolean frame(CascadePolicy c, float gateScore, boolean objects) {
+        DetectionBuffer dets = new DetectionBuffer();
+        if (c.runGate()) {
+            if (gateScore > 0f) dets.add(0, 0, 10, 10, gateScore, 0);
+            if (!c.escalate(dets, GATE_NS)) return false;
+        }
+        dets.clear();
+        if (objects) dets.add(0, 0, 10, 10, 0.8f, 0);
+        c.mainDone(dets, MAIN_NS);
+        return true;
+    }
+
+    @Test
+    public void quietSceneRunsOnlyTheGateAndRefreshes() {
+        CascadePolicy c = new CascadePolicy(new CascadePolicy.Settings(0.3f, 30, 5, 30f));
+        int mainRuns = 0;
+        for (int f = 0; f < 300; f++) {
+            if (frame(c, 0.1f, false)) mainRuns++;
+        }
+        assertEquals(10, mainRuns);
+        assertEquals(300, c.frames());
+        assertEquals(1f / 30f, c.escalationRate(), 1e-4f);
+        // 8 ms gate every frame plus an 80 ms refresh every 30th, against 80 ms without it
+        assertEquals(8f + 80f / 30f, c.meanFrameMs(), 0.01f);
+    }
+
+    @Test
+    public void candidateEscalatesTheSameFrameAndStaysOnMain() {
+        CascadePolicy c = new CascadePolicy(new CascadePolicy.Settings(0.3f, 0, 3, 30f));
+        assertFalse(frame(c, 0.2f, false));
+        assertTrue(frame(c, 0.5f, true));
+        assertFalse(c.runGate());
+        for (int f = 0; f < 20; f++) assertTrue(frame(c, 0f, true));
+        assertEquals(0.5f, c.escalationRate(), 1e-6f);
+
+        // The object leaves: main keeps running for quietRuns empty frames, then the gate
+        assertTrue(frame(c, 0f, false));
+        assertTrue(frame(c, 0f, false));
+        assertTrue(frame(c, 0f, false));
+        assertTrue(c.runGate());
+        assertFalse(frame(c, 0f, false));
+    }
+
+    @Test
+    public void gateFalsePositiveDoesNotLeaveGating() {
+        CascadePolicy c = new CascadePolicy(new CascadePolicy.Settings(0.3f, 0, 3, 30f));
+        assertTrue(frame(c, 0.4f, false));
+        assertTrue(c.runGate());
+        assertEquals(1f, c.mainFraction(), 0f);
+        assertFalse(frame(c, 0f, false));
+        assertEquals(0.5f, c.mainFraction(), 0f);
+    }
+}
@@ -0,0 +1,81 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DetectionBufferTest {
+
+    @Test
+    public void listRoundTripKeepsEveryColumn() {
+        DetectionBuffer buf = new DetectionBuffer(2);
+        buf.add(1f, 2f, 3f, 4f, 0.5f, 7);
+        buf.add(5f, 6f, 7f, 8f, 0.9f, 2, 123f);
+        buf.add(9f, 10f, 11f, 12f, 0.3f, 0);     // grows past the initial capacity
+
+        DetectionBuffer copy = new DetectionBuffer(1);
+        copy.copyFrom(buf);
+        List<ObjectDetector.Detection> list = copy.toList();
+        assertEquals(3, list.size());
+        assertEquals(7, list.get(0).cls);
+        assertTrue(Float.isNaN(list.get(0).depth));
+        assertEquals(123f, list.get(1).depth, 0f);
+        assertEquals(11f, list.get(2).x2, 0f);
+
+        DetectionBuffer back = DetectionBuffer.of(list);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(buf.score(i), back.score(i), 0f);
+            assertEquals(buf.y1(i), back.y1(i), 0f);
+        }
+    }
+
+    @Test
+    public void inPlaceNmsMatchesListNms() {
+        List<ObjectDetector.Detection> in = NmsEngineTest.crowd(600, 5, 4);
+        for (NmsEngine engine : new NmsEngine[]{
+                NmsEngine.hard(0.45f, 0),
+                NmsEngine.hard(0.45f, 25),
+                new NmsEngine(NmsEngine.Method.GAUSSIAN, 0.45f, 0.5f, 0.1f, 0, false)}) {
+            List<ObjectDetector.Detection> expected = engine.run(in);
+            DetectionBuffer buf = DetectionBuffer.of(in);
+            engine.run(buf);
+            assertEquals(expected.size(), buf.size());
+            for (int i = 0; i < buf.size(); i++) {
+                ObjectDetector.Detection e = expected.get(i);
+                assertEquals(e.x1, buf.x1(i), 0f);
+                assertEquals(e.y2, buf.y2(i), 0f);
+                assertEquals(e.score, buf.score(i), 0f);
+                assertEquals(e.cls, buf.cls(i));
+            }
+        }
+    }
+
+    @Test
+    public void decodeAndNmsDoNotAllocateOnceWarm() {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        FloatBuffer out = TestFrames.yoloOutput(8400, 80, true, 20, 2);
+        YoloDecoder decoder = new YoloDecoder(512);
+        NmsEngine nms = new NmsEngine(NmsEngine.Method.HARD, 0.45f, 0f, 0f, 300, false);
+        DetectionBuffer dets = new DetectionBuffer();
+        for (int i = 0; i < 50; i++) {
+            decoder.decode(out, 84, 8400, 0.25f, 1f, 0f, 0f, 640, 640, dets);
+            nms.run(dets);
+        }
+        assertFalse(dets.isEmpty());
+
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 20; i++) {
+            decoder.decode(out, 84, 8400, 0.25f, 1f, 0f, 0f, 640, 640, dets);
+            nms.run(dets);
+        }
+        long perFrame = (mx.getThreadAllocatedBytes(tid) - before) / 20;
+        // The decoder's one FloatBuffer view per frame is all that is left
+        assertTrue("allocated " + perFrame + " B per frame", perFrame < 256);
+    }
+}
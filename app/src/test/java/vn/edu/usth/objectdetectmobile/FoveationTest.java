@@ -0,0 +1,123 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FoveationTest {
+    private static final int W = 640, H = 480, CELL = 320;
+    private static final float IOU = 0.45f;
+
+    // Default settings on a 640x480 frame: window (160, 128) 320x320 at scale 1 in the left
+    // cell; the whole frame at scale 0.5, padded to (320, 40), in the right cell
+    private final Foveation fovea = new Foveation(Foveation.Settings.DEFAULT);
+    private final ResamplePlan window, full;
+
+    public FoveationTest() {
+        fovea.window(W, H, CELL, CELL);
+        window = ResamplePlan.crop(W, H, 0, fovea.x(), fovea.y(), fovea.width(), fovea.height(),
+                2 * CELL, CELL, 0, 0, CELL, CELL, ResamplePlan.Interpolation.NEAREST);
+        full = ResamplePlan.crop(W, H, 0, 0, 0, W, H, 2 * CELL, CELL, CELL, 0, CELL, CELL,
+                ResamplePlan.Interpolation.NEAREST);
+    }
+
+    // A frame box as the window cell sees it
+    private void inWindow(DetectionBuffer d, float x1, float y1, float x2, float y2, float s) {
+        d.add(Math.max(0, x1 - 160), Math.max(0, y1 - 128), Math.min(CELL, x2 - 160),
+                Math.min(CELL, y2 - 128), s, 0);
+    }
+
+    // A frame box as the periphery cell sees it
+    private static void inFull(DetectionBuffer d, float x1, float y1, float x2, float y2,
+                               float s) {
+        d.add(x1 / 2 + 320, y1 / 2 + 40, x2 / 2 + 320, y2 / 2 + 40, s, 0);
+    }
+
+    private static void assertBox(DetectionBuffer d, int i, float x1, float y1, float x2,
+                                  float y2) {
+        assertEquals(x1, d.x1(i), 0.01f);
+        assertEquals(y1, d.y1(i), 0.01f);
+        assertEquals(x2, d.x2(i), 0.01f);
+        assertEquals(y2, d.y2(i), 0.01f);
+    }
+
+    @Test
+    public void windowIsNativeSizeAroundTheCentreAndInsideTheFrame() {
+        assertEquals(160, fovea.x());
+        assertEquals(128, fovea.y());
+        assertEquals(320, fovea.width());
+        assertEquals(320, fovea.height());
+        assertEquals(1f, window.scaleX, 0f);
+        assertEquals(0.5f, full.scaleX, 0f);
+
+        Foveation corner = new Foveation(new Foveation.Settings(320, 1f, 1f, 1.5f));
+        corner.window(W, H, CELL, CELL);
+        assertEquals(W - 480, corner.x());
+        assertEquals(0, corner.y());
+        assertEquals(480, corner.width());
+        assertEquals(480, corner.height());
+    }
+
+    @Test
+    public void twoCellsStayWithinOneFullPassOfPixels() {
+        Foveation.Settings big = new Foveation.Settings(640, 0.5f, 0.5f, 1f);
+        assertEquals(Foveation.MAX_CELL, big.cellSize);
+        assertTrue(2 * big.cellSize * big.cellSize <= 640 * 640);
+    }
+
+    @Test
+    public void parsesWindowSpecs() {
+        Foveation.Settings s = Foveation.Settings.parse("0.4, 0.7, 1.5");
+        assertEquals(0.4f, s.centerX, 0f);
+        assertEquals(0.7f, s.centerY, 0f);
+        assertEquals(1.5f, s.windowScale, 0f);
+        assertEquals(Foveation.Settings.DEFAULT.cellSize, s.cellSize);
+        assertEquals(416, Foveation.Settings.parse("0.5,0.5,1,416").cellSize);
+        assertEquals(Foveation.Settings.DEFAULT.centerY, Foveation.Settings.parse("").centerY, 0f);
+    }
+
+    @Test
+    public void windowBoxReplacesItsPeripheryDuplicate() {
+        DetectionBuffer d = new DetectionBuffer();
+        inWindow(d, 200, 200, 262, 260, 0.7f);
+        inFull(d, 198, 202, 260, 262, 0.9f);
+        fovea.merge(d, window, full, IOU);
+        assertEquals(1, d.size());
+        assertBox(d, 0, 200, 200, 262, 260);
+        assertEquals(0.7f, d.score(0), 0f);
+    }
+
+    @Test
+    public void cutOffWindowBoxGivesWayToTheWholeObject() {
+        DetectionBuffer d = new DetectionBuffer();
+        // Crosses the window's left edge at x = 160
+        inWindow(d, 100, 150, 300, 400, 0.8f);
+        inFull(d, 100, 150, 300, 400, 0.6f);
+        fovea.merge(d, window, full, IOU);
+        assertEquals(1, d.size());
+        assertBox(d, 0, 100, 150, 300, 400);
+    }
+
+    @Test
+    public void keepsWhatOnlyOneCellSeesAndDropsPadding() {
+        DetectionBuffer d = new DetectionBuffer();
+        inWindow(d, 300, 300, 310, 312, 0.5f);      // small and far: window only
+        inWindow(d, 400, 420, 470, 460, 0.5f);      // cut at the window bottom, nothing covers it
+        inFull(d, 0, 0, 100, 100, 0.9f);            // outside the window
+        d.add(330, 5, 340, 15, 0.9f, 0);            // centred on the periphery cell's padding
+        fovea.merge(d, window, full, IOU);
+        assertEquals(3, d.size());
+        assertBox(d, 0, 300, 300, 310, 312);
+        assertBox(d, 1, 400, 420, 470, 448);
+        assertBox(d, 2, 0, 0, 100, 100);
+    }
+
+    @Test
+    public void otherClassesAreNotMerged() {
+        DetectionBuffer d = new DetectionBuffer();
+        inWindow(d, 200, 200, 260, 260, 0.7f);
+        d.add(200f / 2 + 320, 200f / 2 + 40, 260f / 2 + 320, 260f / 2 + 40, 0.9f, 1);
+        fovea.merge(d, window, full, IOU);
+        assertEquals(2, d.size());
+    }
+}
@@ -0,0 +1,102 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class Fp16Test {
+
+    @Test
+    public void everyHalfRoundTrips() {
+        for (int bits = 0; bits < 0x10000; bits++) {
+            short h = (short) bits;
+            float f = Fp16.toFloat(h);
+            if (Float.isNaN(f)) {
+                assertTrue(Float.isNaN(Fp16.toFloat(Fp16.fromFloat(f))));
+                continue;
+            }
+            assertEquals("bits " + Integer.toHexString(bits), h, Fp16.fromFloat(f));
+        }
+    }
+
+    @Test
+    public void encodingRoundsToNearestEven() {
+        // Ties go to even: down, then up
+        assertEquals(1f, Fp16.toFloat(Fp16.fromFloat(1f + 0x1p-11f)), 0f);
+        assertEquals(1f + 0x1p-9f, Fp16.toFloat(Fp16.fromFloat(1f + 0x1.8p-10f)), 0f);
+        assertEquals(65504f, Fp16.toFloat(Fp16.fromFloat(65519f)), 0f);
+        assertTrue(Float.isInfinite(Fp16.toFloat(Fp16.fromFloat(65520f))));
+        assertEquals(0x1p-24f, Fp16.toFloat(Fp16.fromFloat(0x1.8p-25f)), 0f);           // subnormal
+        assertEquals(0f, Fp16.toFloat(Fp16.fromFloat(0x1p-26f)), 0f);
+        for (int i = 0; i < 100000; i++) {
+            float f = (i - 50000) * 0.0137f;
+            float back = Fp16.toFloat(Fp16.fromFloat(f));
+            // within half a half-precision ulp (relative 2^-11, absolute 2^-25 near zero)
+            assertEquals(f, back, Math.abs(f) * 0x1p-11f + 0x1p-25f);
+        }
+    }
+
+    @Test
+    public void halfInputMatchesFloatInputWithinHalfPrecision() {
+        float[] mean = {0.485f, 0.456f, 0.406f};
+        float[] std = {0.229f, 0.224f, 0.225f};
+        ResamplePlan plan = DepthEstimator.fitPlan(160, 120, 90, 56, 14,
+                ResamplePlan.Interpolation.BILINEAR);
+        int[] argb = TestFrames.argb(160, 120, 11);
+        InputTensor f = InputTensor.normalized(56, 56, mean, std);
+        f.fill(plan, argb);
+        InputTensor h = InputTensor.normalized(56, 56, mean, std, InputTensor.Format.FLOAT16_NCHW);
+        h.fill(plan, argb);
+        assertEquals(f.nativeBytes(), 2 * h.nativeBytes());
+        float[] a = f.toArray(), b = h.toArray();
+        for (int i = 0; i < a.length; i++) {
+            assertEquals(Fp16.toFloat(Fp16.fromFloat(a[i])), b[i], 0f);
+        }
+    }
+
+    @Test
+    public void depthMapSamplesLikeTheFullFrameUpsample() {
+        int mw = 37, mh = 28, w = 640, h = 480;
+        float[] values = new float[mw * mh];
+        for (int i = 0; i < values.length; i++) values[i] = 0.5f + ((i * 31) % 53) * 0.1f;
+        DepthEstimator.DepthMap map = new DepthEstimator.DepthMap(values, null, mw, mh, w, h,
+                0, 6);
+        // What the map used to hold: the whole frame upsampled up front
+        float[] full = DepthEstimator.resizeBilinear(values, mw, mh, w, h);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                assertEquals(full[y * w + x], map.at(x, y), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void halfDepthMapSamplesLikeTheFloatMap() {
+        int mw = 40, mh = 30, rawW = 56;
+        float[] raw = new float[rawW * 56];
+        short[] rawHalf = new short[raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = 0.5f + (i % 97) * 0.25f;
+            rawHalf[i] = Fp16.fromFloat(raw[i]);
+        }
+        float[] values = DepthEstimator.cropFloats(java.nio.FloatBuffer.wrap(raw), rawW, 8, 13,
+                mw, mh, new float[mw * mh]);
+        short[] halfs = DepthEstimator.cropHalfs(ShortBuffer.wrap(rawHalf), rawW, 8, 13,
+                mw, mh, new short[mw * mh]);
+        DepthEstimator.DepthMap f =
+                new DepthEstimator.DepthMap(values, null, mw, mh, 400, 300, 0, 25);
+        DepthEstimator.DepthMap h =
+                new DepthEstimator.DepthMap(null, halfs, mw, mh, 400, 300, 0, 25);
+        assertTrue(h.isHalfPrecision());
+        assertEquals(f.storageBytes(), 2 * h.storageBytes());
+        assertEquals(raw[13 * rawW + 8], f.at(0, 0), 0f);
+        assertEquals(raw[(13 + mh - 1) * rawW + 8 + mw - 1], f.at(399, 299), 0f);
+        for (int y = 0; y < 300; y += 7) {
+            for (int x = 0; x < 400; x += 9) {
+                assertEquals(f.at(x, y), h.at(x, y), f.at(x, y) * 0x1p-10f);
+            }
+        }
+    }
+}
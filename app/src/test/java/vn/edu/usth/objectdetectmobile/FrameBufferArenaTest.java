@@ -0,0 +1,58 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameBufferArenaTest {
+
+    @Test
+    public void releasedBufferIsReusedForSameSize() {
+        FrameBufferArena arena = new FrameBufferArena();
+        int[] a = arena.acquireInts(100);
+        arena.release(a);
+        assertSame(a, arena.acquireInts(100));
+        assertNotSame(a, arena.acquireInts(100));
+        assertEquals(2, arena.allocationCount());
+    }
+
+    @Test
+    public void doubleReleaseDoesNotHandOutTwice() {
+        FrameBufferArena arena = new FrameBufferArena();
+        float[] a = arena.acquireFloats(16);
+        arena.release(a);
+        arena.release(a);
+        assertSame(a, arena.acquireFloats(16));
+        assertNotSame(a, arena.acquireFloats(16));
+    }
+
+    @Test
+    public void analyzerCycleReachesSteadyState() {
+        FrameBufferArena arena = new FrameBufferArena();
+        Yuv.Planes planes = TestFrames.yuv(320, 240, true, 7);
+        int w = planes.width, h = planes.height;
+        long afterWarmup = 0;
+        for (int frame = 0; frame < 10; frame++) {
+            int[] argb = Yuv.toArgb(planes, arena.acquireInts(w * h));
+            int[] rotated = Yuv.rotate(argb, w, h, 90, arena.acquireInts(w * h));
+            arena.release(argb);
+            int[] blurred = ImageUtils.boxBlur(rotated, h, w, 1, arena.acquireInts(w * h));
+            arena.release(rotated);
+            arena.release(blurred);
+            if (frame == 1) afterWarmup = arena.allocationCount();
+        }
+        assertEquals(afterWarmup, arena.allocationCount());
+    }
+
+    @Test
+    public void bufferOverloadsMatchAllocatingKernels() {
+        Yuv.Planes planes = TestFrames.yuv(64, 48, false, 9);
+        int[] argb = Yuv.toArgb(planes);
+        int[] into = new int[64 * 48];
+        assertArrayEquals(argb, Yuv.toArgb(planes, into));
+        assertArrayEquals(Yuv.rotate(argb, 64, 48, 270),
+                Yuv.rotate(argb, 64, 48, 270, new int[argb.length]));
+        assertArrayEquals(ImageUtils.boxBlur(argb, 64, 48, 2),
+                ImageUtils.boxBlur(argb, 64, 48, 2, new int[argb.length]));
+    }
+}
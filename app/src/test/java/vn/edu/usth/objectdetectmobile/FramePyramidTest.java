@@ -0,0 +1,62 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FramePyramidTest {
+
+    @Test
+    public void firstLevelAveragesLumaPerChromaSample() {
+        for (boolean semiPlanar : new boolean[]{false, true}) {
+            Yuv.Planes p = TestFrames.yuv(64, 48, semiPlanar, 7);
+            CameraFrame frame = new CameraFrame(p, 0, new FrameBufferArena());
+            CameraFrame.Level l1 = frame.level(1);
+            assertEquals(32, l1.width);
+            assertEquals(24, l1.height);
+            for (int j = 0; j < 24; j++) {
+                for (int i = 0; i < 32; i++) {
+                    int y0 = 2 * j * p.yRowStride + 2 * i, y1 = y0 + p.yRowStride;
+                    int sum = (p.y.get(y0) & 0xFF) + (p.y.get(y0 + 1) & 0xFF)
+                            + (p.y.get(y1) & 0xFF) + (p.y.get(y1 + 1) & 0xFF);
+                    int uv = j * p.uvRowStride + i * p.uvPixelStride;
+                    int expected = Yuv.yuvToArgb((sum + 2) >> 2,
+                            p.u.get(uv) & 0xFF, p.v.get(uv) & 0xFF);
+                    assertEquals(expected, l1.argb[j * 32 + i]);
+                }
+            }
+            frame.release();
+        }
+    }
+
+    @Test
+    public void deeperLevelsHalveTheirParentAndAreBuiltOnce() {
+        FrameBufferArena arena = new FrameBufferArena();
+        CameraFrame frame = new CameraFrame(TestFrames.yuv(128, 96, true, 8), 90, arena);
+        CameraFrame.Level l2 = frame.level(2);
+        assertTrue(frame.hasLevel(1));
+        CameraFrame.Level l1 = frame.level(1);
+        int[] expected = new int[32 * 24];
+        CameraFrame.halveArgb(l1.argb, l1.width, l1.height, expected);
+        assertArrayEquals(expected, l2.argb);
+        assertSame(l2, frame.level(2));
+
+        frame.release();
+        assertFalse(frame.hasLevel(1));
+        long allocated = arena.allocationCount();
+        frame.level(2);
+        frame.release();
+        assertEquals(allocated, arena.allocationCount());
+    }
+
+    @Test
+    public void levelForPicksDeepestLevelCoveringTheContent() {
+        CameraFrame frame = new CameraFrame(TestFrames.yuv(1280, 960, true, 9), 90,
+                new FrameBufferArena());
+        // upright 960x1280; level 1 is 480x640, level 2 is 240x320
+        assertEquals(1, frame.levelFor(480, 640));
+        assertEquals(0, frame.levelFor(481, 640));
+        assertEquals(2, frame.levelFor(200, 300));
+        assertEquals(CameraFrame.MAX_LEVELS, frame.levelFor(1, 1));
+    }
+}
@@ -0,0 +1,79 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InputSizeControllerTest {
+
+    // Simulated device: latency proportional to input pixels, costMs640 at 640
+    private static int run(InputSizeController c, float costMs640, int frames, int[] switches) {
+        long now = 0L;
+        for (int f = 0; f < frames; f++) {
+            float r = c.size() / 640f;
+            long latencyNs = (long) (costMs640 * r * r * 1e6f);
+            now += latencyNs;
+            if (c.record(latencyNs, now)) switches[0]++;
+        }
+        return c.size();
+    }
+
+    @Test
+    public void stepsDownUntilTheBudgetIsMet() {
+        InputSizeController c = new InputSizeController(InputSizeController.DEFAULT_SIZES, 100f);
+        int[] switches = {0};
+        // 640: 300 ms, 512: 192, 416: 127, 320: 75
+        assertEquals(320, run(c, 300f, 200, switches));
+        assertEquals(3, switches[0]);
+    }
+
+    @Test
+    public void staysAtTheLargestSizeWhenFastEnough() {
+        InputSizeController c = new InputSizeController(InputSizeController.DEFAULT_SIZES, 100f);
+        int[] switches = {0};
+        assertEquals(640, run(c, 50f, 200, switches));
+        assertEquals(0, switches[0]);
+        assertEquals(20f, c.fps(), 0.5f);
+    }
+
+    @Test
+    public void climbsBackWhenTheDeviceSpeedsUp() {
+        InputSizeController c = new InputSizeController(InputSizeController.DEFAULT_SIZES, 100f);
+        int[] switches = {0};
+        assertEquals(320, run(c, 300f, 200, switches));
+        // The sizes measured as too slow are retried once their measurements go stale.
+        // Projected 640 at 90 ms is over 80% of the budget, so it settles one size below.
+        assertEquals(512, run(c, 90f, 8 * InputSizeController.MEMORY_WINDOWS + 200, switches));
+    }
+
+    @Test
+    public void doesNotOscillateAtTheBudgetEdge() {
+        InputSizeController c = new InputSizeController(InputSizeController.DEFAULT_SIZES, 100f);
+        int[] switches = {0};
+        // 640 at 115 ms is just over budget; 512 at 74 ms projects 640 to 115 ms
+        run(c, 115f, 4 * 8 * InputSizeController.MEMORY_WINDOWS, switches);
+        assertEquals(1, switches[0]);
+        assertEquals(512, c.size());
+    }
+
+    @Test
+    public void ignoresSingleSpikes() {
+        InputSizeController c = new InputSizeController(InputSizeController.DEFAULT_SIZES, 100f);
+        long now = 0L;
+        for (int f = 0; f < 400; f++) {
+            long latencyNs = (f % 10 == 0 ? 400L : 60L) * 1_000_000L;
+            now += latencyNs;
+            assertFalse(c.record(latencyNs, now));
+        }
+        assertEquals(640, c.size());
+    }
+
+    @Test
+    public void noBudgetPinsTheLargestSize() {
+        InputSizeController c = new InputSizeController(InputSizeController.DEFAULT_SIZES, 100f);
+        int[] switches = {0};
+        run(c, 250f, 100, switches);
+        c.setTargetMs(0f);
+        assertEquals(640, run(c, 250f, 10, switches));
+    }
+}
@@ -0,0 +1,120 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ModelAutotunerTest {
+
+    // Fixed medians per asset; records what was timed and the reject threshold it got
+    private static final class FakeTimer implements ModelAutotuner.Timer {
+        final Map<String, Float> ms = new HashMap<>();
+        final List<String> timed = new ArrayList<>();
+        float rejectMs;
+
+        FakeTimer put(String asset, float median) {
+            ms.put(asset, median);
+            return this;
+        }
+
+        @Override
+        public float medianMs(String asset, float rejectMs) {
+            timed.add(asset);
+            this.rejectMs = rejectMs;
+            Float v = ms.get(asset);
+            if (v == null) throw new IllegalStateException("no such model " + asset);
+            return v;
+        }
+    }
+
+    private static ModelAutotuner.Kind kind(String... candidates) {
+        return new ModelAutotuner.Kind("detector", Arrays.asList(candidates), 100f, 640, 32,
+                false);
+    }
+
+    @Test
+    public void stopsAtTheMostAccurateCandidateWithinBudget() {
+        FakeTimer t = new FakeTimer().put("m", 180f).put("s", 90f).put("n", 40f);
+        ModelAutotuner.Choice c = ModelAutotuner.choose(Arrays.asList("m", "s", "n"), 100f, t);
+        assertEquals("s", c.asset);
+        assertEquals(90f, c.medianMs, 0f);
+        assertTrue(c.fits);
+        // n is never timed once s fits
+        assertEquals(Arrays.asList("m", "s"), t.timed);
+        assertEquals(100f * ModelAutotuner.REJECT_FACTOR, t.rejectMs, 0f);
+    }
+
+    @Test
+    public void fallsBackToTheFastestWhenNothingFits() {
+        FakeTimer t = new FakeTimer().put("m", 400f).put("s", 150f).put("n", 220f);
+        ModelAutotuner.Choice c = ModelAutotuner.choose(Arrays.asList("m", "s", "n"), 100f, t);
+        assertEquals("s", c.asset);
+        assertFalse(c.fits);
+        assertEquals(3, t.timed.size());
+    }
+
+    @Test
+    public void skipsCandidatesThatCannotRun() {
+        FakeTimer t = new FakeTimer().put("m", Float.NaN).put("n", 30f);
+        // "s" throws
+        ModelAutotuner.Choice c = ModelAutotuner.choose(Arrays.asList("m", "s", "n"), 100f, t);
+        assertEquals("n", c.asset);
+        assertTrue(c.fits);
+
+        assertNull(ModelAutotuner.choose(Arrays.asList("m", "s"),
+                100f, new FakeTimer().put("m", Float.NaN)));
+        assertNull(ModelAutotuner.choose(Collections.emptyList(), 100f, new FakeTimer()));
+    }
+
+    @Test
+    public void choiceRoundTripsThroughPreferences() {
+        ModelAutotuner.Choice c = new ModelAutotuner.Choice("yolov8s_compatible_fp16.onnx",
+                42.5f, false);
+        ModelAutotuner.Choice d = ModelAutotuner.Choice.decode(c.encode());
+        assertEquals(c.asset, d.asset);
+        assertEquals(c.medianMs, d.medianMs, 0f);
+        assertEquals(c.fits, d.fits);
+
+        assertNull(ModelAutotuner.Choice.decode(null));
+        assertNull(ModelAutotuner.Choice.decode("yolov8s_compatible.onnx"));
+        assertNull(ModelAutotuner.Choice.decode("yolov8s_compatible.onnx;fast;true"));
+    }
+
+    @Test
+    public void keyChangesWithAppVersionRuntimeAndModelSet() {
+        ModelAutotuner.Kind k = kind("m", "s");
+        String base = ModelAutotuner.key("google_Pixel 7_tensor", 1000L, "1.17.0", k);
+        assertEquals(base, ModelAutotuner.key("google_Pixel 7_tensor", 1000L, "1.17.0",
+                kind("m", "s")));
+        assertFalse(base.equals(ModelAutotuner.key("google_Pixel 8_zuma", 1000L, "1.17.0", k)));
+        assertFalse(base.equals(ModelAutotuner.key("google_Pixel 7_tensor", 2000L, "1.17.0", k)));
+        assertFalse(base.equals(ModelAutotuner.key("google_Pixel 7_tensor", 1000L, "1.18.0", k)));
+        assertFalse(base.equals(ModelAutotuner.key("google_Pixel 7_tensor", 1000L, "1.17.0",
+                kind("m", "s", "n"))));
+    }
+
+    @Test
+    public void candidatesAreOrderedMostAccurateFirst() {
+        List<String> det = ModelAutotuner.detectorCandidates();
+        assertEquals(9, det.size());
+        assertEquals("yolov8m_compatible.onnx", det.get(0));
+        assertTrue(det.contains(ObjectDetector.MODEL_ASSET));
+        assertTrue(det.indexOf("yolov8m_compatible_int8.onnx")
+                < det.indexOf("yolov8s_compatible.onnx"));
+        assertEquals("yolov8n_compatible_int8.onnx", det.get(8));
+
+        List<String> indoor = ModelAutotuner.depthCandidates(MainActivity.EnvMode.INDOOR);
+        List<String> outdoor = ModelAutotuner.depthCandidates(MainActivity.EnvMode.OUTDOOR);
+        assertEquals(6, indoor.size());
+        assertTrue(indoor.get(0).contains("hypersim_vitb"));
+        assertTrue(outdoor.get(0).contains("vkitti_vitb"));
+        assertTrue(indoor.get(5).contains("vits_int8"));
+    }
+}
@@ -0,0 +1,65 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ModelInputShapeTest {
+
+    @Test
+    public void dynamicShapeMatchesFrameAspect() {
+        ModelInputShape yolo = new ModelInputShape(-1, -1, 640, 32);
+        assertEquals(480, yolo.width(960, 1280));     // portrait 4:3
+        assertEquals(640, yolo.height(960, 1280));
+        assertEquals(640, yolo.width(1280, 960));     // landscape 4:3
+        assertEquals(480, yolo.height(1280, 960));
+        assertEquals(384, yolo.width(1080, 1920));    // 16:9 -> 360 rounded up to the stride
+        assertEquals(640, yolo.width(500, 500));
+
+        ModelInputShape depth = new ModelInputShape(-1, -1, 518, 14);
+        assertEquals(392, depth.width(960, 1280));
+        assertEquals(518, depth.height(960, 1280));
+    }
+
+    @Test
+    public void fixedDimsAreKept() {
+        ModelInputShape square = new ModelInputShape(640, 640, 640, 32);
+        assertFalse(square.isDynamic());
+        assertEquals(640, square.width(960, 1280));
+        assertEquals(640, square.height(960, 1280));
+    }
+
+    @Test
+    public void rectangularInputsDropThePadding() {
+        // 1280x960 sensor, portrait upright frame
+        ResamplePlan square = ResamplePlan.letterbox(1280, 960, 90, 640, 640,
+                ResamplePlan.Interpolation.NEAREST);
+        assertEquals(80, square.padX);
+        ResamplePlan rect = ResamplePlan.letterbox(1280, 960, 90, 480, 640,
+                ResamplePlan.Interpolation.NEAREST);
+        assertEquals(0, rect.padX);
+        assertEquals(0, rect.padY);
+        assertEquals(square.scaleX, rect.scaleX, 0f);
+
+        ResamplePlan depth = DepthEstimator.fitPlan(1280, 960, 90, 392, 518, 14,
+                ResamplePlan.Interpolation.NEAREST);
+        assertEquals(392, depth.contentW);
+        assertEquals(518, depth.contentH);
+        assertEquals(0, depth.padX);
+        assertEquals(0, depth.padY);
+    }
+
+    @Test
+    public void squareFitIsUnchanged() {
+        for (int rotation : new int[]{0, 90}) {
+            ResamplePlan a = DepthEstimator.fitPlan(640, 480, rotation, 518, 14,
+                    ResamplePlan.Interpolation.NEAREST);
+            ResamplePlan b = DepthEstimator.fitPlan(640, 480, rotation, 518, 518, 14,
+                    ResamplePlan.Interpolation.NEAREST);
+            assertEquals(a.contentW, b.contentW);
+            assertEquals(a.contentH, b.contentH);
+            assertEquals(a.padX, b.padX);
+            assertEquals(a.padY, b.padY);
+        }
+    }
+}
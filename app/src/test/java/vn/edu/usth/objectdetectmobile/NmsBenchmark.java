@@ -0,0 +1,44 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * NMS cost against candidate count: the old list-based greedy loop (sort, remove(0),
+ * removeIf) against the primitive-array engine, serial and per-class parallel. "clustered"
+ * candidates come from decoding a synthetic head output, so each object contributes a cluster
+ * of near-duplicate boxes; "crowd" is a street-like frame where most candidates are distinct
+ * people that survive, the case where the list version goes quadratic.
+ */
+public class NmsBenchmark {
+
+    @Test
+    public void listVsEngineOnCrowdedFrames() {
+        BenchmarkSupport.assumeEnabled();
+        NmsEngine serial = new NmsEngine(NmsEngine.Method.HARD, 0.45f, 0f, 0f, 0, false);
+        NmsEngine parallel = new NmsEngine(NmsEngine.Method.HARD, 0.45f, 0f, 0f, 0, true);
+        NmsEngine soft = new NmsEngine(NmsEngine.Method.GAUSSIAN, 0.45f, 0.5f, 0.05f, 300, true);
+        for (int objects : new int[]{4, 20, 80}) {
+            run("clustered", ObjectDetector.decodeReference(
+                    TestFrames.yoloOutput(8400, 80, true, objects, objects), 84, 8400,
+                    0.25f, 1f, 0f, 0f, 640, 640), serial, parallel, soft);
+        }
+        for (int n : new int[]{100, 500, 2000}) {
+            run("crowd", NmsEngineTest.crowd(n, 6, n), serial, parallel, soft);
+        }
+    }
+
+    private static void run(String tag, List<ObjectDetector.Detection> in, NmsEngine serial,
+                            NmsEngine parallel, NmsEngine soft) {
+        String name = tag + " " + in.size();
+        BenchmarkSupport.report(name + ", list NMS",
+                BenchmarkSupport.medianMillis(20, 21, () -> ObjectDetector.nms(in, 0.45f)));
+        BenchmarkSupport.report(name + ", engine serial",
+                BenchmarkSupport.medianMillis(20, 21, () -> serial.run(in)));
+        BenchmarkSupport.report(name + ", engine parallel",
+                BenchmarkSupport.medianMillis(20, 21, () -> parallel.run(in)));
+        BenchmarkSupport.report(name + ", engine soft (gaussian)",
+                BenchmarkSupport.medianMillis(20, 21, () -> soft.run(in)));
+    }
+}
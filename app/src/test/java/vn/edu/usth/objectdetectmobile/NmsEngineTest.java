@@ -0,0 +1,141 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NmsEngineTest {
+    private ParallelRows runtime;
+    private ParallelRows previous;
+
+    @Before
+    public void installFourThreads() {
+        runtime = new ParallelRows(4);
+        previous = ParallelRows.install(runtime);
+    }
+
+    @After
+    public void restore() {
+        ParallelRows.install(previous);
+        runtime.shutdown();
+    }
+
+    /**
+     * A crowded frame: a few classes with many clustered, overlapping candidates (enough to
+     * take the grid path), scores quantized so ties occur.
+     */
+    static List<ObjectDetector.Detection> crowd(int n, int classes, long seed) {
+        Random rnd = new Random(seed);
+        List<ObjectDetector.Detection> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int cls = rnd.nextInt(classes) * rnd.nextInt(2);   // class 0 is the crowd
+            float cx = (rnd.nextInt(12) * 50f) + rnd.nextFloat() * 30f;
+            float cy = (rnd.nextInt(8) * 60f) + rnd.nextFloat() * 30f;
+            float w = 20f + rnd.nextFloat() * 80f, h = 30f + rnd.nextFloat() * 120f;
+            float x1 = Math.max(0f, cx - w / 2), y1 = Math.max(0f, cy - h / 2);
+            float score = 0.25f + rnd.nextInt(70) * 0.01f;
+            out.add(new ObjectDetector.Detection(x1, y1, Math.min(640f, cx + w / 2),
+                    Math.min(480f, cy + h / 2), score, cls));
+        }
+        return out;
+    }
+
+    @Test
+    public void hardModeMatchesListNms() {
+        for (boolean parallel : new boolean[]{false, true}) {
+            NmsEngine engine = new NmsEngine(NmsEngine.Method.HARD, 0.45f, 0f, 0f, 0, parallel);
+            for (int n : new int[]{0, 1, 5, 40, 300, 1200}) {
+                for (long seed = 1; seed <= 3; seed++) {
+                    List<ObjectDetector.Detection> in = crowd(n, 6, seed * 31 + n);
+                    List<ObjectDetector.Detection> expected = ObjectDetector.nms(in, 0.45f);
+                    List<ObjectDetector.Detection> actual = engine.run(in);
+                    assertEquals("n=" + n, expected.size(), actual.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertSame("n=" + n + " #" + i, expected.get(i), actual.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void capKeepsHighestScores() {
+        List<ObjectDetector.Detection> in = crowd(800, 4, 7);
+        List<ObjectDetector.Detection> all = ObjectDetector.nms(in, 0.45f);
+        List<ObjectDetector.Detection> capped = NmsEngine.hard(0.45f, 20).run(in);
+        assertTrue(all.size() > 20);
+        assertEquals(all.subList(0, 20), capped);
+    }
+
+    @Test
+    public void softModesMatchNaiveSoftNms() {
+        Random rnd = new Random(11);
+        List<ObjectDetector.Detection> in = crowd(400, 3, 5);
+        // distinct scores, so the pick order is unambiguous
+        List<ObjectDetector.Detection> distinct = new ArrayList<>();
+        for (ObjectDetector.Detection d : in) {
+            distinct.add(new ObjectDetector.Detection(d.x1, d.y1, d.x2, d.y2,
+                    d.score + rnd.nextFloat() * 1e-3f, d.cls));
+        }
+        for (NmsEngine.Method method : new NmsEngine.Method[]{
+                NmsEngine.Method.LINEAR, NmsEngine.Method.GAUSSIAN}) {
+            NmsEngine engine = new NmsEngine(method, 0.3f, 0.5f, 0.05f, 0, true);
+            List<ObjectDetector.Detection> expected =
+                    naiveSoft(distinct, method, 0.3f, 0.5f, 0.05f);
+            List<ObjectDetector.Detection> actual = engine.run(distinct);
+            assertEquals(method.name(), expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                ObjectDetector.Detection e = expected.get(i), a = actual.get(i);
+                assertEquals(e.x1, a.x1, 0f);
+                assertEquals(e.y1, a.y1, 0f);
+                assertEquals(e.cls, a.cls);
+                assertEquals(e.score, a.score, 0f);
+            }
+            assertTrue("soft NMS keeps more than hard",
+                    actual.size() > ObjectDetector.nms(distinct, 0.3f).size());
+        }
+    }
+
+    private static List<ObjectDetector.Detection> naiveSoft(List<ObjectDetector.Detection> in,
+                                                            NmsEngine.Method method, float th,
+                                                            float sigma, float minScore) {
+        List<float[]> live = new ArrayList<>();
+        for (ObjectDetector.Detection d : in) {
+            if (d.score >= minScore) live.add(new float[]{d.x1, d.y1, d.x2, d.y2, d.score, d.cls});
+        }
+        List<ObjectDetector.Detection> keep = new ArrayList<>();
+        while (!live.isEmpty()) {
+            int best = 0;
+            for (int i = 1; i < live.size(); i++) if (live.get(i)[4] > live.get(best)[4]) best = i;
+            float[] a = live.remove(best);
+            keep.add(new ObjectDetector.Detection(a[0], a[1], a[2], a[3], a[4], (int) a[5]));
+            for (int i = live.size() - 1; i >= 0; i--) {
+                float[] b = live.get(i);
+                if (b[5] != a[5]) continue;
+                float o = iou(a, b);
+                if (method == NmsEngine.Method.LINEAR) {
+                    if (o > th) b[4] *= 1f - o;
+                } else {
+                    b[4] *= (float) Math.exp(-(o * o) / sigma);
+                }
+                if (b[4] < minScore) live.remove(i);
+            }
+        }
+        keep.sort((d1, d2) -> Float.compare(d2.score, d1.score));
+        return keep;
+    }
+
+    private static float iou(float[] a, float[] b) {
+        float iw = Math.max(0f, Math.min(a[2], b[2]) - Math.max(a[0], b[0]));
+        float ih = Math.max(0f, Math.min(a[3], b[3]) - Math.max(a[1], b[1]));
+        float inter = iw * ih;
+        float areaA = (a[2] - a[0]) * (a[3] - a[1]), areaB = (b[2] - b[0]) * (b[3] - b[1]);
+        return inter / (areaA + areaB - inter + 1e-6f);
+    }
+}
@@ -0,0 +1,41 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import ai.onnxruntime.OrtSession;
+
+import static org.junit.Assert.*;
+
+public class OptimizedModelCacheTest {
+
+    @Test
+    public void keyIgnoresThreadsButNotGraphSettings() {
+        SessionProfile shared = SessionProfile.forDevice(SessionProfile.SHARED, 8);
+        SessionProfile exclusive = SessionProfile.forDevice(SessionProfile.EXCLUSIVE, 8);
+        String key = OptimizedModelCache.profileKey(shared);
+
+        assertEquals(key, OptimizedModelCache.profileKey(exclusive.withMemory(false, false)));
+        assertFalse(key.equals(OptimizedModelCache.profileKey(
+                shared.withOptLevel(OrtSession.SessionOptions.OptLevel.BASIC_OPT))));
+        assertFalse(key.equals(OptimizedModelCache.profileKey(
+                shared.withFreeDimension("height", 480))));
+    }
+
+    @Test
+    public void sha256OfFile() throws Exception {
+        File f = File.createTempFile("model", ".onnx");
+        try {
+            try (FileOutputStream out = new FileOutputStream(f)) {
+                out.write("abc".getBytes(StandardCharsets.US_ASCII));
+            }
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                    OptimizedModelCache.sha256(f));
+        } finally {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+/**
+ * Scaling of the row-band kernels with 1, 2, 4 and 8 pool threads (1 = serial on the
+ * calling thread). Speedups are bounded by the cores of the machine running the benchmark.
+ */
+public class ParallelBenchmark {
+
+    @Test
+    public void kernelScalingByThreadCount() {
+        BenchmarkSupport.assumeEnabled();
+        int w = 1280, h = 960;
+        Yuv.Planes planes = TestFrames.yuv(w, h, true, 1);
+        int[] argb = new int[w * h];
+        int[] tmp = new int[w * h];
+        float[] depth = new float[518 * 392];
+        float[] depthFull = new float[w * h];
+        InputTensor tensor = InputTensor.unitScale(640, 640);
+        ResamplePlan area = ResamplePlan.letterbox(w, h, 90, 640, 640,
+                ResamplePlan.Interpolation.AREA);
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            ParallelRows runtime = new ParallelRows(threads);
+            ParallelRows previous = ParallelRows.install(runtime);
+            try {
+                String t = threads + "T ";
+                BenchmarkSupport.report(t + "Yuv.toArgb 1280x960",
+                        BenchmarkSupport.medianMillis(5, 21, () -> Yuv.toArgb(planes, argb)));
+                BenchmarkSupport.report(t + "Yuv.rotate 90 1280x960",
+                        BenchmarkSupport.medianMillis(5, 21, () ->
+                                Yuv.rotate(argb, w, h, 90, tmp)));
+                BenchmarkSupport.report(t + "boxBlur r=8 1280x960",
+                        BenchmarkSupport.medianMillis(5, 21, () ->
+                                ImageUtils.boxBlur(argb, w, h, 8, tmp)));
+                BenchmarkSupport.report(t + "InputTensor.fill AREA 640",
+                        BenchmarkSupport.medianMillis(5, 21, () -> tensor.fill(area, planes)));
+                BenchmarkSupport.report(t + "depth resizeBilinear to 1280x960",
+                        BenchmarkSupport.medianMillis(5, 21, () ->
+                                DepthEstimator.resizeBilinear(depth, 518, 392, w, h, depthFull)));
+            } finally {
+                ParallelRows.install(previous);
+                runtime.shutdown();
+            }
+        }
+    }
+}
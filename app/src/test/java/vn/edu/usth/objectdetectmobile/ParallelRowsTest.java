@@ -0,0 +1,92 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class ParallelRowsTest {
+    private ParallelRows runtime;
+    private ParallelRows previous;
+
+    @Before
+    public void installFourThreads() {
+        runtime = new ParallelRows(4);
+        previous = ParallelRows.install(runtime);
+    }
+
+    @After
+    public void restore() {
+        ParallelRows.install(previous);
+        runtime.shutdown();
+    }
+
+    @Test
+    public void bandsCoverEveryRowOnce() {
+        int rows = 1000;
+        AtomicIntegerArray hits = new AtomicIntegerArray(rows);
+        runtime.forRows(rows, 4096, 1, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) hits.incrementAndGet(y);
+        });
+        for (int y = 0; y < rows; y++) assertEquals("row " + y, 1, hits.get(y));
+    }
+
+    @Test
+    public void smallJobsRunSeriallyOnCaller() {
+        Thread caller = Thread.currentThread();
+        int[] calls = new int[1];
+        runtime.forRows(16, 64, 1, (y0, y1) -> {
+            assertSame(caller, Thread.currentThread());
+            assertEquals(0, y0);
+            assertEquals(16, y1);
+            calls[0]++;
+        });
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void grainAdaptsToRowCostAndThreads() {
+        // Cheap rows: bands sized by minimum work
+        assertEquals(ParallelRows.MIN_BAND_WORK / 64, runtime.grain(1000, 64, 1));
+        // Expensive rows: bands sized to give each thread several of them
+        assertEquals(2000 / (4 * ParallelRows.BANDS_PER_THREAD), runtime.grain(2000, 1 << 20, 1));
+        // Kernels that need tall bands (blur) get at least minRows
+        assertEquals(50, runtime.grain(400, 1 << 20, 50));
+    }
+
+    @Test
+    public void parallelKernelsMatchSerialResults() {
+        int w = 640, h = 480;
+        Yuv.Planes planes = TestFrames.yuv(w, h, true, 8);
+        int[] argb = Yuv.toArgb(planes, new int[w * h]);
+        assertArrayEquals(Yuv.toArgbReference(planes, new int[w * h]), argb);
+
+        int[] rotated = Yuv.rotate(argb, w, h, 90);
+        for (int y = 0; y < h; y += 37) {
+            for (int x = 0; x < w; x += 41) {
+                assertEquals(argb[y * w + x], rotated[x * h + (h - 1 - y)]);
+            }
+        }
+
+        for (int radius : new int[]{1, 3, 20}) {
+            assertArrayEquals("radius " + radius,
+                    ImageUtils.boxBlurNaive(argb, w, h, radius, new int[w * h]),
+                    ImageUtils.boxBlur(argb, w, h, radius));
+        }
+
+        ResamplePlan plan = ResamplePlan.letterbox(w, h, 90, 640, 640,
+                ResamplePlan.Interpolation.AREA);
+        int[] gathered = new int[plan.contentW * plan.contentH];
+        plan.gather(planes, gathered);
+        int[] row = new int[plan.contentW];
+        for (int y = 0; y < plan.contentH; y += 13) {
+            plan.gatherRow(planes, y, row, 0);
+            for (int x = 0; x < plan.contentW; x++) {
+                assertEquals(row[x], gathered[y * plan.contentW + x]);
+            }
+        }
+    }
+}
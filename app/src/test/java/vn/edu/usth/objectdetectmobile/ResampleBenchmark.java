@@ -0,0 +1,86 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+/**
+ * Letterbox cost per interpolation mode against the direct nearest-neighbour loop on an
+ * upright ARGB frame (which also needs the toArgb + rotate passes not timed here), and the
+ * detector + depth inputs built from the shared frame pyramid vs each from the planes, and
+ * the YUV vs RGBA ingestion paths.
+ */
+public class ResampleBenchmark {
+
+    @Test
+    public void letterboxCostByMode() {
+        BenchmarkSupport.assumeEnabled();
+        int[][] frames = {{640, 480}, {1280, 960}};
+        float[] reference = new float[3 * 640 * 640];
+        InputTensor tensor = InputTensor.unitScale(640, 640);
+        FrameBufferArena arena = new FrameBufferArena();
+
+        for (int[] f : frames) {
+            int w = f[0], h = f[1];
+            int[] upright = TestFrames.argb(h, w, 1);
+            Yuv.Planes planes = TestFrames.yuv(w, h, true, 1);
+            BenchmarkSupport.report(w + "x" + h + " direct loop, upright ARGB",
+                    BenchmarkSupport.medianMillis(5, 21, () ->
+                            ObjectDetector.letterboxArgb(upright, h, w, reference, 640, 640)));
+            for (ResamplePlan.Interpolation mode : ResamplePlan.Interpolation.values()) {
+                ResamplePlan plan = ResamplePlan.letterbox(w, h, 90, 640, 640, mode);
+                BenchmarkSupport.report(w + "x" + h + " plan " + mode + ", YUV rot 90",
+                        BenchmarkSupport.medianMillis(5, 21, () ->
+                                ObjectDetector.letterbox(plan, planes, 0, tensor, arena)));
+            }
+        }
+    }
+
+    @Test
+    public void sharedPyramidVsPerConsumerResample() {
+        BenchmarkSupport.assumeEnabled();
+        int w = 1280, h = 960;
+        Yuv.Planes planes = TestFrames.yuv(w, h, true, 2);
+        FrameBufferArena arena = new FrameBufferArena();
+        InputTensor detIn = InputTensor.unitScale(640, 640);
+        InputTensor depthIn = InputTensor.unitScale(518, 518);
+        ResamplePlan.Interpolation mode = ResamplePlan.Interpolation.AREA;
+        ResamplePlan detFull = ResamplePlan.letterbox(w, h, 90, 640, 640, mode);
+        ResamplePlan depthFull = DepthEstimator.fitPlan(w, h, 90, 518, 14, mode);
+
+        BenchmarkSupport.report("1280x960 AREA, each consumer from planes",
+                BenchmarkSupport.medianMillis(5, 21, () -> {
+                    detIn.fill(detFull, planes);
+                    depthIn.fill(depthFull, planes);
+                }));
+
+        ResamplePlan detLevel = ResamplePlan.letterbox(w / 2, h / 2, 90, 640, 640, mode);
+        ResamplePlan depthLevel = ResamplePlan.fit(w / 2, h / 2, 90, 518, 518, mode,
+                depthFull.contentW, depthFull.contentH, depthFull.padX, depthFull.padY);
+        BenchmarkSupport.report("1280x960 AREA, shared level 1",
+                BenchmarkSupport.medianMillis(5, 21, () -> {
+                    CameraFrame frame = new CameraFrame(planes, 90, arena);
+                    CameraFrame.Level l1 = frame.level(1);
+                    detIn.fill(detLevel, l1.argb);
+                    depthIn.fill(depthLevel, l1.argb);
+                    frame.release();
+                }));
+    }
+
+    @Test
+    public void yuvVsRgbaIngestion() {
+        BenchmarkSupport.assumeEnabled();
+        int w = 640, h = 480;
+        Yuv.Planes planes = TestFrames.yuv(w, h, true, 3);
+        Rgba.Plane rgba = TestFrames.rgba(TestFrames.argb(w, h, 3), w, h);
+        InputTensor tensor = InputTensor.unitScale(640, 640);
+        FrameBufferArena arena = new FrameBufferArena();
+        for (ResamplePlan.Interpolation mode : ResamplePlan.Interpolation.values()) {
+            ResamplePlan plan = ResamplePlan.letterbox(w, h, 90, 640, 640, mode);
+            BenchmarkSupport.report("640x480 " + mode + ", YUV planes",
+                    BenchmarkSupport.medianMillis(5, 21, () ->
+                            ObjectDetector.letterbox(plan, planes, 0, tensor, arena)));
+            BenchmarkSupport.report("640x480 " + mode + ", RGBA plane",
+                    BenchmarkSupport.medianMillis(5, 21, () ->
+                            ObjectDetector.letterbox(plan, rgba, 0, tensor, arena)));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ResamplePlanTest {
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    @Test
+    public void rotationInTablesMatchesRotatingFirst_allModes() {
+        int w = 200, h = 150;
+        int[] sensor = TestFrames.argb(w, h, 21);
+        for (ResamplePlan.Interpolation mode : ResamplePlan.Interpolation.values()) {
+            for (int rotation : ROTATIONS) {
+                int[] upright = Yuv.rotate(sensor, w, h, rotation);
+                boolean swap = rotation == 90 || rotation == 270;
+                ResamplePlan ref = ResamplePlan.letterbox(swap ? h : w, swap ? w : h, 0,
+                        96, 96, mode);
+                ResamplePlan plan = ResamplePlan.letterbox(w, h, rotation, 96, 96, mode);
+
+                InputTensor expected = InputTensor.unitScale(96, 96);
+                expected.fill(ref, upright);
+                InputTensor actual = InputTensor.unitScale(96, 96);
+                actual.fill(plan, sensor);
+                assertArrayEquals(mode + " rotation " + rotation,
+                        expected.toArray(), actual.toArray(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void cropMatchesLetterboxingTheCroppedUprightFrame_allModes() {
+        int w = 200, h = 150;
+        int[] sensor = TestFrames.argb(w, h, 22);
+        int cx = 30, cy = 20, cw = 72, ch = 50;
+        for (ResamplePlan.Interpolation mode : ResamplePlan.Interpolation.values()) {
+            for (int rotation : ROTATIONS) {
+                int[] upright = Yuv.rotate(sensor, w, h, rotation);
+                int uw = rotation == 90 || rotation == 270 ? h : w;
+                int[] cropped = new int[cw * ch];
+                for (int y = 0; y < ch; y++) {
+                    System.arraycopy(upright, (cy + y) * uw + cx, cropped, y * cw, cw);
+                }
+                ResamplePlan ref = ResamplePlan.letterbox(cw, ch, 0, 64, 64, mode);
+                // Second cell of a 128 x 64 mosaic
+                ResamplePlan plan = ResamplePlan.crop(w, h, rotation, cx, cy, cw, ch,
+                        128, 64, 64, 0, 64, 64, mode);
+                assertEquals(ref.contentW, plan.contentW);
+                assertEquals(ref.contentH, plan.contentH);
+                assertEquals(64 + ref.padX, plan.padX);
+                assertEquals(ref.padY, plan.padY);
+
+                int[] expected = new int[ref.contentW], actual = new int[plan.contentW];
+                for (int y = 0; y < plan.contentH; y++) {
+                    ref.gatherRow(cropped, y, expected, 0);
+                    plan.gatherRow(sensor, y, actual, 0);
+                    assertArrayEquals(mode + " rotation " + rotation + " row " + y,
+                            expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void flatFrameIsPreservedByEveryMode() {
+        int w = 120, h = 90;
+        int[] argb = new int[w * h];
+        Arrays.fill(argb, 0xFF336699);
+        Yuv.Planes planes = flatYuv(w, h, 120, 100, 160);
+        int yuvColor = Yuv.yuvToArgb(120, 100, 160);
+
+        int[] row = new int[64];
+        for (ResamplePlan.Interpolation mode : ResamplePlan.Interpolation.values()) {
+            for (int rotation : ROTATIONS) {
+                ResamplePlan plan = ResamplePlan.letterbox(w, h, rotation, 64, 64, mode);
+                for (int y = 0; y < plan.contentH; y++) {
+                    plan.gatherRow(argb, y, row, 0);
+                    for (int x = 0; x < plan.contentW; x++) assertEquals(0xFF336699, row[x]);
+                    plan.gatherRow(planes, y, row, 0);
+                    for (int x = 0; x < plan.contentW; x++) assertEquals(yuvColor, row[x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bilinearAtUnitScaleIsIdentity() {
+        int[] argb = TestFrames.argb(64, 64, 5);
+        ResamplePlan plan = ResamplePlan.letterbox(64, 64, 0, 64, 64,
+                ResamplePlan.Interpolation.BILINEAR);
+        int[] out = new int[64];
+        for (int y = 0; y < 64; y++) {
+            plan.gatherRow(argb, y, out, 0);
+            assertArrayEquals(Arrays.copyOfRange(argb, y * 64, y * 64 + 64), out);
+        }
+    }
+
+    @Test
+    public void areaAveragesTheSourceSpan() {
+        // 2x2 -> 1x1: the single output pixel is the mean of all four
+        int[] argb = {0xFF000000, 0xFF040404, 0xFF080808, 0xFF0C0C0C};
+        ResamplePlan plan = ResamplePlan.letterbox(2, 2, 0, 1, 1, ResamplePlan.Interpolation.AREA);
+        int[] out = new int[1];
+        plan.gatherRow(argb, 0, out, 0);
+        assertEquals(0xFF060606, out[0]);
+    }
+
+    @Test
+    public void paddingSurvivesGeometryChanges() {
+        int[] wide = TestFrames.argb(160, 90, 1);
+        int[] tall = TestFrames.argb(90, 160, 2);
+        ResamplePlan widePlan = ResamplePlan.letterbox(160, 90, 0, 64, 64,
+                ResamplePlan.Interpolation.NEAREST);
+        ResamplePlan tallPlan = ResamplePlan.letterbox(90, 160, 0, 64, 64,
+                ResamplePlan.Interpolation.NEAREST);
+
+        InputTensor reused = InputTensor.unitScale(64, 64);
+        reused.fill(widePlan, wide);
+        reused.fill(tallPlan, tall);
+        reused.fill(tallPlan, tall);
+        InputTensor fresh = InputTensor.unitScale(64, 64);
+        fresh.fill(tallPlan, tall);
+        assertArrayEquals(fresh.toArray(), reused.toArray(), 0f);
+
+        reused.fill(widePlan, wide);
+        fresh = InputTensor.unitScale(64, 64);
+        fresh.fill(widePlan, wide);
+        assertArrayEquals(fresh.toArray(), reused.toArray(), 0f);
+    }
+
+    @Test
+    public void cacheReturnsSamePlanForSameGeometry() {
+        ResamplePlan.Cache cache = new ResamplePlan.Cache(2);
+        ResamplePlan.Interpolation nearest = ResamplePlan.Interpolation.NEAREST;
+        ResamplePlan a = cache.letterbox(640, 480, 90, 640, 640, nearest);
+        assertSame(a, cache.letterbox(640, 480, 90, 640, 640, nearest));
+        ResamplePlan b = cache.letterbox(640, 480, 0, 640, 640, nearest);
+        assertNotSame(a, b);
+        assertSame(a, cache.letterbox(640, 480, 90, 640, 640, nearest));
+        assertNotSame(a, cache.letterbox(640, 480, 90, 640, 640, ResamplePlan.Interpolation.AREA));
+    }
+
+    private static Yuv.Planes flatYuv(int w, int h, int yv, int uv, int vv) {
+        byte[] y = new byte[w * h];
+        byte[] u = new byte[(w / 2) * (h / 2)];
+        byte[] v = new byte[u.length];
+        Arrays.fill(y, (byte) yv);
+        Arrays.fill(u, (byte) uv);
+        Arrays.fill(v, (byte) vv);
+        return new Yuv.Planes(ByteBuffer.wrap(y), ByteBuffer.wrap(u), ByteBuffer.wrap(v),
+                w, w / 2, 1, w, h);
+    }
+}
@@ -0,0 +1,50 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RgbaInputTest {
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    @Test
+    public void toArgbSkipsRowPadding() {
+        int w = 37, h = 23;
+        int[] argb = TestFrames.argb(w, h, 3);
+        assertArrayEquals(argb, Rgba.toArgb(TestFrames.rgba(argb, w, h), new int[w * h]));
+    }
+
+    @Test
+    public void planeSamplingMatchesArgbSampling_allModes() {
+        int w = 160, h = 120;
+        int[] argb = TestFrames.argb(w, h, 9);
+        Rgba.Plane plane = TestFrames.rgba(argb, w, h);
+        for (ResamplePlan.Interpolation mode : ResamplePlan.Interpolation.values()) {
+            for (int rotation : ROTATIONS) {
+                ResamplePlan plan = ResamplePlan.letterbox(w, h, rotation, 96, 96, mode);
+                InputTensor expected = InputTensor.unitScale(96, 96);
+                expected.fill(plan, argb);
+                InputTensor actual = InputTensor.unitScale(96, 96);
+                actual.fill(plan, plane);
+                assertArrayEquals(mode + " rotation " + rotation,
+                        expected.toArray(), actual.toArray(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void pyramidLevelFromPlaneMatchesArgbHalving() {
+        int w = 64, h = 48;
+        int[] argb = TestFrames.argb(w, h, 4);
+        CameraFrame frame = new CameraFrame(TestFrames.rgba(argb, w, h), 90,
+                new FrameBufferArena());
+        assertEquals(h, frame.width());
+        assertEquals(w, frame.height());
+
+        int[] expected = new int[(w / 2) * (h / 2)];
+        CameraFrame.halveArgb(argb, w, h, expected);
+        assertArrayEquals(expected, frame.level(1).argb);
+        assertArrayEquals(Yuv.rotate(argb, w, h, 90), frame.argb());
+        frame.release();
+    }
+}
@@ -0,0 +1,121 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RoiSchedulerTest {
+    private static final int W = 640, H = 480;
+
+    private static RoiScheduler.Settings settings(int interval, int maxRois) {
+        return new RoiScheduler.Settings(interval, 0.25f, maxRois, 64, 0.5f, 0.4f, 320);
+    }
+
+    private static DetectionBuffer boxes(float... xyxy) {
+        DetectionBuffer b = new DetectionBuffer();
+        for (int i = 0; i < xyxy.length; i += 4) {
+            b.add(xyxy[i], xyxy[i + 1], xyxy[i + 2], xyxy[i + 3], 0.9f, 0);
+        }
+        return b;
+    }
+
+    @Test
+    public void fullFrameFirstThenCropsUntilTheInterval() {
+        RoiScheduler s = new RoiScheduler(settings(4, 4));
+        DetectionBuffer dets = boxes(100, 100, 160, 180);
+        assertEquals(0, s.plan(W, H));
+        s.update(dets, true);
+        for (int f = 0; f < 3; f++) {
+            assertEquals("frame " + f, 1, s.plan(W, H));
+            s.update(dets, false);
+        }
+        assertEquals(0, s.plan(W, H));
+        assertEquals(0.75f, s.roiFraction(), 1e-6f);
+    }
+
+    @Test
+    public void resetForcesAFullFrame() {
+        RoiScheduler s = new RoiScheduler(settings(10, 4));
+        s.update(boxes(100, 100, 160, 180), true);
+        assertEquals(1, s.plan(W, H));
+        s.reset();
+        assertEquals(0, s.plan(W, H));
+    }
+
+    @Test
+    public void cropsCoverTheBoxWithMarginSnappedToTheGrid() {
+        RoiScheduler s = new RoiScheduler(settings(10, 4));
+        s.update(boxes(100, 100, 180, 260), true);
+        assertEquals(1, s.plan(W, H));
+        // 80 x 160 box, 25% per side -> 120 x 240 around (140, 180)
+        assertEquals(80, s.x(0));
+        assertEquals(48, s.y(0));
+        assertEquals(128, s.width(0));
+        assertEquals(256, s.height(0));
+        assertEquals(0, s.x(0) % RoiScheduler.QUANTUM);
+    }
+
+    @Test
+    public void overlappingBoxesShareACropAndTheRestAreMergedDownToMax() {
+        RoiScheduler s = new RoiScheduler(settings(10, 2));
+        // Two touching boxes on the left, two far apart on the right
+        s.update(boxes(20, 20, 60, 60, 60, 20, 100, 60, 500, 20, 540, 60, 500, 400, 540, 440),
+                true);
+        int n = s.plan(W, H);
+        assertEquals(2, n);
+        for (int i = 0; i < n; i++) {
+            assertTrue(s.x(i) >= 0 && s.x(i) + s.width(i) <= W);
+            assertTrue(s.y(i) >= 0 && s.y(i) + s.height(i) <= H);
+        }
+    }
+
+    @Test
+    public void lostObjectOrLowScoreForcesAFullFrame() {
+        RoiScheduler s = new RoiScheduler(settings(10, 4));
+        s.update(boxes(100, 100, 160, 180, 400, 100, 460, 180), true);
+        assertEquals(2, s.plan(W, H));
+        s.update(boxes(102, 100, 162, 180), false);   // the second object is gone
+        assertEquals(0, s.plan(W, H));
+
+        s.update(boxes(100, 100, 160, 180), true);
+        assertEquals(1, s.plan(W, H));
+        DetectionBuffer weak = new DetectionBuffer();
+        weak.add(100, 100, 160, 180, 0.3f, 0);
+        s.update(weak, false);
+        assertEquals(0, s.plan(W, H));
+    }
+
+    @Test
+    public void largeCropsRunAsAFullFrame() {
+        RoiScheduler s = new RoiScheduler(settings(10, 4));
+        s.update(boxes(40, 40, 600, 440), true);
+        assertEquals(0, s.plan(W, H));
+    }
+
+    @Test
+    public void mosaicBoxesMapBackToTheFrame() {
+        // Crop (80, 48, 128 x 256) of a 640 x 480 frame in the right cell of a 640 x 320 mosaic
+        ResamplePlan[] plans = {
+                ResamplePlan.crop(W, H, 0, 0, 0, 320, 240, 640, 320, 0, 0, 320, 320,
+                        ResamplePlan.Interpolation.NEAREST),
+                ResamplePlan.crop(W, H, 0, 80, 48, 128, 256, 640, 320, 320, 0, 320, 320,
+                        ResamplePlan.Interpolation.NEAREST)
+        };
+        ResamplePlan p = plans[1];
+        assertEquals(1.25f, p.scaleX, 1e-6f);
+        DetectionBuffer dets = new DetectionBuffer();
+        // Frame box (100, 100)-(180, 260) as the model sees it in cell 1
+        dets.add(p.padX + 20 * 1.25f, p.padY + 52 * 1.25f, p.padX + 100 * 1.25f,
+                p.padY + 212 * 1.25f, 0.8f, 3);
+        // Centred on cell 1's padding: dropped
+        dets.add(322, 10, 326, 14, 0.7f, 1);
+        ObjectDetector.mapCells(dets, plans, 2);
+
+        assertEquals(1, dets.size());
+        assertEquals(100f, dets.x1(0), 1e-3f);
+        assertEquals(100f, dets.y1(0), 1e-3f);
+        assertEquals(180f, dets.x2(0), 1e-3f);
+        assertEquals(260f, dets.y2(0), 1e-3f);
+        assertEquals(3, dets.cls(0));
+    }
+}
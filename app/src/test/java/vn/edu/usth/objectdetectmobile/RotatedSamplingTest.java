@@ -0,0 +1,61 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rotation folded into the samplers must match physically rotating the frame first.
+ */
+public class RotatedSamplingTest {
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+
+    @Test
+    public void depthPreprocessMatchesRotatedArgb() {
+        Yuv.Planes planes = TestFrames.yuv(480, 360, true, 11);
+        for (int rotation : ROTATIONS) {
+            int w = planes.width, h = planes.height;
+            int[] argb = Yuv.rotate(Yuv.toArgb(planes), w, h, rotation);
+            boolean swap = rotation == 90 || rotation == 270;
+            int uw = swap ? h : w, uh = swap ? w : h;
+
+            // Old chain: nearest resize of the rotated frame, then normalize into the tensor
+            ResamplePlan upright = DepthEstimator.fitPlan(uw, uh, 0, 518, 14,
+                    ResamplePlan.Interpolation.NEAREST);
+            int[] scaled = DepthEstimator.resizeNearest(argb, uw, uh,
+                    upright.contentW, upright.contentH);
+            InputTensor expected = InputTensor.normalized(518, 518, MEAN, STD);
+            expected.fillContent(upright, scaled);
+
+            ResamplePlan plan = DepthEstimator.fitPlan(w, h, rotation, 518, 14,
+                    ResamplePlan.Interpolation.NEAREST);
+            InputTensor actual = InputTensor.normalized(518, 518, MEAN, STD);
+            actual.fill(plan, planes);
+
+            String msg = "rotation " + rotation;
+            assertEquals(msg, upright.contentW, plan.contentW);
+            assertEquals(msg, upright.contentH, plan.contentH);
+            assertEquals(msg, upright.padX, plan.padX);
+            assertEquals(msg, upright.padY, plan.padY);
+            assertArrayEquals(msg, expected.toArray(), actual.toArray(), 0f);
+        }
+    }
+
+    @Test
+    public void cameraFrameBuildsUprightArgbLazily() {
+        FrameBufferArena arena = new FrameBufferArena();
+        Yuv.Planes planes = TestFrames.yuv(64, 48, false, 12);
+        for (int rotation : ROTATIONS) {
+            CameraFrame frame = new CameraFrame(planes, rotation, arena);
+            assertFalse(frame.hasArgb());
+            int[] expected = Yuv.rotate(Yuv.toArgb(planes), 64, 48, rotation);
+            assertArrayEquals(expected, frame.argb());
+            assertEquals(expected.length, frame.width() * frame.height());
+            assertSame(frame.argb(), frame.argb());
+            frame.release();
+            assertFalse(frame.hasArgb());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import ai.onnxruntime.OrtSession;
+
+import static org.junit.Assert.*;
+
+public class SessionProfileTest {
+
+    @Test
+    public void presetsSplitTheCores() {
+        assertEquals(0, SessionProfile.forDevice(SessionProfile.ORT_DEFAULT, 8).intraOpThreads);
+        assertEquals(4, SessionProfile.forDevice(SessionProfile.SHARED, 8).intraOpThreads);
+        assertEquals(1, SessionProfile.forDevice(SessionProfile.SHARED, 1).intraOpThreads);
+        assertEquals(8, SessionProfile.forDevice(SessionProfile.EXCLUSIVE, 8).intraOpThreads);
+        assertEquals(1, SessionProfile.forDevice(SessionProfile.LOW_POWER, 8).intraOpThreads);
+        assertEquals(SessionProfile.SHARED, SessionProfile.forDevice("no-such-profile", 4).name);
+    }
+
+    @Test
+    public void withMethodsCopy() {
+        SessionProfile base = SessionProfile.forDevice(SessionProfile.SHARED, 4);
+        SessionProfile tuned = base
+                .withExecutionMode(OrtSession.SessionOptions.ExecutionMode.PARALLEL)
+                .withOptLevel(OrtSession.SessionOptions.OptLevel.EXTENDED_OPT)
+                .withFreeDimension("height", 480)
+                .withFreeDimension("width", 640)
+                .withMemory(false, true);
+
+        assertTrue(base.freeDimensions.isEmpty());
+        assertEquals(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, base.executionMode);
+        assertEquals(2, tuned.intraOpThreads);
+        assertEquals(Long.valueOf(480), tuned.freeDimensions.get("height"));
+        assertFalse(tuned.memoryPattern);
+        assertTrue(tuned.cpuArena);
+        assertTrue(tuned.toString(), tuned.toString().contains("height=480"));
+    }
+}
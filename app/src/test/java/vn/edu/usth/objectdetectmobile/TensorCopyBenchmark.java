@@ -0,0 +1,51 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * What a heap input costs per run before session.run even starts: ORT copies a heap
+ * FloatBuffer into a freshly allocated native buffer. The direct InputTensor is bound as-is,
+ * so that cost drops out; the fill itself is timed for both storages, and for the uint8
+ * inputs of models with the normalization in the graph.
+ */
+public class TensorCopyBenchmark {
+
+    @Test
+    public void heapCopyVsDirectInput() {
+        BenchmarkSupport.assumeEnabled();
+        int[][] inputs = {{640, 640}, {518, 518}};
+        for (int[] in : inputs) {
+            int w = in[0], h = in[1];
+            int n = 3 * w * h;
+            float[] heap = new float[n];
+            String tag = w + "x" + h + " (" + (4 * n / 1024) + " KB)";
+
+            BenchmarkSupport.report(tag + " heap -> native copy",
+                    BenchmarkSupport.medianMillis(5, 21, () -> {
+                        FloatBuffer nativeCopy = ByteBuffer.allocateDirect(4 * n)
+                                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+                        nativeCopy.put(FloatBuffer.wrap(heap));
+                    }));
+
+            int[] argb = TestFrames.argb(480, 640, 1);
+            InputTensor direct = InputTensor.unitScale(w, h);
+            ResamplePlan plan = ResamplePlan.letterbox(480, 640, 0, w, h,
+                    ResamplePlan.Interpolation.NEAREST);
+            BenchmarkSupport.report(tag + " fill, heap float[]",
+                    BenchmarkSupport.medianMillis(5, 21, () ->
+                            ObjectDetector.letterboxArgb(argb, 480, 640, heap, w, h)));
+            BenchmarkSupport.report(tag + " fill, direct buffer",
+                    BenchmarkSupport.medianMillis(5, 21, () -> direct.fill(plan, argb)));
+            for (InputTensor.Format format : new InputTensor.Format[]{
+                    InputTensor.Format.UINT8_NCHW, InputTensor.Format.UINT8_NHWC}) {
+                InputTensor raw = InputTensor.unitScale(w, h, format);
+                BenchmarkSupport.report(tag + " fill, direct " + format,
+                        BenchmarkSupport.medianMillis(5, 21, () -> raw.fill(plan, argb)));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package vn.edu.usth.objectdetectmobile;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Synthetic camera frames for JVM tests. Mimics the YUV_420_888 layouts CameraX hands out:
+ * planar I420 (pixelStride 1) and semi-planar NV21 (pixelStride 2, interleaved VU), with
+ * row strides padded past the frame width like real camera buffers.
+ * Also fakes YOLOv8 head outputs for the decoder tests.
+ */
+final class TestFrames {
+
+    private TestFrames() {}
+
+    static Yuv.Planes yuv(int w, int h, boolean semiPlanar, long seed) {
+        Random rnd = new Random(seed);
+        int yRowStride = w + 16;
+        int cw = (w + 1) / 2, ch = (h + 1) / 2;
+
+        byte[] y = new byte[yRowStride * h];
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                // smooth gradient + noise so neighbouring pixels differ
+                y[j * yRowStride + i] = (byte) ((i * 3 + j * 2 + rnd.nextInt(32)) & 0xFF);
+            }
+        }
+
+        if (semiPlanar) {
+            int uvRowStride = w + 16;
+            byte[] vu = new byte[uvRowStride * ch];
+            for (int j = 0; j < ch; j++) {
+                for (int i = 0; i < cw; i++) {
+                    vu[j * uvRowStride + 2 * i] = (byte) rnd.nextInt(256);
+                    vu[j * uvRowStride + 2 * i + 1] = (byte) rnd.nextInt(256);
+                }
+            }
+            // NV21: V plane starts at offset 0, U plane at offset 1 of the same memory
+            ByteBuffer v = ByteBuffer.wrap(vu);
+            ByteBuffer u = ByteBuffer.wrap(vu, 1, vu.length - 1).slice();
+            return new Yuv.Planes(ByteBuffer.wrap(y), u, v, yRowStride, uvRowStride, 2, w, h);
+        }
+
+        int uvRowStride = cw + 8;
+        byte[] u = new byte[uvRowStride * ch];
+        byte[] v = new byte[uvRowStride * ch];
+        rnd.nextBytes(u);
+        rnd.nextBytes(v);
+        return new Yuv.Planes(ByteBuffer.wrap(y), ByteBuffer.wrap(u), ByteBuffer.wrap(v),
+                yRowStride, uvRowStride, 1, w, h);
+    }
+
+    static int[] argb(int w, int h, long seed) {
+        Random rnd = new Random(seed);
+        int[] out = new int[w * h];
+        for (int i = 0; i < out.length; i++) out[i] = 0xFF000000 | rnd.nextInt(0x1000000);
+        return out;
+    }
+
+    /** RGBA_8888 plane holding the given ARGB pixels, rows padded like a camera buffer. */
+    static Rgba.Plane rgba(int[] argb, int w, int h) {
+        int rowStride = w * 4 + 32;
+        ByteBuffer buf = ByteBuffer.allocateDirect(rowStride * h);
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                int c = argb[j * w + i], off = j * rowStride + i * 4;
+                buf.put(off, (byte) (c >> 16));
+                buf.put(off + 1, (byte) (c >> 8));
+                buf.put(off + 2, (byte) c);
+                buf.put(off + 3, (byte) 0xFF);
+            }
+        }
+        return new Rgba.Plane(buf, rowStride, 4, w, h);
+    }
+
+    /**
+     * A YOLOv8-like head output in a direct buffer: [1, 4 + classes, n] when classMajor, else
+     * [1, n, 4 + classes]. Like a real frame, almost every class score is near zero and a few
+     * objects each light up a couple of dozen anchors with overlapping boxes.
+     */
+    static FloatBuffer yoloOutput(int n, int classes, boolean classMajor, int objects,
+                                  long seed) {
+        Random rnd = new Random(seed);
+        int props = 4 + classes;
+        float[] v = new float[props * n];
+        for (int i = 0; i < n; i++) {
+            v[i * props] = rnd.nextFloat() * 640f;
+            v[i * props + 1] = rnd.nextFloat() * 640f;
+            v[i * props + 2] = 8f + rnd.nextFloat() * 120f;
+            v[i * props + 3] = 8f + rnd.nextFloat() * 120f;
+            for (int c = 0; c < classes; c++) {
+                v[i * props + 4 + c] = rnd.nextFloat() * rnd.nextFloat() * 0.02f;
+            }
+        }
+        for (int o = 0; o < objects; o++) {
+            int anchor = rnd.nextInt(n), cls = rnd.nextInt(classes);
+            float cx = rnd.nextFloat() * 640f, cy = rnd.nextFloat() * 640f;
+            float bw = 20f + rnd.nextFloat() * 200f, bh = 20f + rnd.nextFloat() * 200f;
+            for (int k = 0; k < 24; k++) {
+                int i = (anchor + k * 7) % n;
+                v[i * props] = cx + rnd.nextFloat() * 10f;
+                v[i * props + 1] = cy + rnd.nextFloat() * 10f;
+                v[i * props + 2] = bw + rnd.nextFloat() * 10f;
+                v[i * props + 3] = bh + rnd.nextFloat() * 10f;
+                v[i * props + 4 + cls] = 0.1f + rnd.nextFloat() * 0.85f;
+            }
+        }
+        FloatBuffer out = ByteBuffer.allocateDirect(4 * v.length)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        if (classMajor) {
+            for (int p = 0; p < props; p++) {
+                for (int i = 0; i < n; i++) out.put(p * n + i, v[i * props + p]);
+            }
+        } else {
+            out.put(v);
+            out.rewind();
+        }
+        return out;
+    }
+}
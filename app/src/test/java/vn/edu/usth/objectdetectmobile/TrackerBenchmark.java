@@ -0,0 +1,34 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+/**
+ * Tracker cost per frame against the number of concurrent tracks: a detector frame
+ * (predict, Hungarian association, Kalman updates, output) and a skipped frame (predict and
+ * output only).
+ */
+public class TrackerBenchmark {
+
+    @Test
+    public void tracksPerFrame() {
+        BenchmarkSupport.assumeEnabled();
+        for (int n : new int[]{10, 50, 100, 200}) {
+            TrackerTest.Scene scene = new TrackerTest.Scene(n, 2f, n);
+            Tracker tracker = new Tracker();
+            DetectionBuffer dets = new DetectionBuffer(), out = new DetectionBuffer();
+            BenchmarkSupport.report(n + " tracks, detector frame",
+                    BenchmarkSupport.medianMillis(50, 101, () -> {
+                        scene.step();
+                        scene.detect(dets);
+                        tracker.predict();
+                        tracker.update(dets);
+                        tracker.output(out, 1000, 1000);
+                    }));
+            BenchmarkSupport.report(n + " tracks, skipped frame",
+                    BenchmarkSupport.medianMillis(50, 101, () -> {
+                        tracker.predict();
+                        tracker.output(out, 1000, 1000);
+                    }));
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrackerTest {
+
+    /**
+     * n boxes on a grid over a w x h frame, each moving at its own constant velocity, with a
+     * little detection jitter. Box i keeps index i, so detections can be checked against ids.
+     */
+    static final class Scene {
+        final int n;
+        final float[] cx, cy, vx, vy;
+        final float size;
+        private final Random rnd;
+
+        Scene(int n, float maxSpeed, long seed) {
+            this.n = n;
+            rnd = new Random(seed);
+            cx = new float[n];
+            cy = new float[n];
+            vx = new float[n];
+            vy = new float[n];
+            int side = (int) Math.ceil(Math.sqrt(n));
+            size = 1000f / side * 0.5f;
+            for (int i = 0; i < n; i++) {
+                cx[i] = (i % side + 0.5f) * 1000f / side;
+                cy[i] = (i / side + 0.5f) * 1000f / side;
+                vx[i] = (rnd.nextFloat() * 2f - 1f) * maxSpeed;
+                vy[i] = (rnd.nextFloat() * 2f - 1f) * maxSpeed;
+            }
+        }
+
+        void step() {
+            for (int i = 0; i < n; i++) {
+                cx[i] += vx[i];
+                cy[i] += vy[i];
+            }
+        }
+
+        void detect(DetectionBuffer out) {
+            out.clear();
+            for (int i = 0; i < n; i++) {
+                float jx = rnd.nextFloat() - 0.5f, jy = rnd.nextFloat() - 0.5f;
+                float h = 0.5f * size;
+                out.add(cx[i] - h + jx, cy[i] - h + jy, cx[i] + h + jx, cy[i] + h + jy,
+                        0.9f, i % 3);
+            }
+        }
+
+        // Index of the scene box nearest to the centre of out's entry j
+        int nearest(DetectionBuffer out, int j) {
+            float x = 0.5f * (out.x1(j) + out.x2(j)), y = 0.5f * (out.y1(j) + out.y2(j));
+            int best = -1;
+            float bestD = Float.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                float d = (cx[i] - x) * (cx[i] - x) + (cy[i] - y) * (cy[i] - y);
+                if (d < bestD) {
+                    bestD = d;
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static void frame(Tracker tracker, Scene scene, boolean detect,
+                              DetectionBuffer dets, DetectionBuffer out) {
+        scene.step();
+        tracker.predict();
+        if (detect) {
+            scene.detect(dets);
+            tracker.update(dets);
+        }
+        tracker.output(out, 1000, 1000);
+    }
+
+    @Test
+    public void idsStayWithTheirObjects() {
+        Scene scene = new Scene(12, 3f, 1);
+        Tracker tracker = new Tracker();
+        DetectionBuffer dets = new DetectionBuffer(), out = new DetectionBuffer();
+        int[] idOf = new int[scene.n];
+        for (int f = 0; f < 60; f++) {
+            frame(tracker, scene, true, dets, out);
+            if (f == 5) {
+                assertEquals(scene.n, out.size());
+                for (int j = 0; j < out.size(); j++) idOf[scene.nearest(out, j)] = out.id(j);
+            }
+        }
+        assertEquals(scene.n, out.size());
+        for (int j = 0; j < out.size(); j++) {
+            assertEquals(idOf[scene.nearest(out, j)], out.id(j));
+        }
+    }
+
+    @Test
+    public void skippedFramesFollowTheVelocity() {
+        Scene scene = new Scene(1, 0f, 2);
+        scene.vx[0] = 4f;
+        scene.vy[0] = -2f;
+        Tracker tracker = new Tracker();
+        DetectionBuffer dets = new DetectionBuffer(), out = new DetectionBuffer();
+        for (int f = 0; f < 20; f++) frame(tracker, scene, true, dets, out);
+        for (int f = 0; f < 5; f++) frame(tracker, scene, false, dets, out);
+
+        assertEquals(1, out.size());
+        assertEquals(scene.cx[0], 0.5f * (out.x1(0) + out.x2(0)), 1.5f);
+        assertEquals(scene.cy[0], 0.5f * (out.y1(0) + out.y2(0)), 1.5f);
+    }
+
+    @Test
+    public void assignmentIsOptimalNotGreedy() {
+        Tracker tracker = new Tracker(0.3f, 1, 3, 6);
+        DetectionBuffer dets = new DetectionBuffer(), out = new DetectionBuffer();
+        dets.add(0, 0, 100, 100, 0.9f, 0);
+        dets.add(60, 0, 160, 100, 0.9f, 0);
+        tracker.predict();
+        tracker.update(dets);
+        assertEquals(2, tracker.size());
+
+        // Greedy would give A the 0.67-IoU box and leave B without one
+        dets.clear();
+        dets.add(20, 0, 120, 100, 0.9f, 0);
+        dets.add(-40, 0, 60, 100, 0.9f, 0);
+        tracker.predict();
+        tracker.update(dets);
+        tracker.output(out, 1000, 1000);
+        assertEquals(2, tracker.size());
+        assertEquals(2, out.size());
+    }
+
+    @Test
+    public void tracksNeedHitsAndExpireAfterMisses() {
+        Tracker tracker = new Tracker(0.3f, 2, 1, 6);
+        DetectionBuffer dets = new DetectionBuffer(), none = new DetectionBuffer();
+        DetectionBuffer out = new DetectionBuffer();
+        for (int f = 0; f < 2; f++) {           // past the warm-up
+            tracker.predict();
+            tracker.update(none);
+        }
+        dets.add(100, 100, 200, 200, 0.9f, 0);
+        tracker.predict();
+        tracker.update(dets);
+        tracker.output(out, 1000, 1000);
+        assertEquals(0, out.size());            // one hit: not confirmed yet
+        tracker.predict();
+        tracker.update(dets);
+        tracker.output(out, 1000, 1000);
+        assertEquals(1, out.size());
+
+        tracker.predict();
+        tracker.update(none);
+        tracker.output(out, 1000, 1000);
+        assertEquals(0, out.size());            // missed: hidden but kept
+        assertEquals(1, tracker.size());
+        tracker.predict();
+        tracker.update(none);
+        assertEquals(0, tracker.size());        // missed twice with maxAge 1: dropped
+    }
+
+    @Test
+    public void firstRunsReportTracksRightAway() {
+        Tracker tracker = new Tracker();
+        DetectionBuffer dets = new DetectionBuffer(), out = new DetectionBuffer();
+        dets.add(100, 100, 200, 200, 0.9f, 0);
+        dets.add(400, 100, 500, 200, 0.8f, 2);
+
+        // A single shot: one detector run on a fresh tracker shows its boxes
+        tracker.predict();
+        tracker.update(dets);
+        tracker.output(out, 1000, 1000);
+        assertEquals(2, out.size());
+        assertEquals(100f, out.x1(0), 1e-3f);
+        assertEquals(500f, out.x2(1), 1e-3f);
+
+        // After the warm-up a new object waits for its second hit
+        tracker.predict();
+        tracker.update(dets);
+        tracker.predict();
+        tracker.update(dets);
+        dets.add(700, 700, 800, 800, 0.9f, 0);
+        tracker.predict();
+        tracker.update(dets);
+        tracker.output(out, 1000, 1000);
+        assertEquals(2, out.size());
+
+        // reset() starts a new warm-up
+        tracker.reset();
+        tracker.predict();
+        tracker.update(dets);
+        tracker.output(out, 1000, 1000);
+        assertEquals(3, out.size());
+    }
+
+    @Test
+    public void detectorIntervalFollowsMotion() {
+        DetectionBuffer dets = new DetectionBuffer(), out = new DetectionBuffer();
+        Scene still = new Scene(4, 0f, 3);
+        Tracker slow = new Tracker();
+        assertTrue(slow.shouldDetect());
+        for (int f = 0; f < 10; f++) frame(slow, still, true, dets, out);
+        assertEquals(6, slow.detectionInterval());
+
+        Scene fast = new Scene(4, 0f, 4);
+        for (int i = 0; i < fast.n; i++) fast.vx[i] = 0.2f * fast.size;
+        Tracker busy = new Tracker();
+        for (int f = 0; f < 10; f++) frame(busy, fast, true, dets, out);
+        assertEquals(1, busy.detectionInterval());
+
+        // With a 6-frame interval the detector runs on every 6th frame
+        int runs = 0;
+        for (int f = 0; f < 36; f++) {
+            boolean detect = slow.shouldDetect();
+            if (detect) runs++;
+            frame(slow, still, detect, dets, out);
+            assertEquals(4, out.size());
+        }
+        assertEquals(6, runs);
+    }
+
+    @Test
+    public void aFrameDoesNotAllocateOnceWarm() {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Scene scene = new Scene(120, 0.5f, 5);
+        Tracker tracker = new Tracker();
+        DetectionBuffer dets = new DetectionBuffer(), out = new DetectionBuffer();
+        for (int f = 0; f < 50; f++) frame(tracker, scene, true, dets, out);
+        assertEquals(120, out.size());
+
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int f = 0; f < 20; f++) frame(tracker, scene, f % 3 == 0, dets, out);
+        long perFrame = (mx.getThreadAllocatedBytes(tid) - before) / 20;
+        assertTrue("allocated " + perFrame + " B per frame", perFrame < 64);
+    }
+}
@@ -0,0 +1,51 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Uint8InputTest {
+
+    @Test
+    public void uint8LayoutsHoldTheRawPixelsOfTheFloatInput() {
+        int w = 120, h = 90;
+        Yuv.Planes planes = TestFrames.yuv(w, h, true, 6);
+        ResamplePlan plan = ResamplePlan.letterbox(w, h, 90, 64, 64,
+                ResamplePlan.Interpolation.BILINEAR);
+
+        InputTensor f = InputTensor.unitScale(64, 64);
+        f.fill(plan, planes);
+        InputTensor nchw = InputTensor.unitScale(64, 64, InputTensor.Format.UINT8_NCHW);
+        nchw.fill(plan, planes);
+        InputTensor nhwc = InputTensor.unitScale(64, 64, InputTensor.Format.UINT8_NHWC);
+        nhwc.fill(plan, planes);
+
+        assertEquals(f.nativeBytes(), 4 * nchw.nativeBytes());
+        assertArrayEquals(new long[]{1, 64, 64, 3}, nhwc.shape());
+        float[] expected = f.toArray();
+        float[] planar = nchw.toArray();
+        float[] interleaved = nhwc.toArray();
+        int area = 64 * 64;
+        for (int c = 0; c < 3; c++) {
+            for (int i = 0; i < area; i++) {
+                assertEquals(expected[c * area + i] * 255f, planar[c * area + i], 1e-3f);
+                assertEquals(planar[c * area + i], interleaved[3 * i + c], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void normalizedUint8PaddingIsTheMeanColour() {
+        float[] mean = {0.485f, 0.456f, 0.406f};
+        float[] std = {0.229f, 0.224f, 0.225f};
+        ResamplePlan plan = DepthEstimator.fitPlan(160, 90, 0, 56, 14,
+                ResamplePlan.Interpolation.NEAREST);
+        assertTrue(plan.padY > 0);
+        InputTensor t = InputTensor.normalized(56, 56, mean, std, InputTensor.Format.UINT8_NHWC);
+        t.fill(plan, TestFrames.argb(160, 90, 2));
+        float[] raw = t.toArray();
+        for (int c = 0; c < 3; c++) {
+            assertEquals(Math.round(mean[c] * 255f), raw[c], 0f);   // top-left pixel is padding
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Output decoding per frame: the old copy-and-scan parse against the in-place class-major
+ * decoder, both followed by the same NMS. Runs on a synthetic 640x640 output, and on a real
+ * one when {@code -Dyolo.output=<file>} points at a raw little-endian float32 dump of a
+ * [1, 84, 8400] tensor. The class-subset cases scan the hazard classes' rows only, of the
+ * full head and of a head pruned to them.
+ */
+public class YoloDecodeBenchmark {
+
+    @Test
+    public void referenceVsInPlaceDecode() throws IOException {
+        BenchmarkSupport.assumeEnabled();
+        run("synthetic", TestFrames.yoloOutput(8400, 80, true, 12, 1), 8400);
+
+        String recorded = System.getProperty("yolo.output");
+        if (recorded != null) {
+            byte[] raw = Files.readAllBytes(Paths.get(recorded));
+            FloatBuffer out = ByteBuffer.allocateDirect(raw.length).order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            out.put(ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+            out.rewind();
+            run("recorded", out, raw.length / 4 / 84);
+        }
+    }
+
+    private static void run(String tag, FloatBuffer out, int n) {
+        YoloDecoder decoder = new YoloDecoder(512);
+        BenchmarkSupport.report(tag + " [1,84," + n + "] copy + scan",
+                BenchmarkSupport.medianMillis(5, 21, () -> ObjectDetector.nms(
+                        ObjectDetector.decodeReference(out, 84, n, 0.25f, 1f, 0f, 0f, 640, 640),
+                        0.45f)));
+        BenchmarkSupport.report(tag + " [1,84," + n + "] in place + top-K",
+                BenchmarkSupport.medianMillis(5, 21, () -> ObjectDetector.nms(
+                        decoder.decode(out, 84, n, 0.25f, 1f, 0f, 0f, 640, 640), 0.45f)));
+
+        int[] keep = ObjectDetector.HAZARD_CLASSES;
+        YoloDecoder subset = new YoloDecoder(512);
+        subset.setClasses(null, keep);
+        BenchmarkSupport.report(tag + " [1,84," + n + "] " + keep.length + "-class whitelist",
+                BenchmarkSupport.medianMillis(5, 21, () -> ObjectDetector.nms(
+                        subset.decode(out, 84, n, 0.25f, 1f, 0f, 0f, 640, 640), 0.45f)));
+        FloatBuffer pruned = YoloDecoderTest.head(out, n, 80, true, keep, false);
+        YoloDecoder remap = new YoloDecoder(512);
+        remap.setClasses(keep, null);
+        int props = 4 + keep.length;
+        BenchmarkSupport.report(tag + " [1," + props + "," + n + "] pruned head",
+                BenchmarkSupport.medianMillis(5, 21, () -> ObjectDetector.nms(
+                        remap.decode(pruned, props, n, 0.25f, 1f, 0f, 0f, 640, 640), 0.45f)));
+    }
+}
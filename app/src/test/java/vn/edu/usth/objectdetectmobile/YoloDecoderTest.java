@@ -0,0 +1,153 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class YoloDecoderTest {
+
+    private static final float CONF = 0.25f, IOU = 0.45f;
+
+    @Test
+    public void matchesReferenceDecoderInBothLayouts() {
+        for (boolean classMajor : new boolean[]{true, false}) {
+            FloatBuffer out = TestFrames.yoloOutput(8400, 80, classMajor, 12, 3);
+            int dim1 = classMajor ? 84 : 8400, dim2 = classMajor ? 8400 : 84;
+            List<ObjectDetector.Detection> expected = ObjectDetector.decodeReference(
+                    out, dim1, dim2, CONF, 0.75f, 0f, 80f, 480, 640);
+            List<ObjectDetector.Detection> actual = new YoloDecoder(1024).decode(
+                    out, dim1, dim2, CONF, 0.75f, 0f, 80f, 480, 640);
+
+            assertTrue(expected.size() > 50);
+            assertSame(expected, actual);
+            assertSame(ObjectDetector.nms(expected, IOU), ObjectDetector.nms(actual, IOU));
+            assertEquals("buffer position untouched", 0, out.position());
+        }
+    }
+
+    @Test
+    public void topKKeepsHighestScoresInAnchorOrder() {
+        FloatBuffer out = TestFrames.yoloOutput(8400, 80, true, 40, 5);
+        List<ObjectDetector.Detection> all = ObjectDetector.decodeReference(
+                out, 84, 8400, CONF, 1f, 0f, 0f, 640, 640);
+        List<ObjectDetector.Detection> top = new YoloDecoder(64).decode(
+                out, 84, 8400, CONF, 1f, 0f, 0f, 640, 640);
+
+        assertTrue(all.size() > 64);
+        assertEquals(64, top.size());
+        float[] scores = new float[all.size()];
+        for (int i = 0; i < scores.length; i++) scores[i] = all.get(i).score;
+        Arrays.sort(scores);
+        float cutoff = scores[scores.length - 64];
+        // top must be a subsequence of the anchor-ordered reference, all above the cutoff
+        int j = 0;
+        for (ObjectDetector.Detection d : all) {
+            if (j < top.size() && d.score == top.get(j).score && d.x1 == top.get(j).x1) {
+                assertTrue(d.score >= cutoff);
+                j++;
+            }
+        }
+        assertEquals(64, j);
+    }
+
+    @Test
+    public void emptyWhenNothingPassesThreshold() {
+        FloatBuffer out = TestFrames.yoloOutput(2100, 80, true, 0, 9);
+        assertTrue(new YoloDecoder(16).decode(out, 84, 2100, CONF, 1f, 0f, 0f, 320, 320)
+                .isEmpty());
+    }
+
+    @Test
+    public void whitelistScansOnlyItsRows() {
+        int[] keep = ObjectDetector.HAZARD_CLASSES;
+        for (boolean classMajor : new boolean[]{true, false}) {
+            FloatBuffer out = TestFrames.yoloOutput(8400, 80, classMajor, 40, 7);
+            int dim1 = classMajor ? 84 : 8400, dim2 = classMajor ? 8400 : 84;
+            // The reference on an output whose other classes score 0
+            List<ObjectDetector.Detection> expected = ObjectDetector.decodeReference(
+                    head(out, 8400, 80, classMajor, keep, true), dim1, dim2, CONF,
+                    1f, 0f, 0f, 640, 640);
+            YoloDecoder decoder = new YoloDecoder(1024);
+            decoder.setClasses(null, keep);
+            List<ObjectDetector.Detection> actual = decoder.decode(
+                    out, dim1, dim2, CONF, 1f, 0f, 0f, 640, 640);
+
+            assertTrue(expected.size() > 20);
+            assertSame(expected, actual);
+            for (ObjectDetector.Detection d : actual) {
+                assertTrue(Arrays.binarySearch(keep, d.cls) >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void prunedHeadReportsTheOriginalClassIds() {
+        int[] keep = ObjectDetector.HAZARD_CLASSES;
+        for (boolean classMajor : new boolean[]{true, false}) {
+            FloatBuffer out = TestFrames.yoloOutput(8400, 80, classMajor, 40, 8);
+            FloatBuffer pruned = head(out, 8400, 80, classMajor, keep, false);
+            int props = 4 + keep.length;
+            YoloDecoder full = new YoloDecoder(1024), small = new YoloDecoder(1024);
+            full.setClasses(null, keep);
+            small.setClasses(keep, null);
+            assertSame(full.decode(out, classMajor ? 84 : 8400, classMajor ? 8400 : 84,
+                            CONF, 1f, 0f, 0f, 640, 640),
+                    small.decode(pruned, classMajor ? props : 8400, classMajor ? 8400 : props,
+                            CONF, 1f, 0f, 0f, 640, 640));
+
+            // A whitelist on the pruned model narrows it further
+            int[] people = {0, 2};
+            full.setClasses(null, people);
+            small.setClasses(keep, people);
+            assertSame(full.decode(out, classMajor ? 84 : 8400, classMajor ? 8400 : 84,
+                            CONF, 1f, 0f, 0f, 640, 640),
+                    small.decode(pruned, classMajor ? props : 8400, classMajor ? 8400 : props,
+                            CONF, 1f, 0f, 0f, 640, 640));
+        }
+    }
+
+    /**
+     * The box rows plus the score rows of keep, either as a pruned head (zeroOthers false) or
+     * as the full head with every other class zeroed.
+     */
+    static FloatBuffer head(FloatBuffer out, int n, int classes, boolean classMajor,
+                            int[] keep, boolean zeroOthers) {
+        int props = 4 + classes;
+        int outProps = zeroOthers ? props : 4 + keep.length;
+        FloatBuffer dst = FloatBuffer.allocate(outProps * n);
+        for (int i = 0; i < n; i++) {
+            for (int p = 0; p < outProps; p++) {
+                int src;
+                if (p < 4) {
+                    src = p;
+                } else if (zeroOthers) {
+                    src = Arrays.binarySearch(keep, p - 4) >= 0 ? p : -1;
+                } else {
+                    src = 4 + keep[p - 4];
+                }
+                float v = src < 0 ? 0f
+                        : out.get(classMajor ? src * n + i : i * props + src);
+                dst.put(classMajor ? p * n + i : i * outProps + p, v);
+            }
+        }
+        return dst;
+    }
+
+    private static void assertSame(List<ObjectDetector.Detection> expected,
+                                   List<ObjectDetector.Detection> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ObjectDetector.Detection e = expected.get(i), a = actual.get(i);
+            assertEquals(e.cls, a.cls);
+            assertEquals(e.score, a.score, 0f);
+            assertEquals(e.x1, a.x1, 0f);
+            assertEquals(e.y1, a.y1, 0f);
+            assertEquals(e.x2, a.x2, 0f);
+            assertEquals(e.y2, a.y2, 0f);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+/** YUV_420_888 -> ARGB throughput: original per-pixel loop vs the table-driven engine. */
+public class YuvBenchmark {
+
+    @Test
+    public void conversionThroughput() {
+        BenchmarkSupport.assumeEnabled();
+        int[][] frames = {{640, 480}, {1280, 960}};
+        for (int[] f : frames) {
+            int w = f[0], h = f[1];
+            int[] out = new int[w * h];
+            for (boolean semiPlanar : new boolean[]{false, true}) {
+                Yuv.Planes planes = TestFrames.yuv(w, h, semiPlanar, 1);
+                String tag = w + "x" + h + (semiPlanar ? " NV21" : " I420");
+                BenchmarkSupport.report(tag + " reference",
+                        BenchmarkSupport.medianMillis(5, 21, () ->
+                                Yuv.toArgbReference(planes, out)));
+                BenchmarkSupport.report(tag + " table-driven",
+                        BenchmarkSupport.medianMillis(5, 21, () -> Yuv.toArgb(planes, out)));
+            }
+        }
+    }
+}
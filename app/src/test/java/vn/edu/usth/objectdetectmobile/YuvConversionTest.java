@@ -0,0 +1,35 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class YuvConversionTest {
+
+    @Test
+    public void lookupTablesMatchFormulaForEveryTriple() {
+        for (int y = 0; y < 256; y++) {
+            for (int u = 0; u < 256; u++) {
+                for (int v = 0; v < 256; v++) {
+                    if (Yuv.yuvToArgb(y, u, v) != Yuv.yuvToArgbFormula(y, u, v)) {
+                        fail("Y=" + y + " U=" + u + " V=" + v);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void specializedLoopsMatchReference() {
+        int[][] sizes = {{640, 480}, {97, 61}, {1, 1}, {3, 2}};
+        for (int[] size : sizes) {
+            int w = size[0], h = size[1];
+            for (boolean semiPlanar : new boolean[]{false, true}) {
+                Yuv.Planes planes = TestFrames.yuv(w, h, semiPlanar, w + h);
+                int[] expected = Yuv.toArgbReference(planes, new int[w * h]);
+                assertArrayEquals(w + "x" + h + (semiPlanar ? " NV21" : " I420"),
+                        expected, Yuv.toArgb(planes));
+            }
+        }
+    }
+}
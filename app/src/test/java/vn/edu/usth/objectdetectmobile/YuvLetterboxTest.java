@@ -0,0 +1,57 @@
+package vn.edu.usth.objectdetectmobile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The fused YUV letterbox must produce exactly the tensor of the old multi-pass chain
+ * (Yuv.toArgb -> Yuv.rotate -> letterbox) for every rotation and plane layout.
+ */
+public class YuvLetterboxTest {
+    private static final int INPUT = 640;
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    @Test
+    public void fusedMatchesMultiPass_planar() {
+        for (int rotation : ROTATIONS) {
+            assertFusedMatches(TestFrames.yuv(480, 360, false, 1), rotation);
+        }
+    }
+
+    @Test
+    public void fusedMatchesMultiPass_semiPlanar() {
+        for (int rotation : ROTATIONS) {
+            assertFusedMatches(TestFrames.yuv(480, 360, true, 2), rotation);
+        }
+    }
+
+    @Test
+    public void fusedMatchesMultiPass_upscaledSmallFrame() {
+        for (int rotation : ROTATIONS) {
+            assertFusedMatches(TestFrames.yuv(64, 48, true, 3), rotation);
+        }
+    }
+
+    private static void assertFusedMatches(Yuv.Planes planes, int rotation) {
+        int w = planes.width, h = planes.height;
+        int[] argb = Yuv.rotate(Yuv.toArgb(planes), w, h, rotation);
+        boolean swap = rotation == 90 || rotation == 270;
+        int uw = swap ? h : w, uh = swap ? w : h;
+
+        float[] expected = new float[3 * INPUT * INPUT];
+        ObjectDetector.LetterboxParams lbExpected =
+                ObjectDetector.letterboxArgb(argb, uw, uh, expected, INPUT, INPUT);
+
+        ResamplePlan plan = ResamplePlan.letterbox(w, h, rotation, INPUT, INPUT,
+                ResamplePlan.Interpolation.NEAREST);
+        InputTensor actual = InputTensor.unitScale(INPUT, INPUT);
+        ObjectDetector.letterbox(plan, planes, 0, actual, null);
+
+        String msg = "rotation " + rotation;
+        assertEquals(msg, lbExpected.scale, plan.scaleX, 0f);
+        assertEquals(msg, lbExpected.padX, plan.padX, 0f);
+        assertEquals(msg, lbExpected.padY, plan.padY, 0f);
+        assertArrayEquals(msg, expected, actual.toArray(), 0f);
+    }
+}
@@ -0,0 +1,240 @@
+#!/usr/bin/env python3
+"""
+Sweep ORT session profiles for the detector and depth models on a Linux host and report
+latency and throughput per profile. The named profiles mirror SessionProfile.forDevice in the
+app; --grid adds every thread-count / execution-mode / optimization-level combination.
+
+    # Detector alone, the app presets
+    python tools/bench_session_profiles.py --model yolov8m_compatible.onnx
+
+    # Detector and depth running side by side, as in the realtime pipeline
+    python tools/bench_session_profiles.py --model yolov8m_compatible.onnx \
+        --with-model depth_anything.onnx --grid
+
+    # Pin the dynamic dims of an aspect-matched export
+    python tools/bench_session_profiles.py --model yolo_dynamic.onnx \
+        --free-dim height=480 --free-dim width=640
+
+    # Session creation from the source vs from a saved optimized graph (OptimizedModelCache)
+    python tools/bench_session_profiles.py --model yolov8m_compatible.onnx --session-cache
+
+Use --cores to pin the process to as many cores as the target device has, so the thread
+splits are measured under the same contention.
+"""
+
+from __future__ import annotations
+
+import argparse
+import itertools
+import os
+import statistics
+import tempfile
+import threading
+import time
+from dataclasses import dataclass, field, replace
+
+import numpy as np
+import onnxruntime as ort
+
+
+@dataclass(frozen=True)
+class Profile:
+    name: str
+    intra: int = 0  # 0 = ORT default
+    inter: int = 0
+    parallel: bool = False
+    opt: str = "all"
+    free_dims: dict = field(default_factory=dict)
+    mem_pattern: bool = True
+    cpu_arena: bool = True
+
+    def options(self) -> ort.SessionOptions:
+        so = ort.SessionOptions()
+        if self.intra:
+            so.intra_op_num_threads = self.intra
+        if self.inter:
+            so.inter_op_num_threads = self.inter
+        so.execution_mode = (ort.ExecutionMode.ORT_PARALLEL if self.parallel
+                             else ort.ExecutionMode.ORT_SEQUENTIAL)
+        so.graph_optimization_level = OPT_LEVELS[self.opt]
+        for dim, value in self.free_dims.items():
+            so.add_free_dimension_override_by_name(dim, value)
+        so.enable_mem_pattern = self.mem_pattern
+        so.enable_cpu_mem_arena = self.cpu_arena
+        return so
+
+    def label(self) -> str:
+        parts = [f"intra={self.intra or 'def'}", f"inter={self.inter or 'def'}",
+                 "par" if self.parallel else "seq", self.opt]
+        if not self.mem_pattern:
+            parts.append("no-mempat")
+        if not self.cpu_arena:
+            parts.append("no-arena")
+        return f"{self.name} ({', '.join(parts)})"
+
+
+OPT_LEVELS = {
+    "none": ort.GraphOptimizationLevel.ORT_DISABLE_ALL,
+    "basic": ort.GraphOptimizationLevel.ORT_ENABLE_BASIC,
+    "extended": ort.GraphOptimizationLevel.ORT_ENABLE_EXTENDED,
+    "all": ort.GraphOptimizationLevel.ORT_ENABLE_ALL,
+}
+
+
+def presets(cores: int) -> list[Profile]:
+    """Same presets as SessionProfile.forDevice(name, cores)."""
+    return [
+        Profile("ort-default"),
+        Profile("shared", intra=max(1, cores // 2), inter=1),
+        Profile("exclusive", intra=cores, inter=1),
+        Profile("low-power", intra=1, inter=1),
+    ]
+
+
+def grid(cores: int) -> list[Profile]:
+    threads = sorted({1, 2, max(1, cores // 2), cores})
+    out = []
+    for intra, parallel, opt in itertools.product(threads, (False, True), ("basic", "all")):
+        out.append(Profile("grid", intra=intra, inter=2 if parallel else 1,
+                           parallel=parallel, opt=opt))
+    out.append(Profile("grid", intra=max(1, cores // 2), inter=1, mem_pattern=False))
+    out.append(Profile("grid", intra=max(1, cores // 2), inter=1, cpu_arena=False))
+    return out
+
+
+def make_feed(session: ort.InferenceSession, free_dims: dict, default_hw: int) -> dict:
+    feed = {}
+    for inp in session.get_inputs():
+        shape = []
+        for i, d in enumerate(inp.shape):
+            if isinstance(d, int) and d > 0:
+                shape.append(d)
+            elif isinstance(d, str) and d in free_dims:
+                shape.append(free_dims[d])
+            else:
+                # batch 1; channel dims are fixed in these exports, so the rest are H / W
+                shape.append(1 if i == 0 else default_hw)
+        if "uint8" in inp.type:
+            feed[inp.name] = np.random.randint(0, 256, size=shape, dtype=np.uint8)
+        elif "float16" in inp.type:
+            feed[inp.name] = np.random.rand(*shape).astype(np.float16)
+        else:
+            feed[inp.name] = np.random.rand(*shape).astype(np.float32)
+    return feed
+
+
+@dataclass
+class Result:
+    latencies_ms: list[float]
+    wall_s: float
+
+    def summary(self) -> str:
+        lat = sorted(self.latencies_ms)
+        p50 = statistics.median(lat)
+        p90 = lat[min(len(lat) - 1, int(0.9 * len(lat)))]
+        fps = len(lat) / self.wall_s if self.wall_s > 0 else float("nan")
+        return f"p50 {p50:8.1f} ms  p90 {p90:8.1f} ms  {fps:6.2f} runs/s"
+
+
+def run_loop(session, feed, warmup: int, runs: int, out: list, start: threading.Barrier):
+    for _ in range(warmup):
+        session.run(None, feed)
+    start.wait()
+    t_begin = time.perf_counter()
+    lat = []
+    for _ in range(runs):
+        t0 = time.perf_counter()
+        session.run(None, feed)
+        lat.append((time.perf_counter() - t0) * 1e3)
+    out.append(Result(lat, time.perf_counter() - t_begin))
+
+
+def bench(models: list[str], profile: Profile, args) -> list[tuple[Result, float]]:
+    sessions = []
+    for i, model in enumerate(models):
+        t0 = time.perf_counter()
+        session = ort.InferenceSession(model, sess_options=profile.options(),
+                                       providers=["CPUExecutionProvider"])
+        create_ms = (time.perf_counter() - t0) * 1e3
+        feed = make_feed(session, profile.free_dims, args.size[i])
+        sessions.append((session, feed, create_ms))
+
+    # Models in one sweep run concurrently, each on its own thread, like the app's inference pool
+    results: list[list[Result]] = [[] for _ in sessions]
+    start = threading.Barrier(len(sessions))
+    threads = [threading.Thread(target=run_loop,
+                                args=(s, f, args.warmup, args.runs, results[i], start))
+               for i, (s, f, _) in enumerate(sessions)]
+    for t in threads:
+        t.start()
+    for t in threads:
+        t.join()
+    return [(r[0], c) for r, (_, _, c) in zip(results, sessions)]
+
+
+def session_cache(model: str, profile: Profile, repeats: int = 3) -> str:
+    """Median session creation: from the source, saving the optimized graph, and from it."""
+    def create(path, so) -> float:
+        t0 = time.perf_counter()
+        ort.InferenceSession(path, sess_options=so, providers=["CPUExecutionProvider"])
+        return (time.perf_counter() - t0) * 1e3
+
+    with tempfile.TemporaryDirectory() as tmp:
+        optimized = os.path.join(tmp, "model.opt.onnx")
+        cold = statistics.median(create(model, profile.options()) for _ in range(repeats))
+        so = profile.options()
+        so.optimized_model_filepath = optimized
+        save = create(model, so)
+        cached = statistics.median(create(optimized, replace(profile, opt="none").options())
+                                   for _ in range(repeats))
+    return (f"session from source {cold:7.0f} ms, saving optimized {save:7.0f} ms, "
+            f"from optimized {cached:7.0f} ms")
+
+
+def parse_args() -> argparse.Namespace:
+    parser = argparse.ArgumentParser(description="Latency / throughput per ORT session profile")
+    parser.add_argument("--model", required=True, help="Primary model (e.g. the detector)")
+    parser.add_argument("--with-model", help="Second model run concurrently (e.g. depth)")
+    parser.add_argument("--size", type=int, nargs="+", default=[640, 518],
+                        help="Side used for unpinned dynamic dims, per model")
+    parser.add_argument("--free-dim", action="append", default=[],
+                        help="NAME=VALUE free-dimension override, applied to every profile")
+    parser.add_argument("--grid", action="store_true", help="Also sweep a thread/mode grid")
+    parser.add_argument("--session-cache", action="store_true",
+                        help="Compare session creation with and without a saved optimized graph")
+    parser.add_argument("--cores", type=int, help="Pin the process to this many cores")
+    parser.add_argument("--warmup", type=int, default=5)
+    parser.add_argument("--runs", type=int, default=30)
+    return parser.parse_args()
+
+
+def main() -> None:
+    args = parse_args()
+    if args.cores:
+        os.sched_setaffinity(0, set(range(args.cores)))
+    cores = len(os.sched_getaffinity(0))
+    free_dims = {}
+    for item in args.free_dim:
+        name, value = item.split("=", 1)
+        free_dims[name] = int(value)
+    if len(args.size) == 1:
+        args.size = args.size * 2
+
+    models = [args.model] + ([args.with_model] if args.with_model else [])
+    profiles = presets(cores) + (grid(cores) if args.grid else [])
+    profiles = [replace(p, free_dims=free_dims) for p in profiles]
+
+    print(f"ORT {ort.__version__}, {cores} cores, models: {', '.join(models)}")
+    if args.session_cache:
+        for model in models:
+            print(f"{os.path.basename(model)}: {session_cache(model, profiles[1])}")
+        return
+    for profile in profiles:
+        print(profile.label())
+        for model, (result, create_ms) in zip(models, bench(models, profile, args)):
+            print(f"    {os.path.basename(model):32s} {result.summary()}  "
+                  f"(session {create_ms:.0f} ms)")
+
+
+if __name__ == "__main__":
+    main()
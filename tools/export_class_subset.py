@@ -0,0 +1,107 @@
+#!/usr/bin/env python3
+"""
+Export a YOLOv8 detector whose output head only scores a subset of the COCO classes, e.g.
+the hazard classes of ObjectDetector.HAZARD_CLASSES. The last 1x1 conv of each classification
+branch keeps only the selected output channels, so the model computes and writes 15 score
+rows per anchor instead of 80 ([1, 19, 8400] instead of [1, 84, 8400]).
+
+The COCO id of each remaining row is stored in the model metadata as "class_ids"; the app's
+decoder reads it and reports the original ids, so labels.txt, the overlay and the depth
+sampling keep working unchanged.
+
+    python tools/export_class_subset.py --weights yolov8m.pt --classes hazard \
+        --output app/src/main/assets/yolov8m_compatible.onnx
+
+    # Any subset, by COCO id
+    python tools/export_class_subset.py --weights yolov8n.pt --classes 0,2,5,7 --imgsz 320 \
+        --output app/src/main/assets/yolov8n_gate.onnx
+
+Run tools/export_uint8_input.py --preset yolo on the result for a uint8 input, as usual.
+"""
+
+from __future__ import annotations
+
+import argparse
+from pathlib import Path
+
+import onnx
+import torch
+from torch import nn
+
+# Mirrors ObjectDetector.HAZARD_CLASSES in the app
+PRESETS = {
+    "hazard": [0, 1, 2, 3, 5, 6, 7, 9, 10, 11, 12, 13, 16, 56, 58],
+}
+
+
+def parse_args() -> argparse.Namespace:
+    parser = argparse.ArgumentParser(description="Export a YOLOv8 model with a pruned class head")
+    parser.add_argument("--weights", default="yolov8m.pt", help="Ultralytics weights")
+    parser.add_argument(
+        "--classes", required=True, help="Preset name (" + ", ".join(PRESETS) + ") or COCO ids"
+    )
+    parser.add_argument("--imgsz", type=int, default=640, help="Square input size")
+    parser.add_argument("--opset", type=int, default=12, help="ONNX opset")
+    parser.add_argument("--dynamic", action="store_true", help="Dynamic input height / width")
+    parser.add_argument("--output", required=True, type=Path, help="Output .onnx path")
+    return parser.parse_args()
+
+
+def class_ids(spec: str) -> list[int]:
+    ids = PRESETS.get(spec)
+    if ids is None:
+        ids = [int(v) for v in spec.split(",") if v.strip()]
+    if not ids or len(set(ids)) != len(ids):
+        raise SystemExit(f"bad class list: {spec}")
+    return sorted(ids)
+
+
+def prune_head(model, ids: list[int]) -> None:
+    """Keeps the score channels of ids in the Detect head, in that order."""
+    detect = model.model.model[-1]
+    index = torch.tensor(ids)
+    for branch in detect.cv3:
+        conv = branch[-1]
+        if not isinstance(conv, nn.Conv2d) or conv.out_channels != detect.nc:
+            raise SystemExit("unexpected Detect head layout")
+        pruned = nn.Conv2d(conv.in_channels, len(ids), conv.kernel_size, conv.stride,
+                           conv.padding, bias=conv.bias is not None)
+        pruned.weight.data = conv.weight.data[index].clone()
+        if conv.bias is not None:
+            pruned.bias.data = conv.bias.data[index].clone()
+        branch[-1] = pruned
+    names = model.model.names
+    detect.nc = len(ids)
+    detect.no = detect.nc + detect.reg_max * 4
+    model.model.nc = len(ids)
+    model.model.yaml["nc"] = len(ids)
+    model.model.names = {k: names[c] for k, c in enumerate(ids)}
+
+
+def main() -> None:
+    from ultralytics import YOLO
+
+    args = parse_args()
+    ids = class_ids(args.classes)
+    model = YOLO(args.weights)
+    prune_head(model, ids)
+    exported = model.export(
+        format="onnx", imgsz=args.imgsz, opset=args.opset, dynamic=args.dynamic, simplify=True
+    )
+
+    onnx_model = onnx.load(str(exported))
+    meta = {p.key: p for p in onnx_model.metadata_props}
+    entry = meta.get("class_ids") or onnx_model.metadata_props.add()
+    entry.key = "class_ids"
+    entry.value = ",".join(str(c) for c in ids)
+    args.output.parent.mkdir(parents=True, exist_ok=True)
+    onnx.save(onnx_model, str(args.output))
+    if Path(exported).resolve() != args.output.resolve():
+        Path(exported).unlink()
+    shape = [d.dim_value or d.dim_param for d in
+             onnx_model.graph.output[0].type.tensor_type.shape.dim]
+    print(f"wrote {args.output}: {len(ids)} classes, output {shape}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,83 @@
+#!/usr/bin/env python3
+"""
+Export the small gating model of the detector cascade (CascadePolicy in the app): YOLOv8n with
+a fixed 320x320 input, the same output layout as the main model, saved as the asset name the
+app looks for. With the asset packaged, ObjectDetector runs it on every frame and escalates
+to yolov8m_compatible.onnx only when it reports a candidate.
+
+    python tools/export_gate_model.py --output app/src/main/assets/yolov8n_gate.onnx
+
+    # Also time both stages on this host, to see what a quiet frame saves
+    python tools/export_gate_model.py --output app/src/main/assets/yolov8n_gate.onnx \
+        --compare yolov8m_compatible.onnx
+
+Run tools/export_uint8_input.py --preset yolo on the result for a uint8 input, as for the
+main model.
+"""
+
+from __future__ import annotations
+
+import argparse
+import shutil
+import statistics
+import time
+from pathlib import Path
+
+import numpy as np
+
+
+def parse_args() -> argparse.Namespace:
+    parser = argparse.ArgumentParser(description="Export the cascade's gating model")
+    parser.add_argument("--weights", default="yolov8n.pt", help="Ultralytics weights")
+    parser.add_argument("--imgsz", type=int, default=320, help="Fixed square input size")
+    parser.add_argument("--opset", type=int, default=12, help="ONNX opset")
+    parser.add_argument("--output", required=True, type=Path, help="Output .onnx path")
+    parser.add_argument("--compare", type=Path, help="Main model to time against the gate")
+    parser.add_argument("--runs", type=int, default=30, help="Timed runs per model")
+    return parser.parse_args()
+
+
+def export(weights: str, imgsz: int, opset: int, output: Path) -> None:
+    from ultralytics import YOLO
+
+    exported = YOLO(weights).export(
+        format="onnx", imgsz=imgsz, opset=opset, dynamic=False, simplify=True
+    )
+    output.parent.mkdir(parents=True, exist_ok=True)
+    shutil.move(str(exported), output)
+    print(f"wrote {output} ({output.stat().st_size / 1e6:.1f} MB)")
+
+
+def median_ms(path: Path, runs: int) -> float:
+    import onnxruntime as ort
+
+    session = ort.InferenceSession(str(path), providers=["CPUExecutionProvider"])
+    inp = session.get_inputs()[0]
+    shape = [d if isinstance(d, int) and d > 0 else 640 for d in inp.shape]
+    shape[0] = 1
+    dtype = np.uint8 if "uint8" in inp.type else np.float32
+    x = np.random.default_rng(0).random(shape).astype(np.float32)
+    x = (x * 255).astype(dtype) if dtype == np.uint8 else x
+    for _ in range(3):
+        session.run(None, {inp.name: x})
+    times = []
+    for _ in range(runs):
+        t0 = time.perf_counter()
+        session.run(None, {inp.name: x})
+        times.append((time.perf_counter() - t0) * 1e3)
+    return statistics.median(times)
+
+
+def main() -> None:
+    args = parse_args()
+    export(args.weights, args.imgsz, args.opset, args.output)
+    if args.compare:
+        gate = median_ms(args.output, args.runs)
+        main_ms = median_ms(args.compare, args.runs)
+        print(f"gate {gate:.1f} ms, main {main_ms:.1f} ms")
+        # Quiet scene with the default refresh every 30 gate frames
+        print(f"quiet frame: {gate + main_ms / 30:.1f} ms vs {main_ms:.1f} ms without the gate")
+
+
+if __name__ == "__main__":
+    main()
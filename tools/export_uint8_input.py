@@ -0,0 +1,105 @@
+#!/usr/bin/env python3
+"""
+Rewrite a float32-input ONNX model to take raw uint8 pixels, with the normalization folded
+into the graph. The app detects the uint8 input type and fills the tensor with bytes instead
+of floats (4x less data to write per frame).
+
+    # YOLO: x / 255
+    python tools/export_uint8_input.py --input yolov8m_compatible.onnx \
+        --output yolov8m_compatible_u8.onnx --preset yolo
+
+    # Depth Anything: (x / 255 - mean) / std, NHWC input
+    python tools/export_uint8_input.py --input depth_anything.onnx \
+        --output depth_anything_u8.onnx --preset depth --layout nhwc
+"""
+
+from __future__ import annotations
+
+import argparse
+from pathlib import Path
+
+import numpy as np
+import onnx
+from onnx import TensorProto, helper, numpy_helper
+
+PRESETS = {
+    "yolo": ([0.0, 0.0, 0.0], [1.0, 1.0, 1.0]),
+    "depth": ([0.485, 0.456, 0.406], [0.229, 0.224, 0.225]),
+}
+
+
+def parse_args() -> argparse.Namespace:
+    parser = argparse.ArgumentParser(description="Give an ONNX model a uint8 image input")
+    parser.add_argument("--input", required=True, type=Path, help="Path to float32-input ONNX")
+    parser.add_argument("--output", required=True, type=Path, help="Output path")
+    parser.add_argument("--preset", choices=sorted(PRESETS), help="Mean/std of a known model")
+    parser.add_argument("--mean", type=float, nargs=3, help="Per-channel mean (after / 255)")
+    parser.add_argument("--std", type=float, nargs=3, help="Per-channel std (after / 255)")
+    parser.add_argument(
+        "--layout",
+        choices=["nchw", "nhwc"],
+        default="nchw",
+        help="Layout of the new uint8 input (the graph transposes NHWC back to NCHW)",
+    )
+    return parser.parse_args()
+
+
+def main() -> None:
+    args = parse_args()
+    mean, std = PRESETS.get(args.preset, ([0.0, 0.0, 0.0], [1.0, 1.0, 1.0]))
+    if args.mean:
+        mean = args.mean
+    if args.std:
+        std = args.std
+
+    model = onnx.load(str(args.input))
+    graph = model.graph
+    if len(graph.input) != 1:
+        raise SystemExit(f"expected one graph input, found {len(graph.input)}")
+    old = graph.input[0]
+    if old.type.tensor_type.elem_type != TensorProto.FLOAT:
+        raise SystemExit(f"input {old.name} is not float32")
+    dims = [d.dim_value if d.HasField("dim_value") else d.dim_param
+            for d in old.type.tensor_type.shape.dim]
+    if len(dims) != 4 or dims[1] != 3:
+        raise SystemExit(f"expected an NCHW image input, got shape {dims}")
+
+    float_name = old.name
+    raw_name = float_name + "_uint8"
+    n, c, h, w = dims
+    new_dims = [n, h, w, c] if args.layout == "nhwc" else [n, c, h, w]
+    new_input = helper.make_tensor_value_info(raw_name, TensorProto.UINT8, new_dims)
+
+    # (x / 255 - mean) / std  ==  x * scale + bias, one Mul and one Add per element
+    scale = np.array([1.0 / (255.0 * s) for s in std], dtype=np.float32).reshape(1, 3, 1, 1)
+    bias = np.array([-m / s for m, s in zip(mean, std)], dtype=np.float32).reshape(1, 3, 1, 1)
+    graph.initializer.extend([
+        numpy_helper.from_array(scale, raw_name + "_scale"),
+        numpy_helper.from_array(bias, raw_name + "_bias"),
+    ])
+
+    nodes = []
+    src = raw_name
+    if args.layout == "nhwc":
+        nodes.append(helper.make_node("Transpose", [src], [raw_name + "_nchw"], perm=[0, 3, 1, 2]))
+        src = raw_name + "_nchw"
+    nodes.append(helper.make_node("Cast", [src], [raw_name + "_f"], to=TensorProto.FLOAT))
+    nodes.append(helper.make_node("Mul", [raw_name + "_f", raw_name + "_scale"], [raw_name + "_m"]))
+    nodes.append(helper.make_node("Add", [raw_name + "_m", raw_name + "_bias"], [float_name]))
+
+    # The old input name becomes the output of the prologue, so the rest of the graph is
+    # untouched.
+    graph.input.remove(old)
+    graph.input.insert(0, new_input)
+    for i, node in enumerate(nodes):
+        graph.node.insert(i, node)
+
+    onnx.checker.check_model(model)
+    args.output.parent.mkdir(parents=True, exist_ok=True)
+    onnx.save(model, str(args.output))
+    print(f"uint8 {args.layout.upper()} model written to {args.output} "
+          f"(mean={mean}, std={std})")
+
+
+if __name__ == "__main__":
+    main()